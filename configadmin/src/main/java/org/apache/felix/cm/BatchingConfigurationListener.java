@@ -0,0 +1,69 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.felix.cm;
+
+import java.util.List;
+
+import org.osgi.annotation.versioning.ConsumerType;
+import org.osgi.service.cm.ConfigurationEvent;
+import org.osgi.service.cm.ConfigurationListener;
+
+/**
+ * <code>BatchingConfigurationListener</code> is a {@link ConfigurationListener}
+ * which receives configuration events in batches instead of one by one.
+ * Events are collected per listener until either the maximum batch size
+ * is reached or the batch window has elapsed since the first event of the
+ * batch. The events of a batch are delivered in the order they occurred.
+ * <p>
+ * To make implementations of this interface available to the Configuration
+ * Admin Service they must be registered as service for interface
+ * {@link ConfigurationListener}. The batch size and window can be configured
+ * with the {@link #BATCH_SIZE} and {@link #BATCH_WINDOW} service properties.
+ * <p>
+ * If the listener is registered as a
+ * {@link org.osgi.service.cm.SynchronousConfigurationListener}, events are
+ * delivered synchronously and one by one through
+ * {@link #configurationEvent(ConfigurationEvent)}.
+ *
+ * @since 1.3
+ */
+@ConsumerType
+public interface BatchingConfigurationListener extends ConfigurationListener
+{
+    /**
+     * The service property defining the maximum number of events in a
+     * batch (value is "felix.cm.batch.size"). The default is 100.
+     */
+    String BATCH_SIZE = "felix.cm.batch.size";
+
+    /**
+     * The service property defining the maximum time in milliseconds an
+     * event waits for further events of its batch (value is
+     * "felix.cm.batch.window"). The default is 50.
+     */
+    String BATCH_WINDOW = "felix.cm.batch.window";
+
+
+    /**
+     * Receives a batch of configuration events.
+     *
+     * @param events The events in the order they occurred, never empty
+     */
+    void configurationEvents( List<ConfigurationEvent> events );
+}
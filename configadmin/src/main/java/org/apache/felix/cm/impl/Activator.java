@@ -18,6 +18,8 @@
  */
 package org.apache.felix.cm.impl;
 
+import java.io.File;
+import java.io.IOException;
 import java.security.AccessController;
 import java.security.PrivilegedAction;
 import java.util.ArrayList;
@@ -27,6 +29,7 @@ import java.util.List;
 
 import org.apache.felix.cm.PersistenceManager;
 import org.apache.felix.cm.file.FilePersistenceManager;
+import org.apache.felix.cm.impl.persistence.IndexedPersistenceManager;
 import org.apache.felix.cm.impl.persistence.MemoryPersistenceManager;
 import org.osgi.framework.Bundle;
 import org.osgi.framework.BundleActivator;
@@ -76,6 +79,16 @@ public class Activator implements BundleActivator
      */
     private static final String CM_CONFIG_PM = "felix.cm.pm";
 
+    /**
+     * The name of the framework context property defining the location for the
+     * files of the indexed persistence manager (value is "felix.cm.indexed.dir").
+     * If this property is not set, the <code>config-indexed</code> directory in
+     * the persistent storage area of the bundle is used.
+     *
+     * @see #start(BundleContext)
+     */
+    private static final String CM_INDEXED_DIR = "felix.cm.indexed.dir";
+
     /**
      * The name of the framework context property defining the required
      * configuration plugins. If this property is specified it refers to the
@@ -95,6 +108,9 @@ public class Activator implements BundleActivator
     // the service registration of the memory persistence manager
     private volatile ServiceRegistration<PersistenceManager> memorypmRegistration;
 
+    // the service registration of the indexed persistence manager
+    private volatile ServiceRegistration<PersistenceManager> indexedpmRegistration;
+
     @Override
     public void start( final BundleContext bundleContext ) throws BundleException
     {
@@ -107,6 +123,9 @@ public class Activator implements BundleActivator
         // register memory persistence manager
         registerMemoryPersistenceManager(bundleContext);
 
+        // register indexed persistence manager
+        registerIndexedPersistenceManager(bundleContext);
+
         try
         {
             this.tracker = new DependencyTracker(bundleContext, defaultFactory,
@@ -161,9 +180,10 @@ public class Activator implements BundleActivator
             this.tracker = null;
         }
 
-        // shutdown the file and memory persistence manager and unregister
+        // shutdown the file, memory and indexed persistence manager and unregister
         this.unregisterFilePersistenceManager();
         this.unregisterMemoryPersistenceManager();
+        this.unregisterIndexedPersistenceManager();
     }
 
     private ServiceFactory<PersistenceManager> registerFilePersistenceManager(final BundleContext bundleContext)
@@ -209,6 +229,55 @@ public class Activator implements BundleActivator
         memorypmRegistration = bundleContext.registerService(PersistenceManager.class, mpm, props);
     }
 
+    private void registerIndexedPersistenceManager(final BundleContext bundleContext) {
+        final Dictionary<String, Object> props = new Hashtable<>();
+        props.put(Constants.SERVICE_DESCRIPTION, "Platform Indexed Persistence Manager");
+        props.put(Constants.SERVICE_VENDOR, "The Apache Software Foundation");
+        props.put(PersistenceManager.PROPERTY_NAME, IndexedPersistenceManager.PERSISTENCE_MANAGER_NAME);
+
+        // the files are only read if the persistence manager is actually used
+        // and the log file is closed once the last bundle has released it
+        final ServiceFactory<PersistenceManager> factory = new ServiceFactory<PersistenceManager>()
+        {
+
+            private IndexedPersistenceManager ipm;
+
+            private int users;
+
+            @Override
+            public synchronized PersistenceManager getService(Bundle bundle, ServiceRegistration<PersistenceManager> registration) {
+                if (ipm == null) {
+                    final String location = bundleContext.getProperty(CM_INDEXED_DIR);
+                    File dir = location != null ? new File(location) : bundleContext.getDataFile(IndexedPersistenceManager.DEFAULT_DIR);
+                    if (dir == null) {
+                        dir = new File(System.getProperty("user.dir"), IndexedPersistenceManager.DEFAULT_DIR);
+                    }
+                    try {
+                        ipm = new IndexedPersistenceManager(dir.getAbsoluteFile());
+                    } catch (final IOException ioe) {
+                        Log.logger.log(LogService.LOG_ERROR, "Cannot create the indexed persistence manager in {0}",
+                                new Object[] { dir, ioe });
+                        return null;
+                    }
+                }
+                users++;
+
+                return ipm;
+            }
+
+            @Override
+            public synchronized void ungetService(Bundle bundle, ServiceRegistration<PersistenceManager> registration,
+                    PersistenceManager service) {
+                if (ipm != null && service == ipm && --users == 0) {
+                    ipm.close();
+                    ipm = null;
+                }
+            }
+
+        };
+        indexedpmRegistration = bundleContext.registerService(PersistenceManager.class, factory, props);
+    }
+
     private void unregisterFilePersistenceManager()
     {
         if ( this.filepmRegistration != null )
@@ -225,6 +294,13 @@ public class Activator implements BundleActivator
         }
     }
 
+    private void unregisterIndexedPersistenceManager() {
+        if (this.indexedpmRegistration != null) {
+            this.indexedpmRegistration.unregister();
+            this.indexedpmRegistration = null;
+        }
+    }
+
     public static String getLocation(final Bundle bundle)
     {
         if (System.getSecurityManager() != null)
@@ -0,0 +1,315 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.felix.cm.impl;
+
+import java.security.AccessController;
+import java.security.PrivilegedAction;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.felix.cm.BatchingConfigurationListener;
+import org.apache.felix.cm.impl.helper.BaseTracker;
+import org.osgi.framework.Bundle;
+import org.osgi.framework.ServiceReference;
+import org.osgi.service.cm.ConfigurationEvent;
+import org.osgi.service.log.LogService;
+
+
+/**
+ * The <code>ConfigurationEventBatcher</code> collects the configuration
+ * events for {@link BatchingConfigurationListener}s and delivers them in
+ * batches. There is one batch per listener at a time, it is delivered once
+ * it reaches its size or its window has elapsed. All batches are delivered
+ * by the batcher thread, so the events of a listener are always delivered
+ * in the order they have been added.
+ */
+public class ConfigurationEventBatcher implements Runnable
+{
+
+    static final int DEFAULT_BATCH_SIZE = 100;
+
+    static final long DEFAULT_BATCH_WINDOW = 50;
+
+    // the thread group into which the batcher thread will be placed
+    private final ThreadGroup workerThreadGroup;
+
+    // the thread's name
+    private final String workerName;
+
+    // the pending batches per listener, oldest first
+    private final Map<ServiceReference<?>, Batch> batches = new LinkedHashMap<>();
+
+    // the batches which reached their size, in the order they got full
+    private final List<Batch> fullBatches = new ArrayList<>();
+
+    // the actual thread
+    private Thread worker;
+
+    // the number of batches delivered
+    private long deliveredBatches;
+
+    // the number of events delivered
+    private long deliveredEvents;
+
+
+    public ConfigurationEventBatcher( final ThreadGroup tg, final String name )
+    {
+        this.workerThreadGroup = tg;
+        this.workerName = name;
+    }
+
+
+    /**
+     * Adds an event to the current batch of the listener.
+     *
+     * @param reference The service reference of the listener
+     * @param listener The listener
+     * @param provider The bundle registering the listener
+     * @param event The event
+     */
+    synchronized void add( final ServiceReference<?> reference, final BatchingConfigurationListener listener,
+        final Bundle provider, final ConfigurationEvent event )
+    {
+        Batch batch = this.batches.get( reference );
+        if ( batch == null )
+        {
+            batch = new Batch( reference, listener, provider );
+            this.batches.put( reference, batch );
+            notifyAll();
+        }
+        batch.events.add( event );
+        if ( batch.events.size() >= batch.maxSize )
+        {
+            // further events for the listener go to a new batch
+            this.batches.remove( reference );
+            this.fullBatches.add( batch );
+            notifyAll();
+        }
+    }
+
+
+    /**
+     * Starts the batcher thread.
+     */
+    synchronized void start()
+    {
+        if ( this.worker == null )
+        {
+            final Thread workerThread = new Thread( workerThreadGroup, this, workerName );
+            workerThread.setDaemon( true );
+            this.worker = workerThread;
+            workerThread.start();
+        }
+    }
+
+
+    /**
+     * Stops the batcher thread. Pending batches are discarded.
+     */
+    void terminate()
+    {
+        final Thread workerThread;
+        synchronized ( this )
+        {
+            workerThread = this.worker;
+            this.worker = null;
+            this.batches.clear();
+            this.fullBatches.clear();
+            notifyAll();
+        }
+        if ( workerThread != null )
+        {
+            try
+            {
+                workerThread.join( 5000 );
+            }
+            catch ( InterruptedException ie )
+            {
+                // don't really care
+            }
+        }
+    }
+
+
+    /**
+     * @return A short description of the number of batches and events
+     *      delivered
+     */
+    synchronized String getStatistics()
+    {
+        return "batches=" + deliveredBatches + ", events=" + deliveredEvents + ", pending="
+            + ( batches.size() + fullBatches.size() );
+    }
+
+
+    @Override
+    public void run()
+    {
+        final Thread current = Thread.currentThread();
+        final List<Batch> due = new ArrayList<>();
+        for ( ;; )
+        {
+            synchronized ( this )
+            {
+                while ( this.worker == current && due.isEmpty() )
+                {
+                    // full batches of a listener always precede its pending batch
+                    due.addAll( this.fullBatches );
+                    this.fullBatches.clear();
+                    final long now = System.currentTimeMillis();
+                    long next = Long.MAX_VALUE;
+                    final Iterator<Batch> iter = this.batches.values().iterator();
+                    while ( iter.hasNext() )
+                    {
+                        final Batch batch = iter.next();
+                        if ( batch.due <= now )
+                        {
+                            due.add( batch );
+                            iter.remove();
+                        }
+                        else if ( batch.due < next )
+                        {
+                            next = batch.due;
+                        }
+                    }
+                    if ( due.isEmpty() )
+                    {
+                        try
+                        {
+                            wait( next == Long.MAX_VALUE ? 0 : next - now );
+                        }
+                        catch ( InterruptedException ie )
+                        {
+                            // don't care
+                        }
+                    }
+                }
+                if ( this.worker != current )
+                {
+                    return;
+                }
+            }
+
+            for ( final Batch batch : due )
+            {
+                deliver( batch );
+            }
+            due.clear();
+        }
+    }
+
+
+    private void deliver( final Batch batch )
+    {
+        if ( ( batch.provider.getState() & ( Bundle.ACTIVE | Bundle.STARTING ) ) == 0 )
+        {
+            return;
+        }
+
+        Log.logger.log( LogService.LOG_DEBUG, "Sending {0} events to {1}", new Object[]
+            { batch.events.size(), batch.reference } );
+
+        final List<ConfigurationEvent> events = Collections.unmodifiableList( batch.events );
+        try
+        {
+            if ( System.getSecurityManager() != null )
+            {
+                AccessController.doPrivileged( new PrivilegedAction<Void>()
+                {
+                    @Override
+                    public Void run()
+                    {
+                        batch.listener.configurationEvents( events );
+                        return null;
+                    }
+                }, BaseTracker.getAccessControlContext( batch.provider ) );
+            }
+            else
+            {
+                batch.listener.configurationEvents( events );
+            }
+        }
+        catch ( Throwable t )
+        {
+            Log.logger.log( LogService.LOG_ERROR, "Unexpected problem delivering configuration events to {0}",
+                new Object[]
+                    { batch.reference, t } );
+        }
+        synchronized ( this )
+        {
+            this.deliveredBatches++;
+            this.deliveredEvents += events.size();
+        }
+    }
+
+
+    private static long getLong( final ServiceReference<?> reference, final String key, final long defaultValue )
+    {
+        final Object value = reference.getProperty( key );
+        if ( value instanceof Number )
+        {
+            return ( ( Number ) value ).longValue();
+        }
+        else if ( value != null )
+        {
+            try
+            {
+                return Long.parseLong( value.toString().trim() );
+            }
+            catch ( NumberFormatException nfe )
+            {
+                Log.logger.log( LogService.LOG_WARNING, "Ignoring invalid value {0} of {1} for {2}", new Object[]
+                    { value, key, reference } );
+            }
+        }
+        return defaultValue;
+    }
+
+    private static class Batch
+    {
+        final ServiceReference<?> reference;
+
+        final BatchingConfigurationListener listener;
+
+        final Bundle provider;
+
+        final int maxSize;
+
+        final List<ConfigurationEvent> events = new ArrayList<>();
+
+        // the time the batch is delivered at the latest
+        final long due;
+
+        Batch( final ServiceReference<?> reference, final BatchingConfigurationListener listener,
+            final Bundle provider )
+        {
+            this.reference = reference;
+            this.listener = listener;
+            this.provider = provider;
+            this.maxSize = ( int ) Math.max( 1,
+                getLong( reference, BatchingConfigurationListener.BATCH_SIZE, DEFAULT_BATCH_SIZE ) );
+            this.due = System.currentTimeMillis()
+                + Math.max( 0, getLong( reference, BatchingConfigurationListener.BATCH_WINDOW, DEFAULT_BATCH_WINDOW ) );
+        }
+    }
+}
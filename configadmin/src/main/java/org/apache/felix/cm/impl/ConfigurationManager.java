@@ -27,6 +27,7 @@ import java.security.SecureRandom;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Dictionary;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -36,6 +37,7 @@ import java.util.List;
 import java.util.Random;
 import java.util.Set;
 
+import org.apache.felix.cm.BatchingConfigurationListener;
 import org.apache.felix.cm.PersistenceManager;
 import org.apache.felix.cm.impl.helper.BaseTracker;
 import org.apache.felix.cm.impl.helper.ConfigurationMap;
@@ -87,6 +89,24 @@ import org.osgi.util.tracker.ServiceTracker;
  */
 public class ConfigurationManager implements BundleListener
 {
+    /**
+     * The name of the framework context property enabling virtual threads
+     * for updating managed services and managed service factories (value
+     * is "felix.cm.virtualthreads"). Updates for different PIDs then run
+     * concurrently, updates for the same PID still run in order.
+     * Configuration events are always delivered by a single thread.
+     */
+    public static final String CM_VIRTUAL_THREADS = "felix.cm.virtualthreads";
+
+    /**
+     * The name of the framework context property defining the number of
+     * threads updating managed services and managed service factories
+     * (value is "felix.cm.updatethreads"). With more than one thread, updates
+     * for different PIDs run concurrently, updates for the same PID still
+     * run in order. The property is ignored if virtual threads are used.
+     */
+    public static final String CM_UPDATE_THREADS = "felix.cm.updatethreads";
+
     // random number generator to create configuration PIDs for factory
     // configurations
     private static Random numberGenerator;
@@ -118,6 +138,9 @@ public class ConfigurationManager implements BundleListener
     // the thread used to schedule events to be dispatched asynchronously
     private UpdateThread eventThread;
 
+    // the batches of events for batching configuration listeners
+    private ConfigurationEventBatcher eventBatcher;
+
     /**
      * The persistence manager
      */
@@ -171,8 +194,12 @@ public class ConfigurationManager implements BundleListener
         // initialize the asynchonous updater thread
         ThreadGroup tg = new ThreadGroup( "Configuration Admin Service" );
         tg.setDaemon( true );
-        this.updateThread = new UpdateThread( tg, "CM Configuration Updater" );
+        final boolean virtualThreads = Boolean.parseBoolean( bundleContext.getProperty( CM_VIRTUAL_THREADS ) );
+        this.updateThread = new UpdateThread( tg, "CM Configuration Updater", virtualThreads,
+            getUpdateThreads( bundleContext ) );
+        // configuration listeners are called serially, whatever the PID
         this.eventThread = new UpdateThread( tg, "CM Event Dispatcher" );
+        this.eventBatcher = new ConfigurationEventBatcher( tg, "CM Event Batcher" );
 
         // register as bundle and service listener
         handleBundleEvents = true;
@@ -207,11 +234,31 @@ public class ConfigurationManager implements BundleListener
         // see FELIX-2813 for details
         this.updateThread.start();
         this.eventThread.start();
+        this.eventBatcher.start();
 
         return configurationAdminRegistration.getReference();
     }
 
 
+    private static int getUpdateThreads( final BundleContext bundleContext )
+    {
+        final String value = bundleContext.getProperty( CM_UPDATE_THREADS );
+        if ( value != null )
+        {
+            try
+            {
+                return Integer.parseInt( value.trim() );
+            }
+            catch ( NumberFormatException nfe )
+            {
+                Log.logger.log( LogService.LOG_WARNING, "Ignoring invalid value {0} of {1}", new Object[]
+                    { value, CM_UPDATE_THREADS } );
+            }
+        }
+        return 1;
+    }
+
+
     public void stop( )
     {
 
@@ -231,11 +278,19 @@ public class ConfigurationManager implements BundleListener
         if ( updateThread != null )
         {
             updateThread.terminate();
+            Log.logger.log( LogService.LOG_DEBUG, "Update statistics: {0}", new Object[]
+                { updateThread.getStatistics() } );
         }
         if ( eventThread != null )
         {
             eventThread.terminate();
         }
+        if ( eventBatcher != null )
+        {
+            eventBatcher.terminate();
+            Log.logger.log( LogService.LOG_DEBUG, "Event batch statistics: {0}", new Object[]
+                { eventBatcher.getStatistics() } );
+        }
 
         // immediately unregister the Configuration Admin before cleaning up
         // clearing the field before actually unregistering the service
@@ -648,9 +703,9 @@ public class ConfigurationManager implements BundleListener
     {
         // prevent event senders
         FireConfigurationEvent asyncSender = new FireConfigurationEvent( this.configurationListenerTracker, type, pid,
-                factoryPid );
+                factoryPid, this.eventBatcher );
         FireConfigurationEvent syncSender = new FireConfigurationEvent( this.syncConfigurationListenerTracker, type,
-                pid, factoryPid );
+                pid, factoryPid, null );
 
         // send synchronous events
         if ( syncSender.hasConfigurationEventListeners() )
@@ -1059,7 +1114,7 @@ public class ConfigurationManager implements BundleListener
      * ManagedService is registered with multiple PIDs an instance of this
      * class is used for each registered PID.
      */
-    public class ManagedServiceUpdate implements Runnable
+    public class ManagedServiceUpdate implements Runnable, UpdateThread.PidTask
     {
         public final List<String> pids = new ArrayList<>();
 
@@ -1133,6 +1188,12 @@ public class ConfigurationManager implements BundleListener
             managedServiceTracker.provideConfiguration( sr, configPid, null, properties, revision, this.configs );
         }
 
+        @Override
+        public Collection<String> getPids()
+        {
+            return this.pids;
+        }
+
         @Override
         public String toString()
         {
@@ -1147,7 +1208,7 @@ public class ConfigurationManager implements BundleListener
      * multiple PIDs an instance of this class is used for each registered
      * PID.
      */
-    public class ManagedServiceFactoryUpdate implements Runnable
+    public class ManagedServiceFactoryUpdate implements Runnable, UpdateThread.PidTask
     {
         private final String[] factoryPids;
 
@@ -1271,6 +1332,13 @@ public class ConfigurationManager implements BundleListener
         }
 
 
+        @Override
+        public Collection<String> getPids()
+        {
+            return Arrays.asList( this.factoryPids );
+        }
+
+
         @Override
         public String toString()
         {
@@ -1278,7 +1346,7 @@ public class ConfigurationManager implements BundleListener
         }
     }
 
-    public abstract class ConfigurationProvider<T> implements Runnable
+    public abstract class ConfigurationProvider<T> implements Runnable, UpdateThread.PidTask
     {
 
         protected final ConfigurationImpl config;
@@ -1309,6 +1377,13 @@ public class ConfigurationManager implements BundleListener
         }
 
 
+        @Override
+        public Collection<String> getPids()
+        {
+            return Collections.singleton( getTargetedServicePid().getServicePid() );
+        }
+
+
         protected BaseTracker<T> getHelper()
         {
             if ( this.helper == null )
@@ -1372,7 +1447,7 @@ public class ConfigurationManager implements BundleListener
      * they are subscribed to. This may cause the configuration to be
      * supplied to multiple services.
      */
-    public class UpdateConfiguration extends ConfigurationProvider
+    public class UpdateConfiguration extends ConfigurationProvider implements UpdateThread.CoalescingTask
     {
 
         UpdateConfiguration( final ConfigurationImpl config )
@@ -1381,6 +1456,17 @@ public class ConfigurationManager implements BundleListener
         }
 
 
+        /**
+         * A pending update is superseded by a later update of the same
+         * configuration, which provides the properties of a newer revision.
+         */
+        @Override
+        public Object getCoalescingKey()
+        {
+            return config.getPidString();
+        }
+
+
         @Override
         public void run()
         {
@@ -1607,13 +1693,17 @@ public class ConfigurationManager implements BundleListener
 
         private final Bundle[] listenerProvider;
 
+        private final ConfigurationEventBatcher batcher;
+
         private ConfigurationEvent event;
 
-        private FireConfigurationEvent( final ServiceTracker listenerTracker, final int type, final String pid, final String factoryPid)
+        private FireConfigurationEvent( final ServiceTracker listenerTracker, final int type, final String pid, final String factoryPid,
+            final ConfigurationEventBatcher batcher )
         {
             this.type = type;
             this.pid = pid;
             this.factoryPid = factoryPid;
+            this.batcher = batcher;
 
             final ServiceReference[] srs = listenerTracker.getServiceReferences();
             if ( srs == null || srs.length == 0 )
@@ -1706,7 +1796,12 @@ public class ConfigurationManager implements BundleListener
 
                 try
                 {
-                    if ( System.getSecurityManager() != null )
+                    if ( batcher != null && listeners[serviceIndex] instanceof BatchingConfigurationListener )
+                    {
+                        batcher.add( listenerReferences[serviceIndex], ( BatchingConfigurationListener ) listeners[serviceIndex],
+                            listenerProvider[serviceIndex], getConfigurationEvent( serviceReference ) );
+                    }
+                    else if ( System.getSecurityManager() != null )
                     {
                         AccessController.doPrivileged(
                             new PrivilegedAction<Object>()
@@ -22,8 +22,21 @@ import java.security.AccessControlContext;
 import java.security.AccessController;
 import java.security.PrivilegedActionException;
 import java.security.PrivilegedExceptionAction;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.Set;
 import java.util.concurrent.BlockingDeque;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.osgi.service.log.LogService;
 
@@ -31,10 +44,47 @@ import org.osgi.service.log.LogService;
 /**
  * The <code>UpdateThread</code> is the thread used to update managed services
  * and managed service factories as well as to send configuration events.
+ * <p>
+ * If virtual threads are requested and supported by the runtime, each task
+ * runs on a new virtual thread instead. If more than one update thread is
+ * requested, the tasks run on a pool of threads. In both cases tasks for
+ * the same PID are still run one after the other in the order they have
+ * been scheduled, see {@link PidTask}.
+ * <p>
+ * A {@link CoalescingTask} is skipped if another task with the same key has
+ * been scheduled after it but has not started yet, so only the latest of
+ * several pending updates of a configuration is delivered.
  */
 public class UpdateThread implements Runnable
 {
 
+    /**
+     * Tasks implementing this interface may run in parallel to tasks for
+     * other PIDs if virtual threads are used. All other tasks are run
+     * after all tasks scheduled before and before all tasks scheduled after
+     * them.
+     */
+    interface PidTask
+    {
+        /**
+         * @return The service PIDs (or factory PIDs) the task is for
+         */
+        Collection<String> getPids();
+    }
+
+    /**
+     * Tasks implementing this interface are skipped if a task with an equal
+     * key is scheduled before they have started. The later task then
+     * supersedes the skipped one.
+     */
+    interface CoalescingTask extends PidTask
+    {
+        /**
+         * @return The key identifying tasks superseding each other
+         */
+        Object getCoalescingKey();
+    }
+
     // the thread group into which the worker thread will be placed
     private final ThreadGroup workerThreadGroup;
 
@@ -50,11 +100,99 @@ public class UpdateThread implements Runnable
     // the access control context
     private final AccessControlContext acc;
 
+    // the executor running tasks in parallel, null for the single worker
+    private final Executor executor;
+
+    // tasks not yet running on the executor, in schedule order
+    private final LinkedList<ScheduledTask> pendingTasks = new LinkedList<>();
+
+    // the PIDs of the tasks running on the executor
+    private final Set<String> runningPids = new HashSet<>();
+
+    // the number of tasks running on the executor
+    private int runningTasks;
+
+    // whether a task without PIDs is running on the executor
+    private boolean runningBarrier;
+
+    // whether tasks are run on the executor
+    private boolean active;
+
+    // the latest scheduled coalescing task per key
+    private final ConcurrentMap<Object, Runnable> latestTasks = new ConcurrentHashMap<>();
+
+    // the number of tasks scheduled but not finished
+    private final AtomicInteger pendingCount = new AtomicInteger();
+
+    // the maximum number of tasks scheduled but not finished
+    private final AtomicInteger maxPendingCount = new AtomicInteger();
+
+    // the number of tasks run
+    private final AtomicLong completedCount = new AtomicLong();
+
+    // the number of tasks skipped as superseded by a later task
+    private final AtomicLong coalescedCount = new AtomicLong();
+
     public UpdateThread( final ThreadGroup tg, final String name )
+    {
+        this( tg, name, false );
+    }
+
+    public UpdateThread( final ThreadGroup tg, final String name, final boolean useVirtualThreads )
+    {
+        this( tg, name, useVirtualThreads, 1 );
+    }
+
+    public UpdateThread( final ThreadGroup tg, final String name, final boolean useVirtualThreads, final int threads )
     {
         this.workerThreadGroup = tg;
         this.workerBaseName = name;
         this.acc = AccessController.getContext();
+        Executor executor = useVirtualThreads ? createVirtualThreadExecutor() : null;
+        if ( useVirtualThreads && executor == null )
+        {
+            Log.logger.log( LogService.LOG_WARNING,
+                "Virtual threads are not supported by this Java runtime; using platform threads for {0}", new Object[]
+                    { name } );
+        }
+        if ( executor == null && threads > 1 )
+        {
+            executor = createThreadPool( tg, name, threads );
+        }
+        this.executor = executor;
+    }
+
+
+    // creates the Java 21 virtual thread executor reflectively as
+    // configuration admin runs on older runtimes as well
+    private static Executor createVirtualThreadExecutor()
+    {
+        try
+        {
+            return ( Executor ) Executors.class.getMethod( "newVirtualThreadPerTaskExecutor" ).invoke( null );
+        }
+        catch ( Exception e )
+        {
+            return null;
+        }
+    }
+
+
+    // creates a pool of daemon threads in the thread group
+    private static Executor createThreadPool( final ThreadGroup tg, final String name, final int threads )
+    {
+        return Executors.newFixedThreadPool( threads, new ThreadFactory()
+        {
+            private final AtomicInteger count = new AtomicInteger();
+
+            @Override
+            public Thread newThread( final Runnable r )
+            {
+                final Thread thread = new Thread( tg, r, name + " #" + count.incrementAndGet() );
+                thread.setDaemon( true );
+                return thread;
+            }
+        } );
     }
 
 
@@ -72,6 +210,11 @@ public class UpdateThread implements Runnable
             // return if the task is this thread itself
             while ((task = updateTasks.take()) != this)
             {
+                if ( isSuperseded( task ) )
+                {
+                    continue;
+                }
+
                 // otherwise execute the task, log any issues
                 try
                 {
@@ -91,6 +234,7 @@ public class UpdateThread implements Runnable
                 {
                     // reset the thread name to "idle"
                     Thread.currentThread().setName( workerBaseName );
+                    taskDone();
                 }
             }
         }
@@ -100,6 +244,136 @@ public class UpdateThread implements Runnable
         }
     }
 
+    // returns whether a coalescing task has been superseded by a later
+    // task, which is then run instead
+    private boolean isSuperseded( final Runnable task )
+    {
+        if ( task instanceof CoalescingTask
+            && !latestTasks.remove( ( ( CoalescingTask ) task ).getCoalescingKey(), task ) )
+        {
+            Log.logger.log( LogService.LOG_DEBUG, "Skipping task {0}: Superseded by a later task", new Object[]
+                { task } );
+            coalescedCount.incrementAndGet();
+            pendingCount.decrementAndGet();
+            return true;
+        }
+        return false;
+    }
+
+
+    private void taskDone()
+    {
+        completedCount.incrementAndGet();
+        pendingCount.decrementAndGet();
+    }
+
+
+    // runs a task on the executor and starts the tasks waiting for it
+    private void runParallel( final ScheduledTask scheduled )
+    {
+        final String name = Thread.currentThread().getName();
+        final boolean superseded = isSuperseded( scheduled.task );
+        try
+        {
+            if ( !superseded )
+            {
+                Thread.currentThread().setName( workerBaseName + " (" + scheduled.task + ")" );
+
+                Log.logger.log( LogService.LOG_DEBUG, "Running task {0}", new Object[]
+                    { scheduled.task } );
+
+                run0( scheduled.task );
+            }
+        }
+        catch ( Throwable t )
+        {
+            Log.logger.log( LogService.LOG_ERROR, "Unexpected problem executing task", t );
+        }
+        finally
+        {
+            Thread.currentThread().setName( name );
+            if ( !superseded )
+            {
+                taskDone();
+            }
+            synchronized ( this )
+            {
+                runningTasks--;
+                if ( scheduled.pids == null )
+                {
+                    runningBarrier = false;
+                }
+                else
+                {
+                    runningPids.removeAll( scheduled.pids );
+                }
+                dispatch();
+                notifyAll();
+            }
+        }
+    }
+
+
+    // starts all pending tasks not having to wait for a running or
+    // an earlier pending task, must be called with the lock held
+    private void dispatch()
+    {
+        if ( !active || runningBarrier )
+        {
+            return;
+        }
+        final Set<String> blocked = new HashSet<>( runningPids );
+        final Iterator<ScheduledTask> i = pendingTasks.iterator();
+        while ( i.hasNext() )
+        {
+            final ScheduledTask scheduled = i.next();
+            if ( scheduled.pids == null )
+            {
+                // a task without PIDs waits for all tasks before it and
+                // no task after it may overtake it
+                if ( runningTasks == 0 && blocked.isEmpty() )
+                {
+                    i.remove();
+                    runningBarrier = true;
+                    start( scheduled );
+                }
+                return;
+            }
+
+            boolean free = true;
+            for ( String pid : scheduled.pids )
+            {
+                if ( blocked.contains( pid ) )
+                {
+                    free = false;
+                    break;
+                }
+            }
+            if ( free )
+            {
+                i.remove();
+                runningPids.addAll( scheduled.pids );
+                start( scheduled );
+            }
+            blocked.addAll( scheduled.pids );
+        }
+    }
+
+
+    private void start( final ScheduledTask scheduled )
+    {
+        runningTasks++;
+        executor.execute( new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                runParallel( scheduled );
+            }
+        } );
+    }
+
+
     void run0(final Runnable task) throws Throwable {
         if (System.getSecurityManager() != null) {
             try {
@@ -129,7 +403,12 @@ public class UpdateThread implements Runnable
      */
     synchronized void start()
     {
-        if ( this.worker == null )
+        if ( this.executor != null )
+        {
+            this.active = true;
+            dispatch();
+        }
+        else if ( this.worker == null )
         {
             Thread workerThread = new Thread( workerThreadGroup, this, workerBaseName );
             workerThread.setDaemon( true );
@@ -153,10 +432,46 @@ public class UpdateThread implements Runnable
      * able to released that deadlock at the expense of one or more tasks to
      * not be executed any longer.... In any case an ERROR message is logged
      * with the LogService in this situation.
+     * <p>
+     * If tasks run in parallel, all pending tasks are discarded and this
+     * method waits up to 5 seconds for the running tasks to finish.
      */
     synchronized void terminate()
     {
-        if ( this.worker != null )
+        if ( this.executor != null )
+        {
+            if ( this.active )
+            {
+                this.active = false;
+                this.pendingCount.addAndGet( -this.pendingTasks.size() );
+                this.pendingTasks.clear();
+                final long end = System.currentTimeMillis() + 5000;
+                long wait;
+                while ( runningTasks > 0 && ( wait = end - System.currentTimeMillis() ) > 0 )
+                {
+                    try
+                    {
+                        wait( wait );
+                    }
+                    catch ( InterruptedException ie )
+                    {
+                        // don't really care
+                        break;
+                    }
+                }
+                if ( runningTasks > 0 )
+                {
+                    Log.logger.log( LogService.LOG_ERROR, "{0} tasks of {1} did not terminate within 5 seconds",
+                        new Object[]
+                            { runningTasks, workerBaseName } );
+                }
+                if ( this.executor instanceof ExecutorService )
+                {
+                    ( ( ExecutorService ) this.executor ).shutdown();
+                }
+            }
+        }
+        else if ( this.worker != null )
         {
             Thread workerThread = this.worker;
             this.worker = null;
@@ -190,7 +505,72 @@ public class UpdateThread implements Runnable
         Log.logger.log( LogService.LOG_DEBUG, "Scheduling task {0}", new Object[]
             { update } );
 
+        if ( update instanceof CoalescingTask )
+        {
+            latestTasks.put( ( ( CoalescingTask ) update ).getCoalescingKey(), update );
+        }
+        final int pending = pendingCount.incrementAndGet();
+        int max = maxPendingCount.get();
+        while ( pending > max && !maxPendingCount.compareAndSet( max, pending ) )
+        {
+            max = maxPendingCount.get();
+        }
+
+        if ( this.executor != null )
+        {
+            synchronized ( this )
+            {
+                pendingTasks.add( new ScheduledTask( update ) );
+                dispatch();
+            }
+            return;
+        }
+
         // append to the task queue
         updateTasks.offer( update );
     }
+
+
+    /**
+     * @return The number of tasks scheduled but not finished yet
+     */
+    int getPendingCount()
+    {
+        return pendingCount.get();
+    }
+
+
+    /**
+     * @return The number of tasks skipped as they have been superseded by a
+     *      later task
+     */
+    long getCoalescedCount()
+    {
+        return coalescedCount.get();
+    }
+
+
+    /**
+     * @return A summary of the task counters for logging
+     */
+    String getStatistics()
+    {
+        return workerBaseName + ": pending=" + pendingCount.get() + ", maxPending=" + maxPendingCount.get()
+            + ", completed=" + completedCount.get() + ", coalesced=" + coalescedCount.get();
+    }
+
+
+    // a task together with its PIDs, null if the task is not a PidTask
+    private static final class ScheduledTask
+    {
+        final Runnable task;
+
+        final Collection<String> pids;
+
+        ScheduledTask( final Runnable task )
+        {
+            this.task = task;
+            this.pids = ( task instanceof PidTask ) ? ( ( PidTask ) task ).getPids() : null;
+        }
+    }
 }
@@ -0,0 +1,610 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.felix.cm.impl.persistence;
+
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Dictionary;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.apache.felix.cm.NotCachablePersistenceManager;
+import org.apache.felix.cm.PersistenceManager;
+import org.apache.felix.cm.file.ConfigurationHandler;
+import org.apache.felix.cm.impl.CaseInsensitiveDictionary;
+import org.apache.felix.cm.impl.SimpleFilter;
+import org.osgi.framework.Constants;
+import org.osgi.service.cm.ConfigurationAdmin;
+
+
+/**
+ * The <code>IndexedPersistenceManager</code> keeps all configurations in
+ * memory and persists them in a single append-only log file. Each change
+ * appends one record to the log; when the log has grown large compared to
+ * the number of configurations, a compacted snapshot of all configurations
+ * is written and the log is truncated.
+ * <p>
+ * In addition to the configurations indexed by <code>service.pid</code>,
+ * indexes on <code>service.factoryPid</code> and
+ * <code>service.bundleLocation</code> are maintained. Filter queries with
+ * equality conditions on these properties only evaluate the filter against
+ * the matching configurations instead of all configurations.
+ * <p>
+ * This persistence manager implements {@link ExtPersistenceManager} itself
+ * and is therefore used without an additional proxy.
+ */
+public class IndexedPersistenceManager implements NotCachablePersistenceManager, ExtPersistenceManager
+{
+
+    /** The name of this persistence manager. */
+    public static final String PERSISTENCE_MANAGER_NAME = "indexed";
+
+    /** The default directory in the bundle data area. */
+    public static final String DEFAULT_DIR = "config-indexed";
+
+    /** The name of the snapshot file. */
+    private static final String SNAPSHOT_FILE = "configurations.snapshot";
+
+    /** The name of the log file. */
+    private static final String LOG_FILE = "configurations.log";
+
+    /** The extension of temporary files. */
+    private static final String TMP_EXT = ".tmp";
+
+    /** Record type of a stored configuration. */
+    private static final byte RECORD_STORE = 1;
+
+    /** Record type of a deleted configuration. */
+    private static final byte RECORD_DELETE = 2;
+
+    /** The minimum number of log records before the log is compacted. */
+    private static final int MIN_COMPACT_RECORDS = 1000;
+
+    /** The snapshot file. */
+    private final File snapshotFile;
+
+    /** The log file. */
+    private final File logFile;
+
+    /** The configurations indexed by pid. */
+    private final Map<String, CaseInsensitiveDictionary> configs = new HashMap<>();
+
+    /** The pids indexed by factory pid. */
+    private final Map<String, Set<String>> factoryPidIndex = new HashMap<>();
+
+    /** The pids indexed by bundle location. */
+    private final Map<String, Set<String>> locationIndex = new HashMap<>();
+
+    /** Protecting lock */
+    private final ReadWriteLock globalLock = new ReentrantReadWriteLock();
+
+    /** The stream appending to the log file. */
+    private OutputStream logOut;
+
+    /** The length of the valid records in the log file. */
+    private long logLength;
+
+    /** The number of records in the log file. */
+    private int logRecords;
+
+    /**
+     * Creates a persistence manager storing its files in the given directory
+     * and loads the configurations from the snapshot and the log.
+     *
+     * @param location The directory of the snapshot and the log file
+     * @throws IOException If the directory cannot be created or the files
+     *      cannot be read
+     */
+    public IndexedPersistenceManager( final File location ) throws IOException
+    {
+        if ( !location.isDirectory() && !location.mkdirs() )
+        {
+            throw new IOException( "Cannot create configuration directory " + location );
+        }
+        this.snapshotFile = new File( location, SNAPSHOT_FILE );
+        this.logFile = new File( location, LOG_FILE );
+
+        if ( snapshotFile.exists() )
+        {
+            readRecords( snapshotFile );
+            logRecords = 0;
+        }
+        if ( logFile.exists() )
+        {
+            logLength = readRecords( logFile );
+            if ( logLength < logFile.length() )
+            {
+                // remove a partially written record so new records can be
+                // appended after the last valid one
+                truncateLog();
+            }
+        }
+        this.logOut = openLog( true );
+    }
+
+    /**
+     * Closes the log file.
+     */
+    public void close()
+    {
+        final Lock lock = globalLock.writeLock();
+        try
+        {
+            lock.lock();
+            if ( logOut != null )
+            {
+                try
+                {
+                    logOut.close();
+                }
+                catch ( final IOException ignore )
+                {
+                    // ignore
+                }
+                logOut = null;
+            }
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public PersistenceManager getDelegatee()
+    {
+        return this;
+    }
+
+    @Override
+    public void delete( final String pid ) throws IOException
+    {
+        final Lock lock = globalLock.writeLock();
+        try
+        {
+            lock.lock();
+            if ( configs.containsKey( pid ) )
+            {
+                appendRecord( RECORD_DELETE, pid, null );
+                remove( pid );
+            }
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public boolean exists( final String pid )
+    {
+        final Lock lock = globalLock.readLock();
+        try
+        {
+            lock.lock();
+            return configs.containsKey( pid );
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public Enumeration getDictionaries() throws IOException
+    {
+        return Collections.enumeration( getDictionaries( null ) );
+    }
+
+    @Override
+    public Collection<Dictionary> getDictionaries( final SimpleFilter filter ) throws IOException
+    {
+        final Lock lock = globalLock.readLock();
+        try
+        {
+            lock.lock();
+            final Set<String> candidates = filter == null ? null : getCandidates( filter );
+            final Collection<String> pids = candidates == null ? configs.keySet() : candidates;
+
+            // Deep copy the configuration to avoid any threading issue
+            final List<Dictionary> result = new ArrayList<>();
+            for ( final String pid : pids )
+            {
+                final Dictionary d = configs.get( pid );
+                if ( d != null && d.get( Constants.SERVICE_PID ) != null && ( filter == null || filter.matches( d ) ) )
+                {
+                    result.add( new CaseInsensitiveDictionary( d ) );
+                }
+            }
+            return result;
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public Dictionary load( final String pid ) throws IOException
+    {
+        final Lock lock = globalLock.readLock();
+        try
+        {
+            lock.lock();
+            final CaseInsensitiveDictionary loaded = configs.get( pid );
+            return loaded == null ? null : new CaseInsensitiveDictionary( loaded );
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void store( final String pid, final Dictionary properties ) throws IOException
+    {
+        final Lock lock = globalLock.writeLock();
+        try
+        {
+            lock.lock();
+            appendRecord( RECORD_STORE, pid, properties );
+            put( pid, new CaseInsensitiveDictionary( properties ) );
+            if ( logRecords > Math.max( MIN_COMPACT_RECORDS, configs.size() ) )
+            {
+                compact();
+            }
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public Set<String> getFactoryConfigurationPids( final List<String> targetedFactoryPids ) throws IOException
+    {
+        final Set<String> pids = new HashSet<>();
+        final Lock lock = globalLock.readLock();
+        try
+        {
+            lock.lock();
+            for ( final String targetFactoryPid : targetedFactoryPids )
+            {
+                final Set<String> indexed = factoryPidIndex.get( targetFactoryPid );
+                if ( indexed != null )
+                {
+                    pids.addAll( indexed );
+                }
+            }
+        }
+        finally
+        {
+            lock.unlock();
+        }
+        return pids;
+    }
+
+    /**
+     * Returns the pids of the configurations which might match the filter
+     * according to the indexes.
+     *
+     * @return the candidate pids or <code>null</code> if the indexes cannot
+     *      narrow down the configurations to evaluate
+     */
+    private Set<String> getCandidates( final SimpleFilter filter )
+    {
+        switch ( filter.getOperation() )
+        {
+            case SimpleFilter.EQ:
+                if ( !( filter.getValue() instanceof String ) )
+                {
+                    return null;
+                }
+                final String value = ( String ) filter.getValue();
+                if ( Constants.SERVICE_PID.equalsIgnoreCase( filter.getName() ) )
+                {
+                    return configs.containsKey( value ) ? Collections.singleton( value ) : Collections.<String>emptySet();
+                }
+                if ( ConfigurationAdmin.SERVICE_FACTORYPID.equalsIgnoreCase( filter.getName() ) )
+                {
+                    return getIndexed( factoryPidIndex, value );
+                }
+                if ( ConfigurationAdmin.SERVICE_BUNDLELOCATION.equalsIgnoreCase( filter.getName() ) )
+                {
+                    return getIndexed( locationIndex, value );
+                }
+                return null;
+
+            case SimpleFilter.AND:
+                // any indexed condition narrows down the result
+                Set<String> intersection = null;
+                for ( final SimpleFilter sf : ( List<SimpleFilter> ) filter.getValue() )
+                {
+                    final Set<String> candidates = getCandidates( sf );
+                    if ( candidates != null )
+                    {
+                        if ( intersection == null )
+                        {
+                            intersection = new HashSet<>( candidates );
+                        }
+                        else
+                        {
+                            intersection.retainAll( candidates );
+                        }
+                    }
+                }
+                return intersection;
+
+            case SimpleFilter.OR:
+                // all conditions must be indexed
+                final Set<String> union = new HashSet<>();
+                for ( final SimpleFilter sf : ( List<SimpleFilter> ) filter.getValue() )
+                {
+                    final Set<String> candidates = getCandidates( sf );
+                    if ( candidates == null )
+                    {
+                        return null;
+                    }
+                    union.addAll( candidates );
+                }
+                return union;
+
+            default:
+                return null;
+        }
+    }
+
+    private static Set<String> getIndexed( final Map<String, Set<String>> index, final String value )
+    {
+        final Set<String> pids = index.get( value );
+        return pids == null ? Collections.<String>emptySet() : pids;
+    }
+
+    private void put( final String pid, final CaseInsensitiveDictionary props )
+    {
+        remove( pid );
+        configs.put( pid, props );
+        addToIndex( factoryPidIndex, props.get( ConfigurationAdmin.SERVICE_FACTORYPID ), pid );
+        addToIndex( locationIndex, props.get( ConfigurationAdmin.SERVICE_BUNDLELOCATION ), pid );
+    }
+
+    private void remove( final String pid )
+    {
+        final Dictionary props = configs.remove( pid );
+        if ( props != null )
+        {
+            removeFromIndex( factoryPidIndex, props.get( ConfigurationAdmin.SERVICE_FACTORYPID ), pid );
+            removeFromIndex( locationIndex, props.get( ConfigurationAdmin.SERVICE_BUNDLELOCATION ), pid );
+        }
+    }
+
+    private static void addToIndex( final Map<String, Set<String>> index, final Object key, final String pid )
+    {
+        if ( key instanceof String )
+        {
+            Set<String> pids = index.get( key );
+            if ( pids == null )
+            {
+                pids = new HashSet<>();
+                index.put( ( String ) key, pids );
+            }
+            pids.add( pid );
+        }
+    }
+
+    private static void removeFromIndex( final Map<String, Set<String>> index, final Object key, final String pid )
+    {
+        if ( key instanceof String )
+        {
+            final Set<String> pids = index.get( key );
+            if ( pids != null )
+            {
+                pids.remove( pid );
+                if ( pids.isEmpty() )
+                {
+                    index.remove( key );
+                }
+            }
+        }
+    }
+
+    /**
+     * Appends a record to the log. The record is written to the file before
+     * this method returns. If writing fails, the log is truncated to the
+     * last complete record, so later records are not appended after a
+     * partial one.
+     */
+    private void appendRecord( final byte type, final String pid, final Dictionary properties ) throws IOException
+    {
+        if ( logOut == null )
+        {
+            throw new IOException( "Persistence manager has been closed" );
+        }
+        final byte[] record = toRecord( type, pid, properties );
+        try
+        {
+            logOut.write( record );
+            logOut.flush();
+        }
+        catch ( final IOException ioe )
+        {
+            try
+            {
+                logOut.close();
+            }
+            catch ( final IOException ignore )
+            {
+                // ignore
+            }
+            logOut = null;
+            truncateLog();
+            logOut = openLog( true );
+            throw ioe;
+        }
+        logLength += record.length;
+        logRecords++;
+    }
+
+    /**
+     * Creates a record: the length of the record data followed by the record
+     * type, the pid and for a stored configuration the properties in the
+     * format of the {@link ConfigurationHandler}.
+     */
+    private static byte[] toRecord( final byte type, final String pid, final Dictionary properties ) throws IOException
+    {
+        final ByteArrayOutputStream buf = new ByteArrayOutputStream();
+        final DataOutputStream data = new DataOutputStream( buf );
+        data.writeInt( 0 );
+        data.writeByte( type );
+        data.writeUTF( pid );
+        if ( properties != null )
+        {
+            ConfigurationHandler.write( data, properties );
+        }
+        data.flush();
+
+        final byte[] record = buf.toByteArray();
+        final int length = record.length - 4;
+        record[0] = ( byte ) ( length >>> 24 );
+        record[1] = ( byte ) ( length >>> 16 );
+        record[2] = ( byte ) ( length >>> 8 );
+        record[3] = ( byte ) length;
+        return record;
+    }
+
+    /**
+     * Truncates the log file to the length of the valid records.
+     */
+    private void truncateLog() throws IOException
+    {
+        try ( RandomAccessFile raf = new RandomAccessFile( logFile, "rw" ) )
+        {
+            raf.setLength( logLength );
+        }
+    }
+
+    /**
+     * Applies the records of a file.
+     *
+     * @return the length of the valid records, which is less than the file
+     *      length if the last record has only partially been written
+     */
+    private long readRecords( final File file ) throws IOException
+    {
+        long valid = 0;
+        try ( DataInputStream in = new DataInputStream( new BufferedInputStream( new FileInputStream( file ) ) ) )
+        {
+            while ( true )
+            {
+                final int length;
+                final byte[] record;
+                try
+                {
+                    length = in.readInt();
+                    if ( length <= 0 )
+                    {
+                        break;
+                    }
+                    record = new byte[length];
+                    in.readFully( record );
+                }
+                catch ( final EOFException eof )
+                {
+                    break;
+                }
+
+                final DataInputStream data = new DataInputStream( new ByteArrayInputStream( record ) );
+                final byte type = data.readByte();
+                final String pid = data.readUTF();
+                if ( type == RECORD_STORE )
+                {
+                    put( pid, new CaseInsensitiveDictionary( ConfigurationHandler.read( data ) ) );
+                }
+                else if ( type == RECORD_DELETE )
+                {
+                    remove( pid );
+                }
+                else
+                {
+                    throw new IOException( "Unknown record type " + type + " in " + file );
+                }
+                valid += 4 + length;
+                logRecords++;
+            }
+        }
+        return valid;
+    }
+
+    /**
+     * Writes all configurations to a new snapshot and truncates the log.
+     * If the system fails before the log has been truncated, replaying the
+     * log on top of the new snapshot results in the same configurations.
+     */
+    private void compact() throws IOException
+    {
+        final File tmpFile = new File( snapshotFile.getParentFile(), SNAPSHOT_FILE + TMP_EXT );
+        try ( FileOutputStream fos = new FileOutputStream( tmpFile ) )
+        {
+            final OutputStream out = new BufferedOutputStream( fos );
+            for ( final Map.Entry<String, CaseInsensitiveDictionary> entry : configs.entrySet() )
+            {
+                out.write( toRecord( RECORD_STORE, entry.getKey(), entry.getValue() ) );
+            }
+            out.flush();
+            fos.getFD().sync();
+        }
+        Files.move( tmpFile.toPath(), snapshotFile.toPath(),
+            StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE );
+
+        logOut.close();
+        logOut = openLog( false );
+        logLength = 0;
+        logRecords = 0;
+    }
+
+    OutputStream openLog( final boolean append ) throws IOException
+    {
+        // records are written with a single write call, so no buffering is needed
+        return new FileOutputStream( logFile, append );
+    }
+}
@@ -76,7 +76,12 @@ public class PersistenceManagerTracker
     public static ExtPersistenceManager createPersistenceManagerProxy(final PersistenceManager pm)
     {
         final ExtPersistenceManager extPM;
-        if ( pm instanceof NotCachablePersistenceManager )
+        if ( pm instanceof ExtPersistenceManager )
+        {
+            // the persistence manager handles locking and filtering itself
+            extPM = ( ExtPersistenceManager ) pm;
+        }
+        else if ( pm instanceof NotCachablePersistenceManager )
         {
             extPM = new PersistenceManagerProxy( pm );
         }
@@ -0,0 +1,130 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.felix.cm.impl;
+
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.felix.cm.BatchingConfigurationListener;
+import org.junit.Test;
+import org.osgi.framework.Bundle;
+import org.osgi.framework.ServiceReference;
+import org.osgi.service.cm.ConfigurationAdmin;
+import org.osgi.service.cm.ConfigurationEvent;
+
+
+public class ConfigurationEventBatcherTest
+{
+
+    @SuppressWarnings("unchecked")
+    private final ServiceReference<ConfigurationAdmin> caRef = mock(ServiceReference.class);
+
+    @Test
+    public void testBatchSize() throws Exception {
+        final RecordingListener listener = new RecordingListener(3);
+        final ConfigurationEventBatcher batcher = new ConfigurationEventBatcher(null, "name");
+        batcher.start();
+        try {
+            final ServiceReference<?> ref = createReference(3, 60000);
+            final Bundle provider = createProvider();
+            for (int i = 0; i < 9; i++) {
+                batcher.add(ref, listener, provider, createEvent("pid." + i));
+            }
+            assertTrue(listener.counter.await(1L, TimeUnit.MINUTES));
+
+            assertEquals(3, listener.batches.size());
+            int i = 0;
+            for (final List<ConfigurationEvent> batch : listener.batches) {
+                assertEquals(3, batch.size());
+                for (final ConfigurationEvent event : batch) {
+                    assertEquals("pid." + i++, event.getPid());
+                }
+            }
+        } finally {
+            batcher.terminate();
+        }
+    }
+
+    @Test
+    public void testBatchWindow() throws Exception {
+        final RecordingListener listener = new RecordingListener(1);
+        final ConfigurationEventBatcher batcher = new ConfigurationEventBatcher(null, "name");
+        batcher.start();
+        try {
+            final ServiceReference<?> ref = createReference(null, 20);
+            final Bundle provider = createProvider();
+            for (int i = 0; i < 5; i++) {
+                batcher.add(ref, listener, provider, createEvent("pid." + i));
+            }
+            assertTrue(listener.counter.await(1L, TimeUnit.MINUTES));
+
+            assertEquals(1, listener.batches.size());
+            assertEquals(5, listener.batches.get(0).size());
+        } finally {
+            batcher.terminate();
+        }
+    }
+
+    private ConfigurationEvent createEvent(final String pid) {
+        return new ConfigurationEvent(caRef, ConfigurationEvent.CM_UPDATED, null, pid);
+    }
+
+    private static ServiceReference<?> createReference(final Object size, final Object window) {
+        final ServiceReference<?> ref = mock(ServiceReference.class);
+        when(ref.getProperty(BatchingConfigurationListener.BATCH_SIZE)).thenReturn(size);
+        when(ref.getProperty(BatchingConfigurationListener.BATCH_WINDOW)).thenReturn(window);
+        return ref;
+    }
+
+    private static Bundle createProvider() {
+        final Bundle bundle = mock(Bundle.class);
+        when(bundle.getState()).thenReturn(Bundle.ACTIVE);
+        return bundle;
+    }
+
+    private static class RecordingListener implements BatchingConfigurationListener
+    {
+        final List<List<ConfigurationEvent>> batches = new ArrayList<>();
+
+        final CountDownLatch counter;
+
+        RecordingListener(final int expectedBatches) {
+            this.counter = new CountDownLatch(expectedBatches);
+        }
+
+        @Override
+        public void configurationEvent(final ConfigurationEvent event) {
+            throw new IllegalStateException("Unexpected single event " + event.getPid());
+        }
+
+        @Override
+        public void configurationEvents(final List<ConfigurationEvent> events) {
+            batches.add(new ArrayList<>(events));
+            counter.countDown();
+        }
+    }
+}
@@ -19,11 +19,19 @@
 package org.apache.felix.cm.impl;
 
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
 
+import org.junit.Assume;
 import org.junit.Test;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 
 
@@ -50,4 +58,188 @@ public class UpdateThreadTest
             updateThread.terminate();
         }
     }
+
+    @Test
+    public void testVirtualThreadsKeepPidOrder() throws Exception {
+        assumeVirtualThreads();
+        final UpdateThread updateThread = new UpdateThread(null, "name", true);
+        updateThread.start();
+        try {
+            final List<String> order = Collections.synchronizedList(new ArrayList<String>());
+            final CountDownLatch counter = new CountDownLatch(3 * COUNT);
+            for (int i = 0; i < COUNT; ++i) {
+                for (final String pid : new String[] {"a", "b", "c"}) {
+                    updateThread.schedule(new RecordingTask(pid, pid + i, order, counter));
+                }
+            }
+            assertTrue(counter.await(1L, TimeUnit.MINUTES));
+
+            for (final String pid : new String[] {"a", "b", "c"}) {
+                final List<String> pidOrder = new ArrayList<>();
+                for (final String entry : order) {
+                    if (entry.startsWith(pid)) {
+                        pidOrder.add(entry);
+                    }
+                }
+                final List<String> expected = new ArrayList<>();
+                for (int i = 0; i < COUNT; ++i) {
+                    expected.add(pid + i);
+                }
+                assertEquals(expected, pidOrder);
+            }
+        } finally {
+            updateThread.terminate();
+        }
+    }
+
+    @Test
+    public void testVirtualThreadsRunTasksWithoutPidInOrder() throws Exception {
+        assumeVirtualThreads();
+        final UpdateThread updateThread = new UpdateThread(null, "name", true);
+        updateThread.start();
+        try {
+            final List<String> order = Collections.synchronizedList(new ArrayList<String>());
+            final CountDownLatch counter = new CountDownLatch(4);
+            updateThread.schedule(new RecordingTask("a", "a", order, counter));
+            updateThread.schedule(new RecordingTask("b", "b", order, counter));
+            updateThread.schedule(new Runnable() {
+                @Override
+                public void run() {
+                    order.add("barrier");
+                    counter.countDown();
+                }
+            });
+            updateThread.schedule(new RecordingTask("c", "c", order, counter));
+            assertTrue(counter.await(1L, TimeUnit.MINUTES));
+
+            assertEquals(4, order.size());
+            assertEquals("barrier", order.get(2));
+            assertEquals("c", order.get(3));
+        } finally {
+            updateThread.terminate();
+        }
+    }
+
+    @Test
+    public void testThreadPoolKeepsPidOrder() throws Exception {
+        final UpdateThread updateThread = new UpdateThread(null, "name", false, 3);
+        updateThread.start();
+        try {
+            final List<String> order = Collections.synchronizedList(new ArrayList<String>());
+            final CountDownLatch counter = new CountDownLatch(2 * COUNT);
+            for (int i = 0; i < COUNT; ++i) {
+                updateThread.schedule(new RecordingTask("a", "a" + i, order, counter));
+                updateThread.schedule(new RecordingTask("b", "b" + i, order, counter));
+            }
+            assertTrue(counter.await(1L, TimeUnit.MINUTES));
+
+            final List<String> aOrder = new ArrayList<>();
+            for (final String entry : order) {
+                if (entry.startsWith("a")) {
+                    aOrder.add(entry);
+                }
+            }
+            final List<String> expected = new ArrayList<>();
+            for (int i = 0; i < COUNT; ++i) {
+                expected.add("a" + i);
+            }
+            assertEquals(expected, aOrder);
+        } finally {
+            updateThread.terminate();
+        }
+    }
+
+    @Test
+    public void testCoalescing() throws Exception {
+        final UpdateThread updateThread = new UpdateThread(null, "name");
+        updateThread.start();
+        try {
+            final CountDownLatch blocked = new CountDownLatch(1);
+            final CountDownLatch release = new CountDownLatch(1);
+            updateThread.schedule(new Runnable() {
+                @Override
+                public void run() {
+                    blocked.countDown();
+                    try {
+                        release.await(1L, TimeUnit.MINUTES);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+            });
+            assertTrue(blocked.await(1L, TimeUnit.MINUTES));
+
+            final List<String> order = Collections.synchronizedList(new ArrayList<String>());
+            final CountDownLatch counter = new CountDownLatch(2);
+            for (int i = 0; i < COUNT; ++i) {
+                updateThread.schedule(new CoalescingRecordingTask("a", "a" + i, order, counter));
+            }
+            updateThread.schedule(new RecordingTask("b", "b", order, counter));
+            assertEquals(COUNT + 2, updateThread.getPendingCount());
+            release.countDown();
+            assertTrue(counter.await(1L, TimeUnit.MINUTES));
+
+            assertEquals(Arrays.asList("a" + (COUNT - 1), "b"), order);
+            assertEquals(COUNT - 1, updateThread.getCoalescedCount());
+        } finally {
+            updateThread.terminate();
+        }
+    }
+
+    private static class CoalescingRecordingTask extends RecordingTask implements UpdateThread.CoalescingTask {
+
+        private final String pid;
+
+        CoalescingRecordingTask(final String pid, final String name, final List<String> order, final CountDownLatch counter) {
+            super(pid, name, order, counter);
+            this.pid = pid;
+        }
+
+        @Override
+        public Object getCoalescingKey() {
+            return pid;
+        }
+    }
+
+    private static class RecordingTask implements Runnable, UpdateThread.PidTask {
+
+        private final String pid;
+
+        private final String name;
+
+        private final List<String> order;
+
+        private final CountDownLatch counter;
+
+        RecordingTask(final String pid, final String name, final List<String> order, final CountDownLatch counter) {
+            this.pid = pid;
+            this.name = name;
+            this.order = order;
+            this.counter = counter;
+        }
+
+        @Override
+        public Collection<String> getPids() {
+            return Collections.singleton(pid);
+        }
+
+        @Override
+        public void run() {
+            try {
+                Thread.sleep(1);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            order.add(name);
+            counter.countDown();
+        }
+    }
+
+    private static void assumeVirtualThreads() {
+        try {
+            Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+        } catch (final NoSuchMethodException e) {
+            Assume.assumeTrue("virtual threads require Java 21", false);
+        }
+    }
 }
@@ -0,0 +1,273 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.felix.cm.impl.persistence;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Dictionary;
+import java.util.HashSet;
+import java.util.Hashtable;
+import java.util.Set;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.apache.felix.cm.impl.SimpleFilter;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.osgi.framework.Constants;
+import org.osgi.service.cm.ConfigurationAdmin;
+
+
+public class IndexedPersistenceManagerTest
+{
+    private static final String PID_A = "foo.a";
+    private static final String PID_B = "foo.b";
+    private static final String FACTORY_PID_A = "bla.a";
+    private static final String FACTORY_PID_B = "bla.b";
+    private static final String FA_PID_A = "bla.a~a";
+    private static final String FA_PID_B = "bla.a~b";
+    private static final String FB_PID_A = "bla.b~a";
+    private static final String LOCATION = "test:location";
+
+    private File dir;
+
+    private IndexedPersistenceManager pm;
+
+    @Before public void setUp() throws IOException
+    {
+        this.dir = Files.createTempDirectory("indexedpm").toFile();
+        this.pm = new IndexedPersistenceManager(this.dir);
+    }
+
+    @After public void tearDown()
+    {
+        this.pm.close();
+        for (final File f : this.dir.listFiles())
+        {
+            f.delete();
+        }
+        this.dir.delete();
+    }
+
+    private Dictionary<String, Object> createConfiguration(final String pid, final String factoryPid, final String location)
+    {
+        final Dictionary<String, Object> dict = new Hashtable<>();
+
+        dict.put(Constants.SERVICE_PID, pid);
+        if ( factoryPid != null )
+        {
+            dict.put(ConfigurationAdmin.SERVICE_FACTORYPID, factoryPid);
+        }
+        if ( location != null )
+        {
+            dict.put(ConfigurationAdmin.SERVICE_BUNDLELOCATION, location);
+        }
+        dict.put("value", "this-is-" + pid);
+
+        return dict;
+    }
+
+    private void populate() throws IOException
+    {
+        this.pm.store(PID_A, createConfiguration(PID_A, null, LOCATION));
+        this.pm.store(PID_B, createConfiguration(PID_B, null, null));
+        this.pm.store(FA_PID_A, createConfiguration(FA_PID_A, FACTORY_PID_A, LOCATION));
+        this.pm.store(FA_PID_B, createConfiguration(FA_PID_B, FACTORY_PID_A, null));
+        this.pm.store(FB_PID_A, createConfiguration(FB_PID_A, FACTORY_PID_B, null));
+    }
+
+    private IndexedPersistenceManager reopen() throws IOException
+    {
+        this.pm.close();
+        this.pm = new IndexedPersistenceManager(this.dir);
+        return this.pm;
+    }
+
+    private static Set<String> pids(final Collection<Dictionary> dicts)
+    {
+        final Set<String> pids = new HashSet<>();
+        for (final Dictionary d : dicts)
+        {
+            pids.add((String) d.get(Constants.SERVICE_PID));
+        }
+        return pids;
+    }
+
+    private static Set<String> set(final String... values)
+    {
+        return new HashSet<>(Arrays.asList(values));
+    }
+
+    @Test public void testReload() throws Exception
+    {
+        this.populate();
+        this.pm.delete(PID_B);
+        this.pm.store(PID_A, createConfiguration(PID_A, null, null));
+
+        final IndexedPersistenceManager reloaded = this.reopen();
+        assertTrue(reloaded.exists(PID_A));
+        assertFalse(reloaded.exists(PID_B));
+        assertEquals("this-is-" + FA_PID_B, reloaded.load(FA_PID_B).get("value"));
+        assertNull(reloaded.load(PID_A).get(ConfigurationAdmin.SERVICE_BUNDLELOCATION));
+        assertEquals(set(FA_PID_A, FA_PID_B),
+            reloaded.getFactoryConfigurationPids(Arrays.asList(FACTORY_PID_A)));
+    }
+
+    @Test public void testIndexedFilters() throws Exception
+    {
+        this.populate();
+
+        assertEquals(set(FA_PID_A, FA_PID_B),
+            pids(this.pm.getDictionaries(SimpleFilter.parse("(service.factoryPid=" + FACTORY_PID_A + ")"))));
+        assertEquals(set(PID_A, FA_PID_A),
+            pids(this.pm.getDictionaries(SimpleFilter.parse("(service.bundleLocation=" + LOCATION + ")"))));
+        assertEquals(set(FA_PID_A),
+            pids(this.pm.getDictionaries(SimpleFilter.parse("(&(service.factoryPid=" + FACTORY_PID_A + ")(service.bundleLocation=" + LOCATION + "))"))));
+        assertEquals(set(PID_B, FB_PID_A),
+            pids(this.pm.getDictionaries(SimpleFilter.parse("(|(service.pid=" + PID_B + ")(service.factoryPid=" + FACTORY_PID_B + "))"))));
+        assertEquals(set(FA_PID_B),
+            pids(this.pm.getDictionaries(SimpleFilter.parse("(&(service.factoryPid=" + FACTORY_PID_A + ")(value=this-is-" + FA_PID_B + "))"))));
+        // not indexed
+        assertEquals(set(FA_PID_A, FA_PID_B, FB_PID_A),
+            pids(this.pm.getDictionaries(SimpleFilter.parse("(service.factoryPid=bla*)"))));
+        assertEquals(5, this.pm.getDictionaries(null).size());
+
+        this.pm.delete(FA_PID_A);
+        assertEquals(set(FA_PID_B),
+            pids(this.pm.getDictionaries(SimpleFilter.parse("(service.factoryPid=" + FACTORY_PID_A + ")"))));
+    }
+
+    @Test public void testCompaction() throws Exception
+    {
+        for (int i = 0; i < 2005; i++)
+        {
+            final String pid = "pid." + (i % 10);
+            this.pm.store(pid, createConfiguration(pid, FACTORY_PID_A, null));
+        }
+        this.pm.delete("pid.0");
+
+        final File logFile = new File(this.dir, "configurations.log");
+        assertTrue(new File(this.dir, "configurations.snapshot").exists());
+        // compacted after 2002 records
+        assertTrue(logFile.length() < 1000);
+
+        final IndexedPersistenceManager reloaded = this.reopen();
+        assertEquals(9, reloaded.getDictionaries(null).size());
+        assertFalse(reloaded.exists("pid.0"));
+        assertEquals(9, reloaded.getFactoryConfigurationPids(Arrays.asList(FACTORY_PID_A)).size());
+    }
+
+    @Test public void testPartialRecordIgnored() throws Exception
+    {
+        this.populate();
+        this.pm.close();
+
+        final File logFile = new File(this.dir, "configurations.log");
+        try (FileOutputStream out = new FileOutputStream(logFile, true))
+        {
+            // the length of a record without the record itself
+            out.write(new byte[] { 0, 0, 0, 100, 1, 0 });
+        }
+
+        final IndexedPersistenceManager reloaded = this.reopen();
+        assertEquals(5, reloaded.getDictionaries(null).size());
+        reloaded.store(PID_B, createConfiguration(PID_B, null, LOCATION));
+        assertEquals(LOCATION, this.reopen().load(PID_B).get(ConfigurationAdmin.SERVICE_BUNDLELOCATION));
+    }
+
+    /** Whether writes to the log of a {@link FailingPersistenceManager} fail */
+    private static final AtomicBoolean FAIL_WRITES = new AtomicBoolean();
+
+    /**
+     * A persistence manager writing only the first half of a record to the log
+     * and then failing if {@link #FAIL_WRITES} is set.
+     */
+    private static final class FailingPersistenceManager extends IndexedPersistenceManager
+    {
+        FailingPersistenceManager(final File location) throws IOException
+        {
+            super(location);
+        }
+
+        @Override
+        OutputStream openLog(final boolean append) throws IOException
+        {
+            return new FilterOutputStream(super.openLog(append))
+            {
+                @Override
+                public void write(final byte[] b, final int off, final int len) throws IOException
+                {
+                    if ( FAIL_WRITES.get() )
+                    {
+                        out.write(b, off, len / 2);
+                        out.flush();
+                        throw new IOException("disk full");
+                    }
+                    out.write(b, off, len);
+                }
+            };
+        }
+    }
+
+    @Test public void testFailedWriteTruncatesLog() throws Exception
+    {
+        this.pm.close();
+        this.pm = new FailingPersistenceManager(this.dir);
+        this.populate();
+
+        final File logFile = new File(this.dir, "configurations.log");
+        final long length = logFile.length();
+        FAIL_WRITES.set(true);
+        try
+        {
+            this.pm.store(PID_B, createConfiguration(PID_B, null, LOCATION));
+            fail("Store should fail");
+        }
+        catch ( final IOException expected )
+        {
+            // expected
+        }
+        finally
+        {
+            FAIL_WRITES.set(false);
+        }
+        assertEquals(length, logFile.length());
+        assertNull(this.pm.load(PID_B).get(ConfigurationAdmin.SERVICE_BUNDLELOCATION));
+
+        // records after the failed one are kept on restart
+        this.pm.store(PID_A, createConfiguration(PID_A, null, null));
+        final IndexedPersistenceManager reloaded = this.reopen();
+        assertEquals(5, reloaded.getDictionaries(null).size());
+        assertNull(reloaded.load(PID_A).get(ConfigurationAdmin.SERVICE_BUNDLELOCATION));
+        assertNull(reloaded.load(PID_B).get(ConfigurationAdmin.SERVICE_BUNDLELOCATION));
+    }
+}
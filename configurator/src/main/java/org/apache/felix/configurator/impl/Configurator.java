@@ -308,11 +308,11 @@ public class Configurator {
         }
 
         BundleState config = null;
+        String hash = null;
         try {
             final Set<String> paths = Util.isConfigurerBundle(bundle, this.bundleContext.getBundle().getBundleId());
             if ( paths != null ) {
-                final JSONUtil.Report report = new JSONUtil.Report();
-                config = JSONUtil.readConfigurationsFromBundle(new BinUtil.ResourceProvider() {
+                final BinUtil.ResourceProvider provider = new BinUtil.ResourceProvider() {
 
                     @Override
                     public String getIdentifier() {
@@ -333,7 +333,28 @@ public class Configurator {
                     public Enumeration<URL> findEntries(String path, String filePattern) {
                         return bundle.findEntries(path, filePattern, false);
                     }
-                }, paths, report);
+                };
+                try {
+                    hash = Util.getSHA256(provider, paths);
+                } catch ( final IOException ioe ) {
+                    // parsing the files reports the problem
+                    SystemLogger.debug("Unable to calculate hash for bundle " + getBundleIdentity(bundle) + " : " + ioe.getMessage());
+                }
+                // if the configuration files did not change, there is no need to parse them
+                // unless configurations with force policy need to be reapplied or binaries,
+                // which are not part of the hash, might have changed
+                if ( lastModified != null && hash != null
+                     && hash.equals(state.getHash(bundleId))
+                     && !state.hasForcedConfigurations(bundleId)
+                     && !state.hasBinaryConfigurations(bundleId) ) {
+                    SystemLogger.debug("Configurations of bundle " + getBundleIdentity(bundle) + " are unchanged");
+                    state.setLastModified(bundleId, bundleLastModified);
+                    // nothing to process, but the new timestamp must survive a restart
+                    this.writeState();
+                    return false;
+                }
+                final JSONUtil.Report report = new JSONUtil.Report();
+                config = JSONUtil.readConfigurationsFromBundle(provider, paths, report);
                 for(final String w : report.warnings) {
                     SystemLogger.warning(w);
                 }
@@ -352,6 +373,9 @@ public class Configurator {
                 state.addAll(pid, config.getConfigurations(pid));
             }
             state.setLastModified(bundleId, bundleLastModified);
+            if ( hash != null ) {
+                state.setHash(bundleId, hash);
+            }
             return true;
         }
         return lastModified != null;
@@ -360,6 +384,7 @@ public class Configurator {
     public boolean processRemoveBundle(final long bundleId) {
         if ( state.getLastModified(bundleId) != null ) {
             state.removeLastModified(bundleId);
+            state.removeHash(bundleId);
             for(final String pid : state.getPids()) {
                 final ConfigList configList = state.getConfigurations(pid);
                 configList.uninstall(bundleId);
@@ -388,17 +413,14 @@ public class Configurator {
         }
 
         boolean retry = false;
+        boolean processed = false;
         try {
             for(final String pid : state.getPids()) {
                 final ConfigList configList = state.getConfigurations(pid);
 
                 if ( configList.hasChanges() ) {
                     if ( process(configList) ) {
-                        try {
-                            State.writeState(this.bundleContext.getDataFile(State.FILE_NAME), state);
-                        } catch ( final IOException ioe) {
-                            SystemLogger.error("Unable to persist state to " + State.FILE_NAME, ioe);
-                        }
+                        processed = true;
                     } else {
                         retry = true;
                     }
@@ -410,22 +432,26 @@ public class Configurator {
                 CoordinatorUtil.endCoordination(coordination);
             }
         }
+        boolean changed = processed;
         if ( !retry ) {
             // check whether there is a stale config admin bundle id
-            boolean changed = false;
             for(final Long bundleId : this.state.getBundleIdsUsingConfigAdmin()) {
                 if ( this.state.getLastModified(bundleId) == null ) {
                     this.state.removeConfigAdminBundleId(bundleId);
                     changed = true;
                 }
             }
-            if ( changed ) {
-                try {
-                    State.writeState(this.bundleContext.getDataFile(State.FILE_NAME), state);
-                } catch ( final IOException ioe) {
-                    SystemLogger.error("Unable to persist state to " + State.FILE_NAME, ioe);
-                }
-            }
+        }
+        if ( changed ) {
+            this.writeState();
+        }
+    }
+
+    private void writeState() {
+        try {
+            State.writeState(this.bundleContext.getDataFile(State.FILE_NAME), state);
+        } catch ( final IOException ioe) {
+            SystemLogger.error("Unable to persist state to " + State.FILE_NAME, ioe);
         }
     }
 
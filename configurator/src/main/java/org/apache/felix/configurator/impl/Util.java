@@ -18,14 +18,22 @@
  */
 package org.apache.felix.configurator.impl;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.io.UnsupportedEncodingException;
+import java.net.URL;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.util.Collections;
+import java.util.Enumeration;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
 
+import org.apache.felix.configurator.impl.json.BinUtil;
 import org.apache.felix.configurator.impl.logger.SystemLogger;
 import org.osgi.framework.Bundle;
 import org.osgi.framework.wiring.BundleRequirement;
@@ -91,14 +99,61 @@ public class Util {
 
     public static String getSHA256(final String value) {
         try {
-            final StringBuilder builder = new StringBuilder();
             final MessageDigest md = MessageDigest.getInstance("SHA-256");
-            for (final byte b : md.digest(value.getBytes("UTF-8")) ) {
-                builder.append(String.format("%02x", b));
-            }
-            return builder.toString();
+            return toHex(md.digest(value.getBytes("UTF-8")));
         } catch ( final NoSuchAlgorithmException | UnsupportedEncodingException e) {
             throw new RuntimeException(e);
         }
     }
+
+    /**
+     * Calculate a hash over all configuration files of a bundle.
+     * The files are streamed through the digest, they are neither
+     * decoded nor parsed.
+     * @param provider The bundle provider
+     * @param paths The paths to read from
+     * @return The hash
+     * @throws IOException If a file can't be read
+     */
+    public static String getSHA256(final BinUtil.ResourceProvider provider, final Set<String> paths)
+    throws IOException {
+        try {
+            final MessageDigest md = MessageDigest.getInstance("SHA-256");
+            final byte[] buffer = new byte[16384];
+            for(final String path : new TreeSet<>(paths)) {
+                md.update(path.getBytes("UTF-8"));
+                final Enumeration<URL> urls = provider.findEntries(path, "*.json");
+                if ( urls != null ) {
+                    // sort by path to get a stable hash
+                    final Map<String, URL> sorted = new TreeMap<>();
+                    while ( urls.hasMoreElements() ) {
+                        final URL url = urls.nextElement();
+                        sorted.put(url.getPath(), url);
+                    }
+                    for(final Map.Entry<String, URL> entry : sorted.entrySet()) {
+                        md.update((byte)0);
+                        md.update(entry.getKey().getBytes("UTF-8"));
+                        md.update((byte)0);
+                        try (final InputStream in = entry.getValue().openStream()) {
+                            int len;
+                            while ( (len = in.read(buffer)) != -1 ) {
+                                md.update(buffer, 0, len);
+                            }
+                        }
+                    }
+                }
+            }
+            return toHex(md.digest());
+        } catch ( final NoSuchAlgorithmException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static String toHex(final byte[] digest) {
+        final StringBuilder builder = new StringBuilder();
+        for (final byte b : digest ) {
+            builder.append(String.format("%02x", b));
+        }
+        return builder.toString();
+    }
 }
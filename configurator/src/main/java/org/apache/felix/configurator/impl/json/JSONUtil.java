@@ -25,6 +25,7 @@ import java.io.Reader;
 import java.io.StringReader;
 import java.net.URL;
 import java.net.URLConnection;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Enumeration;
@@ -101,12 +102,12 @@ public class JSONUtil {
                 final int pos = filePath.lastIndexOf('/');
                 final String name = path + filePath.substring(pos);
 
-                try {
-                    final String contents = getResource(name, url);
+                // the reader is directly fed from the stream, the file is never held as a string
+                try (final Reader reader = new InputStreamReader(url.openStream(), StandardCharsets.UTF_8)) {
                     boolean done = false;
                     final BinaryManager binaryManager = new BinaryManager(provider, report);
                     try {
-                        final ConfigurationFile file = readJSON(binaryManager, name, url, provider.getBundleId(), contents, report);
+                        final ConfigurationFile file = readJSON(binaryManager, name, url, provider.getBundleId(), reader, report);
                         if ( file != null ) {
                             result.add(file);
                             done = true;
@@ -145,8 +146,31 @@ public class JSONUtil {
             final long bundleId,
             final String contents,
             final Report report) {
+        try (final StringReader reader = new StringReader(contents)) {
+            return readJSON(binaryManager, name, url, bundleId, reader, report);
+        }
+    }
+
+    /**
+     * Read a single JSON file from a reader
+     *
+     * @param binaryManager The binary manager
+     * @param name      The name of the file
+     * @param url       The url to that file or {@code null}
+     * @param bundleId  The bundle id of the bundle containing the file
+     * @param reader    The reader for the contents of the file
+     * @param report    The report for errors and warnings
+     * @return The configuration file or {@code null}.
+     */
+    public static ConfigurationFile readJSON(
+            final BinaryManager binaryManager,
+            final String name,
+            final URL url,
+            final long bundleId,
+            final Reader reader,
+            final Report report) {
         final String identifier = (url == null ? name : url.toString());
-        try (final Reader reader = new StringReader(contents)) {
+        try {
 
             final Map<String, Integer> rankingMap = new HashMap<>();
             final Map<String, ConfigPolicy> policyMap = new HashMap<>();
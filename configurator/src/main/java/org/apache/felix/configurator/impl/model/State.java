@@ -35,7 +35,7 @@ public class State extends AbstractState implements Serializable {
     private static final long serialVersionUID = 1L;
 
     /** Serialization version. */
-    private static final int VERSION = 1;
+    private static final int VERSION = 2;
 
     public static final String FILE_NAME = "state.ser";
 
@@ -45,6 +45,8 @@ public class State extends AbstractState implements Serializable {
 
     private volatile Set<String> initialHashes;
 
+    private Map<Long, String> bundlesHashes = new HashMap<>();
+
     /**
      * Serialize the object
      * - write version id
@@ -58,6 +60,7 @@ public class State extends AbstractState implements Serializable {
         out.writeObject(bundlesLastModified);
         out.writeObject(bundlesConfigAdminBundleId);
         out.writeObject(initialHashes);
+        out.writeObject(bundlesHashes);
     }
 
     /**
@@ -75,6 +78,11 @@ public class State extends AbstractState implements Serializable {
         this.bundlesLastModified =(Map<Long, Long>) in.readObject();
         this.bundlesConfigAdminBundleId = (Map<Long, Long>) in.readObject();
         initialHashes = (Set<String>) in.readObject();
+        if ( version > 1 ) {
+            this.bundlesHashes = (Map<Long, String>) in.readObject();
+        } else {
+            this.bundlesHashes = new HashMap<>();
+        }
     }
 
     public static State createOrReadState(final File f)
@@ -111,6 +119,56 @@ public class State extends AbstractState implements Serializable {
         this.bundlesLastModified.remove(bundleId);
     }
 
+    /**
+     * Get the hash of the configuration resources of a bundle
+     * @param bundleId The bundle id
+     * @return The hash or {@code null}
+     */
+    public String getHash(final long bundleId) {
+        return this.bundlesHashes.get(bundleId);
+    }
+
+    public void setHash(final long bundleId, final String hash) {
+        this.bundlesHashes.put(bundleId, hash);
+    }
+
+    public void removeHash(final long bundleId) {
+        this.bundlesHashes.remove(bundleId);
+    }
+
+    /**
+     * Check whether one of the configurations of a bundle uses the force policy
+     * @param bundleId The bundle id
+     * @return {@code true} if such a configuration exists
+     */
+    public boolean hasForcedConfigurations(final long bundleId) {
+        for(final String pid : this.getPids()) {
+            for(final Config cfg : this.getConfigurations(pid)) {
+                if ( cfg.getBundleId() == bundleId && cfg.getPolicy() == ConfigPolicy.FORCE ) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Check whether one of the configurations of a bundle has binary values.
+     * The binaries are not part of the hash of the configuration files.
+     * @param bundleId The bundle id
+     * @return {@code true} if such a configuration exists
+     */
+    public boolean hasBinaryConfigurations(final long bundleId) {
+        for(final String pid : this.getPids()) {
+            for(final Config cfg : this.getConfigurations(pid)) {
+                if ( cfg.getBundleId() == bundleId && cfg.getFiles() != null && !cfg.getFiles().isEmpty() ) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
     public Long getConfigAdminBundleId(final long bundleId) {
         return this.bundlesConfigAdminBundleId.get(bundleId);
     }
@@ -172,6 +230,7 @@ public class State extends AbstractState implements Serializable {
     public String toString() {
         return "State [bundlesLastModified=" + bundlesLastModified +
                 ", initialHashes=" + initialHashes +
+                ", bundlesHashes=" + bundlesHashes +
                 ", bundlesConfigAdminBundleId=" + bundlesConfigAdminBundleId + "]";
     }
 
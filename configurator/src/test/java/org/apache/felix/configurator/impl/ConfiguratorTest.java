@@ -18,6 +18,9 @@
  */
 package org.apache.felix.configurator.impl;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 import static org.mockito.Mockito.inOrder;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.times;
@@ -33,6 +36,8 @@ import java.util.Dictionary;
 import java.util.Hashtable;
 import java.util.Vector;
 
+import org.apache.felix.configurator.impl.json.BinUtil;
+import org.apache.felix.configurator.impl.model.State;
 import org.junit.Before;
 import org.junit.Test;
 import org.mockito.InOrder;
@@ -102,7 +107,7 @@ public class ConfiguratorTest {
         when(wiring.getRequiredWires(Util.NS_OSGI_EXTENDER)).thenReturn(Collections.singletonList(wire));
         final Vector<URL> urls = new Vector<>();
         urls.add(this.getClass().getResource("/bundles/" + jsonName + ".json"));
-        when(b.findEntries("OSGI-INF/configurator", "*.json", false)).thenReturn(urls.elements());
+        when(b.findEntries("OSGI-INF/configurator", "*.json", false)).thenAnswer(invocation -> urls.elements());
 
         final BundleContext bContext = mock(BundleContext.class);
         when(b.getBundleContext()).thenReturn(bContext);
@@ -175,6 +180,63 @@ public class ConfiguratorTest {
         verify(c2).delete();
     }
 
+    @Test public void testUpdateWithoutConfigurationChanges() throws Exception {
+        final File stateFile = File.createTempFile("state", ".ser");
+        stateFile.deleteOnExit();
+        when(bundleContext.getDataFile(State.FILE_NAME)).thenReturn(stateFile);
+        final Bundle bV1 = setupBundle(1);
+        final Bundle bV2 = setupBundle(1);
+
+        Configuration c1 = mock(Configuration.class);
+        Configuration c2 = mock(Configuration.class);
+        when(configurationAdmin.getConfiguration("a", "?")).thenReturn(c1);
+        when(configurationAdmin.getConfiguration("b", "?")).thenReturn(c2);
+
+        when(c1.getChangeCount()).thenReturn(1L);
+        when(c2.getChangeCount()).thenReturn(1L);
+        configurator.processAddBundle(bV1);
+        configurator.process();
+
+        final Dictionary<String, Object> props1 = new Hashtable<>();
+        props1.put("foo", "bar");
+        final Dictionary<String, Object> props2 = new Hashtable<>();
+        props2.put("x", "y");
+
+        // same configuration files, only the hash is calculated
+        assertFalse(configurator.processAddBundle(bV2));
+        configurator.process();
+        verify(bV2, times(1)).findEntries("OSGI-INF/configurator", "*.json", false);
+
+        verify(c1, times(1)).updateIfDifferent(props1);
+        verify(c2, times(1)).updateIfDifferent(props2);
+
+        // the new timestamp is persisted
+        assertEquals(Long.valueOf(bV2.getLastModified()), State.createOrReadState(stateFile).getLastModified(1));
+    }
+
+    @Test public void testUpdateWithBinariesIsNotSkipped() throws Exception {
+        final Bundle bV1 = setupBundle(4);
+        final Bundle bV2 = setupBundle(4);
+        when(bV1.getEntry("/bundles/1.json")).thenReturn(this.getClass().getResource("/bundles/1.json"));
+        when(bV2.getEntry("/bundles/1.json")).thenReturn(this.getClass().getResource("/bundles/1.json"));
+
+        BinUtil.binDirectory = Files.createTempDirectory("binaries").toFile();
+        try {
+            Configuration c1 = mock(Configuration.class);
+            when(configurationAdmin.getConfiguration("a", "?")).thenReturn(c1);
+            when(c1.getChangeCount()).thenReturn(1L);
+            configurator.processAddBundle(bV1);
+            configurator.process();
+
+            // the binary is not part of the hash, the configuration files are parsed again
+            assertTrue(configurator.processAddBundle(bV2));
+            verify(bV2, times(2)).findEntries("OSGI-INF/configurator", "*.json", false);
+            verify(bV2).getEntry("/bundles/1.json");
+        } finally {
+            BinUtil.binDirectory = null;
+        }
+    }
+
     @Test public void testSimpleAddUpdate() throws Exception {
         final Bundle bV1 = setupBundle(2);
         final Bundle bV2 = setupBundle(2, "2a");
@@ -19,6 +19,7 @@
 package org.apache.felix.configurator.impl.model;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
 
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
@@ -40,6 +41,7 @@ public class StateTest {
 
         state.setLastModified(1, 5);
         state.setLastModified(2, 15);
+        state.setHash(1, "abc");
 
         final ByteArrayOutputStream baos = new ByteArrayOutputStream();
         try ( final ObjectOutputStream oos = new ObjectOutputStream(baos)) {
@@ -54,6 +56,8 @@ public class StateTest {
 
             assertEquals(5L, (Object)s.getLastModified(1));
             assertEquals(15L, (Object)s.getLastModified(2));
+            assertEquals("abc", s.getHash(1));
+            assertNull(s.getHash(2));
         }
     }
 
@@ -0,0 +1,253 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.felix.eventadmin.benchmark;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Hashtable;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.felix.eventadmin.impl.handler.EventHandlerProxy;
+import org.apache.felix.eventadmin.impl.handler.EventHandlerTracker;
+import org.apache.felix.framework.Felix;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.Constants;
+import org.osgi.service.event.Event;
+import org.osgi.service.event.EventConstants;
+import org.osgi.service.event.EventHandler;
+
+/**
+ * Lookup of the event handlers for an event in the Event Admin. The
+ * {@code mapLookup} benchmark is the former lookup through topic maps,
+ * which allocates a prefix string for every level of the topic and
+ * evaluates every handler filter separately.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EventHandlerLookupBenchmark
+{
+    private static final long SEED = 0x5EEDL;
+
+    private static final int AREAS = 50;
+
+    private static final String[] ACTIONS = { "CREATED", "MODIFIED", "DELETED", "MOVED" };
+
+    @Param({ "10", "1000" })
+    public int handlers;
+
+    private File m_dir;
+    private Felix m_felix;
+    private EventHandlerTracker m_tracker;
+    private MapLookup m_mapLookup;
+    private final List<Event> m_events = new ArrayList<>();
+    private int m_next;
+
+    @Setup
+    public void setUp() throws Exception
+    {
+        m_dir = Files.createTempDirectory("felix-bench").toFile();
+        Map<String, String> config = new HashMap<>();
+        config.put(Constants.FRAMEWORK_STORAGE, new File(m_dir, "cache").getAbsolutePath());
+        config.put(Constants.FRAMEWORK_STORAGE_CLEAN, Constants.FRAMEWORK_STORAGE_CLEAN_ONFIRSTINIT);
+        m_felix = new Felix(config);
+        m_felix.start();
+        BundleContext context = m_felix.getBundleContext();
+
+        EventHandler handler = new EventHandler()
+        {
+            @Override
+            public void handleEvent(Event event)
+            {
+            }
+        };
+        for (int i = 0; i < handlers; i++)
+        {
+            Hashtable<String, Object> props = new Hashtable<>();
+            String area = "org/apache/felix/bench/A" + (i % AREAS);
+            switch (i % 4)
+            {
+                case 0:
+                    props.put(EventConstants.EVENT_TOPIC, area + "/*");
+                    break;
+                case 1:
+                    props.put(EventConstants.EVENT_TOPIC, area + "/" + ACTIONS[i % ACTIONS.length]);
+                    props.put(EventConstants.EVENT_FILTER, "(tenant=t" + (i % 8) + ")");
+                    break;
+                case 2:
+                    props.put(EventConstants.EVENT_TOPIC, new String[] {
+                        area + "/" + ACTIONS[0], area + "/" + ACTIONS[1] });
+                    break;
+                default:
+                    props.put(EventConstants.EVENT_TOPIC, "org/apache/felix/other/*");
+                    break;
+            }
+            context.registerService(EventHandler.class, handler, props);
+        }
+
+        m_tracker = new EventHandlerTracker(context);
+        m_tracker.update(null, false);
+        m_tracker.open();
+        m_mapLookup = new MapLookup(m_tracker.getTracked().values());
+
+        Random random = new Random(SEED);
+        for (int i = 0; i < 64; i++)
+        {
+            Map<String, Object> props = new HashMap<>();
+            props.put("tenant", "t" + random.nextInt(8));
+            m_events.add(new Event("org/apache/felix/bench/A" + random.nextInt(AREAS * 2)
+                + "/" + ACTIONS[random.nextInt(ACTIONS.length)], props));
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws Exception
+    {
+        m_tracker.close();
+        m_felix.stop();
+        m_felix.waitForStop(10000);
+        delete(m_dir);
+    }
+
+    private static void delete(File file)
+    {
+        File[] children = file.listFiles();
+        if (children != null)
+        {
+            for (File child : children)
+            {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+
+    @Benchmark
+    public Collection<EventHandlerProxy> trieLookup()
+    {
+        return m_tracker.getHandlers(m_events.get(m_next++ & 63));
+    }
+
+    @Benchmark
+    public Collection<EventHandlerProxy> mapLookup()
+    {
+        return m_mapLookup.getHandlers(m_events.get(m_next++ & 63));
+    }
+
+    /**
+     * The handler lookup as done before the topic trie.
+     */
+    private static final class MapLookup
+    {
+        private final List<EventHandlerProxy> m_matchingAllEvents = new ArrayList<>();
+        private final Map<String, List<EventHandlerProxy>> m_matchingTopic = new HashMap<>();
+        private final Map<String, List<EventHandlerProxy>> m_matchingPrefixTopic = new HashMap<>();
+
+        MapLookup(Collection<EventHandlerProxy> proxies)
+        {
+            for (EventHandlerProxy proxy : proxies)
+            {
+                String[] topics = proxy.getTopics();
+                if (topics == null)
+                {
+                    m_matchingAllEvents.add(proxy);
+                    continue;
+                }
+                for (String topic : topics)
+                {
+                    if (topic.endsWith("/*"))
+                    {
+                        add(m_matchingPrefixTopic, topic.substring(0, topic.length() - 2), proxy);
+                    }
+                    else
+                    {
+                        add(m_matchingTopic, topic, proxy);
+                    }
+                }
+            }
+        }
+
+        private static void add(Map<String, List<EventHandlerProxy>> map, String key, EventHandlerProxy proxy)
+        {
+            List<EventHandlerProxy> list = map.get(key);
+            if (list == null)
+            {
+                list = new ArrayList<>();
+                map.put(key, list);
+            }
+            list.add(proxy);
+        }
+
+        Collection<EventHandlerProxy> getHandlers(Event event)
+        {
+            String topic = event.getTopic();
+            Set<EventHandlerProxy> handlers = new HashSet<>();
+            add(handlers, m_matchingAllEvents, event);
+            if (!m_matchingPrefixTopic.isEmpty())
+            {
+                int pos = topic.lastIndexOf('/');
+                while (pos != -1)
+                {
+                    String prefix = topic.substring(0, pos);
+                    add(handlers, m_matchingPrefixTopic.get(prefix), event);
+                    pos = prefix.lastIndexOf('/');
+                }
+            }
+            add(handlers, m_matchingTopic.get(topic), event);
+            return handlers;
+        }
+
+        private static void add(Set<EventHandlerProxy> handlers, List<EventHandlerProxy> proxies, Event event)
+        {
+            if (proxies != null)
+            {
+                for (EventHandlerProxy p : proxies)
+                {
+                    if (p.canDeliver(event))
+                    {
+                        handlers.add(p);
+                    }
+                }
+            }
+        }
+    }
+}
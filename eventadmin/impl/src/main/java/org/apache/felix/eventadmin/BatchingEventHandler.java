@@ -0,0 +1,57 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.felix.eventadmin;
+
+import java.util.List;
+
+import org.osgi.service.event.Event;
+import org.osgi.service.event.EventHandler;
+
+/**
+ * An {@link EventHandler} which receives posted events in batches.
+ * <p>
+ * If the event admin queues posted events per handler (see the
+ * {@code org.apache.felix.eventadmin.AsyncQueueSize} configuration), the
+ * events waiting in the queue of a batching handler are delivered with a
+ * single call to {@link #handleEvents(List)}, up to the number of events
+ * set with the {@link #BATCH_SIZE} service property. The events of a batch
+ * are in the order they have been posted.
+ * <p>
+ * Events sent synchronously and posted events which are not queued per
+ * handler are delivered one by one through {@link #handleEvent(Event)}.
+ * <p>
+ * Implementations of this interface are registered as service for the
+ * {@link EventHandler} interface.
+ */
+public interface BatchingEventHandler extends EventHandler
+{
+    /**
+     * The service property defining the maximum number of queued events
+     * delivered in one go (value is "org.apache.felix.eventadmin.BatchSize").
+     * The default is 1.
+     */
+    String BATCH_SIZE = "org.apache.felix.eventadmin.BatchSize";
+
+    /**
+     * Called by the event admin to deliver a batch of posted events.
+     *
+     * @param events The events, not empty and not modifiable
+     */
+    void handleEvents(List<Event> events);
+}
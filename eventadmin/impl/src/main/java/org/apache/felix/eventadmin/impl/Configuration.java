@@ -33,6 +33,7 @@ import org.apache.felix.eventadmin.impl.adapter.ServiceEventAdapter;
 import org.apache.felix.eventadmin.impl.handler.EventAdminImpl;
 import org.apache.felix.eventadmin.impl.security.SecureEventAdminFactory;
 import org.apache.felix.eventadmin.impl.tasks.DefaultThreadPool;
+import org.apache.felix.eventadmin.impl.tasks.QueuedDeliverTasks;
 import org.apache.felix.eventadmin.impl.util.LogWrapper;
 import org.osgi.framework.BundleContext;
 import org.osgi.framework.Constants;
@@ -116,6 +117,44 @@ import org.osgi.service.metatype.MetaTypeProvider;
  * </p>
  * <p>
  * <p>
+ *      {@code org.apache.felix.eventadmin.AsyncQueueSize} - The capacity of the
+ *          per handler queues for asynchronous events.
+ * </p>
+ * <p>
+ * The default is 0 which queues posted events per posting thread without a limit.
+ * A positive value queues posted events per {@code EventHandler} instead, each
+ * queue holding at most this number of events. A slow handler then only delays
+ * its own events.
+ * </p>
+ * <p>
+ * <p>
+ *      {@code org.apache.felix.eventadmin.AsyncQueuePolicy} - What to do if a
+ *          handler queue is full.
+ * </p>
+ * <p>
+ * Either {@code block} (the default) to block the posting thread until the queue
+ * has space, {@code drop-oldest} to drop the oldest queued event or {@code coalesce}
+ * to replace a queued event with the same topic and the same value of the
+ * {@code org.apache.felix.eventadmin.AsyncQueueCoalesceKey} event property. If
+ * there is no such event, the oldest event is dropped. Event handlers implementing
+ * {@code org.apache.felix.eventadmin.BatchingEventHandler} receive up to
+ * {@code org.apache.felix.eventadmin.BatchSize} queued events in a single call
+ * by setting this service property.
+ * </p>
+ * <p>
+ * <p>
+ *      {@code org.apache.felix.eventadmin.VirtualThreads} - Deliver events on
+ *          virtual threads?
+ * </p>
+ * <p>
+ * The default is {@code false}. If enabled on a Java 21 or newer runtime, each
+ * event delivery that would take a thread from one of the thread pools runs on
+ * a new virtual thread instead and the thread pool size is not used. This allows
+ * a large number of handlers blocking in their event delivery without growing the
+ * thread pools. Events are still delivered in order per posting thread.
+ * </p>
+ * <p>
+ * <p>
  * These properties are read at startup and serve as a default configuration.
  * If a configuration admin is configured, the event admin can be configured
  * through the config admin.
@@ -135,6 +174,10 @@ public class Configuration
     static final String PROP_IGNORE_TIMEOUT = "org.apache.felix.eventadmin.IgnoreTimeout";
     static final String PROP_IGNORE_TOPIC = "org.apache.felix.eventadmin.IgnoreTopic";
     static final String PROP_LOG_LEVEL = "org.apache.felix.eventadmin.LogLevel";
+    static final String PROP_ASYNC_QUEUE_SIZE = "org.apache.felix.eventadmin.AsyncQueueSize";
+    static final String PROP_ASYNC_QUEUE_POLICY = "org.apache.felix.eventadmin.AsyncQueuePolicy";
+    static final String PROP_ASYNC_QUEUE_COALESCE_KEY = "org.apache.felix.eventadmin.AsyncQueueCoalesceKey";
+    static final String PROP_VIRTUAL_THREADS = "org.apache.felix.eventadmin.VirtualThreads";
 
     /** The bundle context. */
     private final BundleContext m_bundleContext;
@@ -155,6 +198,14 @@ public class Configuration
 
     private int m_logLevel;
 
+    private int m_asyncQueueSize;
+
+    private QueuedDeliverTasks.OverflowPolicy m_asyncQueuePolicy;
+
+    private String m_asyncQueueCoalesceKey;
+
+    private boolean m_virtualThreads;
+
     // The thread pool used - this is a member because we need to close it on stop
     private volatile DefaultThreadPool m_sync_pool;
 
@@ -332,6 +383,19 @@ public class Configuration
                     m_bundleContext.getProperty(PROP_LOG_LEVEL),
                     LogWrapper.LOG_WARNING, // default log level is WARNING
                     LogWrapper.LOG_ERROR);
+
+            // The capacity of the per handler queues for posted events - the default
+            // is 0 which queues posted events per posting thread without a limit.
+            m_asyncQueueSize = getIntProperty(PROP_ASYNC_QUEUE_SIZE,
+                    m_bundleContext.getProperty(PROP_ASYNC_QUEUE_SIZE), 0, 0);
+            m_asyncQueuePolicy = getPolicyProperty(
+                    m_bundleContext.getProperty(PROP_ASYNC_QUEUE_POLICY));
+            m_asyncQueueCoalesceKey = m_bundleContext.getProperty(PROP_ASYNC_QUEUE_COALESCE_KEY);
+
+            // Deliver events on virtual threads instead of the thread pools - the
+            // default is false. This requires a Java 21 or newer runtime.
+            m_virtualThreads = getBooleanProperty(
+                m_bundleContext.getProperty(PROP_VIRTUAL_THREADS), false);
         }
         else
         {
@@ -374,6 +438,12 @@ public class Configuration
                     config.get(PROP_LOG_LEVEL),
                     LogWrapper.LOG_WARNING, // default log level is WARNING
                     LogWrapper.LOG_ERROR);
+            m_asyncQueueSize = getIntProperty(PROP_ASYNC_QUEUE_SIZE,
+                    config.get(PROP_ASYNC_QUEUE_SIZE), 0, 0);
+            m_asyncQueuePolicy = getPolicyProperty(config.get(PROP_ASYNC_QUEUE_POLICY));
+            final Object valueCK = config.get(PROP_ASYNC_QUEUE_COALESCE_KEY);
+            m_asyncQueueCoalesceKey = valueCK == null ? null : valueCK.toString();
+            m_virtualThreads = getBooleanProperty(config.get(PROP_VIRTUAL_THREADS), false);
         }
         // a timeout less or equals to 100 means : disable timeout
         if ( m_timeout <= 100 )
@@ -398,6 +468,12 @@ public class Configuration
             PROP_TIMEOUT + "=" + m_timeout);
         LogWrapper.getLogger().log(LogWrapper.LOG_DEBUG,
             PROP_REQUIRE_TOPIC + "=" + m_requireTopic);
+        LogWrapper.getLogger().log(LogWrapper.LOG_DEBUG,
+            PROP_ASYNC_QUEUE_SIZE + "=" + m_asyncQueueSize);
+        LogWrapper.getLogger().log(LogWrapper.LOG_DEBUG,
+            PROP_ASYNC_QUEUE_POLICY + "=" + m_asyncQueuePolicy);
+        LogWrapper.getLogger().log(LogWrapper.LOG_DEBUG,
+            PROP_VIRTUAL_THREADS + "=" + m_virtualThreads);
 
         // Note that this uses a lazy thread pool that will create new threads on
         // demand - in case none of its cached threads is free - until threadPoolSize
@@ -405,20 +481,20 @@ public class Configuration
         // caching of threads.
         if ( m_sync_pool == null )
         {
-            m_sync_pool = new DefaultThreadPool(m_threadPoolSize, true);
+            m_sync_pool = new DefaultThreadPool(m_threadPoolSize, true, m_virtualThreads);
         }
         else
         {
-            m_sync_pool.configure(m_threadPoolSize);
+            m_sync_pool.configure(m_threadPoolSize, m_virtualThreads);
         }
         final int asyncThreadPoolSize = m_asyncThreadPoolSize;
         if ( m_async_pool == null )
         {
-            m_async_pool = new DefaultThreadPool(asyncThreadPoolSize, false);
+            m_async_pool = new DefaultThreadPool(asyncThreadPoolSize, false, m_virtualThreads);
         }
         else
         {
-            m_async_pool.configure(asyncThreadPoolSize);
+            m_async_pool.configure(asyncThreadPoolSize, m_virtualThreads);
         }
 
         if ( m_admin == null )
@@ -429,7 +505,10 @@ public class Configuration
                     m_timeout,
                     m_ignoreTimeout,
                     m_requireTopic,
-                    m_ignoreTopics);
+                    m_ignoreTopics,
+                    m_asyncQueueSize,
+                    m_asyncQueuePolicy,
+                    m_asyncQueueCoalesceKey);
 
             // Finally, adapt the outside events to our kind of events as per spec
             adaptEvents(m_admin);
@@ -447,7 +526,8 @@ public class Configuration
         }
         else
         {
-            m_admin.update(m_timeout, m_ignoreTimeout, m_requireTopic, m_ignoreTopics);
+            m_admin.update(m_timeout, m_ignoreTimeout, m_requireTopic, m_ignoreTopics,
+                    m_asyncQueueSize, m_asyncQueuePolicy, m_asyncQueueCoalesceKey);
         }
 
     }
@@ -522,7 +602,9 @@ public class Configuration
         {
             return new MetaTypeProviderImpl((ManagedService)managedService,
                     m_threadPoolSize, m_timeout, m_requireTopic,
-                    m_ignoreTimeout, m_ignoreTopics, m_asyncToSyncThreadRatio);
+                    m_ignoreTimeout, m_ignoreTopics, m_asyncToSyncThreadRatio,
+                    m_asyncQueueSize, m_asyncQueuePolicy, m_asyncQueueCoalesceKey,
+                    m_virtualThreads);
         }
         catch (final Throwable t)
         {
@@ -633,6 +715,25 @@ public class Configuration
         return defaultValue;
     }
 
+    /**
+     * Returns the overflow policy for the value of the property or the
+     * default policy {@code block} if the value is not set or invalid.
+     */
+    private QueuedDeliverTasks.OverflowPolicy getPolicyProperty(final Object value)
+    {
+        if ( value != null )
+        {
+            final QueuedDeliverTasks.OverflowPolicy policy = QueuedDeliverTasks.OverflowPolicy.parse(value.toString());
+            if ( policy != null )
+            {
+                return policy;
+            }
+            LogWrapper.getLogger().log(LogWrapper.LOG_WARNING,
+                    "Invalid value for property: " + PROP_ASYNC_QUEUE_POLICY + " - Using default");
+        }
+        return QueuedDeliverTasks.OverflowPolicy.BLOCK;
+    }
+
     /**
      * Returns true if the value of the property is set and is either 1, true, or yes
      * Returns false if the value of the property is set and is either 0, false, or no
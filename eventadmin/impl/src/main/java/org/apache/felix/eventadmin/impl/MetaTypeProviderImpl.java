@@ -22,6 +22,7 @@ import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.Dictionary;
 
+import org.apache.felix.eventadmin.impl.tasks.QueuedDeliverTasks;
 import org.osgi.service.cm.ConfigurationException;
 import org.osgi.service.cm.ManagedService;
 import org.osgi.service.metatype.AttributeDefinition;
@@ -42,6 +43,10 @@ public class MetaTypeProviderImpl
     private final String[] m_ignoreTimeout;
     private final String[] m_ignoreTopic;
     private final double m_asyncThreadPoolRatio;
+    private final int m_asyncQueueSize;
+    private final QueuedDeliverTasks.OverflowPolicy m_asyncQueuePolicy;
+    private final String m_asyncQueueCoalesceKey;
+    private final boolean m_virtualThreads;
 
     private final ManagedService m_delegatee;
 
@@ -50,7 +55,11 @@ public class MetaTypeProviderImpl
             final int timeout, final boolean requireTopic,
             final String[] ignoreTimeout,
             final String[] ignoreTopic,
-            final double asyncThreadPoolRatio)
+            final double asyncThreadPoolRatio,
+            final int asyncQueueSize,
+            final QueuedDeliverTasks.OverflowPolicy asyncQueuePolicy,
+            final String asyncQueueCoalesceKey,
+            final boolean virtualThreads)
     {
         m_threadPoolSize = threadPoolSize;
         m_timeout = timeout;
@@ -59,6 +68,10 @@ public class MetaTypeProviderImpl
         m_ignoreTimeout = ignoreTimeout;
         m_ignoreTopic = ignoreTopic;
         m_asyncThreadPoolRatio = asyncThreadPoolRatio;
+        m_asyncQueueSize = asyncQueueSize;
+        m_asyncQueuePolicy = asyncQueuePolicy;
+        m_asyncQueueCoalesceKey = asyncQueueCoalesceKey;
+        m_virtualThreads = virtualThreads;
     }
 
     private ObjectClassDefinition ocd;
@@ -143,6 +156,29 @@ public class MetaTypeProviderImpl
                     "are ignored. If a single value neither ends with a dot nor with a start, this is assumed " +
                     "to define an exact topic. A single star can be used to disable delivery completely.",
                     AttributeDefinition.STRING, m_ignoreTopic, Integer.MAX_VALUE, null, null));
+            adList.add( new AttributeDefinitionImpl( Configuration.PROP_ASYNC_QUEUE_SIZE, "Async Queue Size",
+                    "The capacity of the per handler queues for asynchronous events. The default value 0 queues " +
+                    "posted events per posting thread without a limit. A positive value queues posted events " +
+                    "per event handler instead, so a slow handler only delays its own events.",
+                    m_asyncQueueSize ) );
+            adList.add( new AttributeDefinitionImpl( Configuration.PROP_ASYNC_QUEUE_POLICY, "Async Queue Policy",
+                    "What to do if a handler queue is full: block the posting thread until the queue has space, " +
+                    "drop the oldest queued event or coalesce the event with a queued event having the same topic " +
+                    "and the same value of the coalesce key property.",
+                    AttributeDefinition.STRING,
+                    new String[] {m_asyncQueuePolicy.name().toLowerCase().replace('_', '-')}, 0,
+                    new String[] {"Block", "Drop oldest", "Coalesce"},
+                    new String[] {"block", "drop-oldest", "coalesce"}));
+            adList.add( new AttributeDefinitionImpl( Configuration.PROP_ASYNC_QUEUE_COALESCE_KEY, "Async Queue Coalesce Key",
+                    "The event property identifying events which can be coalesced if a handler queue is full " +
+                    "and the coalesce policy is configured.",
+                    AttributeDefinition.STRING,
+                    m_asyncQueueCoalesceKey == null ? null : new String[] {m_asyncQueueCoalesceKey}, 0, null, null));
+            adList.add( new AttributeDefinitionImpl( Configuration.PROP_VIRTUAL_THREADS, "Virtual Threads",
+                    "Deliver events on virtual threads instead of the thread pools. This requires a Java 21 or newer " +
+                    "runtime and allows a large number of event handlers blocking in their event delivery without " +
+                    "growing the thread pools. The thread pool size is not used if this is enabled.",
+                    m_virtualThreads ) );
             ocd = new ObjectClassDefinition()
             {
 
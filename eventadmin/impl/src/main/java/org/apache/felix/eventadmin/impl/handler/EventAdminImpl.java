@@ -23,6 +23,7 @@ import java.util.List;
 
 import org.apache.felix.eventadmin.impl.tasks.AsyncDeliverTasks;
 import org.apache.felix.eventadmin.impl.tasks.DefaultThreadPool;
+import org.apache.felix.eventadmin.impl.tasks.QueuedDeliverTasks;
 import org.apache.felix.eventadmin.impl.tasks.SyncDeliverTasks;
 import org.apache.felix.eventadmin.impl.util.Matchers;
 import org.osgi.framework.BundleContext;
@@ -66,6 +67,9 @@ public class EventAdminImpl implements EventAdmin
      * @param ignoreTimeout The configuration for ignoring timeouts
      * @param requireTopic Are topics required?
      * @param ignoreTopics The configuration to ignore topics
+     * @param queueSize The capacity of the per handler queues, {@code 0} to disable them
+     * @param queuePolicy The overflow policy of the per handler queues
+     * @param coalesceKey The event property for coalescing queued events
      */
     public EventAdminImpl(
                     final BundleContext bundleContext,
@@ -74,7 +78,10 @@ public class EventAdminImpl implements EventAdmin
                     final int timeout,
                     final String[] ignoreTimeout,
                     final boolean requireTopic,
-                    final String[] ignoreTopics)
+                    final String[] ignoreTopics,
+                    final int queueSize,
+                    final QueuedDeliverTasks.OverflowPolicy queuePolicy,
+                    final String coalesceKey)
     {
         checkNull(syncPool, "syncPool");
         checkNull(asyncPool, "asyncPool");
@@ -84,6 +91,7 @@ public class EventAdminImpl implements EventAdmin
         this.tracker.open();
         m_sendManager = new SyncDeliverTasks(syncPool, timeout);
         m_postManager = new AsyncDeliverTasks(asyncPool, m_sendManager);
+        m_postManager.update(queueSize, queuePolicy, coalesceKey);
         m_ignoreTopics = Matchers.createEventTopicMatchers(ignoreTopics);
     }
 
@@ -161,6 +169,7 @@ public class EventAdminImpl implements EventAdmin
      */
     public void stop()
     {
+        m_postManager.stop();
         this.tracker.close();
         this.tracker = null;
     }
@@ -171,15 +180,22 @@ public class EventAdminImpl implements EventAdmin
      * @param ignoreTimeout The configuration for ignoring timeouts
      * @param requireTopic Are topics required?
      * @param ignoreTopics The configuration to ignore topics
+     * @param queueSize The capacity of the per handler queues, {@code 0} to disable them
+     * @param queuePolicy The overflow policy of the per handler queues
+     * @param coalesceKey The event property for coalescing queued events
      */
     public void update(final int timeout,
                     final String[] ignoreTimeout,
                     final boolean requireTopic,
-                    final String[] ignoreTopics)
+                    final String[] ignoreTopics,
+                    final int queueSize,
+                    final QueuedDeliverTasks.OverflowPolicy queuePolicy,
+                    final String coalesceKey)
     {
         this.tracker.close();
         this.tracker.update(ignoreTimeout, requireTopic);
         this.m_sendManager.update(timeout);
+        this.m_postManager.update(queueSize, queuePolicy, coalesceKey);
         this.tracker.open();
         this.m_ignoreTopics = Matchers.createEventTopicMatchers(ignoreTopics);
     }
@@ -200,6 +216,8 @@ public class EventAdminImpl implements EventAdmin
     public interface EventHandlerMBean {
 
         String[] getDeniedEventHandlers();
+
+        String[] getHandlerQueueStatistics();
     }
 
     public Object getHandlerInfoMBean() {
@@ -214,6 +232,11 @@ public class EventAdminImpl implements EventAdmin
 
                 return names.toArray(new String[names.size()]);
             }
+
+            @Override
+            public String[] getHandlerQueueStatistics() {
+                return m_postManager.getQueueStatistics();
+            }
         };
     }
 }
@@ -18,10 +18,14 @@
  */
 package org.apache.felix.eventadmin.impl.handler;
 
+import java.security.Permission;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Iterator;
+import java.util.List;
 import java.util.concurrent.atomic.AtomicBoolean;
 
+import org.apache.felix.eventadmin.BatchingEventHandler;
 import org.apache.felix.eventadmin.impl.security.PermissionsUtil;
 import org.apache.felix.eventadmin.impl.util.LogWrapper;
 import org.osgi.framework.Bundle;
@@ -43,6 +47,14 @@ import org.osgi.service.event.EventHandler;
  */
 public class EventHandlerProxy {
 
+    /**
+     * Service property of an event handler for the maximum number of queued
+     * events delivered to it in one go if asynchronous events are queued
+     * per handler.
+     * @see BatchingEventHandler#BATCH_SIZE
+     */
+    public static final String PROP_BATCH_SIZE = BatchingEventHandler.BATCH_SIZE;
+
     /** The service reference for the event handler. */
     private final ServiceReference<EventHandler> reference;
 
@@ -67,6 +79,12 @@ public class EventHandlerProxy {
     /** Deliver async ordered. */
     private boolean asyncOrderedDelivery;
 
+    /** The number of queued events delivered in one go. */
+    private volatile int batchSize = 1;
+
+    /** Has this proxy been disposed? */
+    private volatile boolean disposed;
+
     /**
      * Create an EventHandlerProxy.
      *
@@ -262,6 +280,31 @@ public class EventHandlerProxy {
                                             + this.reference + " | Bundle("
                                             + this.reference.getBundle() + ")]");
         }
+        // batched delivery of queued events
+        int batch = 1;
+        final Object batchObj = reference.getProperty(PROP_BATCH_SIZE);
+        if ( batchObj instanceof Number )
+        {
+            batch = ((Number)batchObj).intValue();
+        }
+        else if ( batchObj != null )
+        {
+            try
+            {
+                batch = Integer.parseInt(batchObj.toString());
+            }
+            catch (final NumberFormatException nfe)
+            {
+                LogWrapper.getLogger().log(
+                                this.reference,
+                                LogWrapper.LOG_WARNING,
+                                "Invalid " + PROP_BATCH_SIZE + " - Ignoring batch size " + batchObj + " of ServiceReference ["
+                                                + this.reference + " | Bundle("
+                                                + this.reference.getBundle() + ")]");
+            }
+        }
+        this.batchSize = Math.max(1, batch);
+
         // make sure to release the handler
         this.release();
 
@@ -281,9 +324,19 @@ public class EventHandlerProxy {
      */
     public void dispose()
     {
+        this.disposed = true;
         this.release();
     }
 
+    /**
+     * Has the proxy been disposed?
+     * @return {@code true} if the handler is gone
+     */
+    public boolean isDisposed()
+    {
+        return this.disposed;
+    }
+
     /**
      * Get the event handler.
      * @return The event handler or {@code null}
@@ -336,6 +389,15 @@ public class EventHandlerProxy {
         return this.topics;
     }
 
+    /**
+     * Get the filter of this handler.
+     * @return The filter or {@code null}
+     */
+    public Filter getFilter()
+    {
+        return this.filter;
+    }
+
     /**
      * Check if this handler is allowed to receive the event
      * - denied
@@ -345,6 +407,26 @@ public class EventHandlerProxy {
      * @return {@code true} if the event can be delivered
      */
     public boolean canDeliver(final Event event)
+    {
+        // filter match
+        final Filter eventFilter = this.filter;
+        if ( eventFilter != null && !event.matches(eventFilter) )
+        {
+            return false;
+        }
+
+        return this.canDeliver(PermissionsUtil.createSubscribePermission(event.getTopic()));
+    }
+
+    /**
+     * Check if this handler is allowed to receive an event
+     * without checking the filter
+     * - denied
+     * - check permission
+     * @param permission The subscribe permission for the topic or {@code null}
+     * @return {@code true} if the event can be delivered
+     */
+    boolean canDeliver(final Permission permission)
     {
         if ( this.denied.get() )
         {
@@ -357,16 +439,8 @@ public class EventHandlerProxy {
             return false;
         }
 
-        // filter match
-        final Filter eventFilter = this.filter;
-        if ( eventFilter != null && !event.matches(eventFilter) )
-        {
-            return false;
-        }
-
         // permission check
-        final Object p = PermissionsUtil.createSubscribePermission(event.getTopic());
-        if (p != null && !bundle.hasPermission(p) )
+        if (permission != null && !bundle.hasPermission(permission) )
         {
             return false;
         }
@@ -392,6 +466,15 @@ public class EventHandlerProxy {
         return this.asyncOrderedDelivery;
     }
 
+    /**
+     * Get the maximum number of queued events delivered in one go.
+     * @return The batch size, at least {@code 1}
+     */
+    public int getBatchSize()
+    {
+        return this.batchSize;
+    }
+
     /**
      * Check the timeout configuration for this handler.
      * @param className Handler name
@@ -442,6 +525,51 @@ public class EventHandlerProxy {
         }
     }
 
+    /**
+     * Is the handler a {@link BatchingEventHandler}?
+     * @return {@code true} if the handler accepts a list of events
+     */
+    public boolean isBatching()
+    {
+        return this.obtain() instanceof BatchingEventHandler;
+    }
+
+    /**
+     * Deliver a batch of events to the handler. A {@link BatchingEventHandler}
+     * gets the events in a single call, any other handler one by one.
+     * @param events The events
+     */
+    public void sendEvents(final List<Event> events)
+    {
+        final EventHandler handlerService = this.obtain();
+        if (handlerService == null)
+        {
+            return;
+        }
+        if ( !(handlerService instanceof BatchingEventHandler) )
+        {
+            for(final Event event : events)
+            {
+                this.sendEvent(event);
+            }
+            return;
+        }
+
+        try
+        {
+            ((BatchingEventHandler) handlerService).handleEvents(Collections.unmodifiableList(events));
+        }
+        catch (final Throwable e)
+        {
+            // The spec says that we must catch exceptions and log them:
+            LogWrapper.getLogger().log(
+                            this.reference,
+                            LogWrapper.LOG_ERROR,
+                            String.format("Exception during event dispatch [%s | %s | Bundle(%s) | Handler(%s)]",
+                                events, this.reference, this.reference.getBundle(), handlerService), e);
+        }
+    }
+
     /**
      * Deny the handler.
      */
@@ -53,6 +53,8 @@ public class EventHandlerTracker extends ServiceTracker<EventHandler, EventHandl
 	 */
 	private final Map<String, List<EventHandlerProxy>> matchingPrefixTopic;
 
+	/** The topic trie built from the collections above, used for the lookup. */
+	private volatile TopicTrie trie = TopicTrie.EMPTY;
 
 	/** The context for the proxies. */
 	private HandlerContext handlerContext;
@@ -162,6 +164,7 @@ public class EventHandlerTracker extends ServiceTracker<EventHandler, EventHandl
     			}
     		}
 		}
+		this.trie = TopicTrie.build(this.matchingAllEvents, this.matchingTopic, this.matchingPrefixTopic);
 	}
 
     /**
@@ -190,39 +193,17 @@ public class EventHandlerTracker extends ServiceTracker<EventHandler, EventHandl
                 }
             }
         }
+        this.trie = TopicTrie.build(this.matchingAllEvents, this.matchingTopic, this.matchingPrefixTopic);
 	}
 
 	/**
 	 * Get all handlers for this event
 	 *
 	 * @param event The event topic
-	 * @return All handlers for the event
+	 * @return All handlers for the event, the collection must not be modified
 	 */
 	public Collection<EventHandlerProxy> getHandlers(final Event event) {
-	    final String topic = event.getTopic();
-
-		final Set<EventHandlerProxy> handlers = new HashSet<>();
-
-		// Add all handlers matching everything
-        this.checkHandlerAndAdd(handlers, this.matchingAllEvents, event);
-
-		// Now check for prefix matches
-		if ( !this.matchingPrefixTopic.isEmpty() )
-		{
-		    int pos = topic.lastIndexOf('/');
-			while (pos != -1)
-			{
-			    final String prefix = topic.substring(0, pos);
-		        this.checkHandlerAndAdd(handlers, this.matchingPrefixTopic.get(prefix), event);
-
-				pos = prefix.lastIndexOf('/');
-			}
-		}
-
-		// Add the handlers for matching topic names
-		this.checkHandlerAndAdd(handlers, this.matchingTopic.get(topic), event);
-
-		return handlers;
+	    return this.trie.getHandlers(event);
 	}
 
 	   /**
@@ -257,26 +238,6 @@ public class EventHandlerTracker extends ServiceTracker<EventHandler, EventHandl
         return handlers;
     }
 
-	/**
-	 * Checks each handler from the proxy list if it can deliver the event
-	 * If the event can be delivered, the proxy is added to the handlers.
-	 */
-	private void checkHandlerAndAdd( final Set<EventHandlerProxy> handlers,
-	        final List<EventHandlerProxy> proxies,
-	        final Event event)
-	{
-	    if ( proxies != null )
-	    {
-            for(final EventHandlerProxy p : proxies)
-            {
-                if ( p.canDeliver(event) )
-                {
-                    handlers.add(p);
-                }
-            }
-	    }
-	}
-
     /**
      * The context object passed to the proxies.
      */
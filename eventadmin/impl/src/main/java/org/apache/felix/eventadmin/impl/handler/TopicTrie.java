@@ -0,0 +1,409 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.felix.eventadmin.impl.handler;
+
+import java.security.Permission;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.felix.eventadmin.impl.security.PermissionsUtil;
+import org.osgi.framework.Filter;
+import org.osgi.service.event.Event;
+
+/**
+ * An immutable snapshot of the registered event handlers, organized as a
+ * trie of topic segments. Each node caches the handlers registered for the
+ * exact topic ending at the node and the handlers registered for the
+ * wildcard topic {@code <node>/*}. Walking the trie for an event topic
+ * does not create any substrings.
+ *
+ * Handlers with the same event filter share one filter instance, which
+ * is evaluated at most once per event.
+ *
+ * A new snapshot is built whenever the set of handlers changes.
+ *
+ * @author <a href="mailto:dev@felix.apache.org">Felix Project Team</a>
+ */
+final class TopicTrie {
+
+    /** The empty trie. */
+    static final TopicTrie EMPTY = new TopicTrie(new Entry[0], new Node(null, new Entry[0], new Entry[0], new Node[0]), new Filter[0]);
+
+    /** Filter state: not evaluated yet. */
+    private static final byte UNKNOWN = 0;
+
+    /** Filter state: the event matches. */
+    private static final byte MATCH = 1;
+
+    /** Filter state: the event does not match. */
+    private static final byte NO_MATCH = 2;
+
+    /** The handlers matching all events. */
+    private final Entry[] matchingAllEvents;
+
+    /** The root node, it represents the empty topic. */
+    private final Node root;
+
+    /** The distinct filters of all handlers. */
+    private final Filter[] filters;
+
+    private TopicTrie(final Entry[] matchingAllEvents, final Node root, final Filter[] filters)
+    {
+        this.matchingAllEvents = matchingAllEvents;
+        this.root = root;
+        this.filters = filters;
+    }
+
+    /**
+     * Build a new trie.
+     *
+     * @param matchingAllEvents The handlers matching all events
+     * @param matchingTopic The handlers by exact topic
+     * @param matchingPrefixTopic The handlers by topic prefix (without the trailing {@code /*})
+     * @return The trie
+     */
+    static TopicTrie build(final Collection<EventHandlerProxy> matchingAllEvents,
+            final Map<String, List<EventHandlerProxy>> matchingTopic,
+            final Map<String, List<EventHandlerProxy>> matchingPrefixTopic)
+    {
+        final Map<String, Integer> filterIndex = new HashMap<>();
+        final List<Filter> filters = new ArrayList<>();
+
+        final Builder root = new Builder();
+        for(final Map.Entry<String, List<EventHandlerProxy>> e : matchingTopic.entrySet())
+        {
+            root.getNode(e.getKey()).exact.addAll(e.getValue());
+        }
+        for(final Map.Entry<String, List<EventHandlerProxy>> e : matchingPrefixTopic.entrySet())
+        {
+            root.getNode(e.getKey()).prefix.addAll(e.getValue());
+        }
+
+        final Entry[] all = toEntries(matchingAllEvents, filterIndex, filters);
+        final Node rootNode = root.toNode(null, filterIndex, filters);
+        return new TopicTrie(all, rootNode, filters.toArray(new Filter[filters.size()]));
+    }
+
+    /**
+     * Get all handlers which can deliver the event.
+     *
+     * @param event The event
+     * @return The handlers, the collection must not be modified
+     */
+    Collection<EventHandlerProxy> getHandlers(final Event event)
+    {
+        final Lookup lookup = new Lookup(event, this.filters.length);
+
+        lookup.add(this.matchingAllEvents);
+
+        final String topic = event.getTopic();
+        final int length = topic.length();
+        Node node = this.root;
+        int start = 0;
+        while ( node != null )
+        {
+            int end = topic.indexOf('/', start);
+            if ( end == -1 )
+            {
+                end = length;
+            }
+            node = node.getChild(topic, start, end);
+            if ( node != null )
+            {
+                if ( end == length )
+                {
+                    lookup.add(node.exact);
+                    break;
+                }
+                lookup.add(node.prefix);
+                start = end + 1;
+            }
+        }
+
+        return lookup.getResult();
+    }
+
+    private static Entry[] toEntries(final Collection<EventHandlerProxy> proxies,
+            final Map<String, Integer> filterIndex,
+            final List<Filter> filters)
+    {
+        final Entry[] entries = new Entry[proxies.size()];
+        int index = 0;
+        for(final EventHandlerProxy proxy : proxies)
+        {
+            final Filter filter = proxy.getFilter();
+            int idx = -1;
+            if ( filter != null )
+            {
+                final String key = filter.toString();
+                final Integer existing = filterIndex.get(key);
+                if ( existing == null )
+                {
+                    idx = filters.size();
+                    filterIndex.put(key, idx);
+                    filters.add(filter);
+                }
+                else
+                {
+                    idx = existing;
+                }
+            }
+            final String[] topics = proxy.getTopics();
+            entries[index] = new Entry(proxy, idx, topics != null && topics.length > 1);
+            index++;
+        }
+        return entries;
+    }
+
+    /**
+     * Hash code of a topic segment, identical to {@link String#hashCode()}
+     * of the segment.
+     */
+    private static int hash(final String topic, final int start, final int end)
+    {
+        int h = 0;
+        for(int i = start; i < end; i++)
+        {
+            h = 31 * h + topic.charAt(i);
+        }
+        return h;
+    }
+
+    /**
+     * A handler together with the precomputed lookup information.
+     */
+    private static final class Entry
+    {
+        /** The handler. */
+        final EventHandlerProxy proxy;
+
+        /** The index of the shared filter or {@code -1}. */
+        final int filterIndex;
+
+        /** Might the handler be found through more than one topic? */
+        final boolean multipleTopics;
+
+        Entry(final EventHandlerProxy proxy, final int filterIndex, final boolean multipleTopics)
+        {
+            this.proxy = proxy;
+            this.filterIndex = filterIndex;
+            this.multipleTopics = multipleTopics;
+        }
+    }
+
+    /**
+     * A node of the trie. The children are kept in an open addressing
+     * hash table so that they can be looked up by a region of the topic.
+     */
+    private static final class Node
+    {
+        /** The topic segment of this node. */
+        final String segment;
+
+        /** The hash of the segment. */
+        final int hash;
+
+        /** Handlers for the topic ending at this node. */
+        final Entry[] exact;
+
+        /** Handlers for all topics below this node. */
+        final Entry[] prefix;
+
+        /** The children, the length is a power of two. */
+        final Node[] children;
+
+        Node(final String segment, final Entry[] exact, final Entry[] prefix, final Node[] children)
+        {
+            this.segment = segment;
+            this.hash = segment == null ? 0 : segment.hashCode();
+            this.exact = exact;
+            this.prefix = prefix;
+            this.children = children;
+        }
+
+        Node getChild(final String topic, final int start, final int end)
+        {
+            final Node[] table = this.children;
+            if ( table.length == 0 )
+            {
+                return null;
+            }
+            final int length = end - start;
+            final int h = hash(topic, start, end);
+            final int mask = table.length - 1;
+            int index = h & mask;
+            Node child;
+            while ( (child = table[index]) != null )
+            {
+                if ( child.hash == h
+                     && child.segment.length() == length
+                     && topic.regionMatches(start, child.segment, 0, length) )
+                {
+                    return child;
+                }
+                index = (index + 1) & mask;
+            }
+            return null;
+        }
+    }
+
+    /**
+     * Mutable node used while building the trie.
+     */
+    private static final class Builder
+    {
+        final Map<String, Builder> children = new HashMap<>();
+
+        final List<EventHandlerProxy> exact = new ArrayList<>();
+
+        final List<EventHandlerProxy> prefix = new ArrayList<>();
+
+        Builder getNode(final String topic)
+        {
+            Builder node = this;
+            int start = 0;
+            while ( true )
+            {
+                int end = topic.indexOf('/', start);
+                if ( end == -1 )
+                {
+                    end = topic.length();
+                }
+                final String segment = topic.substring(start, end);
+                Builder child = node.children.get(segment);
+                if ( child == null )
+                {
+                    child = new Builder();
+                    node.children.put(segment, child);
+                }
+                node = child;
+                if ( end == topic.length() )
+                {
+                    return node;
+                }
+                start = end + 1;
+            }
+        }
+
+        Node toNode(final String segment, final Map<String, Integer> filterIndex, final List<Filter> filters)
+        {
+            int size = 0;
+            if ( !this.children.isEmpty() )
+            {
+                // keep the load factor at or below one half
+                size = Integer.highestOneBit(this.children.size()) * 4;
+            }
+            final Node[] table = new Node[size];
+            for(final Map.Entry<String, Builder> e : this.children.entrySet())
+            {
+                final Node child = e.getValue().toNode(e.getKey(), filterIndex, filters);
+                int index = child.hash & (size - 1);
+                while ( table[index] != null )
+                {
+                    index = (index + 1) & (size - 1);
+                }
+                table[index] = child;
+            }
+            return new Node(segment,
+                    toEntries(this.exact, filterIndex, filters),
+                    toEntries(this.prefix, filterIndex, filters),
+                    table);
+        }
+    }
+
+    /**
+     * The state of a single lookup.
+     */
+    private final class Lookup
+    {
+        private final Event event;
+
+        /** The subscribe permission for the topic, created once per event. */
+        private final Permission permission;
+
+        /** Evaluated filters, created on demand. */
+        private byte[] filterStates;
+
+        private final int filterCount;
+
+        private List<EventHandlerProxy> result;
+
+        private boolean checkDuplicates;
+
+        Lookup(final Event event, final int filterCount)
+        {
+            this.event = event;
+            this.permission = PermissionsUtil.createSubscribePermission(event.getTopic());
+            this.filterCount = filterCount;
+        }
+
+        void add(final Entry[] entries)
+        {
+            for(final Entry entry : entries)
+            {
+                if ( !entry.proxy.canDeliver(this.permission) || !this.matches(entry.filterIndex) )
+                {
+                    continue;
+                }
+                if ( this.result == null )
+                {
+                    this.result = new ArrayList<>();
+                }
+                else if ( entry.multipleTopics && this.checkDuplicates && this.result.contains(entry.proxy) )
+                {
+                    continue;
+                }
+                this.checkDuplicates |= entry.multipleTopics;
+                this.result.add(entry.proxy);
+            }
+        }
+
+        private boolean matches(final int filterIndex)
+        {
+            if ( filterIndex == -1 )
+            {
+                return true;
+            }
+            if ( this.filterStates == null )
+            {
+                this.filterStates = new byte[this.filterCount];
+            }
+            byte state = this.filterStates[filterIndex];
+            if ( state == UNKNOWN )
+            {
+                state = this.event.matches(filters[filterIndex]) ? MATCH : NO_MATCH;
+                this.filterStates[filterIndex] = state;
+            }
+            return state == MATCH;
+        }
+
+        Collection<EventHandlerProxy> getResult()
+        {
+            if ( this.result == null )
+            {
+                return Collections.emptyList();
+            }
+            return this.result;
+        }
+    }
+}
@@ -44,6 +44,9 @@ public class AsyncDeliverTasks
     /** A map of running threads currently delivering async events. */
     private final Map<Long, TaskExecuter> m_running_threads = new ConcurrentHashMap<Long, TaskExecuter>();
 
+    /** The per handler queues, {@code null} if events are queued per posting thread. */
+    private volatile QueuedDeliverTasks m_queued;
+
     /**
      * The constructor of the class that will use the asynchronous.
      *
@@ -58,6 +61,60 @@ public class AsyncDeliverTasks
         m_deliver_task = deliverTask;
     }
 
+    /**
+     * Update the queue configuration. Events already queued are still delivered
+     * if the configuration changes.
+     *
+     * @param queueSize The capacity of the per handler queues, {@code 0} to queue
+     *      events per posting thread without limit
+     * @param policy The overflow policy of the per handler queues
+     * @param coalesceKey The event property for coalescing events or {@code null}
+     */
+    public void update(final int queueSize,
+            final QueuedDeliverTasks.OverflowPolicy policy,
+            final String coalesceKey)
+    {
+        final QueuedDeliverTasks old = m_queued;
+        if ( queueSize <= 0 )
+        {
+            m_queued = null;
+        }
+        else if ( old == null || !old.isConfiguredWith(queueSize, policy, coalesceKey) )
+        {
+            m_queued = new QueuedDeliverTasks(m_pool, m_deliver_task, queueSize, policy, coalesceKey);
+        }
+        if ( old != null && old != m_queued )
+        {
+            old.stop();
+        }
+    }
+
+    /**
+     * Stop the delivery, threads blocked on a full handler queue are released.
+     */
+    public void stop()
+    {
+        final QueuedDeliverTasks queued = m_queued;
+        if ( queued != null )
+        {
+            queued.stop();
+        }
+    }
+
+    /**
+     * Get the statistics of the per handler queues.
+     * @return One line per handler, empty if events are not queued per handler
+     */
+    public String[] getQueueStatistics()
+    {
+        final QueuedDeliverTasks queued = m_queued;
+        if ( queued == null )
+        {
+            return new String[0];
+        }
+        return queued.getStatistics();
+    }
+
     /**
      * This does not block an unrelated thread used to send a synchronous event.
      *
@@ -67,6 +124,12 @@ public class AsyncDeliverTasks
      */
     public void execute(final Collection<EventHandlerProxy> tasks, final Event event)
     {
+        final QueuedDeliverTasks queued = m_queued;
+        if ( queued != null )
+        {
+            queued.execute(tasks, event);
+            return;
+        }
         /*
         final Iterator i = tasks.iterator();
         boolean hasOrdered = false;
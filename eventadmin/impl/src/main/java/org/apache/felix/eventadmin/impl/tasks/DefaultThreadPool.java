@@ -40,6 +40,15 @@ public class DefaultThreadPool
 
     private int oldSize = -1;
 
+    private boolean oldVirtualThreads;
+
+    private final boolean syncThreads;
+
+    /** Whether tasks need to be marked, as they don't run on a {@link SyncThread}. */
+    private volatile boolean markTasks;
+
+    private final String threadName;
+
     private final AtomicLong threadCounter = new AtomicLong(1);
 
     /**
@@ -49,6 +58,19 @@ public class DefaultThreadPool
      */
     public DefaultThreadPool(final int poolSize, final boolean syncThreads)
     {
+        this(poolSize, syncThreads, false);
+    }
+
+    /**
+     * Create a new pool.
+     * @param poolSize The size of the pool
+     * @param syncThreads Sync or async pool
+     * @param virtualThreads Run each task on a new virtual thread
+     */
+    public DefaultThreadPool(final int poolSize, final boolean syncThreads, final boolean virtualThreads)
+    {
+        this.syncThreads = syncThreads;
+        threadName = syncThreads ? "EventAdminThread #" : "EventAdminAsyncThread #";
         if ( syncThreads )
         {
             threadFactory = new ThreadFactory()
@@ -83,20 +105,47 @@ public class DefaultThreadPool
                 }
             };
         }
-   	    configure(poolSize);
+   	    configure(poolSize, virtualThreads);
     }
 
     /**
      * Configure a new pool size.
      * @param poolSize The pool size
      */
-    public synchronized void configure(final int poolSize)
+    public void configure(final int poolSize)
+    {
+        configure(poolSize, false);
+    }
+
+    /**
+     * Configure a new pool size and the thread type.
+     * @param poolSize The pool size, not used for virtual threads
+     * @param virtualThreads Run each task on a new virtual thread
+     */
+    public synchronized void configure(final int poolSize, final boolean virtualThreads)
     {
-        if ( oldSize != poolSize)
+        if ( oldSize != poolSize || oldVirtualThreads != virtualThreads )
         {
             oldSize = poolSize;
+            oldVirtualThreads = virtualThreads;
             final ExecutorService oldService = this.executor;
-            this.executor = Executors.newFixedThreadPool(poolSize, threadFactory);
+            ExecutorService service = null;
+            if ( virtualThreads )
+            {
+                service = createVirtualThreadExecutor(threadName);
+                if ( service == null )
+                {
+                    LogWrapper.getLogger().log(
+                            LogWrapper.LOG_WARNING,
+                            "Virtual threads are not supported by this Java runtime - Using a thread pool");
+                }
+            }
+            this.markTasks = service != null && syncThreads;
+            if ( service == null )
+            {
+                service = Executors.newFixedThreadPool(poolSize, threadFactory);
+            }
+            this.executor = service;
             if ( oldService != null )
             {
                 oldService.shutdown();
@@ -104,6 +153,29 @@ public class DefaultThreadPool
         }
     }
 
+    /**
+     * Create an executor running each task on a new virtual thread. The Java 21
+     * API is called reflectively as the event admin runs on older runtimes.
+     * @param name The prefix of the thread names
+     * @return The executor or {@code null} if virtual threads are not available
+     */
+    private static ExecutorService createVirtualThreadExecutor(final String name)
+    {
+        try
+        {
+            final Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            builder = builderClass.getMethod("name", String.class, long.class).invoke(builder, name, 1L);
+            final ThreadFactory factory = (ThreadFactory) builderClass.getMethod("factory").invoke(builder);
+            return (ExecutorService) Executors.class.getMethod("newThreadPerTaskExecutor", ThreadFactory.class)
+                    .invoke(null, factory);
+        }
+        catch (final Exception e)
+        {
+            return null;
+        }
+    }
+
     /**
      * Returns current pool size.
      * @return The pool size
@@ -131,7 +203,7 @@ public class DefaultThreadPool
     {
         try
         {
-            this.executor.submit(task);
+            this.executor.submit(this.markTasks ? SyncThread.mark(task) : task);
         }
         catch ( final RejectedExecutionException ree )
         {
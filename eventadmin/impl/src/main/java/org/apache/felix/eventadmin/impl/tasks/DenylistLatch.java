@@ -103,5 +103,35 @@ public class DenylistLatch {
         }
 	}
 
+	/**
+	 *
+	 * Causes current thread to wait until each handler has called countDown
+	 * or one of the handlers has been denied for exceeding the timeout.
+	 *
+	 * @return {@code true} if each handler has called countDown
+	 */
+	public boolean awaitUnlessDenied()
+	{
+		try
+		{
+			while(!internalSemaphore.tryAcquire(this.count, this.timeout, TimeUnit.MILLISECONDS))
+			{
+				for(final HandlerTask currentTask : handlerTasks)
+				{
+					if ( currentTask.checkForDenylist() )
+					{
+						return false;
+					}
+				}
+			}
+			return true;
+		}
+		catch (final InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+			return false;
+		}
+	}
+
 
 }
@@ -18,6 +18,8 @@
  */
 package org.apache.felix.eventadmin.impl.tasks;
 
+import java.util.List;
+
 import org.apache.felix.eventadmin.impl.handler.EventHandlerProxy;
 import org.osgi.service.event.Event;
 
@@ -31,6 +33,8 @@ public class HandlerTask implements Runnable
 
 	private final Event event;
 
+	private final List<Event> events;
+
 	private final long timeout;
 
 	private final DenylistLatch handlerLatch;
@@ -51,6 +55,26 @@ public class HandlerTask implements Runnable
 	{
 		this.task = task;
 		this.event = event;
+		this.events = null;
+		this.timeout = timeout;
+		this.handlerLatch = handlerLatch;
+		this.startTime = -1l;
+		this.endTime = -1l;
+	}
+
+	/**
+	 *
+	 *
+	 * @param task Proxy to the event handler
+	 * @param events The batch of events to send to the handler
+	 * @param timeout Timeout for handler denying
+	 * @param handlerLatch The latch used to ensure events fire in proper order
+	 */
+	public HandlerTask(final EventHandlerProxy task, final List<Event> events, final long timeout, final DenylistLatch handlerLatch)
+	{
+		this.task = task;
+		this.event = null;
+		this.events = events;
 		this.timeout = timeout;
 		this.handlerLatch = handlerLatch;
 		this.startTime = -1l;
@@ -67,7 +91,7 @@ public class HandlerTask implements Runnable
         {
             startTime = System.currentTimeMillis();
             // execute the task
-            task.sendEvent(event);
+            send();
             endTime = System.currentTimeMillis();
             checkForDenylist();
         }
@@ -79,10 +103,22 @@ public class HandlerTask implements Runnable
 
     public void runWithoutDenylistTiming()
     {
-    	task.sendEvent(event);
+    	send();
     	handlerLatch.countDown();
     }
 
+    private void send()
+    {
+        if ( events != null )
+        {
+            task.sendEvents(events);
+        }
+        else
+        {
+            task.sendEvent(event);
+        }
+    }
+
     /**
      * This method defines if a timeout handling should be used for the
      * task.
@@ -101,13 +137,16 @@ public class HandlerTask implements Runnable
     /**
      * Check to see if we need to deny this handler
      *
+     * @return {@code true} if the handler has been denied
      */
-    public void checkForDenylist()
+    public boolean checkForDenylist()
     {
     	if (useTimeout() && getTaskTime() > this.timeout)
 		{
 			task.denyEventHandler();
+			return true;
 		}
+    	return false;
     }
 
     /**
@@ -0,0 +1,489 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.felix.eventadmin.impl.tasks;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.felix.eventadmin.impl.handler.EventHandlerProxy;
+import org.osgi.service.event.Event;
+
+/**
+ * Asynchronous event delivery through a bounded queue per event handler.
+ *
+ * Each handler has its own queue which is drained by a single task of the
+ * async thread pool at a time, therefore events are delivered to a handler
+ * in the order in which they have been posted. A slow handler only fills
+ * its own queue. If a queue is full, the overflow policy decides whether
+ * the posting thread is blocked, the oldest event is dropped or an event
+ * is coalesced with a queued event having the same topic and the same
+ * value of the coalesce key property.
+ *
+ * Threads delivering events are never blocked by a full queue, as this
+ * could deadlock handlers posting events. With the block policy, their
+ * events are dropped if the queue is full; a queue never exceeds its
+ * capacity.
+ *
+ * Handlers implementing {@link org.apache.felix.eventadmin.BatchingEventHandler}
+ * get up to their batch size of queued events in a single call. For other
+ * handlers the batch size only limits the number of events delivered before
+ * the queues of other handlers get a chance.
+ *
+ * If a timeout is configured, the events are delivered on a thread of the
+ * sync pool. A handler exceeding the timeout is denied and its queued
+ * events are dropped, so a hung handler does not keep a thread of the async
+ * pool.
+ *
+ * @author <a href="mailto:dev@felix.apache.org">Felix Project Team</a>
+ */
+public class QueuedDeliverTasks
+{
+    /** The policy if a queue is full. */
+    public enum OverflowPolicy
+    {
+        /** Block the posting thread until the queue has space. */
+        BLOCK,
+
+        /** Drop the oldest queued event. */
+        DROP_OLDEST,
+
+        /** Replace a queued event with the same key, drop the oldest otherwise. */
+        COALESCE;
+
+        /**
+         * Parse a policy
+         * @param value The configured value, like {@code drop-oldest}
+         * @return The policy or {@code null} if the value is invalid
+         */
+        public static OverflowPolicy parse(final String value)
+        {
+            for(final OverflowPolicy policy : values())
+            {
+                if ( policy.name().replace('_', '-').equalsIgnoreCase(value.trim()) )
+                {
+                    return policy;
+                }
+            }
+            return null;
+        }
+    }
+
+    /** Marker for threads currently delivering queued events. */
+    private static final ThreadLocal<Boolean> DELIVERING = new ThreadLocal<>();
+
+    /** The thread pool draining the queues. */
+    private final DefaultThreadPool m_pool;
+
+    /** The sync deliver tasks providing the timeout configuration. */
+    private final SyncDeliverTasks m_deliver_task;
+
+    /** The capacity of each queue. */
+    private final int m_capacity;
+
+    /** The overflow policy. */
+    private final OverflowPolicy m_policy;
+
+    /** The event property used for coalescing events. */
+    private final String m_coalesceKey;
+
+    /** The queues by handler. */
+    private final ConcurrentHashMap<EventHandlerProxy, HandlerQueue> m_queues = new ConcurrentHashMap<>();
+
+    /** Set when the event admin stops. */
+    private volatile boolean m_stopped;
+
+    /**
+     * Create the queued deliver tasks
+     * @param pool The async thread pool
+     * @param deliverTask The sync deliver tasks
+     * @param capacity The capacity of each handler queue
+     * @param policy The overflow policy
+     * @param coalesceKey The event property for coalescing events or {@code null}
+     */
+    public QueuedDeliverTasks(final DefaultThreadPool pool,
+            final SyncDeliverTasks deliverTask,
+            final int capacity,
+            final OverflowPolicy policy,
+            final String coalesceKey)
+    {
+        m_pool = pool;
+        m_deliver_task = deliverTask;
+        m_capacity = capacity;
+        m_policy = policy;
+        m_coalesceKey = coalesceKey;
+    }
+
+    /**
+     * Is the configuration the same?
+     * @param capacity The capacity of each handler queue
+     * @param policy The overflow policy
+     * @param coalesceKey The event property for coalescing events or {@code null}
+     * @return {@code true} if the configuration is the same
+     */
+    public boolean isConfiguredWith(final int capacity,
+            final OverflowPolicy policy,
+            final String coalesceKey)
+    {
+        return m_capacity == capacity
+                && m_policy == policy
+                && (m_coalesceKey == null ? coalesceKey == null : m_coalesceKey.equals(coalesceKey));
+    }
+
+    /**
+     * Queue the event for each handler.
+     *
+     * @param tasks The event handlers
+     * @param event The event
+     */
+    public void execute(final Collection<EventHandlerProxy> tasks, final Event event)
+    {
+        final long now = System.nanoTime();
+        for(final EventHandlerProxy proxy : tasks)
+        {
+            getQueue(proxy).offer(event, now);
+        }
+    }
+
+    /**
+     * Stop the delivery, threads blocked on a full queue are released.
+     */
+    public void stop()
+    {
+        m_stopped = true;
+        for(final HandlerQueue queue : m_queues.values())
+        {
+            synchronized ( queue )
+            {
+                queue.notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Get the queue statistics of all handlers.
+     * @return One line per handler
+     */
+    public String[] getStatistics()
+    {
+        final List<String> result = new ArrayList<>();
+        for(final HandlerQueue queue : m_queues.values())
+        {
+            result.add(queue.getStatistics());
+        }
+        return result.toArray(new String[result.size()]);
+    }
+
+    private HandlerQueue getQueue(final EventHandlerProxy proxy)
+    {
+        HandlerQueue queue = m_queues.get(proxy);
+        if ( queue == null )
+        {
+            // a new handler, remove the idle queues of disposed handlers
+            final Iterator<HandlerQueue> i = m_queues.values().iterator();
+            while ( i.hasNext() )
+            {
+                final HandlerQueue q = i.next();
+                if ( q.proxy.isDisposed() && q.isIdle() )
+                {
+                    i.remove();
+                }
+            }
+            queue = new HandlerQueue(proxy);
+            final HandlerQueue existing = m_queues.putIfAbsent(proxy, queue);
+            if ( existing != null )
+            {
+                queue = existing;
+            }
+        }
+        return queue;
+    }
+
+    private static final class QueuedEvent
+    {
+        public Event event;
+
+        public final long queued;
+
+        public QueuedEvent(final Event event, final long queued)
+        {
+            this.event = event;
+            this.queued = queued;
+        }
+    }
+
+    private final class HandlerQueue implements Runnable
+    {
+        final EventHandlerProxy proxy;
+
+        private final ArrayDeque<QueuedEvent> events = new ArrayDeque<>();
+
+        /** Is a task draining this queue scheduled or running? */
+        private boolean scheduled;
+
+        private int maxQueued;
+
+        private long delivered;
+
+        private long dropped;
+
+        private long coalesced;
+
+        private long totalLatency;
+
+        private long maxLatency;
+
+        public HandlerQueue(final EventHandlerProxy proxy)
+        {
+            this.proxy = proxy;
+        }
+
+        public synchronized boolean isIdle()
+        {
+            return !this.scheduled && this.events.isEmpty();
+        }
+
+        public void offer(final Event event, final long now)
+        {
+            final boolean schedule;
+            synchronized ( this )
+            {
+                if ( this.events.size() >= m_capacity && !this.handleOverflow(event) )
+                {
+                    return;
+                }
+                this.events.add(new QueuedEvent(event, now));
+                this.maxQueued = Math.max(this.maxQueued, this.events.size());
+                schedule = !this.scheduled;
+                this.scheduled = true;
+            }
+            if ( schedule && !m_pool.executeTask(this) )
+            {
+                // scheduling failed: drop the events instead of delivering
+                // them on the posting thread
+                this.dropAll();
+            }
+        }
+
+        /**
+         * Make space in a full queue
+         * @return {@code false} if the event has been coalesced with a queued
+         *         event or has been dropped
+         */
+        private boolean handleOverflow(final Event event)
+        {
+            switch ( m_policy )
+            {
+                case BLOCK:
+                    // a delivering thread must not wait, it might be the one
+                    // draining this queue or the one it waits for
+                    if ( DELIVERING.get() == null && !SyncThread.isSyncThread() )
+                    {
+                        boolean interrupted = false;
+                        while ( this.events.size() >= m_capacity && !m_stopped )
+                        {
+                            try
+                            {
+                                this.wait();
+                            }
+                            catch (final InterruptedException e)
+                            {
+                                interrupted = true;
+                                break;
+                            }
+                        }
+                        if ( interrupted )
+                        {
+                            Thread.currentThread().interrupt();
+                        }
+                    }
+                    if ( this.events.size() >= m_capacity )
+                    {
+                        this.dropped++;
+                        return false;
+                    }
+                    return true;
+
+                case COALESCE:
+                    if ( m_coalesceKey != null )
+                    {
+                        final Object key = event.getProperty(m_coalesceKey);
+                        if ( key != null )
+                        {
+                            final Iterator<QueuedEvent> i = this.events.descendingIterator();
+                            while ( i.hasNext() )
+                            {
+                                final QueuedEvent queued = i.next();
+                                if ( queued.event.getTopic().equals(event.getTopic())
+                                     && key.equals(queued.event.getProperty(m_coalesceKey)) )
+                                {
+                                    queued.event = event;
+                                    this.coalesced++;
+                                    return false;
+                                }
+                            }
+                        }
+                    }
+                    // fall through and drop the oldest event
+                default:
+                    this.events.poll();
+                    this.dropped++;
+                    return true;
+            }
+        }
+
+        private synchronized void dropAll()
+        {
+            this.dropped += this.events.size();
+            this.events.clear();
+            this.scheduled = false;
+            this.notifyAll();
+        }
+
+        private synchronized QueuedEvent poll()
+        {
+            final QueuedEvent event = this.events.poll();
+            if ( event != null && m_policy == OverflowPolicy.BLOCK )
+            {
+                this.notifyAll();
+            }
+            return event;
+        }
+
+        @Override
+        public void run()
+        {
+            final boolean delivering = DELIVERING.get() != null;
+            DELIVERING.set(Boolean.TRUE);
+            try
+            {
+                boolean running = true;
+                while ( running )
+                {
+                    // a batching handler gets the events in one call,
+                    // any other handler one by one
+                    final int batchSize = Math.max(1, this.proxy.getBatchSize());
+                    final boolean batching = batchSize > 1 && this.proxy.isBatching();
+                    final List<QueuedEvent> batch = new ArrayList<>(batching ? batchSize : 1);
+                    for(int i = 0; i < batchSize; i++)
+                    {
+                        final QueuedEvent event = this.poll();
+                        if ( event == null )
+                        {
+                            break;
+                        }
+                        batch.add(event);
+                        if ( !batching )
+                        {
+                            this.deliver(batch);
+                            batch.clear();
+                        }
+                    }
+                    if ( !batch.isEmpty() )
+                    {
+                        this.deliver(batch);
+                    }
+                    synchronized ( this )
+                    {
+                        if ( this.events.isEmpty() )
+                        {
+                            this.scheduled = false;
+                            running = false;
+                        }
+                    }
+                    // give the other queues a chance before the next batch
+                    if ( running && m_pool.executeTask(this) )
+                    {
+                        running = false;
+                    }
+                }
+            }
+            finally
+            {
+                if ( !delivering )
+                {
+                    DELIVERING.remove();
+                }
+            }
+        }
+
+        private void deliver(final List<QueuedEvent> batch)
+        {
+            final List<Event> events = new ArrayList<>(batch.size());
+            for(final QueuedEvent queued : batch)
+            {
+                events.add(queued.event);
+            }
+            // whether the handler uses the timeout is only known after it
+            // has been obtained, the latch checks this before denying it
+            if ( m_deliver_task.getTimeout() > 0 )
+            {
+                if ( !m_deliver_task.executeWithTimeout(this.proxy, events) )
+                {
+                    synchronized ( this )
+                    {
+                        this.dropped += batch.size();
+                        if ( this.proxy.isDenied() )
+                        {
+                            // the handler does not get any events anymore
+                            this.dropped += this.events.size();
+                            this.events.clear();
+                            this.notifyAll();
+                        }
+                    }
+                    return;
+                }
+            }
+            else
+            {
+                this.proxy.sendEvents(events);
+            }
+
+            final long now = System.nanoTime();
+            synchronized ( this )
+            {
+                for(final QueuedEvent queued : batch)
+                {
+                    final long latency = now - queued.queued;
+                    this.delivered++;
+                    this.totalLatency += latency;
+                    this.maxLatency = Math.max(this.maxLatency, latency);
+                }
+            }
+        }
+
+        public synchronized String getStatistics()
+        {
+            final long avgLatency = this.delivered == 0 ? 0 : this.totalLatency / this.delivered;
+            return String.format("%s: queued=%d, maxQueued=%d, delivered=%d, dropped=%d, coalesced=%d, avgLatencyMicros=%d, maxLatencyMicros=%d",
+                    this.proxy.getInfo(),
+                    this.events.size(),
+                    this.maxQueued,
+                    this.delivered,
+                    this.dropped,
+                    this.coalesced,
+                    TimeUnit.NANOSECONDS.toMicros(avgLatency),
+                    TimeUnit.NANOSECONDS.toMicros(this.maxLatency));
+        }
+    }
+}
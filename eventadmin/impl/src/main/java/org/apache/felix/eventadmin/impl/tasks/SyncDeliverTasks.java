@@ -20,6 +20,7 @@ package org.apache.felix.eventadmin.impl.tasks;
 
 import java.util.Collection;
 import java.util.Iterator;
+import java.util.List;
 
 import org.apache.felix.eventadmin.impl.handler.EventHandlerProxy;
 import org.osgi.service.event.Event;
@@ -57,7 +58,7 @@ public class SyncDeliverTasks
     /** The thread pool used to spin-off new threads. */
     private final DefaultThreadPool pool;
 
-    private long timeout;
+    private volatile long timeout;
 
     /**
      * Construct a new sync deliver tasks.
@@ -79,6 +80,15 @@ public class SyncDeliverTasks
         this.timeout = timeout;
     }
 
+    /**
+     * Get the timeout configuration
+     * @return The timeout, {@code 0} if timeouts are disabled
+     */
+    long getTimeout()
+    {
+        return this.timeout;
+    }
+
     /**
      * This blocks an unrelated thread used to send a synchronous event until the
      * event is send (or a timeout occurs).
@@ -90,8 +100,7 @@ public class SyncDeliverTasks
      */
     public void execute(final Collection<EventHandlerProxy> tasks, final Event event, final boolean filterAsyncUnordered)
     {
-        final Thread sleepingThread = Thread.currentThread();
-        final SyncThread syncThread = sleepingThread instanceof SyncThread ? (SyncThread)sleepingThread : null;
+        final boolean syncThread = SyncThread.isSyncThread();
 
         final Iterator<EventHandlerProxy> i = tasks.iterator();
         final DenylistLatch handlerLatch = new DenylistLatch(tasks.size(), this.timeout/2);
@@ -106,7 +115,7 @@ public class SyncDeliverTasks
                 {
                 	handlerTask.runWithoutDenylistTiming();
                 }
-            	else if ( syncThread != null  )
+            	else if ( syncThread )
                 {
                     // if this is a cascaded event, we directly use this thread
                     // otherwise we could end up in a starvation
@@ -128,4 +137,25 @@ public class SyncDeliverTasks
         handlerLatch.awaitAndDenylistCheck();
 
     }
+
+    /**
+     * Deliver a batch of events to a single handler on a thread of the pool.
+     * The calling thread waits until the handler returns or is denied for
+     * exceeding the timeout.
+     *
+     * @param task The event handler
+     * @param events The events
+     * @return {@code true} if the handler returned in time
+     */
+    boolean executeWithTimeout(final EventHandlerProxy task, final List<Event> events)
+    {
+        final DenylistLatch handlerLatch = new DenylistLatch(1, this.timeout/2);
+        final HandlerTask handlerTask = new HandlerTask(task, events, this.timeout, handlerLatch);
+        handlerLatch.addToDenylistCheck(handlerTask);
+        if ( !this.pool.executeTask(handlerTask) )
+        {
+            return false;
+        }
+        return handlerLatch.awaitUnlessDenied();
+    }
 }
@@ -21,12 +21,16 @@ package org.apache.felix.eventadmin.impl.tasks;
 /**
  * This thread class is used for sending the events
  * synchronously.
- * It acts like a marker.
+ * It acts like a marker. Virtual threads can't be subclassed, so
+ * tasks of the sync pool running on virtual threads are marked
+ * with a thread local instead, see {@link #isSyncThread()}.
  *
  * @author <a href="mailto:dev@felix.apache.org">Felix Project Team</a>
  */
 public class SyncThread extends Thread
 {
+    /** Marks a virtual thread running a task of the sync pool. */
+    private static final ThreadLocal<Boolean> MARKER = new ThreadLocal<>();
 
     /**
      * Constructor used by the thread pool.
@@ -36,4 +40,40 @@ public class SyncThread extends Thread
     {
         super(target);
     }
+
+    /**
+     * Check whether the current thread is used for sending events synchronously.
+     * @return {@code true} for a thread of the sync pool
+     */
+    public static boolean isSyncThread()
+    {
+        return Thread.currentThread() instanceof SyncThread || MARKER.get() != null;
+    }
+
+    /**
+     * Wrap a task of the sync pool, so the thread running it is marked
+     * as a sync thread while the task runs.
+     * @param task The task
+     * @return The wrapped task
+     */
+    static Runnable mark(final Runnable task)
+    {
+        return new Runnable()
+        {
+
+            @Override
+            public void run()
+            {
+                MARKER.set(Boolean.TRUE);
+                try
+                {
+                    task.run();
+                }
+                finally
+                {
+                    MARKER.remove();
+                }
+            }
+        };
+    }
 }
@@ -0,0 +1,175 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.felix.eventadmin.impl.handler;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.osgi.framework.Bundle;
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.FrameworkUtil;
+import org.osgi.framework.ServiceReference;
+import org.osgi.service.event.Event;
+import org.osgi.service.event.EventConstants;
+import org.osgi.service.event.EventHandler;
+
+public class EventHandlerTrackerTest {
+
+    private EventHandlerTracker tracker;
+
+    @Before public void setUp()
+    {
+        this.tracker = new EventHandlerTracker(createContext());
+        this.tracker.update(null, false);
+    }
+
+    @Test public void testTopicMatching()
+    {
+        final EventHandlerProxy all = this.add(null, null);
+        final EventHandlerProxy exact = this.add("a/b/c", null);
+        final EventHandlerProxy prefix = this.add("a/b/*", null);
+        final EventHandlerProxy top = this.add("a/*", null);
+        final EventHandlerProxy other = this.add("a/x", null);
+
+        assertEquals(set(all, exact, prefix, top), this.getHandlers("a/b/c"));
+        assertEquals(set(all, prefix, top), this.getHandlers("a/b/c/d"));
+        assertEquals(set(all, top), this.getHandlers("a/b"));
+        assertEquals(set(all, top, other), this.getHandlers("a/x"));
+        assertEquals(set(all), this.getHandlers("a"));
+        assertEquals(set(all), this.getHandlers("b/b/c"));
+
+        this.tracker.removedService(null, prefix);
+        this.tracker.removedService(null, all);
+        assertEquals(set(exact, top), this.getHandlers("a/b/c"));
+        assertTrue(this.tracker.getHandlers(new Event("b", (Map<String, ?>) null)).isEmpty());
+    }
+
+    @Test public void testHandlerWithSeveralMatchingTopicsIsReturnedOnce()
+    {
+        final EventHandlerProxy proxy = this.add(new String[] {"a/*", "a/b/*", "a/b/c"}, null);
+
+        final Collection<EventHandlerProxy> handlers = this.tracker.getHandlers(new Event("a/b/c", (Map<String, ?>) null));
+        assertEquals(Collections.singletonList(proxy), handlers);
+    }
+
+    @Test public void testFilters()
+    {
+        final EventHandlerProxy red1 = this.add("a/*", "(color=red)");
+        final EventHandlerProxy red2 = this.add("a/b", "(color=red)");
+        final EventHandlerProxy blue = this.add("a/b", "(color=blue)");
+
+        assertEquals(set(red1, red2), this.getHandlers("a/b", "color", "red"));
+        assertEquals(set(blue), this.getHandlers("a/b", "color", "blue"));
+        assertEquals(set(), this.getHandlers("a/b", "color", "green"));
+    }
+
+    private Collection<EventHandlerProxy> getHandlers(final String topic, final Object... props)
+    {
+        final Map<String, Object> map = new HashMap<>();
+        for(int i = 0; i < props.length; i += 2)
+        {
+            map.put((String) props[i], props[i + 1]);
+        }
+        return new HashSet<>(this.tracker.getHandlers(new Event(topic, map)));
+    }
+
+    private EventHandlerProxy add(final Object topics, final String filter)
+    {
+        final Map<String, Object> props = new HashMap<>();
+        if ( topics != null )
+        {
+            props.put(EventConstants.EVENT_TOPIC, topics);
+        }
+        if ( filter != null )
+        {
+            props.put(EventConstants.EVENT_FILTER, filter);
+        }
+        final ServiceReference<EventHandler> reference = createReference(props);
+        return this.tracker.addingService(reference);
+    }
+
+    private static Collection<EventHandlerProxy> set(final EventHandlerProxy... proxies)
+    {
+        return new HashSet<>(Arrays.asList(proxies));
+    }
+
+    @SuppressWarnings("unchecked")
+    private static ServiceReference<EventHandler> createReference(final Map<String, Object> props)
+    {
+        final Bundle bundle = (Bundle) Proxy.newProxyInstance(Bundle.class.getClassLoader(),
+            new Class<?>[] {Bundle.class}, new InvocationHandler() {
+
+                @Override
+                public Object invoke(final Object proxy, final Method method, final Object[] args)
+                {
+                    if ( method.getName().equals("hasPermission") )
+                    {
+                        return true;
+                    }
+                    return null;
+                }
+            });
+        return (ServiceReference<EventHandler>) Proxy.newProxyInstance(ServiceReference.class.getClassLoader(),
+            new Class<?>[] {ServiceReference.class}, new InvocationHandler() {
+
+                @Override
+                public Object invoke(final Object proxy, final Method method, final Object[] args)
+                {
+                    if ( method.getName().equals("getProperty") )
+                    {
+                        return props.get(args[0]);
+                    }
+                    if ( method.getName().equals("getBundle") )
+                    {
+                        return bundle;
+                    }
+                    return null;
+                }
+            });
+    }
+
+    private static BundleContext createContext()
+    {
+        return (BundleContext) Proxy.newProxyInstance(BundleContext.class.getClassLoader(),
+            new Class<?>[] {BundleContext.class}, new InvocationHandler() {
+
+                @Override
+                public Object invoke(final Object proxy, final Method method, final Object[] args) throws Throwable
+                {
+                    if ( method.getName().equals("createFilter") )
+                    {
+                        return FrameworkUtil.createFilter((String) args[0]);
+                    }
+                    return null;
+                }
+            });
+    }
+}
@@ -0,0 +1,530 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.felix.eventadmin.impl.tasks;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.felix.eventadmin.BatchingEventHandler;
+import org.apache.felix.eventadmin.impl.handler.EventHandlerProxy;
+import org.apache.felix.eventadmin.impl.handler.EventHandlerTracker;
+import org.junit.After;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+import org.osgi.framework.Bundle;
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.FrameworkUtil;
+import org.osgi.framework.ServiceReference;
+import org.osgi.service.event.Event;
+import org.osgi.service.event.EventConstants;
+import org.osgi.service.event.EventHandler;
+
+public class QueuedDeliverTasksTest {
+
+    private static final String HANDLER = "test.handler";
+
+    private DefaultThreadPool pool;
+
+    private EventHandlerTracker tracker;
+
+    private final CountDownLatch blocking = new CountDownLatch(1);
+
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    private final List<String> received = Collections.synchronizedList(new ArrayList<String>());
+
+    private volatile Runnable fanout;
+
+    @Before public void setUp()
+    {
+        this.pool = new DefaultThreadPool(2, false);
+        this.tracker = new EventHandlerTracker(createContext());
+        this.tracker.update(null, false);
+    }
+
+    @After public void tearDown()
+    {
+        this.pool.close();
+    }
+
+    @Test public void testDropOldest() throws Exception
+    {
+        final QueuedDeliverTasks tasks = this.createTasks(QueuedDeliverTasks.OverflowPolicy.DROP_OLDEST, null);
+        final EventHandlerProxy proxy = this.addHandler(1);
+
+        this.postBlocker(tasks, proxy);
+        for(int i = 0; i < 5; i++)
+        {
+            post(tasks, proxy, "a/" + i, null);
+        }
+        this.release.countDown();
+
+        this.awaitReceived(4);
+        assertEquals(list("a/blocker", "a/2", "a/3", "a/4"), this.received);
+        assertTrue(tasks.getStatistics()[0].contains("dropped=2"));
+    }
+
+    @Test public void testCoalesce() throws Exception
+    {
+        final QueuedDeliverTasks tasks = this.createTasks(QueuedDeliverTasks.OverflowPolicy.COALESCE, "id");
+        final EventHandlerProxy proxy = this.addHandler(3);
+
+        this.postBlocker(tasks, proxy);
+        post(tasks, proxy, "a/x", "1");
+        post(tasks, proxy, "a/x", "2");
+        post(tasks, proxy, "a/y", "3");
+        post(tasks, proxy, "a/x", "1");
+        post(tasks, proxy, "a/x", "2");
+        this.release.countDown();
+
+        this.awaitReceived(4);
+        assertEquals(list("a/blocker", "a/x", "a/x", "a/y"), this.received);
+        assertTrue(tasks.getStatistics()[0].contains("coalesced=2"));
+        assertTrue(tasks.getStatistics()[0].contains("delivered=4"));
+    }
+
+    @Test public void testBatchingHandler() throws Exception
+    {
+        final QueuedDeliverTasks tasks = this.createTasks(QueuedDeliverTasks.OverflowPolicy.BLOCK, null);
+        final List<List<String>> batches = Collections.synchronizedList(new ArrayList<List<String>>());
+        final EventHandlerProxy proxy = this.addHandler(3, new BatchingEventHandler()
+        {
+            @Override
+            public void handleEvent(final Event event)
+            {
+                batches.add(list(event.getTopic()));
+            }
+
+            @Override
+            public void handleEvents(final List<Event> events)
+            {
+                final List<String> topics = new ArrayList<>();
+                for(final Event event : events)
+                {
+                    topics.add(event.getTopic());
+                }
+                batches.add(topics);
+                if ( topics.contains("a/blocker") )
+                {
+                    blocking.countDown();
+                    try
+                    {
+                        release.await(5, TimeUnit.SECONDS);
+                    }
+                    catch (final InterruptedException e)
+                    {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+                received.addAll(topics);
+            }
+        });
+
+        this.postBlocker(tasks, proxy);
+        for(int i = 0; i < 3; i++)
+        {
+            post(tasks, proxy, "a/" + i, null);
+        }
+        this.release.countDown();
+
+        this.awaitReceived(4);
+        assertEquals(2, batches.size());
+        assertEquals(list("a/blocker"), batches.get(0));
+        assertEquals(list("a/0", "a/1", "a/2"), batches.get(1));
+        assertTrue(tasks.getStatistics()[0].contains("delivered=4"));
+    }
+
+    @Test public void testBlock() throws Exception
+    {
+        final QueuedDeliverTasks tasks = this.createTasks(QueuedDeliverTasks.OverflowPolicy.BLOCK, null);
+        final EventHandlerProxy proxy = this.addHandler(1);
+
+        this.postBlocker(tasks, proxy);
+        for(int i = 0; i < 3; i++)
+        {
+            post(tasks, proxy, "a/" + i, null);
+        }
+        final Thread poster = new Thread()
+        {
+            @Override
+            public void run()
+            {
+                post(tasks, proxy, "a/3", null);
+            }
+        };
+        poster.start();
+        poster.join(200);
+        assertTrue(poster.isAlive());
+
+        this.release.countDown();
+        poster.join(5000);
+        this.awaitReceived(5);
+        assertEquals(list("a/blocker", "a/0", "a/1", "a/2", "a/3"), this.received);
+    }
+
+    @Test public void testBlockDropsEventAfterStop() throws Exception
+    {
+        final QueuedDeliverTasks tasks = this.createTasks(QueuedDeliverTasks.OverflowPolicy.BLOCK, null);
+        final EventHandlerProxy proxy = this.addHandler(1);
+
+        this.postBlocker(tasks, proxy);
+        for(int i = 0; i < 3; i++)
+        {
+            post(tasks, proxy, "a/" + i, null);
+        }
+        final Thread poster = new Thread()
+        {
+            @Override
+            public void run()
+            {
+                post(tasks, proxy, "a/3", null);
+            }
+        };
+        poster.start();
+        poster.join(200);
+        assertTrue(poster.isAlive());
+
+        tasks.stop();
+        poster.join(5000);
+        assertFalse(poster.isAlive());
+        assertTrue(tasks.getStatistics()[0].contains("queued=3"));
+        assertTrue(tasks.getStatistics()[0].contains("dropped=1"));
+
+        this.release.countDown();
+        this.awaitReceived(4);
+        assertEquals(list("a/blocker", "a/0", "a/1", "a/2"), this.received);
+    }
+
+    @Test public void testBlockDropsEventsPostedByHandler() throws Exception
+    {
+        final QueuedDeliverTasks tasks = this.createTasks(QueuedDeliverTasks.OverflowPolicy.BLOCK, null);
+        final EventHandlerProxy proxy = this.addHandler(1);
+        this.fanout = new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                for(int i = 0; i < 5; i++)
+                {
+                    post(tasks, proxy, "a/" + i, null);
+                }
+            }
+        };
+
+        post(tasks, proxy, "a/fanout", null);
+
+        this.awaitReceived(4);
+        assertEquals(list("a/fanout", "a/0", "a/1", "a/2"), this.received);
+        assertTrue(tasks.getStatistics()[0].contains("maxQueued=3"));
+        assertTrue(tasks.getStatistics()[0].contains("dropped=2"));
+    }
+
+    @Test public void testTimeoutDeniesHungHandler() throws Exception
+    {
+        final DefaultThreadPool syncPool = new DefaultThreadPool(2, true);
+        try
+        {
+            final QueuedDeliverTasks tasks = new QueuedDeliverTasks(this.pool, new SyncDeliverTasks(syncPool, 100),
+                3, QueuedDeliverTasks.OverflowPolicy.BLOCK, null);
+            final EventHandlerProxy proxy = this.addHandler(1);
+
+            this.postBlocker(tasks, proxy);
+            post(tasks, proxy, "a/0", null);
+            post(tasks, proxy, "a/1", null);
+
+            // the queue is drained while the handler still hangs
+            final long end = System.currentTimeMillis() + 5000;
+            while ( !tasks.getStatistics()[0].contains("dropped=3") && System.currentTimeMillis() < end )
+            {
+                Thread.sleep(10);
+            }
+            assertTrue(tasks.getStatistics()[0].contains("queued=0"));
+            assertTrue(tasks.getStatistics()[0].contains("dropped=3"));
+            assertTrue(proxy.isDenied());
+        }
+        finally
+        {
+            this.release.countDown();
+            syncPool.close();
+        }
+    }
+
+    @Test public void testVirtualSyncThreadDeliversCascadedEventInline() throws Exception
+    {
+        assumeVirtualThreads();
+        final DefaultThreadPool syncPool = new DefaultThreadPool(2, true, true);
+        try
+        {
+            final SyncDeliverTasks syncTasks = new SyncDeliverTasks(syncPool, 5000);
+            final List<Thread> threads = Collections.synchronizedList(new ArrayList<Thread>());
+            final EventHandlerProxy inner = this.addHandler(1, new EventHandler()
+            {
+                @Override
+                public void handleEvent(final Event event)
+                {
+                    if ( event.getTopic().equals("a/inner") )
+                    {
+                        threads.add(Thread.currentThread());
+                    }
+                }
+            });
+            final EventHandlerProxy outer = this.addHandler(1, new EventHandler()
+            {
+                @Override
+                public void handleEvent(final Event event)
+                {
+                    if ( event.getTopic().equals("a/outer") )
+                    {
+                        threads.add(Thread.currentThread());
+                        syncTasks.execute(Collections.singletonList(inner), new Event("a/inner", new HashMap<String, Object>()), false);
+                    }
+                }
+            });
+            warmUp(syncTasks, inner, outer);
+
+            syncTasks.execute(Collections.singletonList(outer), new Event("a/outer", new HashMap<String, Object>()), false);
+
+            // the cascaded event is delivered by the thread sending the outer event
+            assertEquals(2, threads.size());
+            assertNotSame(Thread.currentThread(), threads.get(0));
+            assertSame(threads.get(0), threads.get(1));
+        }
+        finally
+        {
+            syncPool.close();
+        }
+    }
+
+    @Test public void testVirtualSyncThreadDoesNotBlockOnFullQueue() throws Exception
+    {
+        assumeVirtualThreads();
+        final DefaultThreadPool syncPool = new DefaultThreadPool(2, true, true);
+        try
+        {
+            final QueuedDeliverTasks tasks = this.createTasks(QueuedDeliverTasks.OverflowPolicy.BLOCK, null);
+            final EventHandlerProxy proxy = this.addHandler(1);
+            this.postBlocker(tasks, proxy);
+            for(int i = 0; i < 3; i++)
+            {
+                post(tasks, proxy, "a/" + i, null);
+            }
+            final EventHandlerProxy poster = this.addHandler(1, new EventHandler()
+            {
+                @Override
+                public void handleEvent(final Event event)
+                {
+                    if ( event.getTopic().equals("b/post") )
+                    {
+                        post(tasks, proxy, "a/3", null);
+                    }
+                }
+            });
+            final SyncDeliverTasks syncTasks = new SyncDeliverTasks(syncPool, 5000);
+            warmUp(syncTasks, poster);
+
+            // the sync handler does not wait for space in the full queue
+            syncTasks.execute(Collections.singletonList(poster),
+                new Event("b/post", new HashMap<String, Object>()), false);
+            assertFalse(poster.isDenied());
+            assertTrue(tasks.getStatistics()[0].contains("dropped=1"));
+
+            this.release.countDown();
+            this.awaitReceived(4);
+            assertEquals(list("a/blocker", "a/0", "a/1", "a/2"), this.received);
+        }
+        finally
+        {
+            this.release.countDown();
+            syncPool.close();
+        }
+    }
+
+    private QueuedDeliverTasks createTasks(final QueuedDeliverTasks.OverflowPolicy policy, final String key)
+    {
+        return new QueuedDeliverTasks(this.pool, new SyncDeliverTasks(this.pool, 0), 3, policy, key);
+    }
+
+    private void postBlocker(final QueuedDeliverTasks tasks, final EventHandlerProxy proxy) throws InterruptedException
+    {
+        post(tasks, proxy, "a/blocker", null);
+        assertTrue(this.blocking.await(5, TimeUnit.SECONDS));
+    }
+
+    private static void post(final QueuedDeliverTasks tasks, final EventHandlerProxy proxy, final String topic, final String id)
+    {
+        final Map<String, Object> props = new HashMap<>();
+        if ( id != null )
+        {
+            props.put("id", id);
+        }
+        tasks.execute(Collections.singletonList(proxy), new Event(topic, props));
+    }
+
+    private void awaitReceived(final int count) throws InterruptedException
+    {
+        final long end = System.currentTimeMillis() + 5000;
+        while ( this.received.size() < count && System.currentTimeMillis() < end )
+        {
+            Thread.sleep(10);
+        }
+        Thread.sleep(50);
+    }
+
+    private static List<String> list(final String... values)
+    {
+        final List<String> result = new ArrayList<>();
+        Collections.addAll(result, values);
+        return result;
+    }
+
+    /**
+     * The timeout only applies once the handler has been obtained, until
+     * then events are delivered on the sending thread.
+     */
+    private static void warmUp(final SyncDeliverTasks syncTasks, final EventHandlerProxy... proxies)
+    {
+        syncTasks.execute(Arrays.asList(proxies), new Event("b/warmup", new HashMap<String, Object>()), false);
+    }
+
+    private static void assumeVirtualThreads()
+    {
+        try
+        {
+            Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+        }
+        catch (final NoSuchMethodException e)
+        {
+            Assume.assumeTrue("virtual threads require Java 21", false);
+        }
+    }
+
+    private EventHandlerProxy addHandler(final int batchSize)
+    {
+        return this.addHandler(batchSize, new EventHandler()
+        {
+            @Override
+            public void handleEvent(final Event event)
+            {
+                if ( event.getTopic().equals("a/blocker") )
+                {
+                    blocking.countDown();
+                    try
+                    {
+                        release.await(5, TimeUnit.SECONDS);
+                    }
+                    catch (final InterruptedException e)
+                    {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+                received.add(event.getTopic());
+                if ( event.getTopic().equals("a/fanout") )
+                {
+                    fanout.run();
+                }
+            }
+        });
+    }
+
+    private EventHandlerProxy addHandler(final int batchSize, final EventHandler handler)
+    {
+        final Map<String, Object> props = new HashMap<>();
+        props.put(EventConstants.EVENT_TOPIC, "a/*");
+        props.put(EventHandlerProxy.PROP_BATCH_SIZE, batchSize);
+        props.put(HANDLER, handler);
+        return this.tracker.addingService(createReference(props));
+    }
+
+    @SuppressWarnings("unchecked")
+    private static ServiceReference<EventHandler> createReference(final Map<String, Object> props)
+    {
+        final Bundle bundle = (Bundle) Proxy.newProxyInstance(Bundle.class.getClassLoader(),
+            new Class<?>[] {Bundle.class}, new InvocationHandler() {
+
+                @Override
+                public Object invoke(final Object proxy, final Method method, final Object[] args)
+                {
+                    if ( method.getName().equals("hasPermission") )
+                    {
+                        return true;
+                    }
+                    return null;
+                }
+            });
+        return (ServiceReference<EventHandler>) Proxy.newProxyInstance(ServiceReference.class.getClassLoader(),
+            new Class<?>[] {ServiceReference.class}, new InvocationHandler() {
+
+                @Override
+                public Object invoke(final Object proxy, final Method method, final Object[] args)
+                {
+                    if ( method.getName().equals("getProperty") )
+                    {
+                        return props.get(args[0]);
+                    }
+                    if ( method.getName().equals("getBundle") )
+                    {
+                        return bundle;
+                    }
+                    return null;
+                }
+            });
+    }
+
+    private static BundleContext createContext()
+    {
+        return (BundleContext) Proxy.newProxyInstance(BundleContext.class.getClassLoader(),
+            new Class<?>[] {BundleContext.class}, new InvocationHandler() {
+
+                @Override
+                public Object invoke(final Object proxy, final Method method, final Object[] args) throws Throwable
+                {
+                    if ( method.getName().equals("createFilter") )
+                    {
+                        return FrameworkUtil.createFilter((String) args[0]);
+                    }
+                    if ( method.getName().equals("getService") )
+                    {
+                        return ((ServiceReference<?>) args[0]).getProperty(HANDLER);
+                    }
+                    if ( method.getName().equals("ungetService") )
+                    {
+                        return true;
+                    }
+                    return null;
+                }
+            });
+    }
+}
@@ -0,0 +1,156 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.felix.framework.benchmark;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.Hashtable;
+import java.util.Map;
+import java.util.Random;
+import java.util.jar.Attributes;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+import java.util.jar.Manifest;
+
+import org.apache.felix.framework.Felix;
+import org.osgi.framework.Constants;
+
+/**
+ * Creates the synthetic data the benchmarks run against. All data is derived
+ * from a fixed seed so results of different runs can be compared.
+ */
+final class BenchmarkData
+{
+    static final long SEED = 0x5EEDL;
+
+    static final String SERVICE_PREFIX = "org.apache.felix.bench.Service";
+
+    private BenchmarkData()
+    {
+    }
+
+    static Random random()
+    {
+        return new Random(SEED);
+    }
+
+    static String serviceName(int i)
+    {
+        return SERVICE_PREFIX + i;
+    }
+
+    static String packageName(int i)
+    {
+        return "org.apache.felix.bench.pkg" + i;
+    }
+
+    /**
+     * Returns the properties of the i-th synthetic service, which is spread
+     * over a number of service interfaces, tenants and rankings.
+     */
+    static Hashtable<String, Object> serviceProperties(Random random, int i, int interfaces)
+    {
+        Hashtable<String, Object> props = new Hashtable<>();
+        props.put(Constants.OBJECTCLASS, new String[] { serviceName(i % interfaces) });
+        props.put("name", "comp" + i);
+        props.put("tenant", "t" + (i % 8));
+        props.put(Constants.SERVICE_RANKING, random.nextInt(100));
+        return props;
+    }
+
+    static Felix createFramework(File storage)
+    {
+        Map<String, String> config = new HashMap<>();
+        config.put(Constants.FRAMEWORK_STORAGE, storage.getAbsolutePath());
+        config.put(Constants.FRAMEWORK_STORAGE_CLEAN, Constants.FRAMEWORK_STORAGE_CLEAN_ONFIRSTINIT);
+        return new Felix(config);
+    }
+
+    static File createTempDir() throws IOException
+    {
+        return Files.createTempDirectory("felix-bench").toFile();
+    }
+
+    /**
+     * Writes a bundle with the given headers which contains the given classes
+     * of this module.
+     */
+    static File createBundle(File dir, String name, Map<String, String> headers, Class<?>... classes)
+        throws IOException
+    {
+        Manifest mf = new Manifest();
+        Attributes attrs = mf.getMainAttributes();
+        attrs.putValue("Manifest-Version", "1.0");
+        attrs.putValue(Constants.BUNDLE_MANIFESTVERSION, "2");
+        attrs.putValue(Constants.BUNDLE_SYMBOLICNAME, name);
+        for (Map.Entry<String, String> entry : headers.entrySet())
+        {
+            attrs.putValue(entry.getKey(), entry.getValue());
+        }
+
+        File file = new File(dir, name + ".jar");
+        try (JarOutputStream out = new JarOutputStream(new FileOutputStream(file), mf))
+        {
+            for (Class<?> clazz : classes)
+            {
+                String path = clazz.getName().replace('.', '/') + ".class";
+                out.putNextEntry(new JarEntry(path));
+                out.write(readResource(path));
+                out.closeEntry();
+            }
+        }
+        return file;
+    }
+
+    static void delete(File file)
+    {
+        File[] children = file.listFiles();
+        if (children != null)
+        {
+            for (File child : children)
+            {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+
+    private static byte[] readResource(String path) throws IOException
+    {
+        try (InputStream in = BenchmarkData.class.getClassLoader().getResourceAsStream(path))
+        {
+            if (in == null)
+            {
+                throw new IOException("Resource not found: " + path);
+            }
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[4096];
+            for (int len = in.read(buffer); len > 0; len = in.read(buffer))
+            {
+                out.write(buffer, 0, len);
+            }
+            return out.toByteArray();
+        }
+    }
+}
@@ -0,0 +1,127 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.felix.framework.benchmark;
+
+import java.io.File;
+import java.net.URL;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.felix.framework.Felix;
+import org.apache.felix.framework.benchmark.payload.Payload;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.osgi.framework.Bundle;
+import org.osgi.framework.Constants;
+
+/**
+ * Class and resource loading through a bundle wiring, covering local
+ * classes, classes imported from another bundle and from the system bundle,
+ * boot delegation and lookups that miss.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BundleClassLoadingBenchmark
+{
+    private static final String PAYLOAD = Payload.class.getName();
+    private static final String PAYLOAD_PACKAGE = Payload.class.getPackage().getName();
+
+    private File m_dir;
+    private Felix m_felix;
+    private Bundle m_exporter;
+    private Bundle m_importer;
+
+    @Setup
+    public void setUp() throws Exception
+    {
+        m_dir = BenchmarkData.createTempDir();
+        m_felix = BenchmarkData.createFramework(new File(m_dir, "cache"));
+        m_felix.start();
+
+        File exporter = BenchmarkData.createBundle(m_dir, "exporter",
+            Collections.singletonMap(Constants.EXPORT_PACKAGE, PAYLOAD_PACKAGE), Payload.class);
+        File importer = BenchmarkData.createBundle(m_dir, "importer",
+            Collections.singletonMap(Constants.IMPORT_PACKAGE,
+                PAYLOAD_PACKAGE + ",org.osgi.framework"));
+        m_exporter = m_felix.getBundleContext().installBundle(exporter.toURI().toString());
+        m_importer = m_felix.getBundleContext().installBundle(importer.toURI().toString());
+        m_exporter.start();
+        m_importer.start();
+
+        // Make sure the classes are defined before measuring.
+        m_importer.loadClass(PAYLOAD);
+    }
+
+    @TearDown
+    public void tearDown() throws Exception
+    {
+        m_felix.stop();
+        m_felix.waitForStop(10000);
+        BenchmarkData.delete(m_dir);
+    }
+
+    @Benchmark
+    public Class<?> localClass() throws Exception
+    {
+        return m_exporter.loadClass(PAYLOAD);
+    }
+
+    @Benchmark
+    public Class<?> importedClass() throws Exception
+    {
+        return m_importer.loadClass(PAYLOAD);
+    }
+
+    @Benchmark
+    public Class<?> systemBundleClass() throws Exception
+    {
+        return m_importer.loadClass(Bundle.class.getName());
+    }
+
+    @Benchmark
+    public Class<?> bootDelegatedClass() throws Exception
+    {
+        return m_importer.loadClass(String.class.getName());
+    }
+
+    @Benchmark
+    public URL localResource()
+    {
+        return m_exporter.getResource("org/apache/felix/framework/benchmark/payload/Payload.class");
+    }
+
+    @Benchmark
+    public URL missingResource()
+    {
+        return m_importer.getResource("org/apache/felix/bench/missing/Missing.class");
+    }
+}
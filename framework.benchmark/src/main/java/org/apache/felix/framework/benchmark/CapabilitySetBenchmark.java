@@ -0,0 +1,109 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.felix.framework.benchmark;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.felix.framework.capabilityset.CapabilitySet;
+import org.apache.felix.framework.capabilityset.SimpleFilter;
+import org.apache.felix.framework.wiring.BundleCapabilityImpl;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.osgi.framework.Version;
+import org.osgi.framework.namespace.PackageNamespace;
+import org.osgi.resource.Capability;
+
+/**
+ * Matching package requirements against a capability set, as done by the
+ * resolver for every import.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CapabilitySetBenchmark
+{
+    @Param({ "1000", "10000" })
+    public int capabilities;
+
+    private CapabilitySet m_capSet;
+    private SimpleFilter m_packageFilter;
+    private SimpleFilter m_versionRangeFilter;
+    private SimpleFilter m_unindexedFilter;
+
+    @Setup
+    public void setUp()
+    {
+        m_capSet = new CapabilitySet(
+            Collections.singletonList(PackageNamespace.PACKAGE_NAMESPACE), true);
+        Random random = BenchmarkData.random();
+        int packages = capabilities / 4;
+        for (int i = 0; i < capabilities; i++)
+        {
+            Map<String, Object> attrs = new HashMap<>();
+            attrs.put(PackageNamespace.PACKAGE_NAMESPACE, BenchmarkData.packageName(i % packages));
+            attrs.put(PackageNamespace.CAPABILITY_VERSION_ATTRIBUTE,
+                new Version(random.nextInt(4), random.nextInt(10), 0));
+            attrs.put(PackageNamespace.CAPABILITY_BUNDLE_SYMBOLICNAME_ATTRIBUTE, "bundle" + i);
+            m_capSet.addCapability(new BundleCapabilityImpl(
+                null, PackageNamespace.PACKAGE_NAMESPACE,
+                Collections.<String, String>emptyMap(), attrs));
+        }
+
+        String pkg = BenchmarkData.packageName(packages / 2);
+        m_packageFilter = SimpleFilter.parse("(osgi.wiring.package=" + pkg + ")");
+        m_versionRangeFilter = SimpleFilter.parse(
+            "(&(osgi.wiring.package=" + pkg + ")(version>=1.0.0)(!(version>=3.0.0)))");
+        m_unindexedFilter = SimpleFilter.parse("(bundle-symbolic-name=bundle" + (capabilities / 3) + ")");
+    }
+
+    @Benchmark
+    public Set<Capability> matchPackage()
+    {
+        return m_capSet.match(m_packageFilter, false);
+    }
+
+    @Benchmark
+    public Set<Capability> matchPackageVersionRange()
+    {
+        return m_capSet.match(m_versionRangeFilter, false);
+    }
+
+    @Benchmark
+    public Set<Capability> matchUnindexedAttribute()
+    {
+        return m_capSet.match(m_unindexedFilter, false);
+    }
+}
@@ -0,0 +1,137 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.felix.framework.benchmark;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Dictionary;
+import java.util.Hashtable;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.felix.framework.Felix;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.osgi.framework.Bundle;
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.Constants;
+import org.osgi.framework.ServiceEvent;
+import org.osgi.framework.ServiceFactory;
+import org.osgi.framework.ServiceListener;
+import org.osgi.framework.ServiceRegistration;
+
+/**
+ * Delivery of service events to many service listeners, most of which are
+ * interested in other services.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EventDispatcherBenchmark
+{
+    private static final int INTERFACES = 50;
+
+    @Param({ "10", "1000" })
+    public int listeners;
+
+    private File m_dir;
+    private Felix m_felix;
+    private ServiceRegistration<?> m_registration;
+    private final List<Dictionary<String, Object>> m_properties = new ArrayList<>();
+    private final AtomicLong m_delivered = new AtomicLong();
+    private int m_next;
+
+    @Setup
+    public void setUp() throws Exception
+    {
+        m_dir = BenchmarkData.createTempDir();
+        m_felix = BenchmarkData.createFramework(new File(m_dir, "cache"));
+        m_felix.start();
+        BundleContext context = m_felix.getBundleContext();
+
+        for (int i = 0; i < listeners; i++)
+        {
+            ServiceListener l = new ServiceListener()
+            {
+                @Override
+                public void serviceChanged(ServiceEvent event)
+                {
+                    m_delivered.incrementAndGet();
+                }
+            };
+            context.addServiceListener(l, "(&(objectClass="
+                + BenchmarkData.serviceName(i % INTERFACES) + ")(tenant=t" + (i % 8) + "))");
+        }
+
+        // A service factory is never asked for the service object here,
+        // so it can be registered under any name.
+        m_registration = context.registerService(BenchmarkData.serviceName(0),
+            new ServiceFactory<Object>()
+            {
+                @Override
+                public Object getService(Bundle bundle, ServiceRegistration<Object> registration)
+                {
+                    return new Object();
+                }
+
+                @Override
+                public void ungetService(Bundle bundle, ServiceRegistration<Object> registration, Object service)
+                {
+                }
+            }, null);
+
+        Random random = BenchmarkData.random();
+        for (int i = 0; i < 8; i++)
+        {
+            Hashtable<String, Object> props = BenchmarkData.serviceProperties(random, i, INTERFACES);
+            props.remove(Constants.OBJECTCLASS);
+            m_properties.add(props);
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws Exception
+    {
+        m_felix.stop();
+        m_felix.waitForStop(10000);
+        BenchmarkData.delete(m_dir);
+    }
+
+    @Benchmark
+    public long fireServiceModified()
+    {
+        m_registration.setProperties(m_properties.get(m_next++ & 7));
+        return m_delivered.get();
+    }
+}
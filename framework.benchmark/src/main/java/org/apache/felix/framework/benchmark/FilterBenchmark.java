@@ -0,0 +1,101 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.felix.framework.benchmark;
+
+import java.util.ArrayList;
+import java.util.Dictionary;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.felix.framework.FilterImpl;
+import org.apache.felix.framework.capabilityset.SimpleFilter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Parsing and matching of LDAP filters as done for service lookups and
+ * service listeners.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FilterBenchmark
+{
+    private static final String FILTER =
+        "(&(objectClass=" + BenchmarkData.serviceName(3) + ")(|(tenant=t1)(tenant=t3))(service.ranking>=10))";
+
+    private static final int PROPERTY_SETS = 64;
+
+    private FilterImpl m_filter;
+    private final List<Dictionary<String, Object>> m_properties = new ArrayList<>();
+
+    @Setup
+    public void setUp() throws Exception
+    {
+        m_filter = new FilterImpl(FILTER);
+        Random random = BenchmarkData.random();
+        for (int i = 0; i < PROPERTY_SETS; i++)
+        {
+            m_properties.add(BenchmarkData.serviceProperties(random, i, 8));
+        }
+    }
+
+    @Benchmark
+    public FilterImpl parseFilter() throws Exception
+    {
+        return new FilterImpl(FILTER);
+    }
+
+    @Benchmark
+    public SimpleFilter parseSimpleFilter()
+    {
+        return SimpleFilter.parse(FILTER);
+    }
+
+    @Benchmark
+    public void matchDictionary(Blackhole bh)
+    {
+        for (Dictionary<String, Object> props : m_properties)
+        {
+            bh.consume(m_filter.match(props));
+        }
+    }
+
+    @Benchmark
+    public void matchDictionaryCaseSensitive(Blackhole bh)
+    {
+        for (Dictionary<String, Object> props : m_properties)
+        {
+            bh.consume(m_filter.matchCase(props));
+        }
+    }
+}
@@ -0,0 +1,104 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.felix.framework.benchmark;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.felix.framework.Logger;
+import org.apache.felix.framework.util.manifestparser.ManifestParser;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.osgi.framework.Constants;
+
+/**
+ * Parsing the OSGi headers of a bundle manifest, as done on every install,
+ * update and framework restart.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ManifestParserBenchmark
+{
+    @Param({ "10", "100" })
+    public int packages;
+
+    private final Logger m_logger = new Logger();
+    private final Map<String, Object> m_config = Collections.emptyMap();
+    private final Map<String, String> m_headers = new HashMap<>();
+
+    @Setup
+    public void setUp()
+    {
+        Random random = BenchmarkData.random();
+        StringBuilder exports = new StringBuilder();
+        StringBuilder imports = new StringBuilder();
+        for (int i = 0; i < packages; i++)
+        {
+            if (i > 0)
+            {
+                exports.append(',');
+                imports.append(',');
+            }
+            exports.append(BenchmarkData.packageName(i))
+                .append(";version=\"1.").append(random.nextInt(10)).append(".0\"")
+                .append(";uses:=\"").append(BenchmarkData.packageName((i + 1) % packages))
+                .append(',').append(BenchmarkData.packageName(packages + i)).append('"');
+            imports.append(BenchmarkData.packageName(packages + i))
+                .append(";version=\"[1.").append(random.nextInt(10)).append(",2)\"");
+            if ((i % 10) == 0)
+            {
+                imports.append(";resolution:=optional");
+            }
+        }
+
+        m_headers.put(Constants.BUNDLE_MANIFESTVERSION, "2");
+        m_headers.put(Constants.BUNDLE_SYMBOLICNAME, "org.apache.felix.bench;singleton:=true");
+        m_headers.put(Constants.BUNDLE_VERSION, "1.2.3.qualifier");
+        m_headers.put(Constants.EXPORT_PACKAGE, exports.toString());
+        m_headers.put(Constants.IMPORT_PACKAGE, imports.toString());
+        m_headers.put(Constants.REQUIRE_CAPABILITY,
+            "osgi.ee;filter:=\"(&(osgi.ee=JavaSE)(version=1.8))\","
+            + "osgi.extender;filter:=\"(&(osgi.extender=osgi.component)(version>=1.4.0)(!(version>=2.0.0)))\"");
+        m_headers.put(Constants.PROVIDE_CAPABILITY,
+            "osgi.service;objectClass:List<String>=\"" + BenchmarkData.serviceName(0) + "\";uses:=\""
+            + BenchmarkData.packageName(0) + "\"");
+    }
+
+    @Benchmark
+    public ManifestParser parse() throws Exception
+    {
+        return new ManifestParser(m_logger, m_config, null, m_headers);
+    }
+}
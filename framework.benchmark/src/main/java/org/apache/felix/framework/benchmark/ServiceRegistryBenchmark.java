@@ -0,0 +1,104 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.felix.framework.benchmark;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Dictionary;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.felix.framework.Felix;
+import org.apache.felix.framework.Logger;
+import org.apache.felix.framework.ServiceRegistry;
+import org.apache.felix.framework.capabilityset.SimpleFilter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.osgi.framework.Bundle;
+import org.osgi.framework.Constants;
+import org.osgi.framework.ServiceReference;
+
+/**
+ * Service lookups against a registry with many registered services.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ServiceRegistryBenchmark
+{
+    private static final int INTERFACES = 50;
+
+    @Param({ "1000", "10000" })
+    public int services;
+
+    private ServiceRegistry m_registry;
+    private String m_className;
+    private SimpleFilter m_tenantFilter;
+    private SimpleFilter m_nameFilter;
+
+    @Setup
+    public void setUp()
+    {
+        m_registry = new ServiceRegistry(new Logger(), null);
+
+        // The registry only uses the bundle as the owner of the registrations.
+        Bundle owner = new Felix(Collections.<String, Object>emptyMap());
+        Random random = BenchmarkData.random();
+        for (int i = 0; i < services; i++)
+        {
+            Dictionary<String, Object> props = BenchmarkData.serviceProperties(random, i, INTERFACES);
+            m_registry.registerService(owner,
+                (String[]) props.get(Constants.OBJECTCLASS), new Object(), props);
+        }
+
+        m_className = BenchmarkData.serviceName(INTERFACES / 2);
+        m_tenantFilter = SimpleFilter.parse("(tenant=t3)");
+        m_nameFilter = SimpleFilter.parse("(name=comp" + (services / 3) + ")");
+    }
+
+    @Benchmark
+    public Collection<ServiceReference<?>> byClassName()
+    {
+        return m_registry.getServiceReferences(m_className, null);
+    }
+
+    @Benchmark
+    public Collection<ServiceReference<?>> byClassNameAndFilter()
+    {
+        return m_registry.getServiceReferences(m_className, m_tenantFilter);
+    }
+
+    @Benchmark
+    public Collection<ServiceReference<?>> byFilter()
+    {
+        return m_registry.getServiceReferences(null, m_nameFilter);
+    }
+}
@@ -85,6 +85,8 @@ class BundleImpl implements Bundle, BundleRevisions
     // Used for bundle locking.
     private int m_lockCount = 0;
     private Thread m_lockThread = null;
+    // How long the last start by the start level took in milliseconds.
+    private volatile long m_startLevelStartTime = -1;
 
     /**
      * This constructor is used by the system bundle (i.e., the framework),
@@ -1371,6 +1373,16 @@ class BundleImpl implements Bundle, BundleRevisions
         return pd;
     }
 
+    long getStartLevelStartTime()
+    {
+        return m_startLevelStartTime;
+    }
+
+    void setStartLevelStartTime(long time)
+    {
+        m_startLevelStartTime = time;
+    }
+
     //
     // Locking related methods.
     //
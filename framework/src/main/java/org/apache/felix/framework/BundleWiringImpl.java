@@ -20,6 +20,7 @@ package org.apache.felix.framework;
 
 import org.apache.felix.framework.cache.ConnectContentContent;
 import org.apache.felix.framework.cache.Content;
+import org.apache.felix.framework.capabilityset.CapabilitySet;
 import org.apache.felix.framework.capabilityset.SimpleFilter;
 import org.apache.felix.framework.resolver.ResourceNotFoundException;
 import org.apache.felix.framework.util.CompoundEnumeration;
@@ -28,6 +29,7 @@ import org.apache.felix.framework.util.SecurityManagerEx;
 import org.apache.felix.framework.util.Util;
 import org.apache.felix.framework.util.manifestparser.ManifestParser;
 import org.apache.felix.framework.util.manifestparser.NativeLibrary;
+import org.apache.felix.framework.wiring.BundleCapabilityImpl;
 import org.apache.felix.framework.wiring.BundleRequirementImpl;
 import org.codehaus.mojo.animal_sniffer.IgnoreJRERequirement;
 import org.osgi.framework.Bundle;
@@ -75,6 +77,7 @@ import java.util.SortedMap;
 import java.util.TreeMap;
 import java.util.TreeSet;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 public class BundleWiringImpl implements BundleWiring
 {
@@ -172,6 +175,14 @@ public class BundleWiringImpl implements BundleWiring
 
     private volatile ConcurrentHashMap<String, ClassLoader> m_accessorLookupCache;
 
+    // Per package delegation decisions that do not change for the lifetime
+    // of this wiring unless its dynamic requirements change due to weaving.
+    private static final int BOOT_DELEGATE = 1;
+    private static final int NO_DYNAMIC_IMPORT = 2;
+    private volatile ConcurrentHashMap<String, Integer> m_pkgLookupCache = new ConcurrentHashMap<>();
+    private final AtomicLong m_pkgLookupHits = new AtomicLong();
+    private final AtomicLong m_pkgLookupMisses = new AtomicLong();
+
     BundleWiringImpl(
         Logger logger, Map<String,?> configMap, StatefulResolver resolver,
         BundleRevisionImpl revision, List<BundleRevision> fragments,
@@ -508,6 +519,7 @@ public class BundleWiringImpl implements BundleWiring
         m_classLoader = null;
         m_isDisposed = true;
         m_accessorLookupCache = null;
+        m_pkgLookupCache = new ConcurrentHashMap<>();
     }
 
     // TODO: OSGi R4.3 - This really shouldn't be public, but it is needed by the
@@ -1211,7 +1223,10 @@ public class BundleWiringImpl implements BundleWiring
             // class/resource via a dynamic import, if possible.
             try
             {
-                provider = m_resolver.resolve(m_revision, pkgName);
+                if ((getPackageFlags(pkgName) & NO_DYNAMIC_IMPORT) == 0)
+                {
+                    provider = m_resolver.resolve(m_revision, pkgName);
+                }
             }
             catch (ResolutionException | BundleException ex)
             {
@@ -1272,7 +1287,116 @@ public class BundleWiringImpl implements BundleWiring
         return parent;
     }
 
+    /**
+     * Returns the number of class and resource lookups for which the
+     * delegation decisions of the package were already cached.
+     * @return the number of package lookup cache hits.
+     */
+    public long getPackageLookupCacheHits()
+    {
+        return m_pkgLookupHits.get();
+    }
+
+    /**
+     * Returns the number of class and resource lookups for which the
+     * delegation decisions of the package had to be computed.
+     * @return the number of package lookup cache misses.
+     */
+    public long getPackageLookupCacheMisses()
+    {
+        return m_pkgLookupMisses.get();
+    }
+
+    private int getPackageFlags(String pkgName)
+    {
+        // Grab the cache first, so that a concurrent invalidation simply
+        // discards whatever we compute here.
+        Map<String, Integer> cache = m_pkgLookupCache;
+        Integer flags = cache.get(pkgName);
+        if (flags != null)
+        {
+            m_pkgLookupHits.incrementAndGet();
+            return flags;
+        }
+        m_pkgLookupMisses.incrementAndGet();
+
+        int value = 0;
+        if (isBootDelegated(pkgName))
+        {
+            value |= BOOT_DELEGATE;
+        }
+        if (!isDynamicImportCandidate(pkgName))
+        {
+            value |= NO_DYNAMIC_IMPORT;
+        }
+        cache.put(pkgName, value);
+        return value;
+    }
+
+    private void invalidatePackageLookupCache()
+    {
+        m_pkgLookupCache = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * Checks whether any of the dynamic requirements of this wiring could
+     * match the given package. Only the package name constraint of each
+     * requirement is considered, so a return value of true does not mean
+     * that the package can actually be dynamically imported.
+     */
+    private boolean isDynamicImportCandidate(String pkgName)
+    {
+        if (pkgName.length() == 0)
+        {
+            return false;
+        }
+        List<BundleRequirement> dynamics = Util.getDynamicRequirements(getRequirements(null));
+        if ((dynamics == null) || dynamics.isEmpty())
+        {
+            return false;
+        }
+        BundleCapability cap = new BundleCapabilityImpl(
+            null, BundleRevision.PACKAGE_NAMESPACE, Collections.<String, String>emptyMap(),
+            Collections.<String, Object>singletonMap(BundleRevision.PACKAGE_NAMESPACE, pkgName));
+        for (BundleRequirement req : dynamics)
+        {
+            if (matchesPackageName(((BundleRequirementImpl) req).getFilter(), cap))
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean matchesPackageName(SimpleFilter sf, BundleCapability cap)
+    {
+        switch (sf.getOperation())
+        {
+            case SimpleFilter.AND:
+                for (Object child : (List<?>) sf.getValue())
+                {
+                    if (!matchesPackageName((SimpleFilter) child, cap))
+                    {
+                        return false;
+                    }
+                }
+                return true;
+            case SimpleFilter.EQ:
+            case SimpleFilter.SUBSTRING:
+                return !BundleRevision.PACKAGE_NAMESPACE.equals(sf.getName())
+                    || CapabilitySet.matches(cap, sf);
+            default:
+                // Be conservative about anything else.
+                return true;
+        }
+    }
+
     boolean shouldBootDelegate(String pkgName)
+    {
+        return (getPackageFlags(pkgName) & BOOT_DELEGATE) != 0;
+    }
+
+    private boolean isBootDelegated(String pkgName)
     {
         // Always boot delegate if the bundle has a configured
         // boot class loader.
@@ -1664,7 +1788,11 @@ public class BundleWiringImpl implements BundleWiring
         BundleRevision provider = null;
         try
         {
-            provider = m_resolver.resolve(m_revision, pkgName);
+            // Skip the resolver if no dynamic requirement covers the package.
+            if ((getPackageFlags(pkgName) & NO_DYNAMIC_IMPORT) == 0)
+            {
+                provider = m_resolver.resolve(m_revision, pkgName);
+            }
         }
         catch (ResolutionException | BundleException ex)
         {
@@ -2260,6 +2388,8 @@ public class BundleWiringImpl implements BundleWiring
                             allWovenReqs.addAll(0, m_wiring.m_wovenReqs);
                         }
                         m_wiring.m_wovenReqs = allWovenReqs;
+                        // Woven dynamic imports may cover more packages.
+                        m_wiring.invalidatePackageLookupCache();
                     }
                 }
             }
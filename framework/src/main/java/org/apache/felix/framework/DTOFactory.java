@@ -84,6 +84,10 @@ public class DTOFactory
         {
             return type.cast(createBundleStartLevelDTO(bundle));
         }
+        else if (type == BundleStartTimeDTO.class && bundle instanceof BundleImpl)
+        {
+            return type.cast(createBundleStartTimeDTO((BundleImpl) bundle));
+        }
         else if (type == BundleRevisionDTO.class)
         {
             return type.cast(createBundleRevisionDTO(bundle));
@@ -324,6 +328,15 @@ public class DTOFactory
         return dto;
     }
 
+    private static BundleStartTimeDTO createBundleStartTimeDTO(BundleImpl bundle)
+    {
+        BundleStartTimeDTO dto = new BundleStartTimeDTO();
+        dto.bundle = bundle.getBundleId();
+        dto.startTime = bundle.getStartLevelStartTime();
+
+        return dto;
+    }
+
     private static ServiceReferenceDTO[] createServiceReferenceDTOArray(Bundle bundle)
     {
         BundleContext ctx = ((BundleImpl) bundle)._getBundleContext();
@@ -28,17 +28,24 @@ import java.util.EventListener;
 import java.util.EventObject;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
 
+import org.apache.felix.framework.capabilityset.SimpleFilter;
 import org.apache.felix.framework.util.*;
 import org.osgi.framework.AllServiceListener;
 import org.osgi.framework.Bundle;
 import org.osgi.framework.BundleContext;
 import org.osgi.framework.BundleEvent;
 import org.osgi.framework.BundleListener;
+import org.osgi.framework.Constants;
 import org.osgi.framework.Filter;
 import org.osgi.framework.FrameworkEvent;
 import org.osgi.framework.FrameworkListener;
@@ -55,25 +62,29 @@ public class EventDispatcher
     private final Logger m_logger;
     private final ServiceRegistry m_registry;
 
-    private Map<BundleContext, List<ListenerInfo>>
+    // Listener maps are copy-on-write; they are replaced while holding the
+    // dispatcher lock and read without locking when firing events.
+    private volatile Map<BundleContext, List<ListenerInfo>>
         m_fwkListeners = Collections.emptyMap();
-    private Map<BundleContext, List<ListenerInfo>>
+    private volatile Map<BundleContext, List<ListenerInfo>>
         m_bndlListeners = Collections.emptyMap();
-    private Map<BundleContext, List<ListenerInfo>>
+    private volatile Map<BundleContext, List<ListenerInfo>>
         m_syncBndlListeners = Collections.emptyMap();
-    private Map<BundleContext, List<ListenerInfo>>
+    private volatile Map<BundleContext, List<ListenerInfo>>
         m_svcListeners = Collections.emptyMap();
+    // Service listeners indexed by the object classes their filters require.
+    private volatile ServiceListenerIndex m_svcIndex = ServiceListenerIndex.EMPTY;
 
     // A single thread is used to deliver events for all dispatchers.
-    private static Thread m_thread = null;
+    private static volatile Thread m_thread = null;
     private final static String m_threadLock = "thread lock";
     private static int m_references = 0;
     private static volatile boolean m_stopping = false;
 
-    // List of requests.
-    private static final List<Request> m_requestList = new ArrayList<>();
-    // Pooled requests to avoid memory allocation.
-    private static final List<Request> m_requestPool = new ArrayList<>();
+    // Queue of requests; many producers, the dispatch thread is the only consumer.
+    private static final ConcurrentLinkedQueue<Request> m_requestQueue =
+        new ConcurrentLinkedQueue<>();
+    private static final AtomicInteger m_queueDepth = new AtomicInteger();
 
     private static final SecureAction m_secureAction = new SecureAction();
 
@@ -140,12 +151,9 @@ public class EventDispatcher
             }
 
             m_stopping = true;
-        }
 
-        // Signal dispatch thread.
-        synchronized (m_requestList)
-        {
-            m_requestList.notify();
+            // Signal dispatch thread.
+            LockSupport.unpark(m_thread);
         }
 
         // Use separate lock for shutdown to prevent any chance of nested lock deadlock
@@ -258,7 +266,7 @@ public class EventDispatcher
             }
             else if (clazz == ServiceListener.class)
             {
-                m_svcListeners = listeners;
+                setServiceListeners(listeners);
             }
         }
         return null;
@@ -356,7 +364,7 @@ public class EventDispatcher
             }
             else if (clazz == ServiceListener.class)
             {
-                m_svcListeners = listeners;
+                setServiceListeners(listeners);
             }
         }
 
@@ -385,7 +393,7 @@ public class EventDispatcher
             m_syncBndlListeners = removeListenerInfos(m_syncBndlListeners, bc);
 
             // Remove all service listeners associated with the specified bundle.
-            m_svcListeners = removeListenerInfos(m_svcListeners, bc);
+            setServiceListeners(removeListenerInfos(m_svcListeners, bc));
         }
     }
 
@@ -417,15 +425,8 @@ public class EventDispatcher
                     {
                         // The spec says to update the filter in this case.
                         Filter oldFilter = info.getParsedFilter();
-                        ListenerInfo newInfo = new ListenerInfo(
-                            info.getBundle(),
-                            info.getBundleContext(),
-                            info.getListenerClass(),
-                            info.getListener(),
-                            filter,
-                            info.getSecurityContext(),
-                            info.isRemoved());
-                        m_svcListeners = updateListenerInfo(m_svcListeners, i, newInfo);
+                        ListenerInfo newInfo = new ListenerInfo(info, filter);
+                        setServiceListeners(updateListenerInfo(m_svcListeners, i, newInfo));
                         return oldFilter;
                     }
                 }
@@ -445,24 +446,68 @@ public class EventDispatcher
     public Collection<ListenerHook.ListenerInfo> getAllServiceListeners()
     {
         List<ListenerHook.ListenerInfo> listeners = new ArrayList<>();
-        synchronized (this)
+        for (Entry<BundleContext, List<ListenerInfo>> entry : m_svcListeners.entrySet())
         {
-            for (Entry<BundleContext, List<ListenerInfo>> entry : m_svcListeners.entrySet())
-            {
-                listeners.addAll(entry.getValue());
-            }
+            listeners.addAll(entry.getValue());
         }
         return listeners;
     }
 
-    public void fireFrameworkEvent(FrameworkEvent event)
+    /**
+     * Returns the number of asynchronous event requests waiting to be
+     * delivered by the dispatch thread, which is shared by all dispatchers.
+     * @return the current length of the asynchronous event queue.
+    **/
+    public static int getQueueDepth()
     {
-        // Take a snapshot of the listener array.
-        Map<BundleContext, List<ListenerInfo>> listeners = null;
-        synchronized (this)
+        return m_queueDepth.get();
+    }
+
+    /**
+     * Returns the information of a registered listener, which includes the
+     * delivery statistics of the listener.
+     * @return the listener information or <code>null</code> if the listener
+     *         is not registered by the bundle context.
+    **/
+    public ListenerInfo getListenerInfo(BundleContext bc, Class<?> clazz, EventListener l)
+    {
+        Map<BundleContext, List<ListenerInfo>> listeners;
+        if (clazz == FrameworkListener.class)
         {
             listeners = m_fwkListeners;
         }
+        else if (clazz == BundleListener.class)
+        {
+            listeners = SynchronousBundleListener.class.isInstance(l)
+                ? m_syncBndlListeners : m_bndlListeners;
+        }
+        else if (clazz == ServiceListener.class)
+        {
+            listeners = m_svcListeners;
+        }
+        else
+        {
+            return null;
+        }
+
+        List<ListenerInfo> infos = listeners.get(bc);
+        if (infos != null)
+        {
+            for (ListenerInfo info : infos)
+            {
+                if ((info.getListenerClass() == clazz) && (info.getListener() == l))
+                {
+                    return info;
+                }
+            }
+        }
+        return null;
+    }
+
+    public void fireFrameworkEvent(FrameworkEvent event)
+    {
+        // Take a snapshot of the listener array.
+        Map<BundleContext, List<ListenerInfo>> listeners = m_fwkListeners;
 
         // Fire all framework listeners on a separate thread.
         fireEventAsynchronously(this, Request.FRAMEWORK_EVENT, listeners, event);
@@ -471,13 +516,8 @@ public class EventDispatcher
     public void fireBundleEvent(BundleEvent event, Felix felix)
     {
         // Take a snapshot of the listener array.
-        Map<BundleContext, List<ListenerInfo>> listeners = null;
-        Map<BundleContext, List<ListenerInfo>> syncListeners = null;
-        synchronized (this)
-        {
-            listeners = m_bndlListeners;
-            syncListeners = m_syncBndlListeners;
-        }
+        Map<BundleContext, List<ListenerInfo>> listeners = m_bndlListeners;
+        Map<BundleContext, List<ListenerInfo>> syncListeners = m_syncBndlListeners;
 
         // Create a whitelist of bundle context for bundle listeners,
         // if we have hooks.
@@ -531,15 +571,19 @@ public class EventDispatcher
         final ServiceEvent event, final Dictionary<String,?> oldProps, final Felix felix)
     {
         // Take a snapshot of the listener array.
-        Map<BundleContext, List<ListenerInfo>> listeners = null;
-        synchronized (this)
-        {
-            listeners = m_svcListeners;
-        }
+        ServiceListenerIndex index = m_svcIndex;
+        Map<BundleContext, List<ListenerInfo>> listeners = index.m_listeners;
 
         // Use service registry hooks to filter target listeners.
         listeners = filterListenersUsingHooks(event, felix, listeners);
 
+        // If the hooks left the listeners untouched, only consider those
+        // whose filter can match the object classes of the service.
+        if (listeners == index.m_listeners)
+        {
+            listeners = index.getListeners(event.getServiceReference());
+        }
+
         // Fire all service events immediately on the calling thread.
         fireEventImmediately(
             this, Request.SERVICE_EVENT, listeners, event, oldProps);
@@ -775,33 +819,23 @@ public class EventDispatcher
             return;
         }
 
-        // First get a request from the pool or create one if necessary.
-        Request req = null;
-        synchronized (m_requestPool)
+        // Nothing to do if there is nobody to deliver to.
+        if (listeners.isEmpty())
         {
-            if (m_requestPool.size() > 0)
-            {
-                req = m_requestPool.remove(0);
-            }
-            else
-            {
-                req = new Request();
-            }
+            return;
         }
 
-        // Initialize dispatch request.
-        req.m_dispatcher = dispatcher;
-        req.m_type = type;
-        req.m_listeners = listeners;
-        req.m_event = event;
+        // Add our request to the queue.
+        m_requestQueue.offer(new Request(dispatcher, type, listeners, event));
+        m_queueDepth.incrementAndGet();
 
-        // Lock the request list.
-        synchronized (m_requestList)
+        // Notify the dispatch thread that there is work to do; unparking
+        // an already running thread is cheap and is remembered until it
+        // parks again, so no wake up can be lost.
+        Thread thread = m_thread;
+        if (thread != null)
         {
-            // Add our request to the list.
-            m_requestList.add(req);
-            // Notify the dispatch thread that there is work to do.
-            m_requestList.notify();
+            LockSupport.unpark(thread);
         }
     }
 
@@ -826,16 +860,16 @@ public class EventDispatcher
                     {
                         if (type == Request.FRAMEWORK_EVENT)
                         {
-                            invokeFrameworkListenerCallback(bundle, l, event);
+                            invokeFrameworkListenerCallback(info, bundle, l, event);
                         }
                         else if (type == Request.BUNDLE_EVENT)
                         {
-                            invokeBundleListenerCallback(bundle, l, event);
+                            invokeBundleListenerCallback(info, bundle, l, event);
                         }
                         else if (type == Request.SERVICE_EVENT)
                         {
                             invokeServiceListenerCallback(
-                                bundle, l, filter, acc, event, oldProps);
+                                info, bundle, l, filter, acc, event, oldProps);
                         }
                     }
                     catch (Throwable th)
@@ -856,7 +890,7 @@ public class EventDispatcher
     }
 
     private static void invokeFrameworkListenerCallback(
-        Bundle bundle, final EventListener l, final EventObject event)
+        ListenerInfo info, Bundle bundle, final EventListener l, final EventObject event)
     {
         // The spec says only active bundles receive asynchronous events,
         // but we will include starting bundles too otherwise
@@ -864,26 +898,34 @@ public class EventDispatcher
         if ((bundle.getState() == Bundle.STARTING) ||
             (bundle.getState() == Bundle.ACTIVE))
         {
-            if (System.getSecurityManager() != null)
+            long start = System.nanoTime();
+            try
             {
-                AccessController.doPrivileged(new PrivilegedAction() {
-                    @Override
-                    public Object run()
-                    {
-                        ((FrameworkListener) l).frameworkEvent((FrameworkEvent) event);
-                        return null;
-                    }
-                });
+                if (System.getSecurityManager() != null)
+                {
+                    AccessController.doPrivileged(new PrivilegedAction() {
+                        @Override
+                        public Object run()
+                        {
+                            ((FrameworkListener) l).frameworkEvent((FrameworkEvent) event);
+                            return null;
+                        }
+                    });
+                }
+                else
+                {
+                    ((FrameworkListener) l).frameworkEvent((FrameworkEvent) event);
+                }
             }
-            else
+            finally
             {
-                ((FrameworkListener) l).frameworkEvent((FrameworkEvent) event);
+                info.recordDelivery(System.nanoTime() - start);
             }
         }
     }
 
     private static void invokeBundleListenerCallback(
-        Bundle bundle, final EventListener l, final EventObject event)
+        ListenerInfo info, Bundle bundle, final EventListener l, final EventObject event)
     {
         // A bundle listener is either synchronous or asynchronous.
         // If the bundle listener is synchronous, then deliver the
@@ -898,26 +940,34 @@ public class EventDispatcher
             ((bundle.getState() == Bundle.STARTING) ||
             (bundle.getState() == Bundle.ACTIVE)))
         {
-            if (System.getSecurityManager() != null)
+            long start = System.nanoTime();
+            try
             {
-                AccessController.doPrivileged(new PrivilegedAction() {
-                    @Override
-                    public Object run()
-                    {
-                        ((BundleListener) l).bundleChanged((BundleEvent) event);
-                        return null;
-                    }
-                });
+                if (System.getSecurityManager() != null)
+                {
+                    AccessController.doPrivileged(new PrivilegedAction() {
+                        @Override
+                        public Object run()
+                        {
+                            ((BundleListener) l).bundleChanged((BundleEvent) event);
+                            return null;
+                        }
+                    });
+                }
+                else
+                {
+                    ((BundleListener) l).bundleChanged((BundleEvent) event);
+                }
             }
-            else
+            finally
             {
-                ((BundleListener) l).bundleChanged((BundleEvent) event);
+                info.recordDelivery(System.nanoTime() - start);
             }
         }
     }
 
     private static void invokeServiceListenerCallback(
-        Bundle bundle, final EventListener l, Filter filter, Object acc,
+        ListenerInfo info, Bundle bundle, final EventListener l, Filter filter, Object acc,
         final EventObject event, final Dictionary<String,?> oldProps)
     {
         // Service events should be delivered to STARTING,
@@ -972,21 +1022,29 @@ public class EventDispatcher
                 if ((l instanceof AllServiceListener) ||
                     Util.isServiceAssignable(bundle, ((ServiceEvent) event).getServiceReference()))
                 {
-                    if (System.getSecurityManager() != null)
+                    long start = System.nanoTime();
+                    try
                     {
-                        AccessController.doPrivileged(new PrivilegedAction()
+                        if (System.getSecurityManager() != null)
                         {
-                            @Override
-                            public Object run()
+                            AccessController.doPrivileged(new PrivilegedAction()
                             {
-                                ((ServiceListener) l).serviceChanged((ServiceEvent) event);
-                                return null;
-                            }
-                        });
+                                @Override
+                                public Object run()
+                                {
+                                    ((ServiceListener) l).serviceChanged((ServiceEvent) event);
+                                    return null;
+                                }
+                            });
+                        }
+                        else
+                        {
+                            ((ServiceListener) l).serviceChanged((ServiceEvent) event);
+                        }
                     }
-                    else
+                    finally
                     {
-                        ((ServiceListener) l).serviceChanged((ServiceEvent) event);
+                        info.recordDelivery(System.nanoTime() - start);
                     }
                 }
             }
@@ -999,21 +1057,29 @@ public class EventDispatcher
                     final ServiceEvent se = new ServiceEvent(
                         ServiceEvent.MODIFIED_ENDMATCH,
                         ((ServiceEvent) event).getServiceReference());
-                    if (System.getSecurityManager() != null)
+                    long start = System.nanoTime();
+                    try
                     {
-                        AccessController.doPrivileged(new PrivilegedAction()
+                        if (System.getSecurityManager() != null)
                         {
-                            @Override
-                            public Object run()
+                            AccessController.doPrivileged(new PrivilegedAction()
                             {
-                                ((ServiceListener) l).serviceChanged(se);
-                                return null;
-                            }
-                        });
+                                @Override
+                                public Object run()
+                                {
+                                    ((ServiceListener) l).serviceChanged(se);
+                                    return null;
+                                }
+                            });
+                        }
+                        else
+                        {
+                            ((ServiceListener) l).serviceChanged(se);
+                        }
                     }
-                    else
+                    finally
                     {
-                        ((ServiceListener) l).serviceChanged(se);
+                        info.recordDelivery(System.nanoTime() - start);
                     }
                 }
             }
@@ -1098,63 +1164,218 @@ public class EventDispatcher
         return copy;
     }
 
+    private void setServiceListeners(Map<BundleContext, List<ListenerInfo>> listeners)
+    {
+        m_svcListeners = listeners;
+        m_svcIndex = new ServiceListenerIndex(listeners, m_svcIndex);
+    }
+
     /**
      * This is the dispatching thread's main loop.
     **/
     private static void run()
     {
-        Request req = null;
         while (true)
         {
-            // Lock the request list so we can try to get a
-            // dispatch request from it.
-            synchronized (m_requestList)
+            // Drain all queued requests before going back to sleep.
+            Request req = m_requestQueue.poll();
+            if (req == null)
             {
-                // Wait while there are no requests to dispatch. If the
-                // dispatcher thread is supposed to stop, then let the
-                // dispatcher thread exit the loop and stop.
-                while (m_requestList.isEmpty() && !m_stopping)
-                {
-                    // Wait until some signals us for work.
-                    try
-                    {
-                        m_requestList.wait();
-                    }
-                    catch (InterruptedException ex)
-                    {
-                        // Not much we can do here except for keep waiting.
-                    }
-                }
-
                 // If there are no events to dispatch and shutdown
-                // has been called then exit, otherwise dispatch event.
-                if (m_requestList.isEmpty() && m_stopping)
+                // has been called then exit, otherwise wait until
+                // someone signals us for work.
+                if (m_stopping)
                 {
                     return;
                 }
-
-                // Get the dispatch request.
-                req = m_requestList.remove(0);
+                LockSupport.park(m_requestQueue);
+                // Not much we can do about an interrupt except for
+                // clearing it and keep waiting.
+                Thread.interrupted();
+                continue;
             }
+            m_queueDepth.decrementAndGet();
 
-            // Deliver event outside of synchronized block
-            // so that we don't block other requests from being
-            // queued during event processing.
             // NOTE: We don't catch any exceptions here, because
             // the invoked method shields us from exceptions by
             // catching Throwables when it invokes callbacks.
             fireEventImmediately(
                 req.m_dispatcher, req.m_type, req.m_listeners,
                 req.m_event, null);
+        }
+    }
 
-            // Put dispatch request in cache.
-            synchronized (m_requestPool)
+    /**
+     * Immutable view of the service listeners, with the listeners whose
+     * filter requires specific object classes indexed by those classes.
+     * Listeners without such a filter, including unfiltered listeners, are
+     * always considered. Since the object classes of a service registration
+     * never change, a listener that is skipped for an event could neither
+     * match the current nor the previous properties of the service.
+    **/
+    private static final class ServiceListenerIndex
+    {
+        static final ServiceListenerIndex EMPTY = new ServiceListenerIndex(
+            Collections.<BundleContext, List<ListenerInfo>>emptyMap(), null);
+
+        final Map<BundleContext, List<ListenerInfo>> m_listeners;
+        // Object classes per listener, null if the listener is not indexed.
+        private final Map<ListenerInfo, String[]> m_classes = new IdentityHashMap<>();
+        // Position of each listener in the iteration order of the snapshot.
+        private final Map<ListenerInfo, Integer> m_order = new IdentityHashMap<>();
+        private final Map<String, List<ListenerInfo>> m_byClass = new HashMap<>();
+        private final List<ListenerInfo> m_unindexed = new ArrayList<>();
+
+        ServiceListenerIndex(
+            Map<BundleContext, List<ListenerInfo>> listeners, ServiceListenerIndex previous)
+        {
+            m_listeners = listeners;
+            for (List<ListenerInfo> infos : listeners.values())
             {
-                req.m_dispatcher = null;
-                req.m_type = -1;
-                req.m_listeners = null;
-                req.m_event = null;
-                m_requestPool.add(req);
+                for (ListenerInfo info : infos)
+                {
+                    m_order.put(info, m_order.size());
+                    // Reuse the parsed filter of listeners that did not change.
+                    String[] classes;
+                    if ((previous != null) && previous.m_classes.containsKey(info))
+                    {
+                        classes = previous.m_classes.get(info);
+                    }
+                    else
+                    {
+                        classes = getObjectClasses(info);
+                    }
+                    m_classes.put(info, classes);
+
+                    if (classes == null)
+                    {
+                        m_unindexed.add(info);
+                    }
+                    else
+                    {
+                        for (String clazz : classes)
+                        {
+                            List<ListenerInfo> list = m_byClass.get(clazz);
+                            if (list == null)
+                            {
+                                list = new ArrayList<>();
+                                m_byClass.put(clazz, list);
+                            }
+                            list.add(info);
+                        }
+                    }
+                }
+            }
+        }
+
+        /**
+         * Returns the listeners that may be interested in an event for the
+         * given service, grouped and ordered the same way as the snapshot.
+        **/
+        Map<BundleContext, List<ListenerInfo>> getListeners(ServiceReference<?> ref)
+        {
+            Object classes = (ref != null) ? ref.getProperty(Constants.OBJECTCLASS) : null;
+            if (m_byClass.isEmpty() || !(classes instanceof String[]))
+            {
+                return m_listeners;
+            }
+
+            List<ListenerInfo> candidates = new ArrayList<>(m_unindexed);
+            for (String clazz : (String[]) classes)
+            {
+                List<ListenerInfo> list = m_byClass.get(clazz);
+                if (list != null)
+                {
+                    candidates.addAll(list);
+                }
+            }
+            if (candidates.isEmpty())
+            {
+                return Collections.emptyMap();
+            }
+
+            // Restore the delivery order of the snapshot, dropping listeners
+            // that are indexed under more than one of the object classes.
+            Collections.sort(candidates, (a, b) -> m_order.get(a) - m_order.get(b));
+            Map<BundleContext, List<ListenerInfo>> result = new LinkedHashMap<>();
+            ListenerInfo last = null;
+            for (ListenerInfo info : candidates)
+            {
+                if (info != last)
+                {
+                    List<ListenerInfo> infos = result.get(info.getBundleContext());
+                    if (infos == null)
+                    {
+                        infos = new ArrayList<>();
+                        result.put(info.getBundleContext(), infos);
+                    }
+                    infos.add(info);
+                    last = info;
+                }
+            }
+            return result;
+        }
+
+        private static String[] getObjectClasses(ListenerInfo info)
+        {
+            if ((info.getParsedFilter() == null)
+                || (info.getListener() instanceof UnfilteredServiceListener))
+            {
+                return null;
+            }
+            try
+            {
+                List<String> classes = getObjectClasses(
+                    SimpleFilter.parse(info.getParsedFilter().toString()));
+                return (classes == null) ? null : classes.toArray(new String[classes.size()]);
+            }
+            catch (Exception ex)
+            {
+                // Not a filter we understand, so always evaluate it.
+                return null;
+            }
+        }
+
+        /**
+         * Returns the object classes of which a service must have at least
+         * one to match the filter, or null if the filter does not constrain
+         * the object class.
+        **/
+        private static List<String> getObjectClasses(SimpleFilter sf)
+        {
+            switch (sf.getOperation())
+            {
+                case SimpleFilter.EQ:
+                    if (Constants.OBJECTCLASS.equalsIgnoreCase(sf.getName())
+                        && (sf.getValue() instanceof String))
+                    {
+                        return Collections.singletonList((String) sf.getValue());
+                    }
+                    return null;
+                case SimpleFilter.AND:
+                    for (Object child : (List<?>) sf.getValue())
+                    {
+                        List<String> classes = getObjectClasses((SimpleFilter) child);
+                        if (classes != null)
+                        {
+                            return classes;
+                        }
+                    }
+                    return null;
+                case SimpleFilter.OR:
+                    List<String> result = new ArrayList<>();
+                    for (Object child : (List<?>) sf.getValue())
+                    {
+                        List<String> classes = getObjectClasses((SimpleFilter) child);
+                        if (classes == null)
+                        {
+                            return null;
+                        }
+                        result.addAll(classes);
+                    }
+                    return result;
+                default:
+                    return null;
             }
         }
     }
@@ -1165,9 +1386,18 @@ public class EventDispatcher
         public static final int BUNDLE_EVENT = 1;
         public static final int SERVICE_EVENT = 2;
 
-        public EventDispatcher m_dispatcher = null;
-        public int m_type = -1;
-        public Map<BundleContext, List<ListenerInfo>> m_listeners = null;
-        public EventObject m_event = null;
+        public final EventDispatcher m_dispatcher;
+        public final int m_type;
+        public final Map<BundleContext, List<ListenerInfo>> m_listeners;
+        public final EventObject m_event;
+
+        Request(EventDispatcher dispatcher, int type,
+            Map<BundleContext, List<ListenerInfo>> listeners, EventObject event)
+        {
+            m_dispatcher = dispatcher;
+            m_type = type;
+            m_listeners = listeners;
+            m_event = event;
+        }
     }
 }
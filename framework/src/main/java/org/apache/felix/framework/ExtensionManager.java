@@ -61,6 +61,7 @@ import java.io.OutputStream;
 import java.io.OutputStreamWriter;
 import java.net.URI;
 import java.net.URL;
+import java.nio.charset.StandardCharsets;
 import java.security.AccessController;
 import java.security.AllPermission;
 import java.security.PrivilegedExceptionAction;
@@ -84,6 +85,7 @@ import java.util.SortedSet;
 import java.util.TreeMap;
 import java.util.TreeSet;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.zip.CRC32;
 
 /**
  * The ExtensionManager class is used as content loader of the systembundle. Added extension
@@ -286,7 +288,8 @@ class ExtensionManager implements Content
                             Properties cachedProps = new Properties();
                             File modulesDir = felix.getDataFile(felix, "modules");
                             Felix.m_secureAction.mkdirs(modulesDir);
-                            File cached = new File(modulesDir, moduleKey + ".properties");
+                            String cacheKey = moduleKey + "-" + getModuleCacheKey(imports, exports.get(moduleKey));
+                            File cached = new File(modulesDir, cacheKey + ".properties");
                             if (Felix.m_secureAction.isFile(cached))
                             {
                                 InputStream input = Felix.m_secureAction.getInputStream(cached);
@@ -314,6 +317,7 @@ class ExtensionManager implements Content
                                 OutputStream output = Felix.m_secureAction.getOutputStream(cached);
                                 cachedProps.store(new OutputStreamWriter(output, "UTF-8"), null);
                                 output.close();
+                                deleteStaleModuleCaches(modulesDir, moduleKey, cached);
                             }
                         }
                         catch (Throwable e)
@@ -388,6 +392,48 @@ class ExtensionManager implements Content
         m_systemBundleRevision.update(config);
     }
 
+    /**
+     * Calculates the key of the cached uses of a JPMS module. The key changes
+     * whenever the runtime image or the packages taken into account change, so
+     * a cached result is only reused if parsing the module again would produce
+     * the same result.
+     */
+    private static String getModuleCacheKey(Set<String> imports, Set<String> exports)
+    {
+        StringBuilder key = new StringBuilder();
+        key.append(Felix.m_secureAction.getSystemProperty("java.vendor", "")).append(';');
+        key.append(Felix.m_secureAction.getSystemProperty("java.runtime.version", "")).append(';');
+        String javaHome = Felix.m_secureAction.getSystemProperty("java.home", null);
+        if (javaHome != null)
+        {
+            key.append(Felix.m_secureAction.getLastModified(
+                new File(new File(javaHome, "lib"), "modules")));
+        }
+        key.append(';').append(new TreeSet<>(imports)).append(';').append(new TreeSet<>(exports));
+
+        CRC32 crc = new CRC32();
+        crc.update(key.toString().getBytes(StandardCharsets.UTF_8));
+        return Long.toHexString(crc.getValue());
+    }
+
+    private static void deleteStaleModuleCaches(File modulesDir, String moduleKey, File current)
+    {
+        File[] files = Felix.m_secureAction.listDirectory(modulesDir);
+        if (files != null)
+        {
+            for (File file : files)
+            {
+                String name = file.getName();
+                // Also remove caches written before they were keyed.
+                if (!file.equals(current) && name.startsWith(moduleKey)
+                    && name.substring(moduleKey.length()).matches("(-[0-9a-f]+)?\\.properties"))
+                {
+                    Felix.m_secureAction.deleteFile(file);
+                }
+            }
+        }
+    }
+
     public BundleRevisionImpl getRevision()
     {
         return m_systemBundleRevision;
@@ -53,6 +53,14 @@ import java.util.StringTokenizer;
 import java.util.TreeMap;
 import java.util.TreeSet;
 import java.util.WeakHashMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.locks.Condition;
 import java.util.concurrent.locks.ReentrantLock;
 
@@ -145,6 +153,10 @@ public class Felix extends BundleImpl implements Framework
     // the global lock; if this value is zero, then it means the global
     // lock is free.
     private int m_globalLockCount = 0;
+    // Maps the threads starting the bundles of a start level in parallel
+    // to the bundle whose lock they are waiting for; used to detect lock
+    // cycles between them.
+    private final Map<Thread, BundleImpl> m_parallelStartWaitersMap = new HashMap<>();
 
     // Maps a bundle location to a bundle location;
     // used to reserve a location when installing a bundle.
@@ -862,6 +874,15 @@ public class Felix extends BundleImpl implements Framework
                     m_extensionManager.startExtensionBundle(this, (BundleImpl) extension);
                 }
 
+                // If enabled, reuse the wiring of the previous session for
+                // unchanged bundles. Nothing is resolved here, since resolver
+                // hooks are not registered yet; the regular resolves during
+                // startup reuse the wiring if no resolver hook is present.
+                if (Boolean.parseBoolean(_getProperty(FelixConstants.RESOLVER_SNAPSHOT_PROP)))
+                {
+                    loadResolverSnapshot();
+                }
+
 
                 if (m_connectFramework != null)
                 {
@@ -1131,6 +1152,10 @@ public class Felix extends BundleImpl implements Framework
 
                 m_fwkStartLevel.setStartLevelAndWait(startLevel);
 
+                // The resolver snapshot only applies to startup.
+                m_resolver.setSnapshotWires(
+                    Collections.<BundleRevision, List<BundleWire>>emptyMap());
+
                 // The framework is now running.
                 setBundleStateAndNotify(this, Bundle.ACTIVE);
             }
@@ -1484,126 +1509,80 @@ public class Felix extends BundleImpl implements Framework
             int high = (isLowering) ? m_activeStartLevel : m_targetStartLevel;
             m_activeStartLevel = (isLowering) ? high : low;
 
-            // Process bundles and stop or start them accordingly.
-            while (bundlesRemaining)
-            {
-                StartLevelTuple tuple;
+            // Bundles within a start level may be started concurrently
+            // if configured; stopping is always done one by one.
+            ExecutorService executor = (isLowering) ? null : createStartLevelExecutor();
 
-                // Remove our tuple to be processed while holding the queue lock
-                // and update the active start level accordingly, which allows
-                // us to determine in startBundle() if concurrent requests to
-                // start a bundle should be handled synchronously or just added
-                // to the queue and handled asynchronously.
-                synchronized (m_startLevelBundles)
+            try
+            {
+                // Process bundles and stop or start them accordingly.
+                while (bundlesRemaining)
                 {
-                    if (isLowering)
-                    {
-                        tuple = m_startLevelBundles.last();
-                    }
-                    else
-                    {
-                        tuple = m_startLevelBundles.first();
-                    }
+                    List<StartLevelTuple> tuples = new ArrayList<>();
 
-                    if ((tuple.m_level >= low) && (tuple.m_level <= high))
+                    // Remove our tuple to be processed while holding the queue lock
+                    // and update the active start level accordingly, which allows
+                    // us to determine in startBundle() if concurrent requests to
+                    // start a bundle should be handled synchronously or just added
+                    // to the queue and handled asynchronously.
+                    synchronized (m_startLevelBundles)
                     {
-                        m_activeStartLevel = tuple.m_level;
-                    }
-                }
-
-                // Ignore the system bundle, since its start() and
-                // stop() methods get called explicitly in Felix.start()
-                // and Felix.stop(), respectively.
-                if (tuple.m_bundle.getBundleId() != 0)
-                {
-                    // Lock the current bundle.
-                    try
-                    {
-                        acquireBundleLock(tuple.m_bundle,
-                            Bundle.INSTALLED | Bundle.RESOLVED | Bundle.ACTIVE
-                            | Bundle.STARTING | Bundle.STOPPING);
-                    }
-                    catch (IllegalStateException ex)
-                    {
-                        // Ignore if the bundle has been uninstalled.
-                        if (tuple.m_bundle.getState() != Bundle.UNINSTALLED)
+                        StartLevelTuple tuple;
+                        if (isLowering)
                         {
-                            fireFrameworkEvent(FrameworkEvent.ERROR, tuple.m_bundle, ex);
-                            m_logger.log(tuple.m_bundle,
-                                Logger.LOG_ERROR,
-                                "Error locking " + tuple.m_bundle._getLocation(), ex);
+                            tuple = m_startLevelBundles.last();
                         }
                         else
                         {
-                            synchronized (m_startLevelBundles)
-                            {
-                                m_startLevelBundles.remove(tuple);
-                                bundlesRemaining = !m_startLevelBundles.isEmpty();
-                            }
+                            tuple = m_startLevelBundles.first();
                         }
-                        continue;
-                    }
 
-                    try
-                    {
-                        // Start the bundle if necessary.
-                        // Note that we only attempt to start the bundle if
-                        // its start level is equal to the active start level,
-                        // which means we assume lower bundles are in the state
-                        // they should be in (i.e., we won't attempt to restart
-                        // them if they previously failed to start).
-                        if (!isLowering
-                            && (((tuple.m_bundle.getPersistentState() == Bundle.ACTIVE)
-                                || (tuple.m_bundle.getPersistentState() == Bundle.STARTING))
-                                && (tuple.m_level == m_activeStartLevel)))
+                        if ((tuple.m_level >= low) && (tuple.m_level <= high))
                         {
-                            try
-                            {
-// TODO: LAZY - Not sure if this is the best way...
-                                int options = Bundle.START_TRANSIENT;
-                                options = (tuple.m_bundle.getPersistentState() == Bundle.STARTING)
-                                    ? options | Bundle.START_ACTIVATION_POLICY
-                                    : options;
-                                startBundle(tuple.m_bundle, options);
-                            }
-                            catch (Throwable th)
-                            {
-                                fireFrameworkEvent(FrameworkEvent.ERROR, tuple.m_bundle, th);
-                                m_logger.log(tuple.m_bundle,
-                                    Logger.LOG_ERROR,
-                                    "Error starting " + tuple.m_bundle._getLocation(), th);
-                            }
+                            m_activeStartLevel = tuple.m_level;
                         }
-                        // Stop the bundle if necessary.
-                        else if (isLowering
-                            && (((tuple.m_bundle.getState() == Bundle.ACTIVE)
-                                || (tuple.m_bundle.getState() == Bundle.STARTING))
-                                && (tuple.m_level == m_activeStartLevel)))
+
+                        tuples.add(tuple);
+                        if (executor != null)
                         {
-                            try
-                            {
-                                stopBundle(tuple.m_bundle, false);
-                            }
-                            catch (Throwable th)
+                            // Take all remaining bundles of the same start level.
+                            for (StartLevelTuple next : m_startLevelBundles.tailSet(tuple))
                             {
-                                fireFrameworkEvent(FrameworkEvent.ERROR, tuple.m_bundle, th);
-                                m_logger.log(tuple.m_bundle,
-                                    Logger.LOG_ERROR,
-                                    "Error stopping " + tuple.m_bundle._getLocation(), th);
+                                if (next.m_level != tuple.m_level)
+                                {
+                                    break;
+                                }
+                                if (next != tuple)
+                                {
+                                    tuples.add(next);
+                                }
                             }
                         }
                     }
-                    finally
+
+                    List<StartLevelTuple> processed;
+                    if (tuples.size() == 1)
                     {
-                        // Always release bundle lock.
-                        releaseBundleLock(tuple.m_bundle);
+                        processed = processStartLevelTuple(tuples.get(0), isLowering)
+                            ? tuples : Collections.<StartLevelTuple>emptyList();
+                    }
+                    else
+                    {
+                        processed = processStartLevelTuples(tuples, executor);
                     }
-                }
 
-                synchronized (m_startLevelBundles)
+                    synchronized (m_startLevelBundles)
+                    {
+                        m_startLevelBundles.removeAll(processed);
+                        bundlesRemaining = !m_startLevelBundles.isEmpty();
+                    }
+                }
+            }
+            finally
+            {
+                if (executor != null)
                 {
-                    m_startLevelBundles.remove(tuple);
-                    bundlesRemaining = !m_startLevelBundles.isEmpty();
+                    executor.shutdown();
                 }
             }
 
@@ -1634,6 +1613,209 @@ public class Felix extends BundleImpl implements Framework
         }
     }
 
+    /**
+     * Starts or stops a single bundle as part of a start level change.
+     * @param tuple the bundle and its start level.
+     * @param isLowering whether the start level is being lowered.
+     * @return false if the bundle could not be locked and has to be
+     *         processed again, true otherwise.
+    **/
+    private boolean processStartLevelTuple(StartLevelTuple tuple, boolean isLowering)
+    {
+        // Ignore the system bundle, since its start() and
+        // stop() methods get called explicitly in Felix.start()
+        // and Felix.stop(), respectively.
+        if (tuple.m_bundle.getBundleId() == 0)
+        {
+            return true;
+        }
+
+        // Lock the current bundle.
+        try
+        {
+            acquireBundleLock(tuple.m_bundle,
+                Bundle.INSTALLED | Bundle.RESOLVED | Bundle.ACTIVE
+                | Bundle.STARTING | Bundle.STOPPING);
+        }
+        catch (IllegalStateException ex)
+        {
+            // Ignore if the bundle has been uninstalled.
+            if (tuple.m_bundle.getState() != Bundle.UNINSTALLED)
+            {
+                fireFrameworkEvent(FrameworkEvent.ERROR, tuple.m_bundle, ex);
+                m_logger.log(tuple.m_bundle,
+                    Logger.LOG_ERROR,
+                    "Error locking " + tuple.m_bundle._getLocation(), ex);
+                return false;
+            }
+            return true;
+        }
+
+        try
+        {
+            // Start the bundle if necessary.
+            // Note that we only attempt to start the bundle if
+            // its start level is equal to the active start level,
+            // which means we assume lower bundles are in the state
+            // they should be in (i.e., we won't attempt to restart
+            // them if they previously failed to start).
+            if (!isLowering
+                && (((tuple.m_bundle.getPersistentState() == Bundle.ACTIVE)
+                    || (tuple.m_bundle.getPersistentState() == Bundle.STARTING))
+                    && (tuple.m_level == m_activeStartLevel)))
+            {
+                try
+                {
+// TODO: LAZY - Not sure if this is the best way...
+                    int options = Bundle.START_TRANSIENT;
+                    options = (tuple.m_bundle.getPersistentState() == Bundle.STARTING)
+                        ? options | Bundle.START_ACTIVATION_POLICY
+                        : options;
+                    long time = System.nanoTime();
+                    startBundle(tuple.m_bundle, options);
+                    time = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - time);
+                    tuple.m_bundle.setStartLevelStartTime(time);
+                    m_logger.log(tuple.m_bundle,
+                        Logger.LOG_DEBUG,
+                        "Started " + tuple.m_bundle._getLocation() + " in " + time + " ms.");
+                }
+                catch (Throwable th)
+                {
+                    fireFrameworkEvent(FrameworkEvent.ERROR, tuple.m_bundle, th);
+                    m_logger.log(tuple.m_bundle,
+                        Logger.LOG_ERROR,
+                        "Error starting " + tuple.m_bundle._getLocation(), th);
+                }
+            }
+            // Stop the bundle if necessary.
+            else if (isLowering
+                && (((tuple.m_bundle.getState() == Bundle.ACTIVE)
+                    || (tuple.m_bundle.getState() == Bundle.STARTING))
+                    && (tuple.m_level == m_activeStartLevel)))
+            {
+                try
+                {
+                    stopBundle(tuple.m_bundle, false);
+                }
+                catch (Throwable th)
+                {
+                    fireFrameworkEvent(FrameworkEvent.ERROR, tuple.m_bundle, th);
+                    m_logger.log(tuple.m_bundle,
+                        Logger.LOG_ERROR,
+                        "Error stopping " + tuple.m_bundle._getLocation(), th);
+                }
+            }
+        }
+        finally
+        {
+            // Always release bundle lock.
+            releaseBundleLock(tuple.m_bundle);
+        }
+        return true;
+    }
+
+    /**
+     * Starts the bundles of a start level concurrently and waits until all
+     * of them have been processed.
+     * <p>
+     * Each pool thread holds the lock of the bundle it starts while the
+     * activator runs. Activators starting another bundle of the same start
+     * level therefore take a second bundle lock, and two activators starting
+     * each other would wait for each other forever. Such a lock cycle is
+     * detected in {@link #acquireBundleLock(BundleImpl, int)} and the start
+     * of the other bundle fails instead.
+     * @return the tuples that were processed.
+    **/
+    private List<StartLevelTuple> processStartLevelTuples(
+        List<StartLevelTuple> tuples, ExecutorService executor)
+    {
+        List<Future<Boolean>> futures = new ArrayList<>(tuples.size());
+        for (final StartLevelTuple tuple : tuples)
+        {
+            futures.add(executor.submit(new Callable<Boolean>()
+            {
+                @Override
+                public Boolean call()
+                {
+                    return processStartLevelTuple(tuple, false);
+                }
+            }));
+        }
+
+        List<StartLevelTuple> processed = new ArrayList<>(tuples.size());
+        boolean interrupted = false;
+        for (int i = 0; i < futures.size(); i++)
+        {
+            try
+            {
+                if (futures.get(i).get())
+                {
+                    processed.add(tuples.get(i));
+                }
+            }
+            catch (InterruptedException ex)
+            {
+                // We must not leave while bundles are still being started.
+                interrupted = true;
+                i--;
+            }
+            catch (ExecutionException ex)
+            {
+                m_logger.log(tuples.get(i).m_bundle,
+                    Logger.LOG_ERROR,
+                    "Error starting " + tuples.get(i).m_bundle._getLocation(), ex.getCause());
+                processed.add(tuples.get(i));
+            }
+        }
+        if (interrupted)
+        {
+            Thread.currentThread().interrupt();
+        }
+        return processed;
+    }
+
+    /**
+     * Returns whether the calling thread is a pool thread starting the
+     * bundles of a start level in parallel.
+    **/
+    private static boolean isParallelStartThread()
+    {
+        return FrameworkStartLevelImpl.StartLevelThread.isWorkerThread();
+    }
+
+    private ExecutorService createStartLevelExecutor()
+    {
+        String str = getProperty(FelixConstants.STARTLEVEL_PARALLELISM);
+        int parallelism = 1;
+        if (str != null)
+        {
+            try
+            {
+                parallelism = Integer.parseInt(str);
+            }
+            catch (NumberFormatException e)
+            {
+                // Ignore
+            }
+        }
+        if (parallelism <= 1)
+        {
+            return null;
+        }
+        return Executors.newFixedThreadPool(parallelism, new ThreadFactory()
+        {
+            final AtomicInteger counter = new AtomicInteger();
+            @Override
+            public Thread newThread(Runnable r)
+            {
+                Thread thread = new FrameworkStartLevelImpl.StartLevelThread(r,
+                    FrameworkStartLevelImpl.THREAD_NAME + "-" + counter.incrementAndGet(), true);
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
     /**
      * Returns the start level into which newly installed bundles will
      * be placed by default; this method implements functionality for
@@ -2218,7 +2400,7 @@ public class Felix extends BundleImpl implements Framework
             // queued but processed synchronously.
             // Note: Don't queue starts from the start level thread, otherwise
             // we'd never get anything started.
-            if (!Thread.currentThread().getName().equals(FrameworkStartLevelImpl.THREAD_NAME))
+            if (!FrameworkStartLevelImpl.StartLevelThread.isStartLevelThread())
             {
                 synchronized (m_startLevelBundles)
                 {
@@ -4989,6 +5171,48 @@ public class Felix extends BundleImpl implements Framework
     // Private utility methods.
     //
 
+    private void loadResolverSnapshot()
+    {
+        ResolverSnapshot snapshot = null;
+        try
+        {
+            File file = m_cache.getSystemBundleDataFile(ResolverSnapshot.SNAPSHOT_FILE);
+            if (m_secureAction.isFile(file))
+            {
+                snapshot = ResolverSnapshot.read(file);
+            }
+        }
+        catch (Exception ex)
+        {
+            m_logger.log(
+                Logger.LOG_WARNING,
+                "Unable to read resolver snapshot, ignoring it.",
+                ex);
+        }
+        if (snapshot == null)
+        {
+            return;
+        }
+
+        m_resolver.setSnapshotWires(snapshot.getWires(getBundles()));
+    }
+
+    private void saveResolverSnapshot()
+    {
+        try
+        {
+            ResolverSnapshot.capture(getBundles()).write(
+                m_cache.getSystemBundleDataFile(ResolverSnapshot.SNAPSHOT_FILE));
+        }
+        catch (Exception ex)
+        {
+            m_logger.log(
+                Logger.LOG_WARNING,
+                "Unable to save resolver snapshot.",
+                ex);
+        }
+    }
+
     /**
      * Generated the next valid bundle identifier.
     **/
@@ -5201,6 +5425,12 @@ public class Felix extends BundleImpl implements Framework
                 }
             }
 
+            // Record the final wiring so that it can be reused on restart.
+            if (Boolean.parseBoolean(_getProperty(FelixConstants.RESOLVER_SNAPSHOT_PROP)))
+            {
+                saveResolverSnapshot();
+            }
+
             // Dispose of the bundles to close their associated contents.
             bundles = getBundles();
             for (Bundle bundle : bundles) {
@@ -5512,6 +5742,7 @@ public class Felix extends BundleImpl implements Framework
     void acquireBundleLock(BundleImpl bundle, int desiredStates)
         throws IllegalStateException
     {
+        boolean parallelStart = isParallelStartThread();
         m_bundleLock.lock();
         try
         {
@@ -5538,6 +5769,21 @@ public class Felix extends BundleImpl implements Framework
                 {
                     bundle.getLockingThread().interrupt();
                 }
+                // Bundles started in parallel may start each other from their
+                // activators. If the bundle is locked by a thread that waits
+                // for a lock of the calling thread, waiting would never end.
+                else if (parallelStart && isParallelStartLockCycle(bundle))
+                {
+                    throw new IllegalStateException(
+                        "Unable to acquire bundle lock, lock cycle with a concurrent start.");
+                }
+
+                // Let the other waiting threads recheck for a lock cycle.
+                if (parallelStart
+                    && (m_parallelStartWaitersMap.put(Thread.currentThread(), bundle) == null))
+                {
+                    m_bundleLockCondition.signalAll();
+                }
 
                 try
                 {
@@ -5562,10 +5808,37 @@ public class Felix extends BundleImpl implements Framework
         }
         finally
         {
+            if (parallelStart)
+            {
+                m_parallelStartWaitersMap.remove(Thread.currentThread());
+            }
             m_bundleLock.unlock();
         }
     }
 
+    /**
+     * Checks whether the lock of the specified bundle is held by a thread
+     * that, directly or through other waiting threads, waits for a bundle
+     * lock held by the calling thread. Must be called with the bundle lock
+     * mutex held.
+     * @param bundle The bundle to lock.
+     * @return <tt>true</tt> if waiting for the bundle lock would deadlock.
+    **/
+    private boolean isParallelStartLockCycle(BundleImpl bundle)
+    {
+        Thread owner = bundle.getLockingThread();
+        for (int i = 0; (owner != null) && (i <= m_parallelStartWaitersMap.size()); i++)
+        {
+            if (owner == Thread.currentThread())
+            {
+                return true;
+            }
+            BundleImpl waitingFor = m_parallelStartWaitersMap.get(owner);
+            owner = (waitingFor != null) ? waitingFor.getLockingThread() : null;
+        }
+        return false;
+    }
+
     /**
      * Releases the bundle's lock.
      * @param bundle The bundle whose lock is to be released.
@@ -61,7 +61,7 @@ class FrameworkStartLevelImpl implements FrameworkStartLevel, Runnable
         // Start a thread to perform asynchronous package refreshes.
         if (m_thread == null)
         {
-            m_thread = new Thread(this, THREAD_NAME);
+            m_thread = new StartLevelThread(this, THREAD_NAME, false);
             m_thread.setDaemon(true);
             m_thread.start();
         }
@@ -376,4 +376,40 @@ class FrameworkStartLevelImpl implements FrameworkStartLevel, Runnable
             return m_listeners;
         }
     }
+
+    /**
+     * A thread changing the active start level, or one of the pool threads
+     * starting the bundles of a start level in parallel. The framework uses
+     * the thread type to recognize calls coming from its own start level
+     * processing.
+     */
+    static final class StartLevelThread extends Thread
+    {
+        private final boolean m_worker;
+
+        StartLevelThread(Runnable target, String name, boolean worker)
+        {
+            super(target, name);
+            m_worker = worker;
+        }
+
+        /**
+         * Returns whether the calling thread is a start level thread.
+         */
+        static boolean isStartLevelThread()
+        {
+            return Thread.currentThread() instanceof StartLevelThread;
+        }
+
+        /**
+         * Returns whether the calling thread is a pool thread starting the
+         * bundles of a start level in parallel.
+         */
+        static boolean isWorkerThread()
+        {
+            Thread thread = Thread.currentThread();
+            return (thread instanceof StartLevelThread)
+                && ((StartLevelThread) thread).m_worker;
+        }
+    }
 }
@@ -0,0 +1,310 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.felix.framework;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+import org.apache.felix.framework.util.Util;
+import org.apache.felix.framework.wiring.BundleWireImpl;
+import org.osgi.framework.Bundle;
+import org.osgi.framework.namespace.PackageNamespace;
+import org.osgi.framework.wiring.BundleCapability;
+import org.osgi.framework.wiring.BundleRequirement;
+import org.osgi.framework.wiring.BundleRevision;
+import org.osgi.framework.wiring.BundleWire;
+import org.osgi.framework.wiring.BundleWiring;
+
+/**
+ * Compact binary record of the wires chosen by the resolver during the
+ * previous framework session. The snapshot is written to the system bundle
+ * data area when the framework stops and read back on the next init. Every
+ * revision is stored with its location, last modified time and a checksum of
+ * its declared requirements and capabilities, so stale entries for bundles
+ * that changed in between are simply ignored.
+ * <p>
+ * The wires of unchanged revisions are handed to the {@link StatefulResolver},
+ * which marks those revisions resolved with their previous wiring instead of
+ * computing it again. A revision is only recorded with its wires if all of
+ * them can be expressed by declared requirements and capabilities; fragments,
+ * hosts with attached fragments and wires to older revisions are left to the
+ * resolver.
+ */
+class ResolverSnapshot
+{
+    static final String SNAPSHOT_FILE = "resolver.state";
+
+    private static final int MAGIC = 0x46525356; // "FRSV"
+    private static final int VERSION = 2;
+
+    private final List<String> m_locations;
+    private final List<long[]> m_stamps;
+    private final List<Boolean> m_complete;
+    private final List<int[]> m_wires;
+
+    private ResolverSnapshot(
+        List<String> locations, List<long[]> stamps, List<Boolean> complete, List<int[]> wires)
+    {
+        m_locations = locations;
+        m_stamps = stamps;
+        m_complete = complete;
+        m_wires = wires;
+    }
+
+    /**
+     * Captures the current wiring of the given bundles.
+     */
+    static ResolverSnapshot capture(Bundle[] bundles)
+    {
+        List<String> locations = new ArrayList<>();
+        List<long[]> stamps = new ArrayList<>();
+        List<Boolean> complete = new ArrayList<>();
+        List<int[]> wires = new ArrayList<>();
+        List<BundleRevision> revisions = new ArrayList<>();
+        Map<BundleRevision, Integer> indices = new HashMap<>();
+
+        for (Bundle bundle : bundles)
+        {
+            BundleRevision revision = bundle.adapt(BundleRevision.class);
+            if ((revision != null) && (revision.getWiring() != null))
+            {
+                indices.put(revision, locations.size());
+                revisions.add(revision);
+                locations.add(((BundleImpl) bundle)._getLocation());
+                stamps.add(new long[] { bundle.getLastModified(), checksum(revision) });
+            }
+        }
+
+        for (BundleRevision revision : revisions)
+        {
+            List<int[]> revisionWires = captureWires(revision, indices);
+            complete.add(revisionWires != null);
+            if (revisionWires != null)
+            {
+                wires.addAll(revisionWires);
+            }
+        }
+
+        return new ResolverSnapshot(locations, stamps, complete, wires);
+    }
+
+    /**
+     * Returns the required wires of a revision in the order of its wiring,
+     * or <code>null</code> if the wiring cannot be recorded completely.
+     */
+    private static List<int[]> captureWires(
+        BundleRevision revision, Map<BundleRevision, Integer> indices)
+    {
+        BundleWiring wiring = revision.getWiring();
+        if ((wiring == null) || Util.isFragment(revision))
+        {
+            return null;
+        }
+        List<int[]> wires = new ArrayList<>();
+        for (BundleWire wire : wiring.getRequiredWires(null))
+        {
+            BundleRequirement req = wire.getRequirement();
+            BundleCapability cap = wire.getCapability();
+            // Dynamic wires are created on demand again.
+            if (PackageNamespace.RESOLUTION_DYNAMIC.equals(
+                req.getDirectives().get(PackageNamespace.REQUIREMENT_RESOLUTION_DIRECTIVE)))
+            {
+                continue;
+            }
+            Integer reqRev = indices.get(req.getRevision());
+            Integer capRev = indices.get(cap.getRevision());
+            int reqIdx = req.getRevision().getDeclaredRequirements(null).indexOf(req);
+            int capIdx = cap.getRevision().getDeclaredCapabilities(null).indexOf(cap);
+            if ((req.getRevision() != revision) || (capRev == null)
+                || (reqIdx < 0) || (capIdx < 0))
+            {
+                return null;
+            }
+            wires.add(new int[] { reqRev, reqIdx, capRev, capIdx });
+        }
+        return wires;
+    }
+
+    /**
+     * Reads a snapshot previously written with {@link #write(File)}.
+     */
+    static ResolverSnapshot read(File file) throws IOException
+    {
+        try (DataInputStream in = new DataInputStream(
+            new BufferedInputStream(Felix.m_secureAction.getInputStream(file))))
+        {
+            if ((in.readInt() != MAGIC) || (in.readInt() != VERSION))
+            {
+                throw new IOException("Unsupported resolver snapshot format.");
+            }
+            int revCount = in.readInt();
+            List<String> locations = new ArrayList<>(revCount);
+            List<long[]> stamps = new ArrayList<>(revCount);
+            List<Boolean> complete = new ArrayList<>(revCount);
+            for (int i = 0; i < revCount; i++)
+            {
+                byte[] bytes = new byte[in.readInt()];
+                in.readFully(bytes);
+                locations.add(new String(bytes, StandardCharsets.UTF_8));
+                stamps.add(new long[] { in.readLong(), in.readLong() });
+                complete.add(in.readBoolean());
+            }
+            int wireCount = in.readInt();
+            List<int[]> wires = new ArrayList<>(wireCount);
+            for (int i = 0; i < wireCount; i++)
+            {
+                int[] wire = new int[] { in.readInt(), in.readInt(), in.readInt(), in.readInt() };
+                if ((wire[0] < 0) || (wire[0] >= revCount) || (wire[2] < 0) || (wire[2] >= revCount)
+                    || (wire[1] < 0) || (wire[3] < 0) || !complete.get(wire[0]))
+                {
+                    throw new IOException("Corrupt resolver snapshot.");
+                }
+                wires.add(wire);
+            }
+            return new ResolverSnapshot(locations, stamps, complete, wires);
+        }
+    }
+
+    void write(File file) throws IOException
+    {
+        try (DataOutputStream out = new DataOutputStream(
+            new BufferedOutputStream(Felix.m_secureAction.getOutputStream(file))))
+        {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(m_locations.size());
+            for (int i = 0; i < m_locations.size(); i++)
+            {
+                byte[] bytes = m_locations.get(i).getBytes(StandardCharsets.UTF_8);
+                out.writeInt(bytes.length);
+                out.write(bytes);
+                out.writeLong(m_stamps.get(i)[0]);
+                out.writeLong(m_stamps.get(i)[1]);
+                out.writeBoolean(m_complete.get(i));
+            }
+            out.writeInt(m_wires.size());
+            for (int[] wire : m_wires)
+            {
+                for (int value : wire)
+                {
+                    out.writeInt(value);
+                }
+            }
+        }
+    }
+
+    /**
+     * Matches the snapshot against the currently installed bundles. Only
+     * revisions whose location, last modified time and checksum are unchanged
+     * are considered, and a revision is only returned if all of its previous
+     * wires lead to such revisions.
+     *
+     * @param bundles the installed bundles.
+     * @return the previous required wires per unchanged revision.
+     */
+    Map<BundleRevision, List<BundleWire>> getWires(Bundle[] bundles)
+    {
+        Map<String, Bundle> byLocation = new HashMap<>();
+        for (Bundle bundle : bundles)
+        {
+            byLocation.put(((BundleImpl) bundle)._getLocation(), bundle);
+        }
+
+        BundleRevision[] revisions = new BundleRevision[m_locations.size()];
+        for (int i = 0; i < revisions.length; i++)
+        {
+            Bundle bundle = byLocation.get(m_locations.get(i));
+            if (!m_complete.get(i) || (bundle == null)
+                || (bundle.getLastModified() != m_stamps.get(i)[0]))
+            {
+                continue;
+            }
+            BundleRevision revision = bundle.adapt(BundleRevision.class);
+            if ((revision != null) && (checksum(revision) == m_stamps.get(i)[1]))
+            {
+                revisions[i] = revision;
+            }
+        }
+
+        Map<BundleRevision, List<BundleWire>> result = new HashMap<>();
+        for (BundleRevision revision : revisions)
+        {
+            if (revision != null)
+            {
+                result.put(revision, new ArrayList<BundleWire>());
+            }
+        }
+        for (int[] wire : m_wires)
+        {
+            BundleRevision requirer = revisions[wire[0]];
+            if ((requirer == null) || !result.containsKey(requirer))
+            {
+                continue;
+            }
+            BundleRevision provider = revisions[wire[2]];
+            List<BundleRequirement> reqs = requirer.getDeclaredRequirements(null);
+            List<BundleCapability> caps = (provider != null)
+                ? provider.getDeclaredCapabilities(null)
+                : null;
+            if ((caps == null) || (wire[1] >= reqs.size()) || (wire[3] >= caps.size()))
+            {
+                // The provider changed, so the requirer must be resolved again.
+                result.remove(requirer);
+                continue;
+            }
+            result.get(requirer).add(new BundleWireImpl(
+                requirer, reqs.get(wire[1]), provider, caps.get(wire[3])));
+        }
+        return result;
+    }
+
+    private static long checksum(BundleRevision revision)
+    {
+        CRC32 crc = new CRC32();
+        for (BundleRequirement req : revision.getDeclaredRequirements(null))
+        {
+            update(crc, req.getNamespace());
+            update(crc, req.getDirectives().toString());
+            update(crc, req.getAttributes().toString());
+        }
+        for (BundleCapability cap : revision.getDeclaredCapabilities(null))
+        {
+            update(crc, cap.getNamespace());
+            update(crc, cap.getDirectives().toString());
+            update(crc, cap.getAttributes().toString());
+        }
+        return crc.getValue();
+    }
+
+    private static void update(CRC32 crc, String s)
+    {
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        crc.update(bytes, 0, bytes.length);
+    }
+}
@@ -30,7 +30,6 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
-import org.apache.felix.framework.util.MapToDictionary;
 import org.apache.felix.framework.util.StringMap;
 import org.apache.felix.framework.util.Util;
 import org.apache.felix.framework.wiring.BundleCapabilityImpl;
@@ -132,7 +131,7 @@ class ServiceRegistrationImpl<S> implements ServiceRegistration<S>
             initializeProperties(dict);
         }
         // Tell registry about it.
-        m_registry.servicePropertiesModified(this, new MapToDictionary<>(oldProps));
+        m_registry.servicePropertiesModified(this, oldProps);
     }
 
     @Override
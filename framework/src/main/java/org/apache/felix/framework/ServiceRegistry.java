@@ -19,10 +19,11 @@
 package org.apache.felix.framework;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
-import java.util.Collections;
 import java.util.Dictionary;
 import java.util.List;
+import java.util.Map;
 import java.util.Map.Entry;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
@@ -33,6 +34,7 @@ import java.util.stream.Collectors;
 
 import org.apache.felix.framework.capabilityset.CapabilitySet;
 import org.apache.felix.framework.capabilityset.SimpleFilter;
+import org.apache.felix.framework.util.MapToDictionary;
 import org.apache.felix.framework.wiring.BundleCapabilityImpl;
 import org.osgi.framework.Bundle;
 import org.osgi.framework.Constants;
@@ -53,7 +55,8 @@ public class ServiceRegistry
     private final ConcurrentMap<Bundle, List<ServiceRegistration<?>>> m_regsMap = new ConcurrentHashMap<>();
 
     // Capability set for all service registrations.
-    private final CapabilitySet m_regCapSet = new CapabilitySet(Collections.singletonList(Constants.OBJECTCLASS), false);
+    private final CapabilitySet m_regCapSet = new CapabilitySet(
+        Arrays.asList(Constants.OBJECTCLASS, Constants.SERVICE_ID), false);
 
     // Maps bundle to an array of usage counts.
     private final ConcurrentMap<Bundle, UsageCount[]> m_inUseMap = new ConcurrentHashMap<>();
@@ -321,6 +324,32 @@ public class ServiceRegistry
                     null);
         }
 
+        // Fast path for a service object the bundle already holds, which
+        // neither calls out to the service factory nor allocates.
+        if (!isPrototype && reg.isValid())
+        {
+            usage = obtainUsageCount(bundle, ref, null, null);
+            ServiceHolder holder = (usage != null) ? usage.m_svcHolderRef.get() : null;
+            if ((holder != null) && (holder.m_latch.getCount() == 0) && (holder.m_service != null))
+            {
+                incrementToPositiveValue(usage.m_count);
+                if ( isServiceObjects )
+                {
+                    incrementToPositiveValue(usage.m_serviceObjectsCount);
+                }
+                if ((holder == usage.m_svcHolderRef.get()) && reg.isValid())
+                {
+                    return (S) holder.m_service;
+                }
+                // The service object was released concurrently, so we have
+                // to get it again below, but the usage is already counted.
+            }
+            else
+            {
+                usage = null;
+            }
+        }
+
         try
         {
             reg.markCurrentThread();
@@ -328,19 +357,22 @@ public class ServiceRegistry
             // Make sure the service registration is still valid.
             if (reg.isValid())
             {
-                // Get the usage count, or create a new one. If this is a
-                // prototype, the we'll alway create a new one.
-                usage = obtainUsageCount(bundle, ref, null, isPrototype);
+                if (usage == null)
+                {
+                    // Get the usage count, or create a new one. If this is a
+                    // prototype, the we'll alway create a new one.
+                    usage = obtainUsageCount(bundle, ref, null, isPrototype);
 
-                // Increment the usage count and grab the already retrieved
-                // service object, if one exists.
-                incrementToPositiveValue(usage.m_count);
-                svcObj = usage.getService();
+                    // Increment the usage count and grab the already retrieved
+                    // service object, if one exists.
+                    incrementToPositiveValue(usage.m_count);
 
-                if ( isServiceObjects )
-                {
-                    incrementToPositiveValue(usage.m_serviceObjectsCount);
+                    if ( isServiceObjects )
+                    {
+                        incrementToPositiveValue(usage.m_serviceObjectsCount);
+                    }
                 }
+                svcObj = usage.getService();
 
                 // If we have a usage count, but no service object, then we haven't
                 // cached the service object yet, so we need to create one.
@@ -353,21 +385,25 @@ public class ServiceRegistry
                     // why the below section is in a loop.
                     while (holder == null)
                     {
-                        ServiceHolder h = new ServiceHolder();
-                        if (usage.m_svcHolderRef.compareAndSet(null, h))
+                        holder = usage.m_svcHolderRef.get();
+                        if (holder == null)
                         {
-                            holder = h;
-                            try {
-                                svcObj = reg.getService(bundle);
-                                holder.m_service = svcObj;
-                            } finally {
-                                holder.m_latch.countDown();
+                            // Only allocate a holder if we may have to create the service.
+                            ServiceHolder h = new ServiceHolder();
+                            if (usage.m_svcHolderRef.compareAndSet(null, h))
+                            {
+                                holder = h;
+                                try {
+                                    svcObj = reg.getService(bundle);
+                                    holder.m_service = svcObj;
+                                } finally {
+                                    holder.m_latch.countDown();
+                                }
                             }
                         }
                         else
                         {
-                            holder = usage.m_svcHolderRef.get();
-                            if (holder != null)
+                            if (holder.m_latch.getCount() != 0)
                             {
                                 boolean interrupted = false;
                                 do
@@ -390,8 +426,8 @@ public class ServiceRegistry
                                     }
                                 }
                                 while (interrupted);
-                                svcObj = holder.m_service;
                             }
+                            svcObj = holder.m_service;
                         }
 
                         // if someone concurrently changed the holder, loop again
@@ -610,13 +646,15 @@ public class ServiceRegistry
         return bundles;
     }
 
-    void servicePropertiesModified(ServiceRegistration<?> reg, Dictionary<String,?> oldProps)
+    void servicePropertiesModified(ServiceRegistration<?> reg, Map<String,?> oldProps)
     {
+        m_regCapSet.updateCapability((BundleCapabilityImpl) reg.getReference(), oldProps);
         this.hookRegistry.updateHooks(reg.getReference());
         if (m_callbacks != null)
         {
             m_callbacks.serviceChanged(
-                new ServiceEvent(ServiceEvent.MODIFIED, reg.getReference()), oldProps);
+                new ServiceEvent(ServiceEvent.MODIFIED, reg.getReference()),
+                new MapToDictionary<>(oldProps));
         }
     }
 
@@ -671,8 +709,11 @@ public class ServiceRegistry
                 return null;
             }
 
-            // Add a new Usage Count.
-            usage = new UsageCount(ref, isPrototype);
+            // Add a new Usage Count, reusing the one of a failed attempt.
+            if (usage == null)
+            {
+                usage = new UsageCount(ref, isPrototype);
+            }
             if (usages == null)
             {
                 UsageCount[] newUsages = new UsageCount[] { usage };
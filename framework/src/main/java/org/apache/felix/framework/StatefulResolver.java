@@ -58,6 +58,7 @@ import org.osgi.framework.ServiceReference;
 import org.osgi.framework.ServiceRegistration;
 import org.osgi.framework.hooks.resolver.ResolverHook;
 import org.osgi.framework.hooks.resolver.ResolverHookFactory;
+import org.osgi.framework.namespace.PackageNamespace;
 import org.osgi.framework.wiring.BundleCapability;
 import org.osgi.framework.wiring.BundleRequirement;
 import org.osgi.framework.wiring.BundleRevision;
@@ -90,6 +91,9 @@ class StatefulResolver
     private final Map<String, List<BundleRevision>> m_singletons;
     // Selected singleton bundle revisions.
     private final Set<BundleRevision> m_selectedSingletons;
+    // Wires of unchanged revisions from the previous framework session.
+    private Map<BundleRevision, List<BundleWire>> m_snapshotWires =
+        Collections.emptyMap();
     private volatile ServiceRegistration<?> m_serviceRegistration;
 
     StatefulResolver(Felix felix, ServiceRegistry registry)
@@ -106,17 +110,21 @@ class StatefulResolver
         m_singletons = new HashMap<>();
         m_selectedSingletons = new HashSet<>();
 
+        // Version attributes get sorted indices to answer version ranges.
         List<String> indices = new ArrayList<>();
         indices.add(BundleRevision.BUNDLE_NAMESPACE);
-        m_capSets.put(BundleRevision.BUNDLE_NAMESPACE, new CapabilitySet(indices, true));
+        m_capSets.put(BundleRevision.BUNDLE_NAMESPACE, new CapabilitySet(indices,
+            Collections.singletonList(Constants.BUNDLE_VERSION_ATTRIBUTE), true));
 
         indices = new ArrayList<>();
         indices.add(BundleRevision.PACKAGE_NAMESPACE);
-        m_capSets.put(BundleRevision.PACKAGE_NAMESPACE, new CapabilitySet(indices, true));
+        m_capSets.put(BundleRevision.PACKAGE_NAMESPACE, new CapabilitySet(indices,
+            Collections.singletonList(Constants.VERSION_ATTRIBUTE), true));
 
         indices = new ArrayList<>();
         indices.add(BundleRevision.HOST_NAMESPACE);
-        m_capSets.put(BundleRevision.HOST_NAMESPACE,  new CapabilitySet(indices, true));
+        m_capSets.put(BundleRevision.HOST_NAMESPACE,  new CapabilitySet(indices,
+            Collections.singletonList(Constants.BUNDLE_VERSION_ATTRIBUTE), true));
     }
 
     private Executor getExecutor()
@@ -352,6 +360,18 @@ class StatefulResolver
         return result;
     }
 
+    /**
+     * Sets the wires of the previous framework session for revisions which
+     * are unchanged since. While set, resolving such revisions reuses their
+     * previous wiring instead of computing it, unless resolver hooks are
+     * registered.
+     */
+    synchronized void setSnapshotWires(
+        Map<BundleRevision, List<BundleWire>> wires)
+    {
+        m_snapshotWires = wires;
+    }
+
     private boolean filteredBySecurity(BundleRequirement req, BundleCapability cap)
     {
         if (System.getSecurityManager() != null)
@@ -485,15 +505,20 @@ class StatefulResolver
             ResolutionException rethrow = null;
             try
             {
-                // Resolve the revision.
-                wireMap = m_resolver.resolve(
-                    new ResolveContextImpl(
-                        this,
-                        getWirings(),
-                        record,
-                        mandatory,
-                        optional,
-                        getFragments()));
+                // Reuse the wiring of the previous session if possible,
+                // otherwise resolve the revision.
+                wireMap = getSnapshotWireMap(record, mandatory, optional);
+                if (wireMap == null)
+                {
+                    wireMap = m_resolver.resolve(
+                        new ResolveContextImpl(
+                            this,
+                            getWirings(),
+                            record,
+                            mandatory,
+                            optional,
+                            getFragments()));
+                }
             }
             catch (ResolutionException ex)
             {
@@ -523,6 +548,125 @@ class StatefulResolver
         fireResolvedEvents(wireMap);
     }
 
+    /**
+     * Returns the wire map of the previous session for the given revisions
+     * and their unresolved providers, or <code>null</code> if any of them
+     * must be resolved. The snapshot is not used if resolver hooks or a
+     * security manager could reject the previous wiring, or if a fragment
+     * could attach to one of the hosts. Providers which are resolved already
+     * must still have their previous wiring, so the reused wiring satisfies
+     * the same uses constraints as before.
+     */
+    private synchronized Map<Resource, List<Wire>> getSnapshotWireMap(
+        ResolverHookRecord record,
+        Set<BundleRevision> mandatory,
+        Set<BundleRevision> optional)
+    {
+        if (m_snapshotWires.isEmpty()
+            || !record.getResolverHookRefs().isEmpty()
+            || (System.getSecurityManager() != null)
+            || (mandatory.isEmpty() && optional.isEmpty()))
+        {
+            return null;
+        }
+
+        Set<BundleRevision> unresolvedFragments = getFragments();
+        for (Iterator<BundleRevision> it = unresolvedFragments.iterator(); it.hasNext(); )
+        {
+            if (it.next().getWiring() != null)
+            {
+                it.remove();
+            }
+        }
+
+        Map<Resource, List<Wire>> wireMap = new HashMap<>();
+        Set<BundleRevision> visited = new HashSet<>();
+        List<BundleRevision> pending = new ArrayList<>(mandatory);
+        pending.addAll(optional);
+        while (!pending.isEmpty())
+        {
+            BundleRevision revision = pending.remove(pending.size() - 1);
+            if (!visited.add(revision))
+            {
+                continue;
+            }
+            List<BundleWire> wires = m_snapshotWires.get(revision);
+            if (wires == null)
+            {
+                return null;
+            }
+            if (revision.getWiring() != null)
+            {
+                if (!isSameWiring(revision.getWiring(), wires))
+                {
+                    return null;
+                }
+            }
+            else if (!m_revisions.contains(revision)
+                || (Util.isSingleton(revision) && !isSelectedSingleton(revision))
+                || hasFragments(revision, unresolvedFragments))
+            {
+                return null;
+            }
+            else
+            {
+                wireMap.put(revision, new ArrayList<Wire>(wires));
+            }
+            for (BundleWire wire : wires)
+            {
+                pending.add(wire.getProvider());
+            }
+        }
+        return wireMap.isEmpty() ? null : wireMap;
+    }
+
+    private static boolean isSameWiring(BundleWiring wiring, List<BundleWire> wires)
+    {
+        Iterator<BundleWire> it = wires.iterator();
+        for (BundleWire wire : wiring.getRequiredWires(null))
+        {
+            if (PackageNamespace.RESOLUTION_DYNAMIC.equals(wire.getRequirement()
+                .getDirectives().get(PackageNamespace.REQUIREMENT_RESOLUTION_DIRECTIVE)))
+            {
+                continue;
+            }
+            if (!it.hasNext())
+            {
+                return false;
+            }
+            BundleWire previous = it.next();
+            if ((wire.getRequirement() != previous.getRequirement())
+                || (wire.getCapability() != previous.getCapability()))
+            {
+                return false;
+            }
+        }
+        return !it.hasNext();
+    }
+
+    private static boolean hasFragments(BundleRevision host, Set<BundleRevision> fragments)
+    {
+        if (fragments.isEmpty())
+        {
+            return false;
+        }
+        for (BundleCapability cap : host.getDeclaredCapabilities(BundleRevision.HOST_NAMESPACE))
+        {
+            for (BundleRevision fragment : fragments)
+            {
+                for (BundleRequirement req
+                    : fragment.getDeclaredRequirements(BundleRevision.HOST_NAMESPACE))
+                {
+                    if (CapabilitySet.matches(cap, ((BundleRequirementImpl) req).getFilter()))
+                    {
+                        return true;
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
     BundleRevision resolve(BundleRevision revision, String pkgName)
         throws ResolutionException, BundleException
     {
@@ -75,6 +75,13 @@ import java.util.Map;
  *       string provides control over the size of the internal buffer of the
  *       disk cache for performance reasons.
  *   </li>
+ *   <li><tt>felix.cache.indexed</tt> - Enables or disables indexed access to
+ *       bundle JAR files. If set to <tt>true</tt>, the entries of each bundle
+ *       JAR file are indexed once and kept next to the revision, and entries
+ *       are read from a memory mapping of the JAR file instead of a zip file,
+ *       which is not subject to <tt>felix.cache.filelimit</tt>. The default
+ *       value is <tt>false</tt>.
+ *   </li>
  * <p>
  * For specific information on how to configure the Felix framework, refer
  * to the Felix framework usage documentation.
@@ -87,6 +94,7 @@ public class BundleCache
     public static final String CACHE_ROOTDIR_PROP = "felix.cache.rootdir";
     public static final String CACHE_LOCKING_PROP = "felix.cache.locking";
     public static final String CACHE_FILELIMIT_PROP = "felix.cache.filelimit";
+    public static final String CACHE_INDEXED_PROP = "felix.cache.indexed";
     private static final ThreadLocal<SoftReference<byte[]>> m_defaultBuffer = new ThreadLocal<>();
     private static volatile int DEFAULT_BUFFER = 1024 * 64;
 
@@ -0,0 +1,141 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.felix.framework.cache;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Enumeration;
+import java.util.Map;
+
+import org.apache.felix.framework.Logger;
+import org.apache.felix.framework.util.FelixConstants;
+import org.apache.felix.framework.util.WeakZipFileFactory;
+import org.apache.felix.framework.util.WeakZipFileFactory.WeakZipFile;
+
+/**
+ * JAR content that serves entry lookups and reads from a {@link JarIndex}
+ * instead of the weak zip file, so the hot class loading path neither takes
+ * the zip file factory locks nor reopens weakly closed zip files. Extracting
+ * embedded JAR files and native libraries still goes through the zip file.
+ */
+class IndexedJarContent extends JarContent
+{
+    private final Logger m_logger;
+    private final Map<?,?> m_configMap;
+    private final WeakZipFileFactory m_zipFactory;
+    private final Object m_revisionLock;
+    private final File m_rootDir;
+    private final WeakZipFile m_zipFile;
+    private final JarIndex m_index;
+
+    IndexedJarContent(Logger logger, Map<?,?> configMap, WeakZipFileFactory zipFactory,
+        Object revisionLock, File rootDir, File file, WeakZipFile zipFile, JarIndex index)
+    {
+        super(logger, configMap, zipFactory, revisionLock, rootDir, file, zipFile);
+        m_logger = logger;
+        m_configMap = configMap;
+        m_zipFactory = zipFactory;
+        m_revisionLock = revisionLock;
+        m_rootDir = rootDir;
+        m_zipFile = zipFile;
+        m_index = index;
+    }
+
+    @Override
+    public boolean hasEntry(String name)
+    {
+        return m_index.getEntry(name) >= 0;
+    }
+
+    @Override
+    public boolean isDirectory(String name)
+    {
+        int idx = m_index.getEntry(name);
+        return (idx >= 0) && m_index.isDirectory(idx);
+    }
+
+    @Override
+    public Enumeration<String> getEntries()
+    {
+        Enumeration<String> e = m_index.getNames();
+
+        // Spec says to return null if there are no entries.
+        return (e.hasMoreElements()) ? e : null;
+    }
+
+    @Override
+    public byte[] getEntryAsBytes(String name) throws IllegalStateException
+    {
+        int idx = m_index.getEntry(name);
+        if (idx < 0)
+        {
+            return null;
+        }
+        try
+        {
+            return m_index.getBytes(idx);
+        }
+        catch (IOException ex)
+        {
+            // Fall back to the zip file, which reports its own failures.
+            return super.getEntryAsBytes(name);
+        }
+    }
+
+    @Override
+    public InputStream getEntryAsStream(String name)
+        throws IllegalStateException, IOException
+    {
+        int idx = m_index.getEntry(name);
+        if (idx < 0)
+        {
+            return null;
+        }
+        try
+        {
+            return m_index.getInputStream(idx);
+        }
+        catch (IOException ex)
+        {
+            // Fall back to the zip file, which reports its own failures.
+            return super.getEntryAsStream(name);
+        }
+    }
+
+    @Override
+    public long getContentTime(String urlPath)
+    {
+        int idx = m_index.getEntry(urlPath);
+        return (idx >= 0) ? m_index.getTime(idx) : -1L;
+    }
+
+    @Override
+    public Content getEntryAsContent(String entryName)
+    {
+        // If the entry name refers to the content itself, then
+        // keep using the index.
+        if (entryName.equals(FelixConstants.CLASS_PATH_DOT))
+        {
+            return new IndexedJarContent(m_logger, m_configMap, m_zipFactory,
+                m_revisionLock, m_rootDir, getFile(), m_zipFile, m_index);
+        }
+        return super.getEntryAsContent(entryName);
+    }
+}
@@ -0,0 +1,688 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.felix.framework.cache;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+import java.util.zip.ZipException;
+
+/**
+ * Immutable entry index of a JAR file that is read through a memory mapping
+ * of the file. The index is built once from the central directory and kept
+ * next to the revision, so later framework sessions only have to read the
+ * index file. Lookups go through an open addressing table of name hashes and
+ * need neither a lock nor an open file handle.
+ * <p>
+ * The mapping is released when the index is closed and the streams that
+ * are still open on its entries have been closed, so the mapping is never
+ * accessed after it has been released. As a mapped file must not be modified, only JAR files owned by
+ * the bundle cache should be indexed.
+ * <p>
+ * Only plain JAR files are supported; archives using ZIP64 extensions,
+ * encryption or compression methods other than stored and deflated are
+ * rejected with an exception, in which case callers should fall back to
+ * the regular zip file based access.
+ */
+class JarIndex
+{
+    private static final int MAGIC = 0x464a4958; // "FJIX"
+    private static final int VERSION = 1;
+
+    private static final int LOC_SIG = 0x04034b50;
+    private static final int CEN_SIG = 0x02014b50;
+    private static final int END_SIG = 0x06054b50;
+    private static final int END_HDR = 22;
+    private static final int STORED = 0;
+    private static final int DEFLATED = 8;
+
+    private final MappedByteBuffer m_buffer;
+    private final String[] m_names;
+    private final int[] m_methods;
+    private final long[] m_offsets;
+    private final long[] m_compressedSizes;
+    private final long[] m_sizes;
+    private final long[] m_times;
+    // Open addressing table of entry indices plus one, zero marks a free slot.
+    private final int[] m_table;
+    // Number of readers of the mapping, guarded by this index. The mapping
+    // is released when the index is closed and the last reader is done.
+    private int m_readers;
+    private boolean m_closed;
+
+    private JarIndex(MappedByteBuffer buffer, String[] names, int[] methods,
+        long[] offsets, long[] compressedSizes, long[] sizes, long[] times)
+        throws IOException
+    {
+        // Entries must lie within the mapped file, as the offsets are
+        // either read from the index file or from the central directory.
+        int limit = buffer.limit();
+        for (int i = 0; i < names.length; i++)
+        {
+            if (((methods[i] != STORED) && (methods[i] != DEFLATED))
+                || (offsets[i] < 0) || (compressedSizes[i] < 0)
+                || (sizes[i] < 0) || (sizes[i] > Integer.MAX_VALUE)
+                || (offsets[i] + 30 + compressedSizes[i] > limit))
+            {
+                throw new ZipException("Invalid entry in index: " + names[i]);
+            }
+        }
+
+        m_buffer = buffer;
+        m_names = names;
+        m_methods = methods;
+        m_offsets = offsets;
+        m_compressedSizes = compressedSizes;
+        m_sizes = sizes;
+        m_times = times;
+
+        m_table = new int[Integer.highestOneBit(Math.max(names.length, 1) * 2) * 2];
+        int mask = m_table.length - 1;
+        for (int i = 0; i < names.length; i++)
+        {
+            int slot = names[i].hashCode() & mask;
+            while (m_table[slot] != 0)
+            {
+                slot = (slot + 1) & mask;
+            }
+            m_table[slot] = i + 1;
+        }
+    }
+
+    /**
+     * Opens the index for the given JAR file. If the index file exists and
+     * was created for the current JAR file it is read, otherwise the index
+     * is built from the central directory of the JAR file and written to
+     * the index file.
+     * @param jarFile the JAR file to index.
+     * @param indexFile the persistent index of the JAR file.
+     * @return the index.
+     * @throws IOException if the JAR file cannot be indexed.
+     */
+    static JarIndex open(File jarFile, File indexFile) throws IOException
+    {
+        MappedByteBuffer buffer = map(jarFile);
+        long length = jarFile.length();
+        long lastModified = jarFile.lastModified();
+
+        if (BundleCache.getSecureAction().fileExists(indexFile))
+        {
+            try
+            {
+                JarIndex index = read(buffer, indexFile, length, lastModified);
+                if (index != null)
+                {
+                    return index;
+                }
+            }
+            catch (IOException ex)
+            {
+                // Rebuild the index below.
+            }
+        }
+
+        JarIndex index;
+        try
+        {
+            index = build(buffer);
+        }
+        catch (IOException | RuntimeException ex)
+        {
+            unmap(buffer);
+            throw ex;
+        }
+        try
+        {
+            index.write(indexFile, length, lastModified);
+        }
+        catch (IOException ex)
+        {
+            // The index still works, it will just be rebuilt next time.
+            BundleCache.getSecureAction().deleteFile(indexFile);
+        }
+        return index;
+    }
+
+    private static MappedByteBuffer map(File jarFile) throws IOException
+    {
+        RandomAccessFile raf = new RandomAccessFile(jarFile, "r");
+        try
+        {
+            FileChannel channel = raf.getChannel();
+            if (channel.size() > Integer.MAX_VALUE)
+            {
+                throw new ZipException("JAR file too large to be indexed: " + jarFile);
+            }
+            // The mapping stays valid after the channel is closed.
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+            return buffer;
+        }
+        finally
+        {
+            raf.close();
+        }
+    }
+
+    private static JarIndex build(MappedByteBuffer buffer) throws IOException
+    {
+        ByteBuffer buf = buffer.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+
+        // Find the end of central directory record, which may be followed
+        // by an archive comment of up to 64k.
+        int end = -1;
+        for (int pos = buf.limit() - END_HDR; (pos >= 0) && (pos >= buf.limit() - END_HDR - 0xFFFF); pos--)
+        {
+            if (buf.getInt(pos) == END_SIG)
+            {
+                end = pos;
+                break;
+            }
+        }
+        if (end < 0)
+        {
+            throw new ZipException("End of central directory not found.");
+        }
+        int count = buf.getShort(end + 10) & 0xFFFF;
+        long cenSize = buf.getInt(end + 12) & 0xFFFFFFFFL;
+        long cenOffset = buf.getInt(end + 16) & 0xFFFFFFFFL;
+        if ((count == 0xFFFF) || (cenSize == 0xFFFFFFFFL) || (cenOffset == 0xFFFFFFFFL)
+            || (cenOffset + cenSize > end))
+        {
+            throw new ZipException("Unsupported central directory.");
+        }
+
+        String[] names = new String[count];
+        int[] methods = new int[count];
+        long[] offsets = new long[count];
+        long[] compressedSizes = new long[count];
+        long[] sizes = new long[count];
+        long[] times = new long[count];
+
+        int pos = (int) cenOffset;
+        for (int i = 0; i < count; i++)
+        {
+            if ((pos + 46 > end) || (buf.getInt(pos) != CEN_SIG))
+            {
+                throw new ZipException("Invalid central directory header.");
+            }
+            int flags = buf.getShort(pos + 8) & 0xFFFF;
+            methods[i] = buf.getShort(pos + 10) & 0xFFFF;
+            long dosTime = buf.getInt(pos + 12) & 0xFFFFFFFFL;
+            compressedSizes[i] = buf.getInt(pos + 20) & 0xFFFFFFFFL;
+            sizes[i] = buf.getInt(pos + 24) & 0xFFFFFFFFL;
+            int nameLen = buf.getShort(pos + 28) & 0xFFFF;
+            int extraLen = buf.getShort(pos + 30) & 0xFFFF;
+            int commentLen = buf.getShort(pos + 32) & 0xFFFF;
+            offsets[i] = buf.getInt(pos + 42) & 0xFFFFFFFFL;
+
+            if (((flags & 1) != 0)
+                || ((methods[i] != STORED) && (methods[i] != DEFLATED))
+                || (compressedSizes[i] == 0xFFFFFFFFL) || (sizes[i] == 0xFFFFFFFFL)
+                || (offsets[i] == 0xFFFFFFFFL))
+            {
+                throw new ZipException("Unsupported entry in JAR file.");
+            }
+
+            if (pos + 46 + nameLen + extraLen + commentLen > end)
+            {
+                throw new ZipException("Invalid central directory header.");
+            }
+
+            byte[] name = new byte[nameLen];
+            ByteBuffer nameBuf = buf.duplicate();
+            nameBuf.position(pos + 46);
+            nameBuf.get(name);
+            names[i] = new String(name, StandardCharsets.UTF_8);
+            times[i] = getTime(buf, pos + 46 + nameLen, extraLen, dosTime);
+
+            pos += 46 + nameLen + extraLen + commentLen;
+        }
+
+        return new JarIndex(buffer, names, methods, offsets, compressedSizes, sizes, times);
+    }
+
+    private static long getTime(ByteBuffer buf, int pos, int len, long dosTime)
+    {
+        // Prefer the extended timestamp, which is in UTC.
+        int end = pos + len;
+        while (pos + 4 <= end)
+        {
+            int tag = buf.getShort(pos) & 0xFFFF;
+            int size = buf.getShort(pos + 2) & 0xFFFF;
+            if ((tag == 0x5455) && (size >= 5) && ((buf.get(pos + 4) & 1) != 0))
+            {
+                return (buf.getInt(pos + 5) & 0xFFFFFFFFL) * 1000L;
+            }
+            pos += 4 + size;
+        }
+
+        Calendar cal = Calendar.getInstance();
+        cal.clear();
+        cal.set((int) (((dosTime >> 25) & 0x7f) + 1980),
+            (int) (((dosTime >> 21) & 0x0f) - 1),
+            (int) ((dosTime >> 16) & 0x1f),
+            (int) ((dosTime >> 11) & 0x1f),
+            (int) ((dosTime >> 5) & 0x3f),
+            (int) ((dosTime << 1) & 0x3e));
+        return cal.getTimeInMillis();
+    }
+
+    private static JarIndex read(MappedByteBuffer buffer, File indexFile,
+        long length, long lastModified) throws IOException
+    {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+            BundleCache.getSecureAction().getInputStream(indexFile))))
+        {
+            if ((in.readInt() != MAGIC) || (in.readInt() != VERSION)
+                || (in.readLong() != length) || (in.readLong() != lastModified))
+            {
+                return null;
+            }
+            int count = in.readInt();
+            // Each entry has a central directory header of at least 46 bytes.
+            if ((count < 0) || (count > buffer.limit() / 46))
+            {
+                throw new ZipException("Invalid entry count in index: " + count);
+            }
+            String[] names = new String[count];
+            int[] methods = new int[count];
+            long[] offsets = new long[count];
+            long[] compressedSizes = new long[count];
+            long[] sizes = new long[count];
+            long[] times = new long[count];
+            for (int i = 0; i < count; i++)
+            {
+                names[i] = in.readUTF();
+                methods[i] = in.readByte();
+                offsets[i] = in.readLong();
+                compressedSizes[i] = in.readLong();
+                sizes[i] = in.readLong();
+                times[i] = in.readLong();
+            }
+            return new JarIndex(buffer, names, methods, offsets, compressedSizes, sizes, times);
+        }
+    }
+
+    private void write(File indexFile, long length, long lastModified) throws IOException
+    {
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+            BundleCache.getSecureAction().getOutputStream(indexFile))))
+        {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(length);
+            out.writeLong(lastModified);
+            out.writeInt(m_names.length);
+            for (int i = 0; i < m_names.length; i++)
+            {
+                out.writeUTF(m_names[i]);
+                out.writeByte(m_methods[i]);
+                out.writeLong(m_offsets[i]);
+                out.writeLong(m_compressedSizes[i]);
+                out.writeLong(m_sizes[i]);
+                out.writeLong(m_times[i]);
+            }
+        }
+    }
+
+    /**
+     * Looks up an entry the same way the weak zip file does, i.e., also
+     * trying the name as a directory.
+     * @param name the entry name.
+     * @return the entry number or -1 if there is no such entry.
+     */
+    int getEntry(String name)
+    {
+        int idx = find(name);
+        if ((idx < 0) || ((m_sizes[idx] == 0) && !m_names[idx].endsWith("/")))
+        {
+            int dir = find(name + "/");
+            if (dir >= 0)
+            {
+                idx = dir;
+            }
+        }
+        return idx;
+    }
+
+    private int find(String name)
+    {
+        int mask = m_table.length - 1;
+        int slot = name.hashCode() & mask;
+        int idx;
+        while ((idx = m_table[slot]) != 0)
+        {
+            if (m_names[idx - 1].equals(name))
+            {
+                return idx - 1;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+    boolean isDirectory(int idx)
+    {
+        return m_names[idx].endsWith("/");
+    }
+
+    long getSize(int idx)
+    {
+        return m_sizes[idx];
+    }
+
+    long getTime(int idx)
+    {
+        return m_times[idx];
+    }
+
+    Enumeration<String> getNames()
+    {
+        return Collections.enumeration(Arrays.asList(m_names));
+    }
+
+    byte[] getBytes(int idx) throws IOException
+    {
+        byte[] compressed;
+        acquire();
+        try
+        {
+            ByteBuffer data = getData(idx);
+            compressed = new byte[data.remaining()];
+            data.get(compressed);
+        }
+        finally
+        {
+            release();
+        }
+        if (m_methods[idx] == STORED)
+        {
+            return compressed;
+        }
+
+        byte[] bytes = new byte[(int) m_sizes[idx]];
+        Inflater inflater = new Inflater(true);
+        try
+        {
+            inflater.setInput(compressed);
+            int off = 0;
+            while (off < bytes.length)
+            {
+                int len = inflater.inflate(bytes, off, bytes.length - off);
+                if ((len == 0) && (inflater.finished() || inflater.needsInput() || inflater.needsDictionary()))
+                {
+                    throw new ZipException("Truncated entry: " + m_names[idx]);
+                }
+                off += len;
+            }
+            return bytes;
+        }
+        catch (DataFormatException ex)
+        {
+            throw new ZipException(ex.getMessage());
+        }
+        finally
+        {
+            inflater.end();
+        }
+    }
+
+    InputStream getInputStream(int idx) throws IOException
+    {
+        // The stream keeps the mapping until it is closed.
+        ByteBuffer data;
+        acquire();
+        try
+        {
+            data = getData(idx);
+        }
+        catch (IOException ex)
+        {
+            release();
+            throw ex;
+        }
+        if (m_methods[idx] == STORED)
+        {
+            return new ByteBufferInputStream(data, false);
+        }
+        return new InflaterInputStream(
+            new ByteBufferInputStream(data, true), new Inflater(true))
+        {
+            @Override
+            public void close() throws IOException
+            {
+                try
+                {
+                    super.close();
+                }
+                finally
+                {
+                    // Only the default inflater is released by the super class.
+                    inf.end();
+                }
+            }
+        };
+    }
+
+    // Must be called between acquire() and release().
+    private ByteBuffer getData(int idx) throws IOException
+    {
+        ByteBuffer buf = m_buffer.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        int pos = (int) m_offsets[idx];
+        if (buf.getInt(pos) != LOC_SIG)
+        {
+            throw new ZipException("Invalid local header: " + m_names[idx]);
+        }
+        long start = pos + 30L + (buf.getShort(pos + 26) & 0xFFFF) + (buf.getShort(pos + 28) & 0xFFFF);
+        if (start + m_compressedSizes[idx] > buf.limit())
+        {
+            throw new ZipException("Invalid local header: " + m_names[idx]);
+        }
+        buf.position((int) start);
+        buf.limit((int) (start + m_compressedSizes[idx]));
+        return buf.slice();
+    }
+
+    private synchronized void acquire() throws IOException
+    {
+        if (m_closed)
+        {
+            throw new IOException("JAR index has been closed.");
+        }
+        m_readers++;
+    }
+
+    private void release()
+    {
+        boolean unmap;
+        synchronized (this)
+        {
+            unmap = (--m_readers == 0) && m_closed;
+        }
+        if (unmap)
+        {
+            unmap(m_buffer);
+        }
+    }
+
+    /**
+     * Releases the mapping of the JAR file. Entry data cannot be read
+     * afterwards; if streams are still open, the mapping is released when
+     * the last of them is closed.
+     */
+    void close()
+    {
+        boolean unmap;
+        synchronized (this)
+        {
+            if (m_closed)
+            {
+                return;
+            }
+            m_closed = true;
+            unmap = (m_readers == 0);
+        }
+        if (unmap)
+        {
+            unmap(m_buffer);
+        }
+    }
+
+    /**
+     * Releases a mapping right away instead of waiting for the buffer to be
+     * garbage collected, which otherwise keeps the file open. If this is
+     * not possible on the current VM, the mapping is released by the
+     * garbage collector.
+     */
+    private static void unmap(MappedByteBuffer buffer)
+    {
+        try
+        {
+            try
+            {
+                // Java 9 and later
+                Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+                Field field = unsafeClass.getDeclaredField("theUnsafe");
+                field.setAccessible(true);
+                Method invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+                invokeCleaner.invoke(field.get(null), buffer);
+            }
+            catch (NoSuchMethodException ex)
+            {
+                // Java 8
+                Method cleanerMethod = buffer.getClass().getMethod("cleaner");
+                cleanerMethod.setAccessible(true);
+                Object cleaner = cleanerMethod.invoke(buffer);
+                if (cleaner != null)
+                {
+                    cleaner.getClass().getMethod("clean").invoke(cleaner);
+                }
+            }
+        }
+        catch (Throwable ex)
+        {
+            // Leave it to the garbage collector.
+        }
+    }
+
+    private class ByteBufferInputStream extends InputStream
+    {
+        private final ByteBuffer m_buf;
+        // Raw deflate data needs an extra dummy byte at the end.
+        private boolean m_pad;
+        private boolean m_released;
+
+        ByteBufferInputStream(ByteBuffer buf, boolean pad)
+        {
+            m_buf = buf;
+            m_pad = pad;
+        }
+
+        @Override
+        public int read() throws IOException
+        {
+            checkClosed();
+            if (m_buf.hasRemaining())
+            {
+                return m_buf.get() & 0xFF;
+            }
+            if (m_pad)
+            {
+                m_pad = false;
+                return 0;
+            }
+            return -1;
+        }
+
+        @Override
+        public int read(byte[] bytes, int off, int len) throws IOException
+        {
+            checkClosed();
+            if (len == 0)
+            {
+                return 0;
+            }
+            if (!m_buf.hasRemaining())
+            {
+                if (m_pad)
+                {
+                    m_pad = false;
+                    bytes[off] = 0;
+                    return 1;
+                }
+                return -1;
+            }
+            len = Math.min(len, m_buf.remaining());
+            m_buf.get(bytes, off, len);
+            return len;
+        }
+
+        private void checkClosed() throws IOException
+        {
+            if (m_released)
+            {
+                throw new IOException("Stream closed.");
+            }
+        }
+
+        @Override
+        public void close()
+        {
+            if (!m_released)
+            {
+                m_released = true;
+                release();
+            }
+        }
+
+        @Override
+        public long skip(long n)
+        {
+            int len = (int) Math.max(0, Math.min(n, m_buf.remaining()));
+            m_buf.position(m_buf.position() + len);
+            return len;
+        }
+
+        @Override
+        public int available()
+        {
+            return m_buf.remaining() + (m_pad ? 1 : 0);
+        }
+    }
+}
@@ -47,10 +47,12 @@ import java.util.zip.ZipEntry;
 class JarRevision extends BundleArchiveRevision
 {
     private static final transient String BUNDLE_JAR_FILE = "bundle.jar";
+    private static final transient String BUNDLE_JAR_INDEX_FILE = "bundle.jar.idx";
 
     private final WeakZipFileFactory m_zipFactory;
     private final File m_bundleFile;
     private final WeakZipFile m_zipFile;
+    private final JarIndex m_index;
 
     public JarRevision(
         Logger logger, Map<?,?> configMap, WeakZipFileFactory zipFactory,
@@ -93,6 +95,27 @@ class JarRevision extends BundleArchiveRevision
             if (zipFile != null) zipFile.close();
             throw ex;
         }
+
+        // Index the bundle JAR, if configured. Bundles installed by reference
+        // are not indexed, as the mapped file must not be changed while it
+        // is mapped and only the copy in the cache is owned by the framework.
+        JarIndex index = null;
+        if (!byReference
+            && Boolean.parseBoolean(String.valueOf(configMap.get(BundleCache.CACHE_INDEXED_PROP))))
+        {
+            try
+            {
+                index = JarIndex.open(m_bundleFile,
+                    new File(getRevisionRootDir(), BUNDLE_JAR_INDEX_FILE));
+            }
+            catch (Exception ex)
+            {
+                getLogger().log(
+                    Logger.LOG_DEBUG,
+                    "Unable to index " + m_bundleFile + ", using zip file instead.", ex);
+            }
+        }
+        m_index = index;
     }
 
     @Override
@@ -109,6 +132,11 @@ class JarRevision extends BundleArchiveRevision
     @Override
 	public Content getContent() throws Exception
     {
+        if (m_index != null)
+        {
+            return new IndexedJarContent(getLogger(), getConfig(), m_zipFactory,
+                this, getRevisionRootDir(), m_bundleFile, m_zipFile, m_index);
+        }
         return new JarContent(getLogger(), getConfig(), m_zipFactory,
             this, getRevisionRootDir(), m_bundleFile, m_zipFile);
     }
@@ -117,6 +145,10 @@ class JarRevision extends BundleArchiveRevision
 	protected void close() throws Exception
     {
         m_zipFile.close();
+        if (m_index != null)
+        {
+            m_index.close();
+        }
     }
 
     //
@@ -25,15 +25,21 @@ import java.lang.reflect.Modifier;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.NavigableMap;
 import java.util.Set;
 import java.util.SortedMap;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.apache.felix.framework.util.SecureAction;
 import org.apache.felix.framework.util.StringComparator;
@@ -47,8 +53,28 @@ public class CapabilitySet
 {
     private final SortedMap<String, Map<Object, Set<BundleCapability>>> m_indices; // Should also be concurrent!
     private final Set<Capability> m_capSet = Collections.newSetFromMap(new ConcurrentHashMap<Capability, Boolean>());
+    // Capabilities whose value for an indexed attribute cannot be looked up by key.
+    private final Map<String, Set<BundleCapability>> m_unindexed;
+    // Number of full scans per attribute, used to decide on dynamic indices.
+    private final ConcurrentMap<String, AtomicInteger> m_scanCounts;
+    // Attributes that were indexed on demand.
+    private final Set<String> m_dynamicIndices;
+    // Dynamic indices that are still being populated.
+    private final Set<String> m_buildingIndices;
+    private final AtomicLong m_indexHits = new AtomicLong();
+    private final AtomicLong m_indexMisses = new AtomicLong();
     private final static SecureAction m_secureAction = new SecureAction();
 
+    // Number of full scans of an attribute after which it is indexed.
+    private static final int DYNAMIC_INDEX_THRESHOLD = 64;
+    // Minimum number of capabilities for which dynamic indices are created.
+    private static final int DYNAMIC_INDEX_MIN_SIZE = 256;
+
+    private static Set<BundleCapability> newCapabilitySet()
+    {
+        return Collections.newSetFromMap(new ConcurrentHashMap<BundleCapability, Boolean>());
+    }
+
     public void dump()
     {
         for (Entry<String, Map<Object, Set<BundleCapability>>> entry : m_indices.entrySet())
@@ -79,16 +105,78 @@ public class CapabilitySet
     }
 
     public CapabilitySet(final List<String> indexProps, final boolean caseSensitive)
+    {
+        this(indexProps, null, caseSensitive);
+    }
+
+    /**
+     * Creates a capability set with hash indices for the given attributes
+     * and sorted indices for the given version attributes. Sorted indices
+     * are used to answer range queries, e.g. {@code (version>=1.0.0)}, and
+     * version range equality.
+     */
+    public CapabilitySet(final List<String> indexProps,
+        final List<String> sortedIndexProps, final boolean caseSensitive)
     {
         m_indices = (caseSensitive)
             ? new ConcurrentSkipListMap<>()
             : new ConcurrentSkipListMap<>(
                 StringComparator.COMPARATOR);
+        m_unindexed = (caseSensitive)
+            ? new ConcurrentSkipListMap<>()
+            : new ConcurrentSkipListMap<>(
+                StringComparator.COMPARATOR);
+        m_scanCounts = (caseSensitive)
+            ? new ConcurrentSkipListMap<>()
+            : new ConcurrentSkipListMap<>(
+                StringComparator.COMPARATOR);
+        m_dynamicIndices = (caseSensitive)
+            ? new ConcurrentSkipListSet<>()
+            : new ConcurrentSkipListSet<>(
+                StringComparator.COMPARATOR);
+        m_buildingIndices = (caseSensitive)
+            ? new ConcurrentSkipListSet<>()
+            : new ConcurrentSkipListSet<>(
+                StringComparator.COMPARATOR);
         for (int i = 0; (indexProps != null) && (i < indexProps.size()); i++)
         {
             m_indices.put(
                 indexProps.get(i), new ConcurrentHashMap<>());
+            m_unindexed.put(indexProps.get(i), newCapabilitySet());
         }
+        for (int i = 0; (sortedIndexProps != null) && (i < sortedIndexProps.size()); i++)
+        {
+            m_indices.put(
+                sortedIndexProps.get(i), new ConcurrentSkipListMap<>());
+            m_unindexed.put(sortedIndexProps.get(i), newCapabilitySet());
+        }
+    }
+
+    /**
+     * Returns the number of attribute comparisons that were answered
+     * from an index.
+     */
+    public long getIndexHits()
+    {
+        return m_indexHits.get();
+    }
+
+    /**
+     * Returns the number of attribute comparisons that required a linear
+     * scan over the candidate capabilities.
+     */
+    public long getIndexMisses()
+    {
+        return m_indexMisses.get();
+    }
+
+    /**
+     * Returns the names of the indexed attributes, including indices that
+     * were created on demand for frequently queried attributes.
+     */
+    public Set<String> getIndexedAttributes()
+    {
+        return Collections.unmodifiableSet(m_indices.keySet());
     }
 
     public void addCapability(final BundleCapability cap)
@@ -98,90 +186,237 @@ public class CapabilitySet
         // Index capability.
         for (Entry<String, Map<Object, Set<BundleCapability>>> entry : m_indices.entrySet())
         {
-            Object value = cap.getAttributes().get(entry.getKey());
-            if (value != null)
+            indexCapability(entry.getKey(), entry.getValue(), cap, cap.getAttributes());
+        }
+    }
+
+    /**
+     * Updates the indices of a capability whose attributes were modified.
+     * @param cap the modified capability.
+     * @param oldAttrs the attributes of the capability before modification.
+     */
+    public void updateCapability(final BundleCapability cap, final Map<String, ?> oldAttrs)
+    {
+        for (Entry<String, Map<Object, Set<BundleCapability>>> entry : m_indices.entrySet())
+        {
+            deindexCapability(entry.getKey(), entry.getValue(), cap, oldAttrs);
+            if (m_capSet.contains(cap))
             {
-                if (value.getClass().isArray())
-                {
-                    value = convertArrayToList(value);
-                }
+                indexCapability(entry.getKey(), entry.getValue(), cap, cap.getAttributes());
+            }
+        }
+        // The capability might have been removed concurrently.
+        if (!m_capSet.contains(cap))
+        {
+            removeFromIndices(cap, cap.getAttributes());
+        }
+    }
 
-                ConcurrentMap<Object, Set<BundleCapability>> index =
-                        (ConcurrentMap<Object, Set<BundleCapability>>) entry.getValue();
+    private void indexCapability(
+        String name, Map<Object, Set<BundleCapability>> index,
+        BundleCapability cap, Map<String, ?> attrs)
+    {
+        Object value = attrs.get(name);
+        if (value != null)
+        {
+            if (value.getClass().isArray())
+            {
+                value = convertArrayToList(value);
+            }
 
-                if (value instanceof Collection)
-                {
-                    Collection<?> c = (Collection<?>) value;
-                    for (Object o : c)
-                    {
-                        indexCapability(index, cap, o);
-                    }
-                }
-                else
+            ConcurrentMap<Object, Set<BundleCapability>> cindex =
+                    (ConcurrentMap<Object, Set<BundleCapability>>) index;
+
+            if (value instanceof Collection)
+            {
+                Collection<?> c = (Collection<?>) value;
+                for (Object o : c)
                 {
-                    indexCapability(index, cap, value);
+                    indexCapability(name, cindex, cap, o);
                 }
             }
+            else
+            {
+                indexCapability(name, cindex, cap, value);
+            }
         }
     }
 
     private void indexCapability(
-        ConcurrentMap<Object, Set<BundleCapability>> index, BundleCapability cap, Object capValue)
+        String name, ConcurrentMap<Object, Set<BundleCapability>> index,
+        BundleCapability cap, Object capValue)
     {
-        Set<BundleCapability> caps = Collections.newSetFromMap(new ConcurrentHashMap<BundleCapability, Boolean>());
-        Set<BundleCapability> prevval = index.putIfAbsent(capValue, caps);
+        // Only values that can be matched by key lookup are indexed, all
+        // others are tracked separately and compared one by one.
+        Object key = getIndexKey(index, capValue);
+        if (key == null)
+        {
+            m_unindexed.get(name).add(cap);
+            return;
+        }
+        Set<BundleCapability> caps = newCapabilitySet();
+        Set<BundleCapability> prevval = index.putIfAbsent(key, caps);
         if (prevval != null)
             caps = prevval;
         caps.add(cap);
     }
 
+    /**
+     * Returns the key of an attribute value in an index, or {@code null} if
+     * the value cannot be looked up by key. Integral numbers are kept as
+     * {@code Long}, since a filter value matches them if it parses to the
+     * same number, whatever the type of the attribute.
+     */
+    private static Object getIndexKey(Map<Object, Set<BundleCapability>> index, Object value)
+    {
+        if (index instanceof NavigableMap)
+        {
+            return (value instanceof Version) ? value : null;
+        }
+        if (value instanceof String)
+        {
+            return value;
+        }
+        if ((value instanceof Long) || (value instanceof Integer)
+            || (value instanceof Short) || (value instanceof Byte))
+        {
+            return Long.valueOf(((Number) value).longValue());
+        }
+        return null;
+    }
+
+    /**
+     * Parses a filter value like {@code compare()} does for integral
+     * attributes. Returns {@code null} if it is not an integral number.
+     */
+    private static Long parseIntegral(String value)
+    {
+        String s = value.trim();
+        int start = ((s.length() > 1) && ((s.charAt(0) == '-') || (s.charAt(0) == '+'))) ? 1 : 0;
+        if (s.length() == start)
+        {
+            return null;
+        }
+        for (int i = start; i < s.length(); i++)
+        {
+            if (Character.digit(s.charAt(i), 10) < 0)
+            {
+                return null;
+            }
+        }
+        try
+        {
+            return Long.valueOf(s);
+        }
+        catch (NumberFormatException ex)
+        {
+            return null;
+        }
+    }
+
     public void removeCapability(final BundleCapability cap)
     {
         if (m_capSet.remove(cap))
         {
-            for (Entry<String, Map<Object, Set<BundleCapability>>> entry : m_indices.entrySet())
-            {
-                Object value = cap.getAttributes().get(entry.getKey());
-                if (value != null)
-                {
-                    if (value.getClass().isArray())
-                    {
-                        value = convertArrayToList(value);
-                    }
+            removeFromIndices(cap, cap.getAttributes());
+        }
+    }
 
-                    Map<Object, Set<BundleCapability>> index = entry.getValue();
+    private void removeFromIndices(final BundleCapability cap, final Map<String, ?> attrs)
+    {
+        for (Entry<String, Map<Object, Set<BundleCapability>>> entry : m_indices.entrySet())
+        {
+            deindexCapability(entry.getKey(), entry.getValue(), cap, attrs);
+        }
+    }
 
-                    if (value instanceof Collection)
-                    {
-                        Collection<?> c = (Collection<?>) value;
-                        for (Object o : c)
-                        {
-                            deindexCapability(index, cap, o);
-                        }
-                    }
-                    else
-                    {
-                        deindexCapability(index, cap, value);
-                    }
+    private void deindexCapability(
+        String name, Map<Object, Set<BundleCapability>> index,
+        BundleCapability cap, Map<String, ?> attrs)
+    {
+        Object value = attrs.get(name);
+        if (value != null)
+        {
+            if (value.getClass().isArray())
+            {
+                value = convertArrayToList(value);
+            }
+
+            if (value instanceof Collection)
+            {
+                Collection<?> c = (Collection<?>) value;
+                for (Object o : c)
+                {
+                    deindexCapability(name, index, cap, o);
                 }
             }
+            else
+            {
+                deindexCapability(name, index, cap, value);
+            }
         }
     }
 
     private void deindexCapability(
-        Map<Object, Set<BundleCapability>> index, BundleCapability cap, Object value)
+        String name, Map<Object, Set<BundleCapability>> index,
+        BundleCapability cap, Object value)
     {
-        Set<BundleCapability> caps = index.get(value);
+        Object key = getIndexKey(index, value);
+        if (key == null)
+        {
+            m_unindexed.get(name).remove(cap);
+            return;
+        }
+        Set<BundleCapability> caps = index.get(key);
         if (caps != null)
         {
             caps.remove(cap);
             if (caps.isEmpty())
             {
-                index.remove(value);
+                index.remove(key);
             }
         }
     }
 
+    /**
+     * Creates a hash index for an attribute that is frequently queried
+     * for equality but was not configured to be indexed.
+     */
+    private void createDynamicIndex(String name)
+    {
+        Map<Object, Set<BundleCapability>> index = new ConcurrentHashMap<>();
+        // Publish the index before populating it, so that concurrently
+        // added capabilities are either seen here or index themselves,
+        // but do not use it for queries until it is complete.
+        m_buildingIndices.add(name);
+        m_unindexed.putIfAbsent(name, newCapabilitySet());
+        if (m_indices.putIfAbsent(name, index) != null)
+        {
+            m_buildingIndices.remove(name);
+            return;
+        }
+        m_dynamicIndices.add(name);
+        for (Capability cap : m_capSet)
+        {
+            if (cap instanceof BundleCapability)
+            {
+                BundleCapability bcap = (BundleCapability) cap;
+                indexCapability(name, index, bcap, bcap.getAttributes());
+                // Undo if the capability was removed concurrently.
+                if (!m_capSet.contains(bcap))
+                {
+                    deindexCapability(name, index, bcap, bcap.getAttributes());
+                }
+            }
+        }
+        m_buildingIndices.remove(name);
+    }
+
+    private Map<Object, Set<BundleCapability>> getIndex(String name)
+    {
+        return m_buildingIndices.contains(name) ? null : m_indices.get(name);
+    }
+
     public Set<Capability> match(final SimpleFilter sf, final boolean obeyMandatory)
     {
         final Set<Capability> matches = match(m_capSet, sf);
@@ -203,8 +438,10 @@ public class CapabilitySet
             // Evaluate each subfilter against the remaining capabilities.
             // For AND we calculate the intersection of each subfilter.
             // We can short-circuit the AND operation if there are no
-            // remaining capabilities.
-            final List<SimpleFilter> sfs = (List<SimpleFilter>) sf.getValue();
+            // remaining capabilities. Subfilters are evaluated in order
+            // of estimated selectivity, so that an index narrows down the
+            // candidates before any linear comparisons are done.
+            final List<SimpleFilter> sfs = plan((List<SimpleFilter>) sf.getValue());
             for (int i = 0; (caps.size() > 0) && (i < sfs.size()); i++)
             {
                 matches = match(caps, sfs.get(i));
@@ -232,29 +469,48 @@ public class CapabilitySet
         }
         else
         {
-            Map<Object, Set<BundleCapability>> index = m_indices.get(sf.getName());
-            if ((sf.getOperation() == SimpleFilter.EQ) && (index != null))
+            // Range lookups may return many more capabilities than are left
+            // to match, so sorted indices only narrow down the full set.
+            Map<Object, Set<BundleCapability>> index = getIndex(sf.getName());
+            Collection<BundleCapability> indexed = ((index != null)
+                && ((caps == m_capSet) || !(index instanceof NavigableMap)))
+                ? lookup(index, sf) : null;
+            if (indexed != null)
             {
-                Set<BundleCapability> existingCaps = index.get(sf.getValue());
-                if (existingCaps != null)
+                m_indexHits.incrementAndGet();
+                // Dynamic indices may briefly be stale while the attributes
+                // of a capability are being modified, so verify them.
+                boolean verify = m_dynamicIndices.contains(sf.getName());
+                for (BundleCapability cap : indexed)
                 {
-                    matches.addAll(existingCaps);
-                    if (caps != m_capSet)
+                    if (((caps == m_capSet) ? m_capSet.contains(cap) : caps.contains(cap))
+                        && (!verify || matchesAttribute(cap, sf)))
                     {
-                        matches.retainAll(caps);
+                        matches.add(cap);
+                    }
+                }
+                for (BundleCapability cap : m_unindexed.get(sf.getName()))
+                {
+                    if (caps.contains(cap) && matchesAttribute(cap, sf))
+                    {
+                        matches.add(cap);
                     }
                 }
             }
             else
             {
+                m_indexMisses.incrementAndGet();
+                if ((index == null) && (caps == m_capSet)
+                    && !m_indices.containsKey(sf.getName())
+                    && (sf.getOperation() == SimpleFilter.EQ)
+                    && (m_capSet.size() >= DYNAMIC_INDEX_MIN_SIZE))
+                {
+                    countScan(sf.getName());
+                }
                 for (Capability cap : caps) {
-                    Object lhs = cap.getAttributes().get(sf.getName());
-                    if (lhs != null)
+                    if (matchesAttribute(cap, sf))
                     {
-                        if (compare(lhs, sf.getValue(), sf.getOperation()))
-                        {
-                            matches.add(cap);
-                        }
+                        matches.add(cap);
                     }
                 }
             }
@@ -263,6 +519,189 @@ public class CapabilitySet
         return matches;
     }
 
+    private static boolean matchesAttribute(Capability cap, SimpleFilter sf)
+    {
+        Object lhs = cap.getAttributes().get(sf.getName());
+        return (lhs != null) && compare(lhs, sf.getValue(), sf.getOperation());
+    }
+
+    private void countScan(String name)
+    {
+        AtomicInteger count = m_scanCounts.get(name);
+        if (count == null)
+        {
+            AtomicInteger prev = m_scanCounts.putIfAbsent(name, count = new AtomicInteger());
+            if (prev != null)
+            {
+                count = prev;
+            }
+        }
+        if (count.incrementAndGet() == DYNAMIC_INDEX_THRESHOLD)
+        {
+            createDynamicIndex(name);
+        }
+    }
+
+    /**
+     * Looks up the capabilities matching a simple comparison in an index.
+     * Returns {@code null} if the index cannot answer the comparison.
+     */
+    private static Collection<BundleCapability> lookup(
+        Map<Object, Set<BundleCapability>> index, SimpleFilter sf)
+    {
+        if (!(index instanceof NavigableMap))
+        {
+            if (sf.getOperation() != SimpleFilter.EQ)
+            {
+                return null;
+            }
+            return lookupEquals(index, (String) sf.getValue());
+        }
+
+        NavigableMap<Object, Set<BundleCapability>> sorted =
+            (NavigableMap<Object, Set<BundleCapability>>) index;
+        String value = (String) sf.getValue();
+        NavigableMap<Object, Set<BundleCapability>> range;
+        try
+        {
+            if ((sf.getOperation() == SimpleFilter.EQ) && (value.indexOf(',') >= 0))
+            {
+                VersionRange vr = new VersionRange(value);
+                range = (vr.getRight() == null)
+                    ? sorted.tailMap(vr.getLeft(), vr.getLeftType() == VersionRange.LEFT_CLOSED)
+                    : sorted.subMap(
+                        vr.getLeft(), vr.getLeftType() == VersionRange.LEFT_CLOSED,
+                        vr.getRight(), vr.getRightType() == VersionRange.RIGHT_CLOSED);
+            }
+            else if (value.indexOf(',') >= 0)
+            {
+                return null;
+            }
+            else
+            {
+                Version v = Version.valueOf(value);
+                switch (sf.getOperation())
+                {
+                    case SimpleFilter.EQ:
+                        range = sorted.subMap(v, true, v, true);
+                        break;
+                    case SimpleFilter.GTE:
+                        range = sorted.tailMap(v, true);
+                        break;
+                    case SimpleFilter.LTE:
+                        range = sorted.headMap(v, true);
+                        break;
+                    default:
+                        return null;
+                }
+            }
+        }
+        catch (IllegalArgumentException ex)
+        {
+            // Let the linear comparison deal with malformed values.
+            return null;
+        }
+
+        List<BundleCapability> result = new ArrayList<>();
+        for (Set<BundleCapability> caps : range.values())
+        {
+            result.addAll(caps);
+        }
+        return result;
+    }
+
+    /**
+     * Looks up the capabilities whose value equals a filter value in a
+     * hash index, either as string or as integral number.
+     */
+    private static Collection<BundleCapability> lookupEquals(
+        Map<Object, Set<BundleCapability>> index, String value)
+    {
+        Set<BundleCapability> strings = index.get(value);
+        Long number = parseIntegral(value);
+        Set<BundleCapability> numbers = (number != null) ? index.get(number) : null;
+        if (numbers == null)
+        {
+            return (strings != null) ? strings : Collections.<BundleCapability>emptySet();
+        }
+        if (strings == null)
+        {
+            return numbers;
+        }
+        List<BundleCapability> result = new ArrayList<>(strings);
+        result.addAll(numbers);
+        return result;
+    }
+
+    /**
+     * Orders the subfilters of an AND so that comparisons answered by the
+     * smallest index buckets go first, then other indexed comparisons and
+     * finally comparisons that require linear matching.
+     */
+    private List<SimpleFilter> plan(List<SimpleFilter> sfs)
+    {
+        if (sfs.size() < 2)
+        {
+            return sfs;
+        }
+        final Map<SimpleFilter, Integer> costs = new IdentityHashMap<>(sfs.size());
+        boolean sorted = true;
+        int last = -1;
+        for (SimpleFilter sf : sfs)
+        {
+            int cost = estimate(sf);
+            costs.put(sf, cost);
+            sorted &= (cost >= last);
+            last = cost;
+        }
+        if (sorted)
+        {
+            return sfs;
+        }
+        List<SimpleFilter> planned = new ArrayList<>(sfs);
+        Collections.sort(planned, new Comparator<SimpleFilter>()
+        {
+            @Override
+            public int compare(SimpleFilter o1, SimpleFilter o2)
+            {
+                return Integer.compare(costs.get(o1), costs.get(o2));
+            }
+        });
+        return planned;
+    }
+
+    private int estimate(SimpleFilter sf)
+    {
+        if (sf.getName() == null)
+        {
+            return Integer.MAX_VALUE;
+        }
+        Map<Object, Set<BundleCapability>> index = getIndex(sf.getName());
+        if (index == null)
+        {
+            return Integer.MAX_VALUE;
+        }
+        if (!(index instanceof NavigableMap))
+        {
+            if (sf.getOperation() != SimpleFilter.EQ)
+            {
+                return Integer.MAX_VALUE;
+            }
+            return lookupEquals(index, (String) sf.getValue()).size()
+                + m_unindexed.get(sf.getName()).size();
+        }
+        switch (sf.getOperation())
+        {
+            case SimpleFilter.EQ:
+            case SimpleFilter.GTE:
+            case SimpleFilter.LTE:
+                // The size of a range is unknown without walking it.
+                return Integer.MAX_VALUE - 1;
+            default:
+                return Integer.MAX_VALUE;
+        }
+    }
+
     public static boolean matches(Capability cap, SimpleFilter sf)
     {
         return matchesInternal(cap, sf) && matchMandatory(cap, sf);
@@ -18,6 +18,8 @@
  */
 package org.apache.felix.framework.util;
 
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
 import java.io.DataInput;
 import java.io.DataInputStream;
 import java.io.IOException;
@@ -616,37 +618,41 @@ public class ClassParser
 
     public Set<String> parseClassFileUses(String path, InputStream in) throws Exception
     {
+        // The parser reads the class file in small pieces.
+        if (!(in instanceof BufferedInputStream) && !(in instanceof ByteArrayInputStream))
+        {
+            in = new BufferedInputStream(in);
+        }
         try (DataInputStream din = new DataInputStream(in))
         {
             return new Clazz(this, path).parseClassFileData(din);
         }
     }
 
-    private static class Clazz
+    /**
+     * Skips exactly the given number of bytes, as {@link DataInput#skipBytes(int)}
+     * may skip fewer bytes without reaching the end of the input.
+     */
+    private static void skipFully(DataInput in, int n) throws IOException
     {
-
-        class ClassConstant
+        while (n > 0)
         {
-            int cname;
-            boolean referred;
-
-            ClassConstant(int class_index)
-            {
-                this.cname = class_index;
-            }
-
-            public String getName()
+            int skipped = in.skipBytes(n);
+            if (skipped > 0)
             {
-                return (String) pool[cname];
+                n -= skipped;
             }
-
-            @Override
-            public String toString()
+            else
             {
-                return "ClassConstant[" + getName() + "]";
+                // Throws an EOFException at the end of the input.
+                in.readByte();
+                n--;
             }
         }
+    }
 
+    private static class Clazz
+    {
 
         enum CONSTANT
         {
@@ -691,26 +697,6 @@ public class ClassParser
 
         final static int ACC_MODULE = 0x8000;
 
-        static protected class Assoc
-        {
-            Assoc(CONSTANT tag, int a, int b)
-            {
-                this.tag = tag;
-                this.a = a;
-                this.b = b;
-            }
-
-            CONSTANT tag;
-            int a;
-            int b;
-
-            @Override
-            public String toString()
-            {
-                return "Assoc[" + tag + ", " + a + "," + b + "]";
-            }
-        }
-
         public abstract class Def
         {
 
@@ -759,8 +745,13 @@ public class ClassParser
         int depth = 0;
 
         TypeRef className;
+        // Only the Utf8 and Integer constants are materialised, all other
+        // entries are kept in the tag, index and (packed) reference arrays.
         Object pool[];
         int intPool[];
+        CONSTANT tagPool[];
+        int assocPool[];
+        boolean referredPool[];
         Set<String> imports = new HashSet<>();
         String path;
         int minor = 0;
@@ -800,6 +791,9 @@ public class ClassParser
             int count = in.readUnsignedShort();
             pool = new Object[count];
             intPool = new int[count];
+            tagPool = new CONSTANT[count];
+            assocPool = new int[count];
+            referredPool = new boolean[count];
 
             CONSTANT[] tags = CONSTANT.values();
             process:
@@ -811,6 +805,7 @@ public class ClassParser
                     throw new IOException("Unrecognized constant pool tag value " + tagValue);
                 }
                 CONSTANT tag = tags[tagValue];
+                tagPool[poolIndex] = tag;
                 switch (tag)
                 {
                     case Zero:
@@ -864,7 +859,7 @@ public class ClassParser
                         {
                             throw new IOException("Invalid tag " + tag);
                         }
-                        in.skipBytes(skip);
+                        skipFully(in, skip);
                         break;
                 }
             }
@@ -874,31 +869,28 @@ public class ClassParser
             // All name& type and class constant records contain classParser we must
             // treat
             // as references, though not API
-            for (Object o : pool)
+            for (int poolIndex = 1; poolIndex < count; poolIndex++)
             {
-                if (o == null)
+                CONSTANT tag = tagPool[poolIndex];
+                if (tag == null)
                 {
                     continue;
                 }
 
-                if (o instanceof Assoc)
+                switch (tag)
                 {
-                    Assoc assoc = (Assoc) o;
-                    switch (assoc.tag)
-                    {
-                        case Fieldref:
-                        case Methodref:
-                        case InterfaceMethodref:
-                            classConstRef(assoc.a);
-                            break;
-
-                        case NameAndType:
-                        case MethodType:
-                            referTo(assoc.b, 0); // Descriptor
-                            break;
-                        default:
-                            break;
-                    }
+                    case Fieldref:
+                    case Methodref:
+                    case InterfaceMethodref:
+                        classConstRef(assocA(poolIndex));
+                        break;
+
+                    case NameAndType:
+                    case MethodType:
+                        referTo(assocB(poolIndex), 0); // Descriptor
+                        break;
+                    default:
+                        break;
                 }
             }
 
@@ -908,15 +900,11 @@ public class ClassParser
             // is not referenced by fieldrefs, method refs, or other
             // refs then we need to crawl the byte code.
             //
-            for (Object o : pool)
+            for (int poolIndex = 1; poolIndex < count; poolIndex++)
             {
-                if (o instanceof ClassConstant)
+                if ((tagPool[poolIndex] == CONSTANT.Class) && !referredPool[poolIndex])
                 {
-                    ClassConstant cc = (ClassConstant) o;
-                    if (!cc.referred)
-                    {
-                        detectLdc = true;
-                    }
+                    detectLdc = true;
                 }
             }
 
@@ -1055,7 +1043,7 @@ public class ClassParser
 
         private void constantFloat(DataInput in, int poolIndex) throws IOException
         {
-            in.skipBytes(4);
+            skipFully(in, 4);
         }
 
         private void constantInteger(DataInput in, int poolIndex) throws IOException
@@ -1072,34 +1060,50 @@ public class ClassParser
         {
             int name_index = in.readUnsignedShort();
             int descriptor_index = in.readUnsignedShort();
-            pool[poolIndex] = new Assoc(tag, name_index, descriptor_index);
+            assoc(poolIndex, name_index, descriptor_index);
         }
 
         private void methodType(DataInput in, int poolIndex, CONSTANT tag) throws IOException
         {
             int descriptor_index = in.readUnsignedShort();
-            pool[poolIndex] = new Assoc(tag, 0, descriptor_index);
+            assoc(poolIndex, 0, descriptor_index);
         }
 
         private void methodHandle(DataInput in, int poolIndex, CONSTANT tag) throws IOException
         {
             int reference_kind = in.readUnsignedByte();
             int reference_index = in.readUnsignedShort();
-            pool[poolIndex] = new Assoc(tag, reference_kind, reference_index);
+            assoc(poolIndex, reference_kind, reference_index);
         }
 
         private void invokeDynamic(DataInput in, int poolIndex, CONSTANT tag) throws IOException
         {
             int bootstrap_method_attr_index = in.readUnsignedShort();
             int name_and_type_index = in.readUnsignedShort();
-            pool[poolIndex] = new Assoc(tag, bootstrap_method_attr_index, name_and_type_index);
+            assoc(poolIndex, bootstrap_method_attr_index, name_and_type_index);
         }
 
         private void ref(DataInput in, int poolIndex) throws IOException
         {
             int class_index = in.readUnsignedShort();
             int name_and_type_index = in.readUnsignedShort();
-            pool[poolIndex] = new Assoc(Clazz.CONSTANT.Methodref, class_index, name_and_type_index);
+            tagPool[poolIndex] = CONSTANT.Methodref;
+            assoc(poolIndex, class_index, name_and_type_index);
+        }
+
+        private void assoc(int poolIndex, int a, int b)
+        {
+            assocPool[poolIndex] = (a << 16) | b;
+        }
+
+        private int assocA(int poolIndex)
+        {
+            return assocPool[poolIndex] >>> 16;
+        }
+
+        private int assocB(int poolIndex)
+        {
+            return assocPool[poolIndex] & 0xFFFF;
         }
 
         private void constantString(DataInput in, int poolIndex) throws IOException
@@ -1112,18 +1116,16 @@ public class ClassParser
         {
             int class_index = in.readUnsignedShort();
             intPool[poolIndex] = class_index;
-            ClassConstant c = new ClassConstant(class_index);
-            pool[poolIndex] = c;
         }
 
         private void constantDouble(DataInput in, int poolIndex) throws IOException
         {
-            in.skipBytes(8);
+            skipFully(in, 8);
         }
 
         private void constantLong(DataInput in, int poolIndex) throws IOException
         {
-            in.skipBytes(8);
+            skipFully(in, 8);
         }
 
         private void constantUtf8(DataInput in, int poolIndex) throws IOException
@@ -1138,29 +1140,24 @@ public class ClassParser
         {
             for (int i = 1; i < pool.length; i++)
             {
-                if (pool[i] instanceof Assoc)
+                if (tagPool[i] == CONSTANT.Methodref)
                 {
-                    Assoc methodref = (Assoc) pool[i];
-                    if (methodref.tag == CONSTANT.Methodref)
+                    // Method ref
+                    int class_index = assocA(i);
+                    int class_name_index = intPool[class_index];
+                    if (clazz.equals(pool[class_name_index]))
                     {
-                        // Method ref
-                        int class_index = methodref.a;
-                        int class_name_index = intPool[class_index];
-                        if (clazz.equals(pool[class_name_index]))
+                        int name_and_type_index = assocB(i);
+                        if (tagPool[name_and_type_index] == CONSTANT.NameAndType)
                         {
-                            int name_and_type_index = methodref.b;
-                            Assoc name_and_type = (Assoc) pool[name_and_type_index];
-                            if (name_and_type.tag == CONSTANT.NameAndType)
+                            // Name and Type
+                            int name_index = assocA(name_and_type_index);
+                            int type_index = assocB(name_and_type_index);
+                            if (methodname.equals(pool[name_index]))
                             {
-                                // Name and Type
-                                int name_index = name_and_type.a;
-                                int type_index = name_and_type.b;
-                                if (methodname.equals(pool[name_index]))
+                                if (descriptor.equals(pool[type_index]))
                                 {
-                                    if (descriptor.equals(pool[type_index]))
-                                    {
-                                        return i;
-                                    }
+                                    return i;
                                 }
                             }
                         }
@@ -1288,7 +1285,7 @@ public class ClassParser
                 {
                     throw new IllegalArgumentException("Attribute > 2Gb");
                 }
-                in.skipBytes((int) attribute_length);
+                skipFully(in, (int) attribute_length);
 
             }
         }
@@ -1348,8 +1345,7 @@ public class ClassParser
             for (int i = 0; i < exception_count; i++)
             {
                 int index = in.readUnsignedShort();
-                ClassConstant cc = (ClassConstant) pool[index];
-                TypeRef clazz = classParser.getTypeRef(cc.getName());
+                TypeRef clazz = classParser.getTypeRef((String) pool[intPool[index]]);
                 referTo(clazz, access_flags);
             }
         }
@@ -1361,12 +1357,17 @@ public class ClassParser
             /* int max_locals = */
             in.readUnsignedShort();
             int code_length = in.readInt();
-            byte code[] = new byte[code_length];
-            in.readFully(code, 0, code_length);
             if (crawl)
             {
+                byte code[] = new byte[code_length];
+                in.readFully(code, 0, code_length);
                 crawl(code);
             }
+            else
+            {
+                // Only crawled code needs to be read into memory.
+                skipFully(in, code_length);
+            }
             int exception_table_length = in.readUnsignedShort();
             for (int i = 0; i < exception_table_length; i++)
             {
@@ -1562,7 +1563,7 @@ public class ClassParser
                         // type_parameter_target {
                         // u1 type_parameter_index;
                         // }
-                        in.skipBytes(1);
+                        skipFully(in, 1);
                         break;
 
                     case 0x10: // type in extends clause of class or interface
@@ -1573,7 +1574,7 @@ public class ClassParser
                         // u2 supertype_index;
                         // }
 
-                        in.skipBytes(2);
+                        skipFully(in, 2);
                         break;
 
                     case 0x11: // type in bound of type parameter declaration of
@@ -1584,7 +1585,7 @@ public class ClassParser
                         // u1 type_parameter_index;
                         // u1 bound_index;
                         // }
-                        in.skipBytes(2);
+                        skipFully(in, 2);
                         break;
 
                     case 0x13: // type in field declaration
@@ -1598,14 +1599,14 @@ public class ClassParser
                         // formal_parameter_target {
                         // u1 formal_parameter_index;
                         // }
-                        in.skipBytes(1);
+                        skipFully(in, 1);
                         break;
 
                     case 0x17: // type in throws clause of method or constructor
                         // throws_target {
                         // u2 throws_type_index;
                         // }
-                        in.skipBytes(2);
+                        skipFully(in, 2);
                         break;
 
                     case 0x40: // type in local variable declaration
@@ -1618,14 +1619,14 @@ public class ClassParser
                         // } table[table_length];
                         // }
                         int table_length = in.readUnsignedShort();
-                        in.skipBytes(table_length * 6);
+                        skipFully(in, table_length * 6);
                         break;
 
                     case 0x42: // type in exception parameter declaration
                         // catch_target {
                         // u2 exception_table_index;
                         // }
-                        in.skipBytes(2);
+                        skipFully(in, 2);
                         break;
 
                     case 0x43: // type in instanceof expression
@@ -1636,7 +1637,7 @@ public class ClassParser
                         // offset_target {
                         // u2 offset;
                         // }
-                        in.skipBytes(2);
+                        skipFully(in, 2);
                         break;
 
                     case 0x47: // type in cast expression
@@ -1654,7 +1655,7 @@ public class ClassParser
                         // u2 offset;
                         // u1 type_argument_index;
                         // }
-                        in.skipBytes(3);
+                        skipFully(in, 3);
                         break;
 
                 }
@@ -1671,7 +1672,7 @@ public class ClassParser
                 // }
 
                 int path_length = in.readUnsignedByte();
-                in.skipBytes(path_length * 2);
+                skipFully(in, path_length * 2);
 
                 //
                 // Rest is identical to the normal annotations
@@ -2073,6 +2074,9 @@ public class ClassParser
             {
                 pool = null;
                 intPool = null;
+                tagPool = null;
+                assocPool = null;
+                referredPool = null;
             }
         }
 
@@ -2094,21 +2098,14 @@ public class ClassParser
 
         private void classConstRef(int lastReference)
         {
-            Object o = pool[lastReference];
-            if (o == null)
-            {
-                return;
-            }
-
-            if (o instanceof ClassConstant)
+            if (tagPool[lastReference] == CONSTANT.Class)
             {
-                ClassConstant cc = (ClassConstant) o;
-                if (cc.referred)
+                if (referredPool[lastReference])
                 {
                     return;
                 }
-                cc.referred = true;
-                String name = cc.getName();
+                referredPool[lastReference] = true;
+                String name = (String) pool[intPool[lastReference]];
                 if (name != null)
                 {
                     TypeRef tr = classParser.getTypeRef(name);
@@ -47,6 +47,7 @@ public interface FelixConstants extends org.osgi.framework.Constants
     String LOG_LOGGER_PROP = "felix.log.logger";
     String SYSTEMBUNDLE_ACTIVATORS_PROP = "felix.systembundle.activators";
     String BUNDLE_STARTLEVEL_PROP = "felix.startlevel.bundle";
+    String STARTLEVEL_PARALLELISM = "felix.startlevel.parallelism";
     String SERVICE_URLHANDLERS_PROP = "felix.service.urlhandlers";
     String IMPLICIT_BOOT_DELEGATION_PROP = "felix.bootdelegation.implicit";
     String BOOT_CLASSLOADERS_PROP = "felix.bootdelegation.classloaders";
@@ -55,6 +56,7 @@ public interface FelixConstants extends org.osgi.framework.Constants
     String NATIVE_PROC_NAME_ALIAS_PREFIX = "felix.native.processor.alias";
     String USE_CACHEDURLS_PROPS = "felix.bundlecodesource.usecachedurls";
     String RESOLVER_PARALLELISM = "felix.resolver.parallelism";
+    String RESOLVER_SNAPSHOT_PROP = "felix.resolver.snapshot";
     String USE_PROPERTY_SUBSTITUTION_IN_SYSTEMPACKAGES = "felix.systempackages.substitution";
 
     // Missing OSGi constant for resolution directive.
@@ -19,6 +19,8 @@
 package org.apache.felix.framework.util;
 
 import java.util.EventListener;
+import java.util.concurrent.atomic.AtomicLong;
+
 import org.osgi.framework.Bundle;
 import org.osgi.framework.BundleContext;
 import org.osgi.framework.Filter;
@@ -35,6 +37,11 @@ public class ListenerInfo implements ListenerHook.ListenerInfo
     private final Object m_acc;
     private final boolean m_removed;
 
+    // Delivery statistics, shared by all infos of the same registration.
+    private final AtomicLong m_deliveryCount;
+    private final AtomicLong m_deliveryTime;
+    private final AtomicLong m_maxDeliveryTime;
+
     public ListenerInfo(
         Bundle bundle, BundleContext context, Class<?> listenerClass, EventListener listener,
         Filter filter, Object acc, boolean removed)
@@ -49,17 +56,33 @@ public class ListenerInfo implements ListenerHook.ListenerInfo
         m_filter = filter;
         m_acc = acc;
         m_removed = removed;
+        m_deliveryCount = new AtomicLong();
+        m_deliveryTime = new AtomicLong();
+        m_maxDeliveryTime = new AtomicLong();
     }
 
     public ListenerInfo(ListenerInfo info, boolean removed)
+    {
+        this(info, info.m_filter, removed);
+    }
+
+    public ListenerInfo(ListenerInfo info, Filter filter)
+    {
+        this(info, filter, info.m_removed);
+    }
+
+    private ListenerInfo(ListenerInfo info, Filter filter, boolean removed)
     {
         m_bundle = info.m_bundle;
         m_context = info.m_context;
         m_listenerClass = info.m_listenerClass;
         m_listener = info.m_listener;
-        m_filter = info.m_filter;
+        m_filter = filter;
         m_acc = info.m_acc;
         m_removed = removed;
+        m_deliveryCount = info.m_deliveryCount;
+        m_deliveryTime = info.m_deliveryTime;
+        m_maxDeliveryTime = info.m_maxDeliveryTime;
     }
 
     public Bundle getBundle()
@@ -109,6 +132,48 @@ public class ListenerInfo implements ListenerHook.ListenerInfo
         return m_removed;
     }
 
+    /**
+     * Records a callback to the listener.
+     * @param time the time taken by the callback in nanoseconds.
+    **/
+    public void recordDelivery(long time)
+    {
+        m_deliveryCount.incrementAndGet();
+        m_deliveryTime.addAndGet(time);
+        long max = m_maxDeliveryTime.get();
+        while ((time > max) && !m_maxDeliveryTime.compareAndSet(max, time))
+        {
+            max = m_maxDeliveryTime.get();
+        }
+    }
+
+    /**
+     * Returns the number of callbacks made to the listener.
+     * @return the number of delivered events.
+    **/
+    public long getDeliveryCount()
+    {
+        return m_deliveryCount.get();
+    }
+
+    /**
+     * Returns the total time spent in callbacks of the listener.
+     * @return the accumulated delivery time in nanoseconds.
+    **/
+    public long getDeliveryTime()
+    {
+        return m_deliveryTime.get();
+    }
+
+    /**
+     * Returns the time taken by the slowest callback of the listener.
+     * @return the longest single delivery time in nanoseconds.
+    **/
+    public long getMaxDeliveryTime()
+    {
+        return m_maxDeliveryTime.get();
+    }
+
     @Override
     public boolean equals(Object obj)
     {
@@ -23,6 +23,7 @@ import static org.assertj.core.api.Assertions.fail;
 import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -633,6 +634,28 @@ public class BundleWiringImplTest
         verify(requiredPkgs, never()).values();
     }
 
+    @Test
+    void packageDelegationIsCached() throws Exception
+    {
+        Felix mockFramework = mock(Felix.class);
+        when(mockFramework.getBootPackages()).thenReturn(new String[] { "org.boot" });
+        when(mockFramework.getBootPackageWildcards()).thenReturn(new boolean[] { false });
+
+        initializeSimpleBundleWiring();
+        when(bundleWiring.getBundle().getFramework()).thenReturn(mockFramework);
+
+        assertThat(bundleWiring.shouldBootDelegate("org.boot")).isTrue();
+        assertThat(bundleWiring.shouldBootDelegate("org.foo")).isFalse();
+        verify(mockFramework, times(2)).getBootPackageWildcards();
+
+        assertThat(bundleWiring.shouldBootDelegate("org.boot")).isTrue();
+        assertThat(bundleWiring.shouldBootDelegate("org.foo")).isFalse();
+        verify(mockFramework, times(2)).getBootPackageWildcards();
+
+        assertThat(bundleWiring.getPackageLookupCacheMisses()).isEqualTo(2);
+        assertThat(bundleWiring.getPackageLookupCacheHits()).isEqualTo(2);
+    }
+
     @Test
     void parallelClassload() throws Exception
     {
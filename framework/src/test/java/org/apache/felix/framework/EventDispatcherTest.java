@@ -22,6 +22,7 @@ import java.util.*;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
+import org.apache.felix.framework.util.ListenerInfo;
 import org.junit.jupiter.api.Test;
 import org.mockito.Mockito;
 import org.osgi.framework.Bundle;
@@ -138,6 +139,150 @@ class EventDispatcherTest
         assertThat(calledHooks).contains(eh2);
     }
 
+    @Test
+    void fireServiceEventSkipsListenersForOtherObjectClasses() throws Exception
+    {
+        final Bundle b1 = getMockBundle();
+        final Bundle b2 = getMockBundle();
+        final Bundle b3 = getMockBundle();
+
+        Logger logger = new Logger();
+        ServiceRegistry registry = new ServiceRegistry(logger, null);
+        EventDispatcher ed = new EventDispatcher(logger, registry);
+
+        final List<Object> fired = Collections.synchronizedList(new ArrayList<>());
+        final List<Object> matched = Collections.synchronizedList(new ArrayList<>());
+        ServiceListener sl1 = new ServiceListener()
+        {
+            @Override
+            public void serviceChanged(ServiceEvent arg0)
+            {
+                fired.add(this);
+            }
+        };
+        ed.addListener(b1.getBundleContext(), ServiceListener.class, sl1,
+            new FilterImpl("(&(objectClass=java.lang.Integer)(foo=bar))")
+            {
+                @Override
+                public boolean match(ServiceReference<?> sr)
+                {
+                    matched.add(this);
+                    return super.match(sr);
+                }
+            });
+
+        ServiceListener sl2 = new ServiceListener()
+        {
+            @Override
+            public void serviceChanged(ServiceEvent arg0)
+            {
+                fired.add(this);
+            }
+        };
+        ed.addListener(b2.getBundleContext(), ServiceListener.class, sl2,
+            new FilterImpl("(|(objectClass=java.lang.Long)(objectClass=java.lang.String))"));
+
+        ServiceListener sl3 = new ServiceListener()
+        {
+            @Override
+            public void serviceChanged(ServiceEvent arg0)
+            {
+                fired.add(this);
+            }
+        };
+        ed.addListener(b3.getBundleContext(), ServiceListener.class, sl3, null);
+
+        ServiceReference<?> sr = Mockito.mock(ServiceReference.class);
+        Mockito.when(sr.getProperty(Constants.OBJECTCLASS)).thenReturn(new String[]
+            {
+                "java.lang.String"
+            });
+        Hashtable<String, Object> props = new Hashtable<>();
+        props.put(Constants.OBJECTCLASS, new String[] { "java.lang.String" });
+        Mockito.when(sr.getProperties()).thenReturn(props);
+        Mockito.when(sr.isAssignableTo(b2, String.class.getName())).thenReturn(true);
+        Mockito.when(sr.isAssignableTo(b3, String.class.getName())).thenReturn(true);
+
+        ServiceEvent event = new ServiceEvent(ServiceEvent.REGISTERED, sr);
+        ed.fireServiceEvent(event, null, new Felix(new HashMap<>()));
+
+        assertThat(fired).containsOnly(sl2, sl3);
+        assertThat(matched).isEmpty();
+        assertThat(ed.getListenerInfo(b1.getBundleContext(), ServiceListener.class, sl1)
+            .getDeliveryCount()).isZero();
+        assertThat(ed.getListenerInfo(b2.getBundleContext(), ServiceListener.class, sl2)
+            .getDeliveryCount()).isEqualTo(1);
+        assertThat(ed.getListenerInfo(b3.getBundleContext(), ServiceListener.class, sl3)
+            .getDeliveryCount()).isEqualTo(1);
+
+        // Updating the filter keeps the statistics of the listener.
+        ed.addListener(b2.getBundleContext(), ServiceListener.class, sl2, null);
+        ed.fireServiceEvent(event, null, new Felix(new HashMap<>()));
+        ListenerInfo info = ed.getListenerInfo(b2.getBundleContext(), ServiceListener.class, sl2);
+        assertThat(info.getDeliveryCount()).isEqualTo(2);
+        assertThat(info.getDeliveryTime()).isGreaterThanOrEqualTo(info.getMaxDeliveryTime());
+        assertThat(ed.getListenerInfo(b1.getBundleContext(), ServiceListener.class, sl2)).isNull();
+    }
+
+    @Test
+    void fireServiceEventRecordsOnlyInvokedListeners() throws Exception
+    {
+        final Bundle b1 = getMockBundle();
+        final Bundle b2 = getMockBundle();
+
+        Logger logger = new Logger();
+        ServiceRegistry registry = new ServiceRegistry(logger, null);
+        EventDispatcher ed = new EventDispatcher(logger, registry);
+
+        final List<Object> fired = Collections.synchronizedList(new ArrayList<>());
+        ServiceListener sl1 = new ServiceListener()
+        {
+            @Override
+            public void serviceChanged(ServiceEvent arg0)
+            {
+                fired.add(this);
+            }
+        };
+        ed.addListener(b1.getBundleContext(), ServiceListener.class, sl1,
+            new FilterImpl("(&(objectClass=java.lang.String)(foo=bar))"));
+
+        ServiceListener sl2 = new ServiceListener()
+        {
+            @Override
+            public void serviceChanged(ServiceEvent arg0)
+            {
+                fired.add(this);
+            }
+        };
+        ed.addListener(b2.getBundleContext(), ServiceListener.class, sl2,
+            new FilterImpl("(objectClass=java.lang.String)"));
+
+        ServiceReference<?> sr = Mockito.mock(ServiceReference.class);
+        Mockito.when(sr.getProperty(Constants.OBJECTCLASS)).thenReturn(new String[]
+            {
+                "java.lang.String"
+            });
+        Hashtable<String, Object> props = new Hashtable<>();
+        props.put(Constants.OBJECTCLASS, new String[] { "java.lang.String" });
+        props.put("foo", "baz");
+        Mockito.when(sr.getProperties()).thenReturn(props);
+        Mockito.when(sr.getPropertyKeys()).thenReturn(props.keySet().toArray(new String[0]));
+        Mockito.when(sr.getProperty("foo")).thenReturn("baz");
+        Mockito.when(sr.isAssignableTo(b1, String.class.getName())).thenReturn(true);
+        Mockito.when(sr.isAssignableTo(b2, String.class.getName())).thenReturn(true);
+
+        ServiceEvent event = new ServiceEvent(ServiceEvent.REGISTERED, sr);
+        ed.fireServiceEvent(event, null, new Felix(new HashMap<>()));
+
+        // The filter of sl1 is evaluated but rejects the event.
+        assertThat(fired).containsOnly(sl2);
+        ListenerInfo info = ed.getListenerInfo(b1.getBundleContext(), ServiceListener.class, sl1);
+        assertThat(info.getDeliveryCount()).isZero();
+        assertThat(info.getDeliveryTime()).isZero();
+        assertThat(ed.getListenerInfo(b2.getBundleContext(), ServiceListener.class, sl2)
+            .getDeliveryCount()).isEqualTo(1);
+    }
+
     private Bundle getMockBundle()
     {
         BundleContext bc = Mockito.mock(BundleContext.class);
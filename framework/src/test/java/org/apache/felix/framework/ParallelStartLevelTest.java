@@ -0,0 +1,276 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.felix.framework;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.TimeUnit;
+import java.util.jar.JarOutputStream;
+import java.util.jar.Manifest;
+
+import org.apache.felix.framework.util.FelixConstants;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.osgi.framework.Bundle;
+import org.osgi.framework.BundleActivator;
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.BundleException;
+import org.osgi.framework.Constants;
+import org.osgi.framework.startlevel.BundleStartLevel;
+
+class ParallelStartLevelTest
+{
+    private static final String START_HEADER = "Test-Start";
+
+    // The activators are loaded through the system bundle, so these are
+    // shared with the bundles.
+    static volatile CyclicBarrier s_barrier;
+    static final List<Integer> s_states = Collections.synchronizedList(new ArrayList<Integer>());
+    static final List<BundleException> s_failures =
+        Collections.synchronizedList(new ArrayList<BundleException>());
+
+    private File tempDir;
+    private File cacheDir;
+    private Felix felix;
+
+    @BeforeEach
+    void setUp() throws Exception
+    {
+        tempDir = File.createTempFile("felix-temp", ".dir");
+        assertThat(tempDir.delete()).as("precondition").isTrue();
+        assertThat(tempDir.mkdirs()).as("precondition").isTrue();
+
+        cacheDir = new File(tempDir, "felix-cache");
+        assertThat(cacheDir.mkdir()).as("precondition").isTrue();
+
+        s_states.clear();
+        s_failures.clear();
+    }
+
+    @AfterEach
+    void tearDown() throws Exception
+    {
+        if (felix != null)
+        {
+            felix.stop();
+            felix.waitForStop(10000);
+            felix = null;
+        }
+        s_barrier = null;
+        deleteDir(tempDir);
+        tempDir = null;
+        cacheDir = null;
+    }
+
+    @Test
+    void startsBundlesOfStartLevelInParallel() throws Exception
+    {
+        // Every activator waits for the others, which only works if
+        // they are all called at the same time.
+        s_barrier = new CyclicBarrier(3);
+        felix = createFramework("3");
+        felix.init();
+        Bundle a = install("bundle.a", null);
+        Bundle b = install("bundle.b", null);
+        Bundle c = install("bundle.c", null);
+
+        assertTimeoutPreemptively(Duration.ofSeconds(30), () -> felix.start());
+
+        assertThat(a.getState()).isEqualTo(Bundle.ACTIVE);
+        assertThat(b.getState()).isEqualTo(Bundle.ACTIVE);
+        assertThat(c.getState()).isEqualTo(Bundle.ACTIVE);
+        assertThat(a.adapt(BundleStartTimeDTO.class).startTime).isGreaterThanOrEqualTo(0);
+        assertThat(b.adapt(BundleStartTimeDTO.class).startTime).isGreaterThanOrEqualTo(0);
+        assertThat(c.adapt(BundleStartTimeDTO.class).startTime).isGreaterThanOrEqualTo(0);
+    }
+
+    @Test
+    void startTimesAreRecordedWithoutParallelism() throws Exception
+    {
+        felix = createFramework("1");
+        felix.init();
+        Bundle a = install("bundle.a", null);
+        assertThat(a.adapt(BundleStartTimeDTO.class).startTime).isEqualTo(-1);
+
+        felix.start();
+
+        assertThat(a.getState()).isEqualTo(Bundle.ACTIVE);
+        assertThat(a.adapt(BundleStartTimeDTO.class).startTime).isGreaterThanOrEqualTo(0);
+    }
+
+    @Test
+    void activatorStartsBundleOfSameStartLevel() throws Exception
+    {
+        s_barrier = new CyclicBarrier(2);
+        felix = createFramework("2");
+        felix.init();
+        Bundle a = install("bundle.a", "bundle.b");
+        Bundle b = install("bundle.b", null);
+
+        assertTimeoutPreemptively(Duration.ofSeconds(30), () -> felix.start());
+
+        // The start waits until the concurrent start of the other bundle is done.
+        assertThat(s_failures).isEmpty();
+        assertThat(s_states).containsExactly(Bundle.ACTIVE);
+        assertThat(a.getState()).isEqualTo(Bundle.ACTIVE);
+        assertThat(b.getState()).isEqualTo(Bundle.ACTIVE);
+    }
+
+    @Test
+    void activatorsStartingEachOtherDoNotDeadlock() throws Exception
+    {
+        s_barrier = new CyclicBarrier(2);
+        felix = createFramework("2");
+        felix.init();
+        Bundle a = install("bundle.a", "bundle.b");
+        Bundle b = install("bundle.b", "bundle.a");
+
+        assertTimeoutPreemptively(Duration.ofSeconds(30), () -> felix.start());
+
+        // One of the cross starts detects the lock cycle and fails,
+        // the other one waits until the failing activator returns.
+        assertThat(s_failures).hasSize(1);
+        assertThat(s_states).containsExactly(Bundle.ACTIVE);
+        assertThat(a.getState()).isEqualTo(Bundle.ACTIVE);
+        assertThat(b.getState()).isEqualTo(Bundle.ACTIVE);
+    }
+
+    @Test
+    void startLevelThreadsAreNotRecognizedByName() throws Exception
+    {
+        final List<Boolean> marks = Collections.synchronizedList(new ArrayList<Boolean>());
+        Runnable check = () -> {
+            marks.add(FrameworkStartLevelImpl.StartLevelThread.isStartLevelThread());
+            marks.add(FrameworkStartLevelImpl.StartLevelThread.isWorkerThread());
+        };
+
+        Thread named = new Thread(check, FrameworkStartLevelImpl.THREAD_NAME + "-1");
+        named.start();
+        named.join();
+        Thread worker = new FrameworkStartLevelImpl.StartLevelThread(check, "worker", true);
+        worker.start();
+        worker.join();
+        Thread main = new FrameworkStartLevelImpl.StartLevelThread(check, "main", false);
+        main.start();
+        main.join();
+
+        assertThat(marks).containsExactly(false, false, true, true, true, false);
+    }
+
+    private Felix createFramework(String parallelism)
+    {
+        Map<String, String> params = new HashMap<>();
+        params.put(Constants.FRAMEWORK_STORAGE, cacheDir.getPath());
+        params.put(Constants.FRAMEWORK_STORAGE_CLEAN, Constants.FRAMEWORK_STORAGE_CLEAN_ONFIRSTINIT);
+        params.put(Constants.FRAMEWORK_SYSTEMPACKAGES_EXTRA, "org.apache.felix.framework");
+        params.put(Constants.FRAMEWORK_BEGINNING_STARTLEVEL, "2");
+        params.put(FelixConstants.STARTLEVEL_PARALLELISM, parallelism);
+        return new Felix(params);
+    }
+
+    private Bundle install(String symbolicName, String startHeader) throws Exception
+    {
+        String mf = "Bundle-SymbolicName: " + symbolicName + "\n"
+            + "Bundle-ManifestVersion: 2\n"
+            + "Bundle-Activator: " + CrossStartActivator.class.getName() + "\n"
+            + "Import-Package: org.apache.felix.framework, org.osgi.framework\n";
+        if (startHeader != null)
+        {
+            mf += START_HEADER + ": " + startHeader + "\n";
+        }
+        Bundle bundle = felix.getBundleContext().installBundle(createBundle(mf).toURI().toASCIIString());
+        bundle.adapt(BundleStartLevel.class).setStartLevel(2);
+        bundle.start();
+        return bundle;
+    }
+
+    private File createBundle(String manifest) throws IOException
+    {
+        File f = File.createTempFile("felix-bundle", ".jar", tempDir);
+
+        Manifest mf = new Manifest(new ByteArrayInputStream(manifest.getBytes("utf-8")));
+        mf.getMainAttributes().putValue("Manifest-Version", "1.0");
+        JarOutputStream os = new JarOutputStream(new FileOutputStream(f), mf);
+        os.close();
+        return f;
+    }
+
+    private static void deleteDir(File root) throws IOException
+    {
+        if (root.isDirectory())
+        {
+            for (File file : root.listFiles())
+            {
+                deleteDir(file);
+            }
+        }
+        assertThat(root.delete()).isTrue();
+    }
+
+    public static class CrossStartActivator implements BundleActivator
+    {
+        @Override
+        public void start(BundleContext context) throws Exception
+        {
+            CyclicBarrier barrier = s_barrier;
+            if (barrier != null)
+            {
+                barrier.await(10, TimeUnit.SECONDS);
+            }
+
+            String other = context.getBundle().getHeaders().get(START_HEADER);
+            if (other != null)
+            {
+                for (Bundle bundle : context.getBundles())
+                {
+                    if (other.equals(bundle.getSymbolicName()))
+                    {
+                        try
+                        {
+                            bundle.start();
+                            s_states.add(bundle.getState());
+                        }
+                        catch (BundleException ex)
+                        {
+                            s_failures.add(ex);
+                        }
+                    }
+                }
+            }
+        }
+
+        @Override
+        public void stop(BundleContext context)
+        {
+        }
+    }
+}
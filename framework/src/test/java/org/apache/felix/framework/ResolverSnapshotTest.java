@@ -0,0 +1,283 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.felix.framework;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.jar.JarOutputStream;
+import java.util.jar.Manifest;
+
+import org.apache.felix.framework.util.FelixConstants;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.osgi.framework.Bundle;
+import org.osgi.framework.Constants;
+import org.osgi.framework.hooks.resolver.ResolverHook;
+import org.osgi.framework.hooks.resolver.ResolverHookFactory;
+import org.osgi.framework.launch.Framework;
+import org.osgi.framework.wiring.BundleCapability;
+import org.osgi.framework.wiring.BundleRequirement;
+import org.osgi.framework.wiring.BundleRevision;
+import org.osgi.framework.wiring.BundleWire;
+import org.osgi.framework.wiring.BundleWiring;
+import org.osgi.framework.wiring.FrameworkWiring;
+
+class ResolverSnapshotTest
+{
+    private File tempDir;
+    private File cacheDir;
+
+    @BeforeEach
+    void setUp() throws Exception
+    {
+        tempDir = File.createTempFile("felix-temp", ".dir");
+        assertThat(tempDir.delete()).as("precondition").isTrue();
+        assertThat(tempDir.mkdirs()).as("precondition").isTrue();
+
+        cacheDir = new File(tempDir, "felix-cache");
+        assertThat(cacheDir.mkdir()).as("precondition").isTrue();
+    }
+
+    @AfterEach
+    void tearDown() throws Exception
+    {
+        deleteDir(tempDir);
+        tempDir = null;
+        cacheDir = null;
+    }
+
+    @Test
+    void restartReusesPreviousWiring() throws Exception
+    {
+        Bundle[] bundles = installAndStop();
+        Bundle p1 = bundles[0];
+        Bundle p2 = bundles[1];
+        Bundle c = bundles[2];
+
+        Framework felix = createFramework();
+        felix.init();
+        try
+        {
+            // Nothing is resolved before resolver hooks can be registered.
+            c = felix.getBundleContext().getBundle(c.getBundleId());
+            assertThat(c.getState()).isEqualTo(Bundle.INSTALLED);
+
+            // The resolver would pick the provider with the lower bundle
+            // identifier, the previous wiring is reused instead.
+            FrameworkWiring fw = felix.adapt(FrameworkWiring.class);
+            assertThat(fw.resolveBundles(Collections.singletonList(c))).isTrue();
+            assertThat(getProvider(c)).isEqualTo(p2.getBundleId());
+            assertThat(felix.getBundleContext().getBundle(p2.getBundleId()).getState())
+                .isEqualTo(Bundle.RESOLVED);
+            assertThat(felix.getBundleContext().getBundle(p1.getBundleId()).getState())
+                .isEqualTo(Bundle.INSTALLED);
+        }
+        finally
+        {
+            felix.stop();
+            felix.waitForStop(10000);
+        }
+    }
+
+    @Test
+    void restartWithResolverHookResolvesAgain() throws Exception
+    {
+        Bundle[] bundles = installAndStop();
+        Bundle p1 = bundles[0];
+        Bundle c = bundles[2];
+
+        Framework felix = createFramework();
+        felix.init();
+        try
+        {
+            final AtomicInteger hookCalls = new AtomicInteger();
+            felix.getBundleContext().registerService(ResolverHookFactory.class,
+                new ResolverHookFactory()
+                {
+                    @Override
+                    public ResolverHook begin(Collection<BundleRevision> triggers)
+                    {
+                        hookCalls.incrementAndGet();
+                        return new ResolverHook()
+                        {
+                            @Override
+                            public void filterResolvable(Collection<BundleRevision> candidates)
+                            {
+                            }
+
+                            @Override
+                            public void filterSingletonCollisions(
+                                BundleCapability singleton, Collection<BundleCapability> collisionCandidates)
+                            {
+                            }
+
+                            @Override
+                            public void filterMatches(
+                                BundleRequirement requirement, Collection<BundleCapability> candidates)
+                            {
+                            }
+
+                            @Override
+                            public void end()
+                            {
+                            }
+                        };
+                    }
+                }, null);
+
+            // The hooks see the resolve and the resolver chooses the
+            // providers on its own.
+            FrameworkWiring fw = felix.adapt(FrameworkWiring.class);
+            c = felix.getBundleContext().getBundle(c.getBundleId());
+            assertThat(fw.resolveBundles(Collections.singletonList(c))).isTrue();
+            assertThat(hookCalls.get()).isGreaterThan(0);
+            assertThat(getProvider(c)).isEqualTo(p1.getBundleId());
+        }
+        finally
+        {
+            felix.stop();
+            felix.waitForStop(10000);
+        }
+    }
+
+    @Test
+    void restartResolvesChangedBundlesAgain() throws Exception
+    {
+        Bundle[] bundles = installAndStop();
+        Bundle p1 = bundles[0];
+        Bundle p2 = bundles[1];
+        Bundle c = bundles[2];
+
+        Framework felix = createFramework();
+        felix.start();
+        try
+        {
+            // Updating the previous provider invalidates the consumer wiring.
+            p2 = felix.getBundleContext().getBundle(p2.getBundleId());
+            p2.update(new FileInputStream(createBundle("Bundle-SymbolicName: provider.two\n"
+                + "Bundle-ManifestVersion: 2\n"
+                + "Export-Package: org.bar;version=\"1.0.0\"\n")));
+        }
+        finally
+        {
+            felix.stop();
+            felix.waitForStop(10000);
+        }
+
+        felix = createFramework();
+        felix.init();
+        try
+        {
+            FrameworkWiring fw = felix.adapt(FrameworkWiring.class);
+            c = felix.getBundleContext().getBundle(c.getBundleId());
+            assertThat(fw.resolveBundles(Collections.singletonList(c))).isTrue();
+            assertThat(getProvider(c)).isEqualTo(p1.getBundleId());
+        }
+        finally
+        {
+            felix.stop();
+            felix.waitForStop(10000);
+        }
+    }
+
+    /**
+     * Installs two providers of the same package and a consumer wired to
+     * the second provider, then stops the framework to write the snapshot.
+     */
+    private Bundle[] installAndStop() throws Exception
+    {
+        File p1File = createBundle("Bundle-SymbolicName: provider.one\n"
+            + "Bundle-ManifestVersion: 2\n"
+            + "Export-Package: org.foo;version=\"1.0.0\"\n");
+        File p2File = createBundle("Bundle-SymbolicName: provider.two\n"
+            + "Bundle-ManifestVersion: 2\n"
+            + "Export-Package: org.foo;version=\"1.0.0\"\n");
+        File cFile = createBundle("Bundle-SymbolicName: consumer\n"
+            + "Bundle-ManifestVersion: 2\n"
+            + "Import-Package: org.foo\n");
+
+        Framework felix = createFramework();
+        felix.start();
+        Bundle p1 = felix.getBundleContext().installBundle(p1File.toURI().toASCIIString());
+        Bundle p2 = felix.getBundleContext().installBundle(p2File.toURI().toASCIIString());
+        Bundle c = felix.getBundleContext().installBundle(cFile.toURI().toASCIIString());
+
+        // Resolve the second provider first so the consumer prefers it
+        // over the provider with the lower bundle identifier.
+        FrameworkWiring fw = felix.adapt(FrameworkWiring.class);
+        assertThat(fw.resolveBundles(Collections.singletonList(p2))).isTrue();
+        assertThat(fw.resolveBundles(Collections.singletonList(c))).isTrue();
+        assertThat(getProvider(c)).isEqualTo(p2.getBundleId());
+
+        felix.stop();
+        felix.waitForStop(10000);
+        return new Bundle[] { p1, p2, c };
+    }
+
+    private Framework createFramework()
+    {
+        Map<String, String> params = new HashMap<>();
+        params.put(Constants.FRAMEWORK_STORAGE, cacheDir.getPath());
+        params.put(FelixConstants.RESOLVER_SNAPSHOT_PROP, "true");
+        return new Felix(params);
+    }
+
+    private static long getProvider(Bundle bundle)
+    {
+        List<BundleWire> wires = bundle.adapt(BundleWiring.class)
+            .getRequiredWires(BundleRevision.PACKAGE_NAMESPACE);
+        assertThat(wires).hasSize(1);
+        return wires.get(0).getProvider().getBundle().getBundleId();
+    }
+
+    private File createBundle(String manifest) throws IOException
+    {
+        File f = File.createTempFile("felix-bundle", ".jar", tempDir);
+
+        Manifest mf = new Manifest(new ByteArrayInputStream(manifest.getBytes("utf-8")));
+        mf.getMainAttributes().putValue("Manifest-Version", "1.0");
+        JarOutputStream os = new JarOutputStream(new FileOutputStream(f), mf);
+        os.close();
+        return f;
+    }
+
+    private static void deleteDir(File root) throws IOException
+    {
+        if (root.isDirectory())
+        {
+            for (File file : root.listFiles())
+            {
+                deleteDir(file);
+            }
+        }
+        assertThat(root.delete()).isTrue();
+    }
+}
@@ -351,6 +351,36 @@ class ServiceRegistryTest
         assertThat(sr.getService(b, ref, false)).isSameAs(svc);
     }
 
+    @SuppressWarnings("unchecked")
+    @Test
+    void getServiceReusesCachedServiceObject()
+    {
+        ServiceRegistry sr = new ServiceRegistry(null, null);
+
+        String svc = "foo";
+
+        Bundle b = Mockito.mock(Bundle.class);
+        ServiceRegistrationImpl<Object> reg = Mockito.mock(ServiceRegistrationImpl.class);
+        Mockito.when(reg.isValid()).thenReturn(true);
+        Mockito.when(reg.getService(b)).thenReturn(svc);
+
+        ServiceReferenceImpl ref = Mockito.mock(ServiceReferenceImpl.class);
+        Mockito.when(ref.getRegistration()).thenReturn(reg);
+
+        assertThat(sr.getService(b, ref, false)).isSameAs(svc);
+        assertThat(sr.getService(b, ref, false)).isSameAs(svc);
+        assertThat(sr.obtainUsageCount(b, ref, null, null).m_count.get()).isEqualTo(2);
+
+        // The second call is served from the usage count without calling
+        // out to the registration again.
+        Mockito.verify(reg, Mockito.times(1)).getService(b);
+        Mockito.verify(reg, Mockito.times(1)).markCurrentThread();
+
+        assertThat(sr.ungetService(b, ref, null)).isTrue();
+        assertThat(sr.ungetService(b, ref, null)).isTrue();
+        Mockito.verify(reg, Mockito.times(1)).ungetService(b, svc);
+    }
+
     @SuppressWarnings("unchecked")
     @Test
     void getServiceHolderAwait() throws Exception
@@ -0,0 +1,193 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.felix.framework.cache;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+
+import org.apache.felix.framework.Logger;
+import org.apache.felix.framework.util.WeakZipFileFactory;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class JarIndexTest
+{
+    @TempDir
+    File tempDir;
+
+    @Test
+    void readsEntriesLikeZipFile() throws Exception
+    {
+        File jar = new File(tempDir, "bundle.jar");
+        byte[] text = "Hello, indexed world! Hello, indexed world!".getBytes(StandardCharsets.UTF_8);
+        try (ZipOutputStream out = new ZipOutputStream(new FileOutputStream(jar)))
+        {
+            out.putNextEntry(new ZipEntry("org/"));
+            out.closeEntry();
+            out.putNextEntry(new ZipEntry("org/foo/deflated.txt"));
+            out.write(text);
+            out.closeEntry();
+
+            ZipEntry stored = new ZipEntry("org/foo/stored.txt");
+            stored.setMethod(ZipEntry.STORED);
+            stored.setSize(text.length);
+            CRC32 crc = new CRC32();
+            crc.update(text);
+            stored.setCrc(crc.getValue());
+            out.putNextEntry(stored);
+            out.write(text);
+            out.closeEntry();
+        }
+
+        File indexFile = new File(tempDir, "bundle.jar.idx");
+        JarIndex index = JarIndex.open(jar, indexFile);
+        assertThat(indexFile).exists();
+        check(index, jar, text);
+
+        // Reopening uses the persisted index.
+        check(JarIndex.open(jar, indexFile), jar, text);
+    }
+
+    @Test
+    void rebuildsIndexWithInvalidOffsets() throws Exception
+    {
+        File jar = new File(tempDir, "bundle.jar");
+        byte[] text = "Hello, indexed world!".getBytes(StandardCharsets.UTF_8);
+        writeJar(jar, text);
+
+        File indexFile = new File(tempDir, "bundle.jar.idx");
+        JarIndex.open(jar, indexFile).close();
+
+        // Point the first entry of the index file beyond the end of the JAR.
+        try (RandomAccessFile raf = new RandomAccessFile(indexFile, "rw"))
+        {
+            // magic, version, length, last modified, count, name, method
+            raf.seek(4 + 4 + 8 + 8 + 4 + 2 + "org/foo/text.txt".length() + 1);
+            raf.writeLong(jar.length() + 100);
+        }
+
+        JarIndex index = JarIndex.open(jar, indexFile);
+        assertThat(index.getBytes(index.getEntry("org/foo/text.txt"))).isEqualTo(text);
+        index.close();
+    }
+
+    @Test
+    void failsToReadAfterClose() throws Exception
+    {
+        File jar = new File(tempDir, "bundle.jar");
+        byte[] text = "Hello, indexed world! Hello, indexed world!".getBytes(StandardCharsets.UTF_8);
+        writeJar(jar, text);
+
+        JarIndex index = JarIndex.open(jar, new File(tempDir, "bundle.jar.idx"));
+        int idx = index.getEntry("org/foo/text.txt");
+        InputStream in = index.getInputStream(idx);
+        index.close();
+
+        assertThatThrownBy(() -> index.getBytes(idx)).isInstanceOf(IOException.class);
+        assertThatThrownBy(() -> index.getInputStream(idx)).isInstanceOf(IOException.class);
+        // Streams opened before keep the mapping until they are closed.
+        assertThat(readAll(in)).isEqualTo(text);
+        in.close();
+        assertThatThrownBy(() -> in.read()).isInstanceOf(IOException.class);
+        // The file is no longer mapped and can be deleted.
+        assertThat(jar.delete()).isTrue();
+    }
+
+    @Test
+    void contentFallsBackToZipFile() throws Exception
+    {
+        File jar = new File(tempDir, "bundle.jar");
+        byte[] text = "Hello, indexed world! Hello, indexed world!".getBytes(StandardCharsets.UTF_8);
+        writeJar(jar, text);
+
+        WeakZipFileFactory factory = new WeakZipFileFactory(1);
+        JarIndex index = JarIndex.open(jar, new File(tempDir, "bundle.jar.idx"));
+        IndexedJarContent content = new IndexedJarContent(new Logger(), Collections.emptyMap(),
+            factory, new Object(), tempDir, jar, factory.create(jar), index);
+        index.close();
+
+        assertThat(content.getEntryAsBytes("org/foo/text.txt")).isEqualTo(text);
+        try (InputStream in = content.getEntryAsStream("org/foo/text.txt"))
+        {
+            assertThat(readAll(in)).isEqualTo(text);
+        }
+        content.close();
+    }
+
+    private static void writeJar(File jar, byte[] text) throws IOException
+    {
+        try (ZipOutputStream out = new ZipOutputStream(new FileOutputStream(jar)))
+        {
+            out.putNextEntry(new ZipEntry("org/foo/text.txt"));
+            out.write(text);
+            out.closeEntry();
+        }
+    }
+
+    private static void check(JarIndex index, File jar, byte[] text) throws IOException
+    {
+        assertThat(Collections.list(index.getNames()))
+            .containsExactly("org/", "org/foo/deflated.txt", "org/foo/stored.txt");
+        assertThat(index.getEntry("org/foo/missing.txt")).isNegative();
+
+        int dir = index.getEntry("org");
+        assertThat(dir).isNotNegative();
+        assertThat(index.isDirectory(dir)).isTrue();
+
+        try (ZipFile zipFile = new ZipFile(jar))
+        {
+            for (String name : new String[] { "org/foo/deflated.txt", "org/foo/stored.txt" })
+            {
+                int idx = index.getEntry(name);
+                assertThat(index.isDirectory(idx)).isFalse();
+                assertThat(index.getSize(idx)).isEqualTo(text.length);
+                assertThat(index.getTime(idx)).isEqualTo(zipFile.getEntry(name).getTime());
+                assertThat(index.getBytes(idx)).isEqualTo(text);
+                try (InputStream in = index.getInputStream(idx))
+                {
+                    assertThat(readAll(in)).isEqualTo(text);
+                }
+            }
+        }
+    }
+
+    private static byte[] readAll(InputStream in) throws IOException
+    {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[7];
+        for (int len = in.read(buffer); len > 0; len = in.read(buffer))
+        {
+            out.write(buffer, 0, len);
+        }
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,209 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.felix.framework.capabilityset;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.felix.framework.wiring.BundleCapabilityImpl;
+import org.junit.jupiter.api.Test;
+import org.osgi.framework.Version;
+import org.osgi.resource.Capability;
+
+class CapabilitySetTest
+{
+    @Test
+    void andFilterUsesMostSelectiveIndex()
+    {
+        CapabilitySet cs = new CapabilitySet(
+            Collections.singletonList("objectClass"), true);
+        BundleCapabilityImpl match = null;
+        for (int i = 0; i < 100; i++)
+        {
+            BundleCapabilityImpl cap = createCapability(
+                "objectClass", "X", "name", "comp" + i, "tenant", "t" + (i % 3));
+            cs.addCapability(cap);
+            if (i == 42)
+            {
+                match = cap;
+            }
+        }
+
+        assertThat(cs.match(SimpleFilter.parse(
+            "(&(tenant=t0)(name=comp42)(objectClass=X))"), false))
+            .containsExactly(match);
+        assertThat(cs.match(SimpleFilter.parse(
+            "(&(tenant=t1)(name=comp42)(objectClass=X))"), false))
+            .isEmpty();
+        assertThat(cs.getIndexHits()).isPositive();
+    }
+
+    @Test
+    void sortedIndexAnswersVersionRanges()
+    {
+        CapabilitySet cs = new CapabilitySet(
+            Collections.singletonList("osgi.wiring.package"),
+            Collections.singletonList("version"), true);
+        BundleCapabilityImpl v1 = createCapability(
+            "osgi.wiring.package", "org.foo", "version", new Version(1, 0, 0));
+        BundleCapabilityImpl v15 = createCapability(
+            "osgi.wiring.package", "org.foo", "version", new Version(1, 5, 0));
+        BundleCapabilityImpl v2 = createCapability(
+            "osgi.wiring.package", "org.foo", "version", new Version(2, 0, 0));
+        BundleCapabilityImpl noVersion = createCapability(
+            "osgi.wiring.package", "org.foo", "version", Long.valueOf(5));
+        cs.addCapability(v1);
+        cs.addCapability(v15);
+        cs.addCapability(v2);
+        cs.addCapability(noVersion);
+
+        assertThat(cs.match(SimpleFilter.parse("(version>=1.5.0)"), false))
+            .containsOnly(v15, v2);
+        assertThat(cs.match(SimpleFilter.parse("(version<=1.5.0)"), false))
+            .containsOnly(v1, v15);
+        assertThat(cs.match(SimpleFilter.parse("(version=[1.0.0,1.5.0])"), false))
+            .containsOnly(v1, v15);
+        assertThat(cs.match(SimpleFilter.parse("(version=5)"), false))
+            .containsOnly(noVersion);
+
+        cs.removeCapability(v15);
+        assertThat(cs.match(SimpleFilter.parse("(version>=1.5.0)"), false))
+            .containsOnly(v2);
+    }
+
+    @Test
+    void frequentlyQueriedAttributeIsIndexed()
+    {
+        CapabilitySet cs = new CapabilitySet(null, true);
+        for (int i = 0; i < 300; i++)
+        {
+            cs.addCapability(createCapability("name", "comp" + i));
+        }
+        BundleCapabilityImpl numeric = createCapability("name", Long.valueOf(7));
+        cs.addCapability(numeric);
+
+        for (int i = 0; i < 100; i++)
+        {
+            assertThat(cs.match(SimpleFilter.parse("(name=comp" + i + ")"), false))
+                .hasSize(1);
+        }
+        assertThat(cs.getIndexedAttributes()).contains("name");
+
+        long hits = cs.getIndexHits();
+        assertThat(cs.match(SimpleFilter.parse("(name=comp299)"), false)).hasSize(1);
+        assertThat(cs.match(SimpleFilter.parse("(name=7)"), false)).containsExactly(numeric);
+        assertThat(cs.getIndexHits()).isEqualTo(hits + 2);
+
+        BundleCapabilityImpl added = createCapability("name", "comp1000");
+        cs.addCapability(added);
+        assertThat(cs.match(SimpleFilter.parse("(name=comp1000)"), false))
+            .containsExactly(added);
+    }
+
+    @Test
+    void integralAttributesAreIndexed()
+    {
+        CapabilitySet cs = new CapabilitySet(
+            Collections.singletonList("service.id"), false);
+        List<BundleCapabilityImpl> caps = Arrays.asList(
+            createCapability("service.id", Long.valueOf(42)),
+            createCapability("service.id", Integer.valueOf(42)),
+            createCapability("service.id", Short.valueOf((short) 42)),
+            createCapability("service.id", "42"),
+            createCapability("service.id", Long.valueOf(43)),
+            createCapability("service.id", Double.valueOf(42)),
+            createCapability("service.id", new long[] { 1, 42 }));
+        for (BundleCapabilityImpl cap : caps)
+        {
+            cs.addCapability(cap);
+        }
+
+        long misses = cs.getIndexMisses();
+        for (String filter : new String[] {
+            "(service.id=42)", "(service.id=+42)", "(service.id=042)",
+            "(service.id=43)", "(service.id=1)", "(service.id=foo)",
+            "(service.id=99999999999999999999)" })
+        {
+            assertMatchesLinearScan(cs, caps, filter);
+        }
+        assertThat(cs.getIndexMisses()).isEqualTo(misses);
+        assertThat(cs.match(SimpleFilter.parse("(service.id=42)"), false)).hasSize(6);
+
+        cs.removeCapability(caps.get(0));
+        assertThat(cs.match(SimpleFilter.parse("(service.id=42)"), false))
+            .hasSize(5).doesNotContain(caps.get(0));
+    }
+
+    @Test
+    void sortedIndexOnlyNarrowsFullSet()
+    {
+        CapabilitySet cs = new CapabilitySet(
+            Collections.singletonList("osgi.wiring.package"),
+            Collections.singletonList("version"), true);
+        BundleCapabilityImpl foo1 = createCapability(
+            "osgi.wiring.package", "org.foo", "version", new Version(1, 0, 0));
+        BundleCapabilityImpl foo2 = createCapability(
+            "osgi.wiring.package", "org.foo", "version", new Version(2, 0, 0));
+        BundleCapabilityImpl bar2 = createCapability(
+            "osgi.wiring.package", "org.bar", "version", new Version(2, 0, 0));
+        cs.addCapability(foo1);
+        cs.addCapability(foo2);
+        cs.addCapability(bar2);
+
+        long hits = cs.getIndexHits();
+        assertThat(cs.match(SimpleFilter.parse(
+            "(&(osgi.wiring.package=org.foo)(version>=1.5.0))"), false))
+            .containsExactly(foo2);
+        // The version range of the narrowed candidates is compared linearly.
+        assertThat(cs.getIndexHits()).isEqualTo(hits + 1);
+    }
+
+    private static void assertMatchesLinearScan(
+        CapabilitySet cs, List<BundleCapabilityImpl> caps, String filter)
+    {
+        SimpleFilter sf = SimpleFilter.parse(filter);
+        Set<Capability> expected = new HashSet<>();
+        for (BundleCapabilityImpl cap : caps)
+        {
+            if (CapabilitySet.matches(cap, sf))
+            {
+                expected.add(cap);
+            }
+        }
+        assertThat(cs.match(sf, false)).as(filter).isEqualTo(expected);
+    }
+
+    private static BundleCapabilityImpl createCapability(Object... attrs)
+    {
+        Map<String, Object> map = new HashMap<>();
+        for (int i = 0; i < attrs.length; i += 2)
+        {
+            map.put((String) attrs[i], attrs[i + 1]);
+        }
+        return new BundleCapabilityImpl(
+            null, "test", Collections.<String, String>emptyMap(), map);
+    }
+}
@@ -0,0 +1,111 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.felix.framework.util;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Logger;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ClassParserTest
+{
+    @Test
+    void referencedPackages() throws Exception
+    {
+        assertThat(parse(Fixture.class)).contains("java.lang", "java.util",
+            "java.util.concurrent", "java.nio.file", "java.util.logging");
+    }
+
+    @Test
+    void runtimeClass() throws Exception
+    {
+        assertThat(parse(ConcurrentHashMap.class)).contains("java.util",
+            "java.util.function", "java.util.concurrent.locks", "jdk.internal.misc");
+    }
+
+    @Test
+    void inputSkippingLessThanRequested() throws Exception
+    {
+        byte[] bytes = read(ConcurrentHashMap.class);
+        InputStream in = new FilterInputStream(new ByteArrayInputStream(bytes))
+        {
+            @Override
+            public long skip(long n)
+            {
+                return 0;
+            }
+        };
+        assertThat(new ClassParser().parseClassFileUses("ConcurrentHashMap", in))
+            .isEqualTo(parse(ConcurrentHashMap.class));
+    }
+
+    @Test
+    void truncatedClassFile() throws Exception
+    {
+        byte[] bytes = read(ConcurrentHashMap.class);
+        InputStream in = new ByteArrayInputStream(Arrays.copyOf(bytes, bytes.length / 2));
+        assertThatThrownBy(() -> new ClassParser().parseClassFileUses("ConcurrentHashMap", in))
+            .isInstanceOf(EOFException.class);
+    }
+
+    private static Set<String> parse(Class<?> clazz) throws Exception
+    {
+        return new ClassParser().parseClassFileUses(clazz.getName(), new ByteArrayInputStream(read(clazz)));
+    }
+
+    private static byte[] read(Class<?> clazz) throws IOException
+    {
+        String name = clazz.getName();
+        try (InputStream in = clazz.getResourceAsStream(name.substring(name.lastIndexOf('.') + 1) + ".class"))
+        {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[4096];
+            for (int n = in.read(buffer); n != -1; n = in.read(buffer))
+            {
+                out.write(buffer, 0, n);
+            }
+            return out.toByteArray();
+        }
+    }
+
+    /**
+     * A class with references in its signatures and in its code.
+     */
+    public static class Fixture
+    {
+        public Callable<Path> call(Set<String> names)
+        {
+            Logger.getLogger("fixture").info(names.toString());
+            return null;
+        }
+    }
+}
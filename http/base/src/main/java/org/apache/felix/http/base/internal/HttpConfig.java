@@ -44,6 +44,30 @@ public class HttpConfig {
 
     private volatile Set<String> containerAddedAttribueSet;
 
+    public static final String PROP_RESOLUTION_CACHE_SIZE = "org.apache.felix.http.resolution.cache.size";
+
+    public static final int DEFAULT_RESOLUTION_CACHE_SIZE = 0;
+
+    private volatile int resolutionCacheSize = DEFAULT_RESOLUTION_CACHE_SIZE;
+
+    public static final String PROP_RESOURCE_CACHE_SIZE = "org.apache.felix.http.resource.cache.size";
+
+    public static final int DEFAULT_RESOURCE_CACHE_SIZE = 0;
+
+    public static final String PROP_RESOURCE_CACHE_ENTRY_SIZE = "org.apache.felix.http.resource.cache.entry.size";
+
+    public static final int DEFAULT_RESOURCE_CACHE_ENTRY_SIZE = 512 * 1024;
+
+    private volatile int resourceCacheSize = DEFAULT_RESOURCE_CACHE_SIZE;
+
+    private volatile int resourceCacheEntrySize = DEFAULT_RESOURCE_CACHE_ENTRY_SIZE;
+
+    public static final String PROP_METRICS_ENABLED = "org.apache.felix.http.metrics.enable";
+
+    public static final boolean DEFAULT_METRICS_ENABLED = false;
+
+    private volatile boolean metricsEnabled = DEFAULT_METRICS_ENABLED;
+
     public boolean isUniqueSessionId() {
         return uniqueSessionId;
     }
@@ -69,10 +93,64 @@ public class HttpConfig {
     }
 
 
+    /**
+     * The maximum number of request uris per servlet context for which the
+     * resolved servlet is cached, {@code 0} if the cache is disabled.
+     * @return The cache size
+     */
+    public int getResolutionCacheSize() {
+        return resolutionCacheSize;
+    }
+
+    public void setResolutionCacheSize(int resolutionCacheSize) {
+        this.resolutionCacheSize = resolutionCacheSize;
+    }
+
+    /**
+     * The maximum number of bytes of static resources kept in memory,
+     * {@code 0} if the cache is disabled.
+     * @return The cache size in bytes
+     */
+    public int getResourceCacheSize() {
+        return resourceCacheSize;
+    }
+
+    public void setResourceCacheSize(int resourceCacheSize) {
+        this.resourceCacheSize = resourceCacheSize;
+    }
+
+    /**
+     * The maximum size in bytes of a single static resource kept in memory.
+     * @return The maximum entry size in bytes
+     */
+    public int getResourceCacheEntrySize() {
+        return resourceCacheEntrySize;
+    }
+
+    public void setResourceCacheEntrySize(int resourceCacheEntrySize) {
+        this.resourceCacheEntrySize = resourceCacheEntrySize;
+    }
+
+    /**
+     * Whether request metrics are recorded for servlets and filters.
+     * @return {@code true} if metrics are enabled
+     */
+    public boolean isMetricsEnabled() {
+        return metricsEnabled;
+    }
+
+    public void setMetricsEnabled(boolean metricsEnabled) {
+        this.metricsEnabled = metricsEnabled;
+    }
+
     public void configure(@NotNull final Dictionary<String, Object> props) {
         this.setUniqueSessionId(this.getBooleanProperty(props, PROP_UNIQUE_SESSION_ID, DEFAULT_UNIQUE_SESSION_ID));
         this.setInvalidateContainerSession(this.getBooleanProperty(props, PROP_INVALIDATE_SESSION, DEFAULT_INVALIDATE_SESSION));
         this.setContainerAddedAttribueSet(this.getStringSetProperty(props, PROP_CONTAINER_ADDED_ATTRIBUTE));
+        this.setResolutionCacheSize(this.getIntProperty(props, PROP_RESOLUTION_CACHE_SIZE, DEFAULT_RESOLUTION_CACHE_SIZE));
+        this.setResourceCacheSize(this.getIntProperty(props, PROP_RESOURCE_CACHE_SIZE, DEFAULT_RESOURCE_CACHE_SIZE));
+        this.setResourceCacheEntrySize(this.getIntProperty(props, PROP_RESOURCE_CACHE_ENTRY_SIZE, DEFAULT_RESOURCE_CACHE_ENTRY_SIZE));
+        this.setMetricsEnabled(this.getBooleanProperty(props, PROP_METRICS_ENABLED, DEFAULT_METRICS_ENABLED));
     }
 
 
@@ -89,6 +167,25 @@ public class HttpConfig {
     }
 
 
+    private int getIntProperty(final Dictionary<String, Object> props, final String name, final int defValue)
+    {
+        final Object v = props.get(name);
+        if ( v != null )
+        {
+            try
+            {
+                return Integer.parseInt(String.valueOf(v).trim());
+            }
+            catch ( final NumberFormatException nfe )
+            {
+                // ignore and use default
+            }
+        }
+
+        return defValue;
+    }
+
+
     /**
      * Get the property value as a string array.
      * Empty values are filtered out - if the resulting array is empty
@@ -16,16 +16,22 @@
  */
 package org.apache.felix.http.base.internal;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Hashtable;
+import java.util.List;
 
 import org.apache.felix.http.base.internal.dispatch.Dispatcher;
 import org.apache.felix.http.base.internal.dispatch.DispatcherServlet;
 import org.apache.felix.http.base.internal.handler.HttpSessionWrapper;
 import org.apache.felix.http.base.internal.registry.HandlerRegistry;
+import org.apache.felix.http.base.internal.runtime.dto.HandlerMetricsDTO;
 import org.apache.felix.http.base.internal.service.HttpServiceFactory;
 import org.apache.felix.http.base.internal.whiteboard.WhiteboardManager;
 import org.jetbrains.annotations.NotNull;
 import org.osgi.framework.BundleContext;
+import org.osgi.framework.ServiceRegistration;
 
 import jakarta.servlet.Servlet;
 import jakarta.servlet.ServletContext;
@@ -49,6 +55,8 @@ public final class HttpServiceController
 
     private volatile HttpSessionListener httpSessionListener;
 
+    private volatile ServiceRegistration<?> metricsRegistration;
+
     /**
      * Create new controller
      * @param bundleContext The bundle context
@@ -136,6 +144,69 @@ public final class HttpServiceController
         this.whiteboardManager.start(containerContext, props);
 
         this.dispatcher.setWhiteboardManager(this.whiteboardManager);
+
+        if ( this.config.isMetricsEnabled() )
+        {
+            final Object name = props.get("org.apache.felix.http.name");
+            final Hashtable<String, Object> mbeanProps = new Hashtable<>();
+            mbeanProps.put("jmx.objectname", "org.apache.felix.http:type=metrics,name="
+                    + (name == null ? "default" : name.toString().replaceAll("[,=:\"*?]", "_")));
+
+            this.metricsRegistration = this.bundleContext.registerService(Object.class, getRequestMetricsMBean(), mbeanProps);
+        }
+    }
+
+    /**
+     * The request metrics exposed via JMX. Each entry describes the metrics
+     * of a single servlet, resource or filter, latencies are in microseconds.
+     */
+    public interface RequestMetricsMBean
+    {
+        String[] getServletMetrics();
+
+        String[] getFilterMetrics();
+    }
+
+    private Object getRequestMetricsMBean()
+    {
+        return new RequestMetricsMBean()
+        {
+            @Override
+            public String[] getServletMetrics()
+            {
+                return getMetrics(false);
+            }
+
+            @Override
+            public String[] getFilterMetrics()
+            {
+                return getMetrics(true);
+            }
+        };
+    }
+
+    private String[] getMetrics(final boolean filters)
+    {
+        final Collection<HandlerMetricsDTO> dtos = this.whiteboardManager.getRuntimeInfo().getMetricsDTOs();
+        final List<String> result = new ArrayList<>();
+        for(final HandlerMetricsDTO dto : dtos == null ? Collections.<HandlerMetricsDTO>emptyList() : dtos)
+        {
+            if ( filters == HandlerMetricsDTO.TYPE_FILTER.equals(dto.type) )
+            {
+                result.add(dto.name + " (" + dto.type + ", service.id=" + dto.serviceId
+                        + ", context.id=" + dto.servletContextId
+                        + ") requests=" + dto.requestCount
+                        + ", errors=" + dto.errorCount
+                        + ", inFlight=" + dto.inFlightCount
+                        + ", mean=" + dto.meanMicros
+                        + ", p50=" + dto.p50Micros
+                        + ", p90=" + dto.p90Micros
+                        + ", p99=" + dto.p99Micros
+                        + ", p999=" + dto.p999Micros
+                        + ", max=" + dto.maxMicros);
+            }
+        }
+        return result.toArray(new String[result.size()]);
     }
 
     /**
@@ -153,6 +224,12 @@ public final class HttpServiceController
      */
     public void unregister()
     {
+        if ( this.metricsRegistration != null )
+        {
+            this.metricsRegistration.unregister();
+            this.metricsRegistration = null;
+        }
+
         this.dispatcher.setWhiteboardManager(null);
 
         this.whiteboardManager.stop();
@@ -17,6 +17,7 @@
 package org.apache.felix.http.base.internal.dispatch;
 
 import static jakarta.servlet.http.HttpServletResponse.SC_FORBIDDEN;
+import static jakarta.servlet.http.HttpServletResponse.SC_INTERNAL_SERVER_ERROR;
 import static jakarta.servlet.http.HttpServletResponse.SC_OK;
 
 import java.io.IOException;
@@ -29,7 +30,10 @@ import jakarta.servlet.ServletResponse;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 
+import org.apache.felix.http.base.internal.HttpConfig;
+import org.apache.felix.http.base.internal.context.ExtServletContext;
 import org.apache.felix.http.base.internal.handler.FilterHandler;
+import org.apache.felix.http.base.internal.handler.HandlerMetrics;
 import org.apache.felix.http.base.internal.handler.ServletHandler;
 
 public class InvocationChain implements FilterChain
@@ -37,12 +41,17 @@ public class InvocationChain implements FilterChain
     private final ServletHandler servletHandler;
     private final FilterHandler[] filterHandlers;
 
+    private final boolean metricsEnabled;
+
     private int index = -1;
 
     public InvocationChain(@NotNull final ServletHandler servletHandler, @NotNull final FilterHandler[] filterHandlers)
     {
         this.filterHandlers = filterHandlers;
         this.servletHandler = servletHandler;
+        final ExtServletContext context = servletHandler.getContext();
+        final HttpConfig config = context == null ? null : context.getConfig();
+        this.metricsEnabled = config != null && config.isMetricsEnabled();
     }
 
     @Override
@@ -76,7 +85,11 @@ public class InvocationChain implements FilterChain
 
         try
         {
-            if (this.index < this.filterHandlers.length)
+            if ( this.metricsEnabled )
+            {
+                handleWithMetrics(req, res);
+            }
+            else if (this.index < this.filterHandlers.length)
             {
                 this.filterHandlers[this.index].handle(req, res, this);
             }
@@ -96,4 +109,34 @@ public class InvocationChain implements FilterChain
             }
         }
     }
+
+    /**
+     * Invoke the current filter or the servlet and record the request in the
+     * metrics of the handler. The latency of a filter includes the rest of
+     * the chain.
+     */
+    private void handleWithMetrics(final ServletRequest req, final ServletResponse res) throws IOException, ServletException
+    {
+        final boolean isFilter = this.index < this.filterHandlers.length;
+        final HandlerMetrics metrics = isFilter ? this.filterHandlers[this.index].getMetrics() : this.servletHandler.getMetrics();
+        final long startTime = metrics.start();
+        boolean failed = true;
+        try
+        {
+            if ( isFilter )
+            {
+                this.filterHandlers[this.index].handle(req, res, this);
+            }
+            else
+            {
+                this.servletHandler.handle(req, res);
+            }
+            failed = !isFilter && res instanceof HttpServletResponse
+                    && ((HttpServletResponse) res).getStatus() >= SC_INTERNAL_SERVER_ERROR;
+        }
+        finally
+        {
+            metrics.end(startTime, failed);
+        }
+    }
 }
@@ -22,6 +22,7 @@ import org.apache.felix.http.base.internal.context.ExtServletContext;
 import org.apache.felix.http.base.internal.logger.SystemLogger;
 import org.apache.felix.http.base.internal.runtime.FilterInfo;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 import org.osgi.framework.BundleContext;
 import org.osgi.service.servlet.runtime.dto.DTOConstants;
 
@@ -47,6 +48,8 @@ public class FilterHandler implements Comparable<FilterHandler>
 
     private volatile Filter filter;
 
+    private volatile HandlerMetrics metrics;
+
     protected volatile int useCount;
 
     public FilterHandler(final long contextServiceId,
@@ -66,6 +69,37 @@ public class FilterHandler implements Comparable<FilterHandler>
         return this.filterInfo.compareTo(other.filterInfo);
     }
 
+    /**
+     * Get the request metrics of this filter, creating them on first use.
+     * @return The metrics
+     */
+    public @NotNull HandlerMetrics getMetrics()
+    {
+        HandlerMetrics m = this.metrics;
+        if ( m == null )
+        {
+            synchronized ( this )
+            {
+                m = this.metrics;
+                if ( m == null )
+                {
+                    m = new HandlerMetrics();
+                    this.metrics = m;
+                }
+            }
+        }
+        return m;
+    }
+
+    /**
+     * Get the request metrics of this filter if any have been recorded.
+     * @return The metrics or {@code null}
+     */
+    public @Nullable HandlerMetrics getMetricsIfPresent()
+    {
+        return this.metrics;
+    }
+
     public long getContextServiceId()
     {
         return this.contextServiceId;
@@ -0,0 +1,83 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.felix.http.base.internal.handler;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The request metrics of a servlet or filter: the number of requests,
+ * the number of failed requests, the number of requests currently in
+ * progress and a histogram of the latencies.
+ * All counters are lock-free and can be updated concurrently.
+ */
+public final class HandlerMetrics
+{
+    private final LongAdder requests = new LongAdder();
+
+    private final LongAdder errors = new LongAdder();
+
+    private final LongAdder inFlight = new LongAdder();
+
+    private final LatencyHistogram latencies = new LatencyHistogram();
+
+    /**
+     * Start a request
+     * @return The start time to pass to {@link #end(long, boolean)}
+     */
+    public long start()
+    {
+        this.inFlight.increment();
+        return System.nanoTime();
+    }
+
+    /**
+     * End a request
+     * @param startTime The start time returned by {@link #start()}
+     * @param failed Whether the request failed
+     */
+    public void end(final long startTime, final boolean failed)
+    {
+        final long duration = System.nanoTime() - startTime;
+        this.inFlight.decrement();
+        this.requests.increment();
+        if ( failed )
+        {
+            this.errors.increment();
+        }
+        this.latencies.record(duration / 1000);
+    }
+
+    public long getRequestCount()
+    {
+        return this.requests.sum();
+    }
+
+    public long getErrorCount()
+    {
+        return this.errors.sum();
+    }
+
+    public long getInFlightCount()
+    {
+        return this.inFlight.sum();
+    }
+
+    public LatencyHistogram getLatencies()
+    {
+        return this.latencies;
+    }
+}
@@ -0,0 +1,148 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.felix.http.base.internal.handler;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A lock-free histogram of latencies in microseconds.
+ * Values are counted in log-linear buckets: each power of two is split
+ * into eight buckets, so the value reported for a percentile is at most
+ * 12.5% above the recorded value. Values above about 12 days are counted
+ * in the last bucket.
+ */
+public final class LatencyHistogram
+{
+    private static final int SUB_BUCKET_BITS = 3;
+
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+    private static final long MAX_VALUE = (1L << 40) - 1;
+
+    private static final int BUCKETS = index(MAX_VALUE) + 1;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+
+    private final LongAdder count = new LongAdder();
+
+    private final LongAdder total = new LongAdder();
+
+    private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+    static int index(final long value)
+    {
+        if ( value < SUB_BUCKETS )
+        {
+            return (int) value;
+        }
+        final int msb = 63 - Long.numberOfLeadingZeros(value);
+        final int shift = msb - SUB_BUCKET_BITS;
+        return (shift + 1) * SUB_BUCKETS + (int) ((value >>> shift) & (SUB_BUCKETS - 1));
+    }
+
+    static long highestValue(final int index)
+    {
+        if ( index < SUB_BUCKETS )
+        {
+            return index;
+        }
+        final int shift = index / SUB_BUCKETS - 1;
+        final long subBucket = index % SUB_BUCKETS;
+        return ((SUB_BUCKETS + subBucket + 1) << shift) - 1;
+    }
+
+    /**
+     * Record a latency
+     * @param micros The latency in microseconds
+     */
+    public void record(final long micros)
+    {
+        final long value = micros < 0 ? 0 : Math.min(micros, MAX_VALUE);
+        this.counts.incrementAndGet(index(value));
+        this.count.increment();
+        this.total.add(value);
+        this.max.accumulate(value);
+    }
+
+    /**
+     * The number of recorded values
+     * @return The count
+     */
+    public long getCount()
+    {
+        return this.count.sum();
+    }
+
+    /**
+     * The mean of the recorded values
+     * @return The mean in microseconds, {@code 0} if no value has been recorded
+     */
+    public long getMean()
+    {
+        final long c = this.count.sum();
+        return c == 0 ? 0 : this.total.sum() / c;
+    }
+
+    /**
+     * The highest recorded value
+     * @return The highest value in microseconds
+     */
+    public long getMax()
+    {
+        return this.max.get();
+    }
+
+    /**
+     * Get the values at the given percentiles. As values are recorded
+     * concurrently, the result is an approximation.
+     * @param percentiles The percentiles, each between 0 and 100
+     * @return The values in microseconds, in the order of the percentiles
+     */
+    public long[] getPercentiles(final double... percentiles)
+    {
+        final long[] snapshot = new long[BUCKETS];
+        long c = 0;
+        for(int i = 0; i < BUCKETS; i++)
+        {
+            snapshot[i] = this.counts.get(i);
+            c += snapshot[i];
+        }
+        final long[] result = new long[percentiles.length];
+        if ( c == 0 )
+        {
+            return result;
+        }
+        final long maxValue = this.getMax();
+        for(int p = 0; p < percentiles.length; p++)
+        {
+            final long rank = Math.max(1, (long) Math.ceil(percentiles[p] / 100.0 * c));
+            long seen = 0;
+            for(int i = 0; i < BUCKETS; i++)
+            {
+                seen += snapshot[i];
+                if ( seen >= rank )
+                {
+                    result[p] = Math.min(highestValue(i), maxValue);
+                    break;
+                }
+            }
+        }
+        return result;
+    }
+}
@@ -24,6 +24,8 @@ import org.apache.felix.http.base.internal.dispatch.MultipartConfig;
 import org.apache.felix.http.base.internal.logger.SystemLogger;
 import org.apache.felix.http.base.internal.runtime.ServletInfo;
 import org.apache.felix.http.jakartawrappers.ServletWrapper;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 import org.osgi.framework.Bundle;
 import org.osgi.service.servlet.runtime.dto.DTOConstants;
 
@@ -50,6 +52,8 @@ public abstract class ServletHandler implements Comparable<ServletHandler>
 
     private volatile Servlet servlet;
 
+    private volatile HandlerMetrics metrics;
+
     protected volatile int useCount;
 
     private final MultipartConfig mpConfig;
@@ -133,6 +137,37 @@ public abstract class ServletHandler implements Comparable<ServletHandler>
         }
     }
 
+    /**
+     * Get the request metrics of this servlet, creating them on first use.
+     * @return The metrics
+     */
+    public @NotNull HandlerMetrics getMetrics()
+    {
+        HandlerMetrics m = this.metrics;
+        if ( m == null )
+        {
+            synchronized ( this )
+            {
+                m = this.metrics;
+                if ( m == null )
+                {
+                    m = new HandlerMetrics();
+                    this.metrics = m;
+                }
+            }
+        }
+        return m;
+    }
+
+    /**
+     * Get the request metrics of this servlet if any have been recorded.
+     * @return The metrics or {@code null}
+     */
+    public @Nullable HandlerMetrics getMetricsIfPresent()
+    {
+        return this.metrics;
+    }
+
     public ServletInfo getServletInfo()
     {
         return this.servletInfo;
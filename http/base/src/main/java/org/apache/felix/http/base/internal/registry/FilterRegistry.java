@@ -19,8 +19,11 @@ package org.apache.felix.http.base.internal.registry;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.EnumMap;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.jetbrains.annotations.Nullable;
 import org.jetbrains.annotations.NotNull;
@@ -30,6 +33,8 @@ import org.apache.felix.http.base.internal.handler.FilterHandler;
 import org.apache.felix.http.base.internal.handler.ServletHandler;
 import org.apache.felix.http.base.internal.runtime.FilterInfo;
 import org.apache.felix.http.base.internal.runtime.dto.FilterDTOBuilder;
+import org.apache.felix.http.base.internal.runtime.dto.HandlerMetricsDTO;
+import org.apache.felix.http.base.internal.runtime.dto.HandlerMetricsDTOBuilder;
 import org.osgi.service.servlet.runtime.dto.FailedFilterDTO;
 import org.osgi.service.servlet.runtime.dto.FilterDTO;
 import org.osgi.service.servlet.runtime.dto.ServletContextDTO;
@@ -43,6 +48,9 @@ public final class FilterRegistry
     /** List of all filter registrations. These are sorted by the status objects. */
     private volatile List<FilterRegistrationStatus> filters = Collections.emptyList();
 
+    /** The precomputed filter chains, rebuilt whenever the filters change. */
+    private volatile FilterChains chains = new FilterChains(Collections.<FilterRegistrationStatus>emptyList());
+
     /**
      * The status object keeps track of the registration status of a filter and holds
      * the resolvers to match against a uri.
@@ -125,7 +133,7 @@ public final class FilterRegistry
         newList.add(status);
         Collections.sort(newList);
 
-        this.filters = newList;
+        this.setFilters(newList);
     }
 
     /**
@@ -150,7 +158,7 @@ public final class FilterRegistry
         }
         if ( found != null )
         {
-            this.filters = newList;
+            this.setFilters(newList);
 
             if ( found.getResult() == -1 && destroy )
             {
@@ -161,12 +169,19 @@ public final class FilterRegistry
 
     public synchronized void cleanup()
     {
-        this.filters = Collections.emptyList();
+        this.setFilters(Collections.<FilterRegistrationStatus>emptyList());
+    }
+
+    private void setFilters(final List<FilterRegistrationStatus> newList)
+    {
+        this.filters = newList;
+        this.chains = new FilterChains(newList);
     }
 
     /**
      * Get all filters handling the request.
      * Filters are applied to the url and/or the servlet
+     * The returned array might be shared between requests and must not be modified.
      * @param handler Optional servlet handler
      * @param dispatcherType The dispatcher type
      * @param requestURI The request uri
@@ -176,47 +191,10 @@ public final class FilterRegistry
             @NotNull final DispatcherType dispatcherType,
             @NotNull final String requestURI)
     {
-        final List<FilterHandler> result = new ArrayList<FilterHandler>();
-        final List<FilterRegistrationStatus> allFilters = this.filters;
+        // check for servlet name if it's not a resource
+        final String servletName = (handler != null && !handler.getServletInfo().isResource()) ? handler.getName() : null;
 
-        for(final FilterRegistrationStatus status : allFilters)
-        {
-            // as soon as we encounter a failing filter, we can stop
-            if ( status.getResult() != -1 )
-            {
-                break;
-            }
-            if (referencesDispatcherType(status.getHandler(), dispatcherType) )
-            {
-                boolean added = false;
-                for(final PathResolver resolver : status.getResolvers())
-                {
-                    if ( resolver.resolve(requestURI) != null )
-                    {
-                        result.add(status.getHandler());
-                        added = true;
-                        break;
-                    }
-                }
-                // check for servlet name if it's not a resource
-                final String servletName = (handler != null && !handler.getServletInfo().isResource()) ? handler.getName() : null;
-                if ( !added && servletName != null && status.getHandler().getFilterInfo().getServletNames() != null )
-                {
-                    for(final String name : status.getHandler().getFilterInfo().getServletNames())
-                    {
-                        if ( servletName.equals(name) )
-                        {
-                            result.add(status.getHandler());
-                            added = true;
-                            break;
-                        }
-                    }
-                }
-
-            }
-        }
-
-        return result.toArray(new FilterHandler[result.size()]);
+        return this.chains.getChain(dispatcherType, servletName).getFilterHandlers(requestURI);
     }
 
     /**
@@ -225,7 +203,7 @@ public final class FilterRegistry
      * @param dispatcherType The requested dispatcher type
      * @return {@code true} if the filter can be applied.
      */
-    private boolean referencesDispatcherType(final FilterHandler handler, final DispatcherType dispatcherType)
+    private static boolean referencesDispatcherType(final FilterHandler handler, final DispatcherType dispatcherType)
     {
         for(final DispatcherType dt : handler.getFilterInfo().getDispatcher())
         {
@@ -265,4 +243,199 @@ public final class FilterRegistry
             servletContextDTO.filterDTOs = filterDTOs.toArray(new FilterDTO[filterDTOs.size()]);
         }
     }
+
+    /**
+     * Collect the request metrics of all active filters
+     * @param metricsDTOs The collection to add the metrics to
+     */
+    public void getMetrics(@NotNull final Collection<HandlerMetricsDTO> metricsDTOs)
+    {
+        final List<FilterRegistrationStatus> allFilters = this.filters;
+        for(final FilterRegistrationStatus status : allFilters)
+        {
+            if ( status.getResult() == -1 )
+            {
+                metricsDTOs.add(HandlerMetricsDTOBuilder.build(status.getHandler()));
+            }
+        }
+    }
+
+    /**
+     * The filter chains for all dispatcher types. For each dispatcher type the
+     * active filters registered for this type are collected once. The chains
+     * for a servlet name are created on first use and cached until the
+     * filters change.
+     */
+    private static final class FilterChains
+    {
+        private final Map<DispatcherType, FilterRegistrationStatus[]> filtersByType = new EnumMap<>(DispatcherType.class);
+
+        private final Map<DispatcherType, FilterChainEntry> chainsWithoutServlet = new EnumMap<>(DispatcherType.class);
+
+        private final Map<DispatcherType, Map<String, FilterChainEntry>> chainsByServlet = new EnumMap<>(DispatcherType.class);
+
+        public FilterChains(@NotNull final List<FilterRegistrationStatus> allFilters)
+        {
+            for(final DispatcherType dispatcherType : DispatcherType.values())
+            {
+                final List<FilterRegistrationStatus> list = new ArrayList<>();
+                for(final FilterRegistrationStatus status : allFilters)
+                {
+                    // as soon as we encounter a failing filter, we can stop
+                    if ( status.getResult() != -1 )
+                    {
+                        break;
+                    }
+                    if ( referencesDispatcherType(status.getHandler(), dispatcherType) )
+                    {
+                        list.add(status);
+                    }
+                }
+                final FilterRegistrationStatus[] candidates = list.toArray(new FilterRegistrationStatus[list.size()]);
+                this.filtersByType.put(dispatcherType, candidates);
+                this.chainsWithoutServlet.put(dispatcherType, new FilterChainEntry(candidates, null));
+                this.chainsByServlet.put(dispatcherType, new ConcurrentHashMap<String, FilterChainEntry>());
+            }
+        }
+
+        public @NotNull FilterChainEntry getChain(@NotNull final DispatcherType dispatcherType, @Nullable final String servletName)
+        {
+            if ( servletName == null )
+            {
+                return this.chainsWithoutServlet.get(dispatcherType);
+            }
+            final Map<String, FilterChainEntry> chains = this.chainsByServlet.get(dispatcherType);
+            FilterChainEntry chain = chains.get(servletName);
+            if ( chain == null )
+            {
+                chain = new FilterChainEntry(this.filtersByType.get(dispatcherType), servletName);
+                chains.put(servletName, chain);
+            }
+            return chain;
+        }
+    }
+
+    /**
+     * The filter chain for a dispatcher type and servlet name. Filters which
+     * are registered for the servlet name or for all paths always apply;
+     * if there are only such filters, the chain is precomputed. Otherwise
+     * only the path patterns of the remaining candidate filters are matched
+     * against the request uri.
+     */
+    private static final class FilterChainEntry
+    {
+        private static final FilterHandler[] EMPTY = new FilterHandler[0];
+
+        /** The filter applies regardless of the request uri */
+        private static final int MATCH_ALWAYS = 0;
+
+        /** The filter applies to all request uris starting with a slash */
+        private static final int MATCH_ALL_PATHS = 1;
+
+        /** The filter applies if one of its path patterns matches */
+        private static final int MATCH_PATTERNS = 2;
+
+        private final FilterRegistrationStatus[] candidates;
+
+        private final int[] matchTypes;
+
+        private final FilterHandler[] handlers;
+
+        public FilterChainEntry(@NotNull final FilterRegistrationStatus[] filters, @Nullable final String servletName)
+        {
+            final List<FilterRegistrationStatus> list = new ArrayList<>();
+            final List<Integer> types = new ArrayList<>();
+            boolean precomputed = true;
+            for(final FilterRegistrationStatus status : filters)
+            {
+                final int type = getMatchType(status, servletName);
+                if ( type != -1 )
+                {
+                    list.add(status);
+                    types.add(type);
+                    precomputed = precomputed && type != MATCH_PATTERNS;
+                }
+            }
+            this.candidates = list.toArray(new FilterRegistrationStatus[list.size()]);
+            this.matchTypes = new int[types.size()];
+            for(int i = 0; i < this.matchTypes.length; i++)
+            {
+                this.matchTypes[i] = types.get(i);
+            }
+            if ( precomputed )
+            {
+                this.handlers = new FilterHandler[this.candidates.length];
+                for(int i = 0; i < this.candidates.length; i++)
+                {
+                    this.handlers[i] = this.candidates[i].getHandler();
+                }
+            }
+            else
+            {
+                this.handlers = null;
+            }
+        }
+
+        private static int getMatchType(final FilterRegistrationStatus status, final String servletName)
+        {
+            final String[] servletNames = status.getHandler().getFilterInfo().getServletNames();
+            if ( servletName != null && servletNames != null )
+            {
+                for(final String name : servletNames)
+                {
+                    if ( servletName.equals(name) )
+                    {
+                        return MATCH_ALWAYS;
+                    }
+                }
+            }
+            final PathResolver[] resolvers = status.getResolvers();
+            if ( resolvers == null || resolvers.length == 0 )
+            {
+                return -1;
+            }
+            for(final PathResolver resolver : resolvers)
+            {
+                if ( resolver instanceof PathResolverFactory.PathMatcher && "/*".equals(resolver.getPattern()) )
+                {
+                    return MATCH_ALL_PATHS;
+                }
+            }
+            return MATCH_PATTERNS;
+        }
+
+        public @NotNull FilterHandler[] getFilterHandlers(@NotNull final String requestURI)
+        {
+            final boolean isPath = requestURI.isEmpty() || requestURI.charAt(0) == '/';
+            if ( this.handlers != null && isPath )
+            {
+                return this.handlers;
+            }
+            if ( this.candidates.length == 0 )
+            {
+                return EMPTY;
+            }
+            final List<FilterHandler> result = new ArrayList<>(this.candidates.length);
+            for(int i = 0; i < this.candidates.length; i++)
+            {
+                final FilterRegistrationStatus status = this.candidates[i];
+                if ( this.matchTypes[i] == MATCH_ALWAYS || (this.matchTypes[i] == MATCH_ALL_PATHS && isPath) )
+                {
+                    result.add(status.getHandler());
+                }
+                else
+                {
+                    for(final PathResolver resolver : status.getResolvers())
+                    {
+                        if ( resolver.resolve(requestURI) != null )
+                        {
+                            result.add(status.getHandler());
+                            break;
+                        }
+                    }
+                }
+            }
+            return result.toArray(new FilterHandler[result.size()]);
+        }
+    }
 }
@@ -17,6 +17,7 @@
 package org.apache.felix.http.base.internal.registry;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
@@ -28,6 +29,8 @@ import org.apache.felix.http.base.internal.handler.FilterHandler;
 import org.apache.felix.http.base.internal.handler.ServletHandler;
 import org.apache.felix.http.base.internal.runtime.ServletContextHelperInfo;
 import org.apache.felix.http.base.internal.runtime.dto.FailedDTOHolder;
+import org.apache.felix.http.base.internal.runtime.dto.HandlerMetricsDTO;
+import org.apache.felix.http.base.internal.whiteboard.ResourceCache;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 import org.osgi.service.servlet.runtime.dto.ServletContextDTO;
@@ -47,9 +50,12 @@ public final class HandlerRegistry
 
     private final HttpConfig config;
 
+    private final ResourceCache resourceCache;
+
     public HandlerRegistry(final HttpConfig config)
     {
         this.config = config;
+        this.resourceCache = new ResourceCache(config);
     }
 
     public HttpConfig getConfig()
@@ -57,6 +63,15 @@ public final class HandlerRegistry
         return this.config;
     }
 
+    /**
+     * The cache for static resources shared by all resource servlets
+     * @return The resource cache
+     */
+    public @NotNull ResourceCache getResourceCache()
+    {
+        return this.resourceCache;
+    }
+
     /**
      * Register default context registry for Http Service
      */
@@ -71,6 +86,7 @@ public final class HandlerRegistry
     public void reset()
     {
         this.registrations.clear();
+        this.resourceCache.clear();
         this.init();
     }
 
@@ -87,6 +103,7 @@ public final class HandlerRegistry
             this.registrations = Collections.emptyList();
 
         }
+        this.resourceCache.clear();
 
         for(final PerContextHandlerRegistry r : list)
         {
@@ -257,6 +274,21 @@ public final class HandlerRegistry
         return false;
     }
 
+    /**
+     * Collect the request metrics of a servlet context
+     * @param contextId The context id
+     * @param metricsDTOs The collection to add the metrics to
+     */
+    public void getMetrics(final long contextId,
+            @NotNull final Collection<HandlerMetricsDTO> metricsDTOs)
+    {
+        final PerContextHandlerRegistry reg = this.getRegistry(contextId);
+        if ( reg != null )
+        {
+            reg.getMetrics(metricsDTOs);
+        }
+    }
+
     public PerContextHandlerRegistry getBestMatchingRegistry(String requestURI)
     {
         // if the context is unknown, we use the first matching one!
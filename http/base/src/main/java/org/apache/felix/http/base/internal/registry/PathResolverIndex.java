@@ -0,0 +1,317 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.felix.http.base.internal.registry;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.felix.http.base.internal.registry.PathResolverFactory.DefaultMatcher;
+import org.apache.felix.http.base.internal.registry.PathResolverFactory.ExactAndPathMatcher;
+import org.apache.felix.http.base.internal.registry.PathResolverFactory.ExactMatcher;
+import org.apache.felix.http.base.internal.registry.PathResolverFactory.ExtensionMatcher;
+import org.apache.felix.http.base.internal.registry.PathResolverFactory.PathMatcher;
+import org.apache.felix.http.base.internal.registry.PathResolverFactory.RootMatcher;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * The path resolver index is a compiled form of a sorted list of path resolvers.
+ * It returns the same resolution as trying the resolvers one after the other,
+ * but without testing every resolver:
+ * - exact patterns are looked up in a map
+ * - path patterns are looked up in a trie of path segments
+ * - extension patterns are looked up in a map by the extensions of the uri
+ * - the root and default patterns are checked directly
+ * Each resolver keeps its position in the sorted list, and if several resolvers
+ * match, the one with the lowest position wins.
+ *
+ * Optionally the resolvers for requested uris are kept in a bounded concurrent
+ * cache. Once the cache is full, an arbitrary entry is evicted for each new
+ * uri. The index is immutable apart from the cache and is rebuilt on each
+ * change of the resolvers.
+ */
+public final class PathResolverIndex
+{
+    public static final PathResolverIndex EMPTY = new PathResolverIndex(Collections.<PathResolver>emptyList(), 0);
+
+    private static final Entry NO_MATCH = new Entry(null, Integer.MAX_VALUE);
+
+    private final Map<String, Entry> exactMatches = new HashMap<>();
+
+    private final Node root = new Node();
+
+    private final Map<String, Entry> extensionMatches = new HashMap<>();
+
+    /** All other resolvers which are tried one after the other (regex or unknown resolvers) */
+    private final List<Entry> otherMatches = new ArrayList<>();
+
+    private Entry defaultMatch;
+
+    private final Map<String, Entry> cache;
+
+    private final AtomicInteger cacheCount;
+
+    private final int cacheSize;
+
+    /**
+     * Create a new index
+     * @param resolvers The sorted resolvers
+     * @param cacheSize The maximum number of uris to cache, {@code 0} to disable the cache
+     */
+    public PathResolverIndex(@NotNull final List<PathResolver> resolvers, final int cacheSize)
+    {
+        int index = 0;
+        for(final PathResolver resolver : resolvers)
+        {
+            final Entry entry = new Entry(resolver, index);
+            index++;
+
+            final String pattern = resolver.getPattern();
+            if ( resolver instanceof ExactMatcher )
+            {
+                addEntry(this.exactMatches, pattern, entry);
+            }
+            else if ( resolver instanceof ExactAndPathMatcher && pattern.startsWith("/") )
+            {
+                // matches the path exactly or any sub path
+                this.root.add(pattern, entry);
+            }
+            else if ( resolver instanceof PathMatcher && pattern.startsWith("/") )
+            {
+                this.root.add(pattern.substring(0, pattern.length() - 2), entry);
+            }
+            else if ( resolver instanceof ExtensionMatcher )
+            {
+                addEntry(this.extensionMatches, pattern.substring(1), entry);
+            }
+            else if ( resolver instanceof RootMatcher )
+            {
+                addEntry(this.exactMatches, "", entry);
+                addEntry(this.exactMatches, "/", entry);
+            }
+            else if ( resolver instanceof DefaultMatcher )
+            {
+                if ( this.defaultMatch == null )
+                {
+                    this.defaultMatch = entry;
+                }
+            }
+            else
+            {
+                this.otherMatches.add(entry);
+            }
+        }
+        this.cacheSize = cacheSize;
+        this.cache = cacheSize > 0 ? new ConcurrentHashMap<>() : null;
+        this.cacheCount = cacheSize > 0 ? new AtomicInteger() : null;
+    }
+
+    private static void addEntry(final Map<String, Entry> map, final String key, final Entry entry)
+    {
+        final Entry old = map.get(key);
+        if ( old == null || old.index > entry.index )
+        {
+            map.put(key, entry);
+        }
+    }
+
+    /**
+     * Resolve a request uri
+     *
+     * @param uri The request uri
+     * @return A path resolution if a servlet matched, {@code null} otherwise
+     */
+    public @Nullable PathResolution resolve(@NotNull final String uri)
+    {
+        Entry entry = this.cache == null ? null : this.cache.get(uri);
+        PathResolution pr = null;
+        if ( entry == null )
+        {
+            entry = this.find(uri);
+
+            // all other resolvers are sorted, the first matching one with a lower index wins
+            for(final Entry e : this.otherMatches)
+            {
+                if ( e.index >= entry.index )
+                {
+                    break;
+                }
+                pr = e.resolver.resolve(uri);
+                if ( pr != null )
+                {
+                    entry = e;
+                    break;
+                }
+            }
+            if ( this.cache != null )
+            {
+                this.addToCache(uri, entry);
+            }
+        }
+        if ( entry == NO_MATCH )
+        {
+            return null;
+        }
+        if ( pr == null )
+        {
+            pr = entry.resolver.resolve(uri);
+        }
+        if ( pr != null )
+        {
+            pr.patterns = entry.patterns;
+            pr.matchedPattern = entry.resolver.getPattern();
+        }
+        return pr;
+    }
+
+    private void addToCache(final String uri, final Entry entry)
+    {
+        if ( this.cache.putIfAbsent(uri, entry) == null
+             && this.cacheCount.incrementAndGet() > this.cacheSize )
+        {
+            final Iterator<String> iter = this.cache.keySet().iterator();
+            while ( iter.hasNext() )
+            {
+                final String key = iter.next();
+                if ( !key.equals(uri) && this.cache.remove(key) != null )
+                {
+                    this.cacheCount.decrementAndGet();
+                    break;
+                }
+            }
+        }
+    }
+
+    /**
+     * Find the best matching entry of the exact, path, extension and default
+     * resolvers. The other resolvers are checked by the caller.
+     */
+    private @NotNull Entry find(@NotNull final String uri)
+    {
+        Entry best = NO_MATCH;
+
+        // exact match
+        final Entry exact = this.exactMatches.get(uri);
+        if ( exact != null )
+        {
+            best = exact;
+        }
+
+        // path match, walk the trie segment by segment
+        if ( uri.isEmpty() || uri.charAt(0) == '/' )
+        {
+            Node node = this.root;
+            best = node.best(best);
+            int pos = 1;
+            while ( node != null && pos <= uri.length() )
+            {
+                final int next = uri.indexOf('/', pos);
+                final int end = next == -1 ? uri.length() : next;
+                node = node.children == null ? null : node.children.get(uri.substring(pos, end));
+                if ( node != null )
+                {
+                    best = node.best(best);
+                }
+                pos = end + 1;
+            }
+        }
+
+        // extension match, check every suffix starting with a dot
+        if ( !this.extensionMatches.isEmpty() )
+        {
+            int pos = uri.lastIndexOf('.');
+            while ( pos != -1 )
+            {
+                final Entry e = this.extensionMatches.get(uri.substring(pos));
+                if ( e != null && e.index < best.index )
+                {
+                    best = e;
+                }
+                pos = pos == 0 ? -1 : uri.lastIndexOf('.', pos - 1);
+            }
+        }
+
+        if ( this.defaultMatch != null && this.defaultMatch.index < best.index )
+        {
+            best = this.defaultMatch;
+        }
+        return best;
+    }
+
+    private static final class Entry
+    {
+        final PathResolver resolver;
+
+        final int index;
+
+        final String[] patterns;
+
+        Entry(final PathResolver resolver, final int index)
+        {
+            this.resolver = resolver;
+            this.index = index;
+            this.patterns = resolver == null ? null : new String[] {resolver.getPattern()};
+        }
+    }
+
+    /**
+     * A node in the trie of path segments. The resolver of a node matches
+     * the path of the node and all paths below it.
+     */
+    private static final class Node
+    {
+        Map<String, Node> children;
+
+        Entry entry;
+
+        void add(final String path, final Entry e)
+        {
+            Node node = this;
+            int pos = 1;
+            while ( pos <= path.length() )
+            {
+                final int next = path.indexOf('/', pos);
+                final int end = next == -1 ? path.length() : next;
+                if ( node.children == null )
+                {
+                    node.children = new HashMap<>();
+                }
+                node = node.children.computeIfAbsent(path.substring(pos, end), key -> new Node());
+                pos = end + 1;
+            }
+            if ( node.entry == null || node.entry.index > e.index )
+            {
+                node.entry = e;
+            }
+        }
+
+        Entry best(final Entry current)
+        {
+            if ( this.entry != null && this.entry.index < current.index )
+            {
+                return this.entry;
+            }
+            return current;
+        }
+    }
+}
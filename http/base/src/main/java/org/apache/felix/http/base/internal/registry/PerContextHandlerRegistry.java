@@ -16,6 +16,8 @@
  */
 package org.apache.felix.http.base.internal.registry;
 
+import java.util.Collection;
+
 import jakarta.servlet.DispatcherType;
 
 import org.apache.felix.http.base.internal.HttpConfig;
@@ -27,6 +29,7 @@ import org.apache.felix.http.base.internal.runtime.ListenerInfo;
 import org.apache.felix.http.base.internal.runtime.ServletContextHelperInfo;
 import org.apache.felix.http.base.internal.runtime.ServletInfo;
 import org.apache.felix.http.base.internal.runtime.dto.FailedDTOHolder;
+import org.apache.felix.http.base.internal.runtime.dto.HandlerMetricsDTO;
 import org.apache.felix.http.base.internal.service.HttpServiceFactory;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
@@ -52,7 +55,7 @@ public final class PerContextHandlerRegistry implements Comparable<PerContextHan
     /** The context prefix. */
     private final String prefix;
 
-    private final ServletRegistry servletRegistry = new ServletRegistry();
+    private final ServletRegistry servletRegistry;
 
     private final FilterRegistry filterRegistry = new FilterRegistry();
 
@@ -70,6 +73,7 @@ public final class PerContextHandlerRegistry implements Comparable<PerContextHan
     public PerContextHandlerRegistry(@NotNull final HttpConfig config)
     {
         this.config = config;
+        this.servletRegistry = new ServletRegistry(config);
         this.serviceId = HttpServiceFactory.HTTP_SERVICE_CONTEXT_SERVICE_ID;
         this.ranking = Integer.MAX_VALUE;
         this.path = "/";
@@ -84,6 +88,7 @@ public final class PerContextHandlerRegistry implements Comparable<PerContextHan
     public PerContextHandlerRegistry(@NotNull final ServletContextHelperInfo info, @NotNull final HttpConfig config)
     {
         this.config = config;
+        this.servletRegistry = new ServletRegistry(config);
         this.serviceId = info.getServiceId();
         this.ranking = info.getRanking();
         this.path = info.getPath();
@@ -210,6 +215,16 @@ public final class PerContextHandlerRegistry implements Comparable<PerContextHan
         this.eventListenerRegistry.getRuntimeInfo(dto, failedDTOHolder.failedListenerDTOs);
     }
 
+    /**
+     * Collect the request metrics of all active servlets, resources and filters
+     * @param metricsDTOs The collection to add the metrics to
+     */
+    public void getMetrics(@NotNull final Collection<HandlerMetricsDTO> metricsDTOs)
+    {
+        this.servletRegistry.getMetrics(metricsDTOs);
+        this.filterRegistry.getMetrics(metricsDTOs);
+    }
+
     /**
      * Add a servlet
      * @param handler The servlet handler
@@ -29,12 +29,16 @@ import java.util.Set;
 import java.util.TreeMap;
 import java.util.concurrent.ConcurrentHashMap;
 
+import org.apache.felix.http.base.internal.HttpConfig;
 import org.apache.felix.http.base.internal.handler.ServletHandler;
 import org.apache.felix.http.base.internal.runtime.ServletInfo;
 import org.apache.felix.http.base.internal.runtime.dto.BuilderConstants;
+import org.apache.felix.http.base.internal.runtime.dto.HandlerMetricsDTO;
+import org.apache.felix.http.base.internal.runtime.dto.HandlerMetricsDTOBuilder;
 import org.apache.felix.http.base.internal.runtime.dto.ResourceDTOBuilder;
 import org.apache.felix.http.base.internal.runtime.dto.ServletDTOBuilder;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 import org.osgi.service.servlet.runtime.dto.DTOConstants;
 import org.osgi.service.servlet.runtime.dto.FailedResourceDTO;
 import org.osgi.service.servlet.runtime.dto.FailedServletDTO;
@@ -52,6 +56,10 @@ public final class ServletRegistry
 
     private volatile List<PathResolver> activeResolvers = Collections.emptyList();
 
+    private volatile PathResolverIndex resolverIndex = PathResolverIndex.EMPTY;
+
+    private final HttpConfig config;
+
     private final Map<String, List<ServletHandler>> inactiveServletMappings = new HashMap<String, List<ServletHandler>>();
 
     private final Map<String, List<ServletHandler>> servletsByName = new ConcurrentHashMap<String, List<ServletHandler>>();
@@ -64,6 +72,23 @@ public final class ServletRegistry
 
     private volatile Map<ServletInfo, RegistrationStatus> mapping = Collections.emptyMap();
 
+    /**
+     * Create a new registry without a resolution cache
+     */
+    public ServletRegistry()
+    {
+        this(null);
+    }
+
+    /**
+     * Create a new registry
+     * @param config The configuration, might be {@code null}
+     */
+    public ServletRegistry(@Nullable final HttpConfig config)
+    {
+        this.config = config;
+    }
+
     /**
      * Resolve a request uri
      *
@@ -72,18 +97,14 @@ public final class ServletRegistry
      */
     public PathResolution resolve(@NotNull final String relativeRequestURI)
     {
-        final List<PathResolver> resolvers = this.activeResolvers;
-        for(final PathResolver entry : resolvers)
-        {
-            final PathResolution pr = entry.resolve(relativeRequestURI);
-            if ( pr != null )
-            {
-                pr.patterns = new String[] {entry.getPattern()};
-                pr.matchedPattern = entry.getPattern();
-                return pr;
-            }
-        }
-        return null;
+        return this.resolverIndex.resolve(relativeRequestURI);
+    }
+
+    private void setActiveResolvers(final List<PathResolver> resolvers)
+    {
+        this.activeResolvers = resolvers;
+        this.resolverIndex = new PathResolverIndex(resolvers,
+                this.config == null ? 0 : this.config.getResolutionCacheSize());
     }
 
     private PathResolver findResolver(final List<PathResolver> resolvers, final String pattern)
@@ -172,7 +193,7 @@ public final class ServletRegistry
                 addToNameMapping(handler);
             }
             Collections.sort(resolvers);
-            this.activeResolvers = resolvers;
+            this.setActiveResolvers(resolvers);
             this.mapping = newMap;
         }
         else if ( !handler.getServletInfo().isResource() && handler.getServletInfo().getName() != null )
@@ -339,7 +360,7 @@ public final class ServletRegistry
             }
 
             Collections.sort(resolvers);
-            this.activeResolvers = resolvers;
+            this.setActiveResolvers(resolvers);
             this.mapping = newMap;
 
             if ( cleanupHandler != null )
@@ -367,6 +388,7 @@ public final class ServletRegistry
     public synchronized void cleanup()
     {
         this.activeResolvers = Collections.emptyList();
+        this.resolverIndex = PathResolverIndex.EMPTY;
         this.inactiveServletMappings.clear();
         this.servletsByName.clear();
         this.mapping = Collections.emptyMap();
@@ -526,4 +548,19 @@ public final class ServletRegistry
         allFailedResourceDTOs.addAll(failedResourceDTOs.values());
         allFailedServletDTOs.addAll(failedServletDTOs.values());
     }
+
+    /**
+     * Collect the request metrics of all active servlets and resources
+     * @param metricsDTOs The collection to add the metrics to
+     */
+    public void getMetrics(@NotNull final Collection<HandlerMetricsDTO> metricsDTOs)
+    {
+        for(final RegistrationStatus status : mapping.values())
+        {
+            if ( status.statusToPath.containsKey(-1) )
+            {
+                metricsDTOs.add(HandlerMetricsDTOBuilder.build(status.handler));
+            }
+        }
+    }
 }
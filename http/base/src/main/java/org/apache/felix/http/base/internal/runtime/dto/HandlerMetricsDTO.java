@@ -0,0 +1,67 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.felix.http.base.internal.runtime.dto;
+
+import org.osgi.dto.DTO;
+
+/**
+ * Represents the request metrics of a servlet, resource or filter.
+ * All latencies are in microseconds.
+ */
+public class HandlerMetricsDTO extends DTO
+{
+    public static final String TYPE_SERVLET = "servlet";
+
+    public static final String TYPE_RESOURCE = "resource";
+
+    public static final String TYPE_FILTER = "filter";
+
+    /** The service id of the servlet, resource or filter. */
+    public long serviceId;
+
+    /** The service id of the servlet context. */
+    public long servletContextId;
+
+    /** The name of the servlet or filter. */
+    public String name;
+
+    /** The type, one of {@link #TYPE_SERVLET}, {@link #TYPE_RESOURCE} or {@link #TYPE_FILTER}. */
+    public String type;
+
+    /** The number of completed requests. */
+    public long requestCount;
+
+    /** The number of requests which failed with an exception or a server error status. */
+    public long errorCount;
+
+    /** The number of requests currently in progress. */
+    public long inFlightCount;
+
+    public long meanMicros;
+
+    public long maxMicros;
+
+    public long p50Micros;
+
+    public long p90Micros;
+
+    public long p99Micros;
+
+    public long p999Micros;
+}
@@ -0,0 +1,80 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.felix.http.base.internal.runtime.dto;
+
+import org.apache.felix.http.base.internal.handler.FilterHandler;
+import org.apache.felix.http.base.internal.handler.HandlerMetrics;
+import org.apache.felix.http.base.internal.handler.ServletHandler;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+public final class HandlerMetricsDTOBuilder
+{
+    /**
+     * Build a metrics DTO from a servlet handler
+     * @param handler The servlet handler
+     * @return A metrics DTO
+     */
+    public static @NotNull HandlerMetricsDTO build(@NotNull final ServletHandler handler)
+    {
+        final HandlerMetricsDTO dto = build(handler.getMetricsIfPresent());
+        dto.serviceId = handler.getServletInfo().getServiceId();
+        dto.servletContextId = handler.getContextServiceId();
+        dto.name = handler.getName();
+        dto.type = handler.getServletInfo().isResource() ? HandlerMetricsDTO.TYPE_RESOURCE : HandlerMetricsDTO.TYPE_SERVLET;
+
+        return dto;
+    }
+
+    /**
+     * Build a metrics DTO from a filter handler
+     * @param handler The filter handler
+     * @return A metrics DTO
+     */
+    public static @NotNull HandlerMetricsDTO build(@NotNull final FilterHandler handler)
+    {
+        final HandlerMetricsDTO dto = build(handler.getMetricsIfPresent());
+        dto.serviceId = handler.getFilterInfo().getServiceId();
+        dto.servletContextId = handler.getContextServiceId();
+        dto.name = handler.getName();
+        dto.type = HandlerMetricsDTO.TYPE_FILTER;
+
+        return dto;
+    }
+
+    private static HandlerMetricsDTO build(@Nullable final HandlerMetrics metrics)
+    {
+        final HandlerMetricsDTO dto = new HandlerMetricsDTO();
+        if ( metrics != null )
+        {
+            dto.requestCount = metrics.getRequestCount();
+            dto.errorCount = metrics.getErrorCount();
+            dto.inFlightCount = metrics.getInFlightCount();
+            dto.meanMicros = metrics.getLatencies().getMean();
+            dto.maxMicros = metrics.getLatencies().getMax();
+
+            final long[] percentiles = metrics.getLatencies().getPercentiles(50, 90, 99, 99.9);
+            dto.p50Micros = percentiles[0];
+            dto.p90Micros = percentiles[1];
+            dto.p99Micros = percentiles[2];
+            dto.p999Micros = percentiles[3];
+        }
+        return dto;
+    }
+}
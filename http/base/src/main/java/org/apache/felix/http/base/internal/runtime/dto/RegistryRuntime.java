@@ -28,14 +28,24 @@ public final class RegistryRuntime
     private final Collection<ServletContextDTO> contextDTOs;
     private final FailedDTOHolder failedDTOHolder;
     private final Collection<PreprocessorDTO> preprocessorDTOs;
+    private final Collection<HandlerMetricsDTO> metricsDTOs;
 
     public RegistryRuntime(final FailedDTOHolder failedDTOHolder,
             final Collection<ServletContextDTO> contextDTOs,
             final Collection<PreprocessorDTO> preprocessorDTOs)
+    {
+        this(failedDTOHolder, contextDTOs, preprocessorDTOs, null);
+    }
+
+    public RegistryRuntime(final FailedDTOHolder failedDTOHolder,
+            final Collection<ServletContextDTO> contextDTOs,
+            final Collection<PreprocessorDTO> preprocessorDTOs,
+            final Collection<HandlerMetricsDTO> metricsDTOs)
     {
         this.failedDTOHolder = failedDTOHolder;
         this.contextDTOs = contextDTOs;
         this.preprocessorDTOs = preprocessorDTOs;
+        this.metricsDTOs = metricsDTOs;
     }
 
     public FailedDTOHolder getFailedDTOHolder()
@@ -52,4 +62,13 @@ public final class RegistryRuntime
     {
         return this.preprocessorDTOs;
     }
+
+    /**
+     * The request metrics
+     * @return The metrics or {@code null} if metrics are disabled
+     */
+    public Collection<HandlerMetricsDTO> getMetricsDTOs()
+    {
+        return this.metricsDTOs;
+    }
 }
@@ -46,7 +46,18 @@ public final class RuntimeDTOBuilder
 
     public RuntimeDTO build()
     {
-        final RuntimeDTO runtimeDTO = new RuntimeDTO();
+        final Collection<HandlerMetricsDTO> metricsDTOs = registry.getMetricsDTOs();
+        final RuntimeDTO runtimeDTO;
+        if ( metricsDTOs != null )
+        {
+            final MetricsRuntimeDTO metricsRuntimeDTO = new MetricsRuntimeDTO();
+            metricsRuntimeDTO.handlerMetricsDTOs = metricsDTOs.toArray(new HandlerMetricsDTO[metricsDTOs.size()]);
+            runtimeDTO = metricsRuntimeDTO;
+        }
+        else
+        {
+            runtimeDTO = new RuntimeDTO();
+        }
         runtimeDTO.serviceDTO = this.serviceRefDTO;
         runtimeDTO.servletContextDTOs = createContextDTOs();
         runtimeDTO.preprocessorDTOs = createPreprocessorDTOs();
@@ -16,6 +16,7 @@
  */
 package org.apache.felix.http.base.internal.service;
 
+import org.apache.felix.http.base.internal.whiteboard.ResourceCache;
 import org.apache.felix.http.base.internal.whiteboard.ResourceServlet;
 
 public class HttpResourceServlet extends ResourceServlet {
@@ -26,6 +27,10 @@ public class HttpResourceServlet extends ResourceServlet {
         super(prefix);
     }
 
+    public HttpResourceServlet(String prefix, ResourceCache cache) {
+        super(prefix, cache);
+    }
+
     public javax.servlet.Servlet getWrapper() {
         return wrapper;
     }
@@ -101,7 +101,8 @@ public final class PerBundleHttpServiceImpl implements HttpService
         }
         try
         {
-            final HttpResourceServlet servlet = new HttpResourceServlet(name);
+            final HttpResourceServlet servlet = new HttpResourceServlet(name,
+                    this.sharedHttpService.getHandlerRegistry().getResourceCache());
             final javax.servlet.Servlet wrapper = new ServletWrapper(servlet);
             servlet.setWrapper(wrapper);
             registerServlet(alias, wrapper, null, context);
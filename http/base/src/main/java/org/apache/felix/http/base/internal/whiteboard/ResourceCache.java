@@ -0,0 +1,206 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.felix.http.base.internal.whiteboard;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.GZIPOutputStream;
+
+import org.apache.felix.http.base.internal.HttpConfig;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * The resource cache keeps the content of recently served static resources
+ * in memory, together with a gzip compressed variant for compressible
+ * content.
+ * The cache is bounded by the number of bytes configured in the
+ * {@link HttpConfig}; the least recently used entries are evicted first.
+ * An entry is only returned if the last modified time and the length of
+ * the resource did not change.
+ */
+public final class ResourceCache
+{
+    /** Content smaller than this is not compressed. */
+    private static final int MIN_COMPRESS_SIZE = 256;
+
+    private final HttpConfig config;
+
+    private final Map<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    private long size;
+
+    /**
+     * Create a new cache
+     * @param config The configuration providing the cache size
+     */
+    public ResourceCache(@NotNull final HttpConfig config)
+    {
+        this.config = config;
+    }
+
+    /**
+     * Check whether a resource of the given length can be cached
+     * @param length The length of the resource, {@code -1} if unknown
+     * @return {@code true} if the resource can be cached
+     */
+    public boolean isCacheable(final long length)
+    {
+        final int cacheSize = this.config.getResourceCacheSize();
+        return cacheSize > 0 && length >= 0 && length <= cacheSize
+                && length <= this.config.getResourceCacheEntrySize();
+    }
+
+    /**
+     * Get a cached resource
+     * @param key The key of the resource
+     * @param lastModified The current last modified time of the resource
+     * @param length The current length of the resource
+     * @return The cached resource or {@code null}
+     */
+    public @Nullable Entry get(@NotNull final String key, final long lastModified, final long length)
+    {
+        synchronized ( this.entries )
+        {
+            final Entry entry = this.entries.get(key);
+            if ( entry != null && (entry.lastModified != lastModified || entry.content.length != length) )
+            {
+                this.entries.remove(key);
+                this.size -= entry.getSize();
+                return null;
+            }
+            return entry;
+        }
+    }
+
+    /**
+     * Add a resource to the cache
+     * @param key The key of the resource
+     * @param entry The entry
+     */
+    public void put(@NotNull final String key, @NotNull final Entry entry)
+    {
+        final long cacheSize = this.config.getResourceCacheSize();
+        synchronized ( this.entries )
+        {
+            final Entry old = this.entries.put(key, entry);
+            if ( old != null )
+            {
+                this.size -= old.getSize();
+            }
+            this.size += entry.getSize();
+
+            final Iterator<Entry> iter = this.entries.values().iterator();
+            while ( this.size > cacheSize && iter.hasNext() )
+            {
+                this.size -= iter.next().getSize();
+                iter.remove();
+            }
+        }
+    }
+
+    /**
+     * Remove all entries
+     */
+    public void clear()
+    {
+        synchronized ( this.entries )
+        {
+            this.entries.clear();
+            this.size = 0;
+        }
+    }
+
+    /**
+     * Create a new entry
+     * @param content The content
+     * @param lastModified The last modified time
+     * @param contentType The content type, might be {@code null}
+     * @return The entry
+     * @throws IOException If compressing the content fails
+     */
+    public static @NotNull Entry createEntry(@NotNull final byte[] content,
+            final long lastModified,
+            @Nullable final String contentType) throws IOException
+    {
+        byte[] gzipContent = null;
+        if ( content.length >= MIN_COMPRESS_SIZE && isCompressible(contentType) )
+        {
+            final ByteArrayOutputStream bos = new ByteArrayOutputStream(content.length / 2);
+            try (final GZIPOutputStream gos = new GZIPOutputStream(bos))
+            {
+                gos.write(content);
+            }
+            // only keep the compressed variant if it saves at least 10%
+            if ( bos.size() < content.length - content.length / 10 )
+            {
+                gzipContent = bos.toByteArray();
+            }
+        }
+        return new Entry(content, gzipContent, lastModified);
+    }
+
+    private static boolean isCompressible(final String contentType)
+    {
+        if ( contentType == null )
+        {
+            return false;
+        }
+        return contentType.startsWith("text/")
+                || contentType.contains("javascript")
+                || contentType.contains("json")
+                || contentType.contains("xml")
+                || contentType.contains("svg");
+    }
+
+    /**
+     * A cached resource
+     */
+    public static final class Entry
+    {
+        private final byte[] content;
+
+        private final byte[] gzipContent;
+
+        private final long lastModified;
+
+        Entry(final byte[] content, final byte[] gzipContent, final long lastModified)
+        {
+            this.content = content;
+            this.gzipContent = gzipContent;
+            this.lastModified = lastModified;
+        }
+
+        public @NotNull byte[] getContent()
+        {
+            return this.content;
+        }
+
+        public @Nullable byte[] getGzipContent()
+        {
+            return this.gzipContent;
+        }
+
+        long getSize()
+        {
+            return this.content.length + (this.gzipContent == null ? 0 : this.gzipContent.length);
+        }
+    }
+}
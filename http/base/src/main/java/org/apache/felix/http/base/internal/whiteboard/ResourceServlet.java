@@ -16,6 +16,7 @@
  */
 package org.apache.felix.http.base.internal.whiteboard;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
@@ -23,6 +24,10 @@ import java.io.OutputStream;
 import java.net.URISyntaxException;
 import java.net.URL;
 import java.net.URLConnection;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.StandardOpenOption;
 
 import org.apache.felix.http.base.internal.util.MimeTypes;
 
@@ -33,20 +38,45 @@ import jakarta.servlet.http.HttpServletResponse;
 
 /**
  * The resource servlet
+ *
+ * Resources support conditional requests through {@code If-None-Match},
+ * {@code If-Modified-Since} and {@code If-Range} as well as single byte
+ * ranges. The entity tag is derived from the length and the last modified
+ * time of a resource, whether the resource is cached or not. If a
+ * {@link ResourceCache} is set, the content of small resources is kept in
+ * memory together with a gzip compressed variant for compressible content
+ * types. Resources which are files on disk are transferred through a
+ * {@link FileChannel}.
  */
 public class ResourceServlet extends HttpServlet {
 
     private static final long serialVersionUID = 1L;
 
+    /** Marker for a range which can't be satisfied */
+    private static final long[] UNSATISFIABLE_RANGE = new long[0];
+
     /** The path of the resource registration. */
     private final String prefix;
 
+    /** The optional cache */
+    private final transient ResourceCache cache;
+
     /**
      * The prefix for the resource
      * @param prefix The prefix
      */
     public ResourceServlet(final String prefix) {
+        this(prefix, null);
+    }
+
+    /**
+     * The prefix for the resource
+     * @param prefix The prefix
+     * @param cache The resource cache, might be {@code null}
+     */
+    public ResourceServlet(final String prefix, final ResourceCache cache) {
         this.prefix = prefix;
+        this.cache = cache;
     }
 
     @Override
@@ -80,11 +110,71 @@ public class ResourceServlet extends HttpServlet {
         if (lastModified != 0) {
             res.setDateHeader("Last-Modified", lastModified);
         }
+        long length = getContentLength(conn);
 
-        if (!resourceModified(lastModified, req.getDateHeader("If-Modified-Since"))) {
+        ResourceCache.Entry entry = null;
+        if (this.cache != null) {
+            final String key = url.toExternalForm();
+            entry = this.cache.get(key, lastModified, length);
+            if (entry == null && this.cache.isCacheable(length)) {
+                entry = ResourceCache.createEntry(readResource(conn, length), lastModified, contentType);
+                if (entry.getContent().length == length) {
+                    this.cache.put(key, entry);
+                } else {
+                    // the resource changed while reading it, serve what has been read
+                    length = entry.getContent().length;
+                }
+            }
+        }
+
+        final String etag = createETag(length, lastModified);
+        final String gzipEtag = etag != null && entry != null && entry.getGzipContent() != null
+                ? etag.substring(0, etag.length() - 1).concat("-gzip\"") : null;
+
+        final String rangeHeader = length >= 0 ? req.getHeader("Range") : null;
+        final boolean useGzip = entry != null && entry.getGzipContent() != null && rangeHeader == null
+                && acceptsGzip(req);
+        if (entry != null && entry.getGzipContent() != null) {
+            res.addHeader("Vary", "Accept-Encoding");
+        }
+        if (etag != null) {
+            res.setHeader("ETag", useGzip ? gzipEtag : etag);
+        }
+        if (length >= 0) {
+            res.setHeader("Accept-Ranges", "bytes");
+        }
+
+        final String ifNoneMatch = req.getHeader("If-None-Match");
+        if (ifNoneMatch != null) {
+            if (etag != null && (etagMatches(ifNoneMatch, etag)
+                    || (gzipEtag != null && etagMatches(ifNoneMatch, gzipEtag)))) {
+                res.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+                return;
+            }
+        } else if (!resourceModified(lastModified, req.getDateHeader("If-Modified-Since"))) {
             res.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return;
+        }
+
+        long[] range = null;
+        if (rangeHeader != null && ifRangeMatches(req, etag, lastModified)) {
+            range = parseRange(rangeHeader, length);
+            if (range == UNSATISFIABLE_RANGE) {
+                res.setHeader("Content-Range", "bytes */" + length);
+                res.setStatus(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+                return;
+            }
+        }
+
+        if (useGzip) {
+            res.setHeader("Content-Encoding", "gzip");
+            writeContent(res, entry.getGzipContent(), 0, entry.getGzipContent().length);
+        } else if (range != null) {
+            res.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+            res.setHeader("Content-Range", "bytes " + range[0] + "-" + range[1] + "/" + length);
+            copyResource(conn, res, entry, range[0], range[1] - range[0] + 1);
         } else {
-            copyResource(conn, res);
+            copyResource(conn, res, entry, 0, length);
         }
     }
 
@@ -119,22 +209,192 @@ public class ResourceServlet extends HttpServlet {
         return resTimestamp == 0 || modSince == -1 || resTimestamp > modSince;
     }
 
-    private void copyResource(final URLConnection conn, final HttpServletResponse res) throws IOException {
+    private boolean acceptsGzip(final HttpServletRequest req) {
+        final String acceptEncoding = req.getHeader("Accept-Encoding");
+        if (acceptEncoding == null) {
+            return false;
+        }
+        for (final String part : acceptEncoding.split(",")) {
+            final String[] values = part.trim().split(";");
+            if ("gzip".equalsIgnoreCase(values[0].trim())) {
+                // gzip;q=0 explicitly disables gzip
+                return values.length < 2 || !values[1].trim().matches("q=0(\\.0*)?");
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Create the entity tag of a resource. The same tag is used whether the
+     * resource is cached or not. Like the last modified time, it changes
+     * whenever the resource is replaced; it is a strong validator as long as
+     * a resource is not modified twice within the resolution of its last
+     * modified time without changing its length.
+     * @param length The length of the resource
+     * @param lastModified The last modified time of the resource
+     * @return The entity tag or {@code null} if length or last modified time are unknown
+     */
+    static String createETag(final long length, final long lastModified) {
+        if (lastModified == 0 || length < 0) {
+            return null;
+        }
+        return "\"" + Long.toHexString(length) + "-" + Long.toHexString(lastModified) + "\"";
+    }
+
+    /**
+     * Check whether an entity tag matches one of the tags of an {@code If-None-Match}
+     * header. The weak comparison is used.
+     */
+    static boolean etagMatches(final String header, final String etag) {
+        final String opaqueTag = etag.startsWith("W/") ? etag.substring(2) : etag;
+        for (final String part : header.split(",")) {
+            String value = part.trim();
+            if (value.equals("*")) {
+                return true;
+            }
+            if (value.startsWith("W/")) {
+                value = value.substring(2);
+            }
+            if (value.equals(opaqueTag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Check the {@code If-Range} header. A range request is only served if the
+     * header is missing, or if it matches the strong entity tag or the last
+     * modified time of the resource.
+     */
+    private boolean ifRangeMatches(final HttpServletRequest req, final String etag, final long lastModified) {
+        final String ifRange = req.getHeader("If-Range");
+        if (ifRange == null) {
+            return true;
+        }
+        if (ifRange.startsWith("\"") || ifRange.startsWith("W/")) {
+            return etag != null && !etag.startsWith("W/") && etag.equals(ifRange.trim());
+        }
+        try {
+            final long date = req.getDateHeader("If-Range");
+            return lastModified != 0 && date / 1000 == lastModified / 1000;
+        } catch (final IllegalArgumentException iae) {
+            return false;
+        }
+    }
+
+    /**
+     * Parse a {@code Range} header. Only a single byte range is supported,
+     * for any other range the full content is served.
+     * @param header The header value
+     * @param length The length of the content
+     * @return The first and the last byte position, {@code null} if the
+     *         full content should be served or {@link #UNSATISFIABLE_RANGE}
+     */
+    static long[] parseRange(final String header, final long length) {
+        if (!header.startsWith("bytes=")) {
+            return null;
+        }
+        final String spec = header.substring(6).trim();
+        final int pos = spec.indexOf('-');
+        if (pos == -1 || spec.indexOf(',') != -1) {
+            return null;
+        }
+        try {
+            final long start;
+            final long end;
+            if (pos == 0) {
+                final long suffix = Long.parseLong(spec.substring(1).trim());
+                if (suffix <= 0 || length == 0) {
+                    return UNSATISFIABLE_RANGE;
+                }
+                start = Math.max(0, length - suffix);
+                end = length - 1;
+            } else {
+                start = Long.parseLong(spec.substring(0, pos).trim());
+                end = pos == spec.length() - 1 ? length - 1
+                        : Math.min(Long.parseLong(spec.substring(pos + 1).trim()), length - 1);
+                if (start >= length) {
+                    return UNSATISFIABLE_RANGE;
+                }
+                if (end < start) {
+                    return null;
+                }
+            }
+            return new long[] {start, end};
+        } catch (final NumberFormatException nfe) {
+            return null;
+        }
+    }
+
+    private byte[] readResource(final URLConnection conn, final long length) throws IOException {
+        try(final InputStream is = conn.getInputStream()) {
+            final ByteArrayOutputStream bos = new ByteArrayOutputStream((int) length);
+            final byte[] buf = new byte[8192];
+            int n;
+            while ((n = is.read(buf, 0, buf.length)) > 0) {
+                bos.write(buf, 0, n);
+            }
+            return bos.toByteArray();
+        }
+    }
+
+    private void writeContent(final HttpServletResponse res, final byte[] content, final int offset, final int len)
+    throws IOException {
+        res.setContentLength(len);
+        // no need to close output stream as this is done by the servlet container
+        final OutputStream os = res.getOutputStream();
+        os.write(content, offset, len);
+        os.flush();
+    }
+
+    private void copyResource(final URLConnection conn, final HttpServletResponse res,
+            final ResourceCache.Entry entry, final long offset, final long len) throws IOException {
+        if (entry != null) {
+            writeContent(res, entry.getContent(), (int) offset, (int) len);
+            return;
+        }
         try(final InputStream is = conn.getInputStream()) {
             // FELIX-3987 content length should be set *before* any streaming is done
             // as headers should be written before the content is actually written...
-            final long len = getContentLength(conn);
             if (len >= 0) {
                 res.setContentLengthLong(len);
             }
 
-            byte[] buf = new byte[1024];
-            int n;
-
             // no need to close output stream as this is done by the servlet container
             final OutputStream os = res.getOutputStream();
-            while ((n = is.read(buf, 0, buf.length)) > 0) {
-                os.write(buf, 0, n);
+
+            final File f = getFile(conn.getURL());
+            if (f != null && len >= 0) {
+                try(final FileChannel channel = FileChannel.open(f.toPath(), StandardOpenOption.READ)) {
+                    final WritableByteChannel target = Channels.newChannel(os);
+                    long pos = offset;
+                    final long end = offset + len;
+                    while (pos < end) {
+                        final long n = channel.transferTo(pos, end - pos, target);
+                        if (n <= 0) {
+                            break;
+                        }
+                        pos += n;
+                    }
+                }
+            } else {
+                long toSkip = offset;
+                while (toSkip > 0) {
+                    final long n = is.skip(toSkip);
+                    if (n <= 0) {
+                        break;
+                    }
+                    toSkip -= n;
+                }
+
+                byte[] buf = new byte[8192];
+                long remaining = len < 0 ? Long.MAX_VALUE : len;
+                int n;
+                while (remaining > 0 && (n = is.read(buf, 0, (int) Math.min(buf.length, remaining))) > 0) {
+                    os.write(buf, 0, n);
+                    remaining -= n;
+                }
             }
             os.flush();
         }
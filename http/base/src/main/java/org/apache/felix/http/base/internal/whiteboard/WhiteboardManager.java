@@ -53,6 +53,7 @@ import org.apache.felix.http.base.internal.runtime.ServletContextHelperInfo;
 import org.apache.felix.http.base.internal.runtime.ServletInfo;
 import org.apache.felix.http.base.internal.runtime.WhiteboardServiceInfo;
 import org.apache.felix.http.base.internal.runtime.dto.FailedDTOHolder;
+import org.apache.felix.http.base.internal.runtime.dto.HandlerMetricsDTO;
 import org.apache.felix.http.base.internal.runtime.dto.PreprocessorDTOBuilder;
 import org.apache.felix.http.base.internal.runtime.dto.RegistryRuntime;
 import org.apache.felix.http.base.internal.runtime.dto.ServletContextDTOBuilder;
@@ -779,7 +780,7 @@ public final class WhiteboardManager
                             handler.getContextInfo().getServiceId(),
                             servletContext,
                             servletInfo,
-                            new ResourceServlet(servletInfo.getPrefix()));
+                            new ResourceServlet(servletInfo.getPrefix(), this.registry.getResourceCache()));
                     handler.getRegistry().registerServlet(servleHandler);
                 }
             }
@@ -918,6 +919,7 @@ public final class WhiteboardManager
         final FailedDTOHolder failedDTOHolder = new FailedDTOHolder();
 
         final Collection<ServletContextDTO> contextDTOs = new ArrayList<>();
+        final Collection<HandlerMetricsDTO> metricsDTOs = this.registry.getConfig().isMetricsEnabled() ? new ArrayList<>() : null;
 
         // get sort list of context handlers
         final List<WhiteboardContextHandler> contextHandlerList = new ArrayList<>();
@@ -941,6 +943,10 @@ public final class WhiteboardManager
             if ( registry.getRuntimeInfo(scDTO, failedDTOHolder) )
             {
                 contextDTOs.add(scDTO);
+                if ( metricsDTOs != null )
+                {
+                    registry.getMetrics(scDTO.serviceId, metricsDTOs);
+                }
             }
         }
 
@@ -951,7 +957,7 @@ public final class WhiteboardManager
             preprocessorDTOs.add(PreprocessorDTOBuilder.build(handler.getPreprocessorInfo(), -1));
         }
 
-        return new RegistryRuntime(failedDTOHolder, contextDTOs, preprocessorDTOs);
+        return new RegistryRuntime(failedDTOHolder, contextDTOs, preprocessorDTOs, metricsDTOs);
     }
 
     /**
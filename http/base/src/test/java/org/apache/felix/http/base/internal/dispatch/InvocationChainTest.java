@@ -0,0 +1,262 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.felix.http.base.internal.dispatch;
+
+import static jakarta.servlet.http.HttpServletResponse.SC_INTERNAL_SERVER_ERROR;
+import static jakarta.servlet.http.HttpServletResponse.SC_OK;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.apache.felix.http.base.internal.HttpConfig;
+import org.apache.felix.http.base.internal.context.ExtServletContext;
+import org.apache.felix.http.base.internal.handler.FilterHandler;
+import org.apache.felix.http.base.internal.handler.HandlerMetrics;
+import org.apache.felix.http.base.internal.handler.HttpServiceServletHandler;
+import org.apache.felix.http.base.internal.handler.ServletHandler;
+import org.apache.felix.http.base.internal.runtime.FilterInfo;
+import org.apache.felix.http.base.internal.runtime.ServletInfo;
+import org.apache.felix.http.base.internal.runtime.dto.FailedDTOHolder;
+import org.apache.felix.http.base.internal.runtime.dto.HandlerMetricsDTO;
+import org.apache.felix.http.base.internal.runtime.dto.HandlerMetricsDTOBuilder;
+import org.apache.felix.http.base.internal.runtime.dto.MetricsRuntimeDTO;
+import org.apache.felix.http.base.internal.runtime.dto.RegistryRuntime;
+import org.apache.felix.http.base.internal.runtime.dto.RuntimeDTOBuilder;
+import org.junit.Before;
+import org.junit.Test;
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.Constants;
+import org.osgi.framework.ServiceObjects;
+import org.osgi.framework.ServiceReference;
+import org.osgi.framework.dto.ServiceReferenceDTO;
+import org.osgi.service.servlet.runtime.dto.PreprocessorDTO;
+import org.osgi.service.servlet.runtime.dto.RuntimeDTO;
+import org.osgi.service.servlet.runtime.dto.ServletContextDTO;
+import org.osgi.service.servlet.whiteboard.HttpWhiteboardConstants;
+
+import jakarta.servlet.Filter;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.Servlet;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletRequest;
+import jakarta.servlet.ServletResponse;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+public class InvocationChainTest
+{
+    private ExtServletContext context;
+
+    private HttpConfig config;
+
+    private Servlet servlet;
+
+    private Filter filter;
+
+    @Before
+    public void setUp() throws Exception
+    {
+        this.config = new HttpConfig();
+        this.config.setMetricsEnabled(true);
+        this.context = mock(ExtServletContext.class);
+        when(this.context.getConfig()).thenReturn(this.config);
+        when(this.context.handleSecurity(any(HttpServletRequest.class), any(HttpServletResponse.class))).thenReturn(true);
+        this.servlet = mock(Servlet.class);
+        this.filter = mock(Filter.class);
+        // the filter passes the request on to the rest of the chain
+        doAnswer(invocation -> {
+            ((FilterChain) invocation.getArgument(2)).doFilter(invocation.getArgument(0), invocation.getArgument(1));
+            return null;
+        }).when(this.filter).doFilter(any(ServletRequest.class), any(ServletResponse.class), any(FilterChain.class));
+    }
+
+    @Test
+    public void testSuccessfulRequest() throws Exception
+    {
+        final ServletHandler servletHandler = createServletHandler();
+        final FilterHandler filterHandler = createFilterHandler();
+
+        handle(servletHandler, filterHandler, SC_OK);
+
+        assertMetrics(servletHandler.getMetricsIfPresent(), 1, 0);
+        assertMetrics(filterHandler.getMetricsIfPresent(), 1, 0);
+    }
+
+    @Test
+    public void testServerErrorStatusCountsAsServletError() throws Exception
+    {
+        final ServletHandler servletHandler = createServletHandler();
+        final FilterHandler filterHandler = createFilterHandler();
+
+        handle(servletHandler, filterHandler, SC_OK);
+        handle(servletHandler, filterHandler, SC_INTERNAL_SERVER_ERROR);
+
+        assertMetrics(servletHandler.getMetricsIfPresent(), 2, 1);
+        // the filter itself did not fail
+        assertMetrics(filterHandler.getMetricsIfPresent(), 2, 0);
+    }
+
+    @Test
+    public void testThrowingFilterCountsAsError() throws Exception
+    {
+        final ServletHandler servletHandler = createServletHandler();
+        final FilterHandler filterHandler = createFilterHandler();
+        final ServletException exception = new ServletException("failure");
+        doThrow(exception).when(this.filter).doFilter(any(ServletRequest.class), any(ServletResponse.class), any(FilterChain.class));
+
+        try
+        {
+            handle(servletHandler, filterHandler, SC_OK);
+            fail("Exception of the filter not thrown");
+        }
+        catch (final ServletException e)
+        {
+            assertSame(exception, e);
+        }
+
+        assertMetrics(filterHandler.getMetricsIfPresent(), 1, 1);
+        assertNull(servletHandler.getMetricsIfPresent());
+    }
+
+    @Test
+    public void testThrowingServletCountsAsError() throws Exception
+    {
+        final ServletHandler servletHandler = createServletHandler();
+        final FilterHandler filterHandler = createFilterHandler();
+        doThrow(new ServletException("failure")).when(this.servlet).service(any(ServletRequest.class), any(ServletResponse.class));
+
+        try
+        {
+            handle(servletHandler, filterHandler, SC_OK);
+            fail("Exception of the servlet not thrown");
+        }
+        catch (final ServletException e)
+        {
+            // expected
+        }
+
+        assertMetrics(servletHandler.getMetricsIfPresent(), 1, 1);
+        // the exception passes through the filter
+        assertMetrics(filterHandler.getMetricsIfPresent(), 1, 1);
+    }
+
+    @Test
+    public void testMetricsDisabled() throws Exception
+    {
+        this.config.setMetricsEnabled(false);
+        final ServletHandler servletHandler = createServletHandler();
+        final FilterHandler filterHandler = createFilterHandler();
+
+        handle(servletHandler, filterHandler, SC_INTERNAL_SERVER_ERROR);
+
+        assertNull(servletHandler.getMetricsIfPresent());
+        assertNull(filterHandler.getMetricsIfPresent());
+    }
+
+    @Test
+    public void testMetricsRuntimeDTO() throws Exception
+    {
+        final ServletHandler servletHandler = createServletHandler();
+        final FilterHandler filterHandler = createFilterHandler();
+        handle(servletHandler, filterHandler, SC_OK);
+        handle(servletHandler, filterHandler, SC_INTERNAL_SERVER_ERROR);
+
+        final RegistryRuntime registry = new RegistryRuntime(new FailedDTOHolder(),
+                Collections.<ServletContextDTO>emptyList(), Collections.<PreprocessorDTO>emptyList(),
+                Arrays.asList(HandlerMetricsDTOBuilder.build(servletHandler), HandlerMetricsDTOBuilder.build(filterHandler)));
+        final RuntimeDTO runtimeDTO = new RuntimeDTOBuilder(registry, new ServiceReferenceDTO()).build();
+
+        assertTrue(runtimeDTO instanceof MetricsRuntimeDTO);
+        final HandlerMetricsDTO[] dtos = ((MetricsRuntimeDTO) runtimeDTO).handlerMetricsDTOs;
+        assertEquals(2, dtos.length);
+
+        assertEquals(HandlerMetricsDTO.TYPE_SERVLET, dtos[0].type);
+        assertEquals(2, dtos[0].requestCount);
+        assertEquals(1, dtos[0].errorCount);
+        assertEquals(0, dtos[0].inFlightCount);
+        assertTrue(dtos[0].p50Micros <= dtos[0].p99Micros);
+        assertTrue(dtos[0].p99Micros <= dtos[0].maxMicros);
+
+        assertEquals(HandlerMetricsDTO.TYPE_FILTER, dtos[1].type);
+        assertEquals(filterHandler.getFilterInfo().getServiceId(), dtos[1].serviceId);
+        assertEquals(2, dtos[1].requestCount);
+        assertEquals(0, dtos[1].errorCount);
+    }
+
+    @Test
+    public void testMetricsDTOWithoutRequests()
+    {
+        final HandlerMetricsDTO dto = HandlerMetricsDTOBuilder.build(createServletHandler());
+
+        assertEquals(HandlerMetricsDTO.TYPE_SERVLET, dto.type);
+        assertEquals(0, dto.requestCount);
+        assertEquals(0, dto.maxMicros);
+    }
+
+    private void handle(final ServletHandler servletHandler, final FilterHandler filterHandler, final int status) throws Exception
+    {
+        final HttpServletRequest req = mock(HttpServletRequest.class);
+        final HttpServletResponse res = mock(HttpServletResponse.class);
+        when(res.getStatus()).thenReturn(status);
+
+        new InvocationChain(servletHandler, new FilterHandler[] {filterHandler}).doFilter(req, res);
+    }
+
+    private static void assertMetrics(final HandlerMetrics metrics, final long requests, final long errors)
+    {
+        assertEquals(requests, metrics.getRequestCount());
+        assertEquals(errors, metrics.getErrorCount());
+        assertEquals(0, metrics.getInFlightCount());
+        assertEquals(requests, metrics.getLatencies().getCount());
+    }
+
+    private ServletHandler createServletHandler()
+    {
+        final ServletInfo info = new ServletInfo(null, "/a", Collections.<String, String>emptyMap());
+        return new HttpServiceServletHandler(-1, this.context, info, this.servlet);
+    }
+
+    private FilterHandler createFilterHandler()
+    {
+        @SuppressWarnings("unchecked")
+        final ServiceReference<Filter> ref = mock(ServiceReference.class);
+        when(ref.getProperty(Constants.SERVICE_ID)).thenReturn(1L);
+        when(ref.getProperty(Constants.SERVICE_RANKING)).thenReturn(0);
+        when(ref.getProperty(HttpWhiteboardConstants.HTTP_WHITEBOARD_FILTER_PATTERN)).thenReturn("/*");
+        when(ref.getPropertyKeys()).thenReturn(new String[0]);
+        final FilterInfo info = new FilterInfo(ref);
+
+        @SuppressWarnings("unchecked")
+        final ServiceObjects<Filter> so = mock(ServiceObjects.class);
+        final BundleContext ctx = mock(BundleContext.class);
+        when(ctx.getServiceObjects(ref)).thenReturn(so);
+        when(so.getService()).thenReturn(this.filter);
+        final FilterHandler handler = new FilterHandler(-1, this.context, info, ctx);
+        handler.init();
+        return handler;
+    }
+}
@@ -0,0 +1,90 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.felix.http.base.internal.handler;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class LatencyHistogramTest
+{
+    @Test
+    public void testBuckets()
+    {
+        long previous = -1;
+        for(long value = 0; value < 100_000; value++)
+        {
+            final int index = LatencyHistogram.index(value);
+            final long highest = LatencyHistogram.highestValue(index);
+            assertTrue(value <= highest);
+            // the bucket range is at most 12.5% of the value
+            assertTrue(highest - value <= value / 8);
+            assertTrue(index >= previous);
+            previous = index;
+        }
+        assertEquals((1L << 40) - 1, LatencyHistogram.highestValue(LatencyHistogram.index((1L << 40) - 1)));
+    }
+
+    @Test
+    public void testPercentiles()
+    {
+        final LatencyHistogram histogram = new LatencyHistogram();
+        assertEquals(0, histogram.getPercentiles(50)[0]);
+
+        for(int i = 1; i <= 1000; i++)
+        {
+            histogram.record(i);
+        }
+        assertEquals(1000, histogram.getCount());
+        assertEquals(500, histogram.getMean());
+        assertEquals(1000, histogram.getMax());
+
+        final long[] percentiles = histogram.getPercentiles(50, 90, 99, 100);
+        assertTrue(percentiles[0] >= 500 && percentiles[0] <= 500 + 500 / 8);
+        assertTrue(percentiles[1] >= 900 && percentiles[1] <= 900 + 900 / 8);
+        assertTrue(percentiles[2] >= 990 && percentiles[2] <= 1000);
+        assertEquals(1000, percentiles[3]);
+    }
+
+    @Test
+    public void testOutOfRangeValues()
+    {
+        final LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(-5);
+        histogram.record(Long.MAX_VALUE);
+        assertEquals(2, histogram.getCount());
+        assertEquals(0, histogram.getPercentiles(50)[0]);
+        assertEquals((1L << 40) - 1, histogram.getPercentiles(100)[0]);
+    }
+
+    @Test
+    public void testHandlerMetrics()
+    {
+        final HandlerMetrics metrics = new HandlerMetrics();
+        final long first = metrics.start();
+        final long second = metrics.start();
+        assertEquals(2, metrics.getInFlightCount());
+
+        metrics.end(first, false);
+        metrics.end(second, true);
+        assertEquals(0, metrics.getInFlightCount());
+        assertEquals(2, metrics.getRequestCount());
+        assertEquals(1, metrics.getErrorCount());
+        assertEquals(2, metrics.getLatencies().getCount());
+    }
+}
@@ -19,6 +19,7 @@ package org.apache.felix.http.base.internal.registry;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.verify;
@@ -26,7 +27,9 @@ import static org.mockito.Mockito.when;
 
 import org.apache.felix.http.base.internal.context.ExtServletContext;
 import org.apache.felix.http.base.internal.handler.FilterHandler;
+import org.apache.felix.http.base.internal.handler.ServletHandler;
 import org.apache.felix.http.base.internal.runtime.FilterInfo;
+import org.apache.felix.http.base.internal.runtime.ServletInfo;
 import org.apache.felix.http.base.internal.runtime.dto.FailedDTOHolder;
 import org.junit.Test;
 import org.mockito.ArgumentMatchers;
@@ -123,7 +126,61 @@ public class FilterRegistryTest {
         reg.removeFilter(h5.getFilterInfo(), true);
     }
 
+    @Test public void testFilterChains() throws InvalidSyntaxException
+    {
+        final FilterHandler h1 = createFilterHandler(1L, 30, "/*");
+        reg.addFilter(h1);
+        final FilterHandler h2 = createServletFilterHandler(2L, 20, "servlet");
+        reg.addFilter(h2);
+        final ServletHandler servlet = createServletHandler("servlet");
+
+        // only unconditional filters, the chain is reused
+        FilterHandler[] handlers = reg.getFilterHandlers(servlet, DispatcherType.REQUEST, "/bar");
+        assertEquals(2, handlers.length);
+        assertEquals(h1.getFilterInfo(), handlers[0].getFilterInfo());
+        assertEquals(h2.getFilterInfo(), handlers[1].getFilterInfo());
+        assertSame(handlers, reg.getFilterHandlers(servlet, DispatcherType.REQUEST, "/foo"));
+        assertEquals(1, reg.getFilterHandlers(null, DispatcherType.REQUEST, "/foo").length);
+        assertEquals(0, reg.getFilterHandlers(servlet, DispatcherType.FORWARD, "/foo").length);
+
+        // adding a filter updates the chains
+        final FilterHandler h3 = createFilterHandler(3L, 10, "/foo");
+        reg.addFilter(h3);
+        handlers = reg.getFilterHandlers(servlet, DispatcherType.REQUEST, "/foo");
+        assertEquals(3, handlers.length);
+        assertEquals(h3.getFilterInfo(), handlers[2].getFilterInfo());
+        assertEquals(2, reg.getFilterHandlers(servlet, DispatcherType.REQUEST, "/bar").length);
+        assertEquals(2, reg.getFilterHandlers(null, DispatcherType.REQUEST, "/foo").length);
+
+        // removing a filter updates the chains
+        reg.removeFilter(h1.getFilterInfo(), true);
+        handlers = reg.getFilterHandlers(servlet, DispatcherType.REQUEST, "/foo");
+        assertEquals(2, handlers.length);
+        assertEquals(h2.getFilterInfo(), handlers[0].getFilterInfo());
+        assertEquals(h3.getFilterInfo(), handlers[1].getFilterInfo());
+
+        // cleanup
+        reg.removeFilter(h2.getFilterInfo(), true);
+        reg.removeFilter(h3.getFilterInfo(), true);
+        assertEquals(0, reg.getFilterHandlers(servlet, DispatcherType.REQUEST, "/foo").length);
+    }
+
+    private static ServletHandler createServletHandler(final String name)
+    {
+        final ServletInfo info = mock(ServletInfo.class);
+        when(info.isResource()).thenReturn(false);
+        final ServletHandler handler = mock(ServletHandler.class);
+        when(handler.getServletInfo()).thenReturn(info);
+        when(handler.getName()).thenReturn(name);
+        return handler;
+    }
+
     private static FilterInfo createFilterInfo(final long id, final int ranking, final String... paths) throws InvalidSyntaxException
+    {
+        return createFilterInfo(id, ranking, paths, null);
+    }
+
+    private static FilterInfo createFilterInfo(final long id, final int ranking, final String[] paths, final String[] servletNames) throws InvalidSyntaxException
     {
         final BundleContext bCtx = mock(BundleContext.class);
         when(bCtx.createFilter(ArgumentMatchers.anyString())).thenReturn(null);
@@ -136,6 +193,7 @@ public class FilterRegistryTest {
         when(ref.getProperty(Constants.SERVICE_ID)).thenReturn(id);
         when(ref.getProperty(Constants.SERVICE_RANKING)).thenReturn(ranking);
         when(ref.getProperty(HttpWhiteboardConstants.HTTP_WHITEBOARD_FILTER_PATTERN)).thenReturn(paths);
+        when(ref.getProperty(HttpWhiteboardConstants.HTTP_WHITEBOARD_FILTER_SERVLET)).thenReturn(servletNames);
         when(ref.getPropertyKeys()).thenReturn(new String[0]);
         final FilterInfo si = new FilterInfo(ref);
 
@@ -144,7 +202,16 @@ public class FilterRegistryTest {
 
     private static FilterHandler createFilterHandler(final long id, final int ranking, final String... paths) throws InvalidSyntaxException
     {
-        final FilterInfo si = createFilterInfo(id, ranking, paths);
+        return createFilterHandler(createFilterInfo(id, ranking, paths));
+    }
+
+    private static FilterHandler createServletFilterHandler(final long id, final int ranking, final String... servletNames) throws InvalidSyntaxException
+    {
+        return createFilterHandler(createFilterInfo(id, ranking, null, servletNames));
+    }
+
+    private static FilterHandler createFilterHandler(final FilterInfo si)
+    {
         @SuppressWarnings("unchecked")
         final ServiceObjects<Filter> so = mock(ServiceObjects.class);
         final BundleContext ctx = mock(BundleContext.class);
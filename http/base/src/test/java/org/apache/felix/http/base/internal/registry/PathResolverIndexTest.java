@@ -0,0 +1,167 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.felix.http.base.internal.registry;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Test;
+
+public class PathResolverIndexTest {
+
+    private static final String[] URIS = new String[] {
+        "", "/", "/foo", "/foo/", "/foo/bar", "/foo/bar/", "/foo/bar/baz", "/foobar",
+        "/foo/bar.jsp", "/x.jsp", "/x.html", "/a/b.tar.gz", "/a/b.gz", "/.jsp", "/a.b/c",
+        "/alias", "/alias/", "/alias/sub", "/alias/sub/x", "/aliasx", "/reabcx", "/reabc",
+        "/other", "nolead", "nolead.jsp"
+    };
+
+    private static List<PathResolver> createResolvers(final boolean withPathDefault)
+    {
+        final List<PathResolver> resolvers = new ArrayList<>();
+        for(final String pattern : new String[] {"", "/", "/foo", "/foo/*", "/foo/bar", "/foo/bar/*",
+                "*.jsp", "*.gz", "*.tar.gz", "/a/*"})
+        {
+            resolvers.add(PathResolverFactory.createPatternMatcher(null, pattern));
+        }
+        if ( withPathDefault )
+        {
+            resolvers.add(PathResolverFactory.createPatternMatcher(null, "/*"));
+        }
+        resolvers.add(new PathResolverFactory.ExactAndPathMatcher(null, "/alias"));
+        resolvers.add(new PathResolverFactory.ExactAndPathMatcher(null, "/alias/sub"));
+        resolvers.add(PathResolverFactory.createRegexMatcher("/re.*x"));
+        Collections.sort(resolvers);
+        return resolvers;
+    }
+
+    private static PathResolution resolveLinear(final List<PathResolver> resolvers, final String uri)
+    {
+        for(final PathResolver entry : resolvers)
+        {
+            final PathResolution pr = entry.resolve(uri);
+            if ( pr != null )
+            {
+                pr.matchedPattern = entry.getPattern();
+                return pr;
+            }
+        }
+        return null;
+    }
+
+    private static void assertSameResolution(final List<PathResolver> resolvers, final PathResolverIndex index)
+    {
+        // resolve twice to hit the cache if enabled
+        for(int i = 0; i < 2; i++)
+        {
+            for(final String uri : URIS)
+            {
+                final PathResolution expected = resolveLinear(resolvers, uri);
+                final PathResolution pr = index.resolve(uri);
+                if ( expected == null )
+                {
+                    assertNull(uri, pr);
+                }
+                else
+                {
+                    assertNotNull(uri, pr);
+                    assertEquals(uri, expected.matchedPattern, pr.matchedPattern);
+                    assertEquals(uri, expected.match, pr.match);
+                    assertEquals(uri, expected.servletPath, pr.servletPath);
+                    assertEquals(uri, expected.pathInfo, pr.pathInfo);
+                    assertEquals(uri, expected.matchValue, pr.matchValue);
+                    assertEquals(uri, expected.requestURI, pr.requestURI);
+                    assertEquals(1, pr.patterns.length);
+                    assertEquals(expected.matchedPattern, pr.patterns[0]);
+                }
+            }
+        }
+    }
+
+    @Test public void testSameResolutionAsLinearScan()
+    {
+        final List<PathResolver> resolvers = createResolvers(false);
+        assertSameResolution(resolvers, new PathResolverIndex(resolvers, 0));
+    }
+
+    @Test public void testSameResolutionWithPathDefault()
+    {
+        final List<PathResolver> resolvers = createResolvers(true);
+        assertSameResolution(resolvers, new PathResolverIndex(resolvers, 0));
+    }
+
+    @Test public void testSameResolutionWithCache()
+    {
+        final List<PathResolver> resolvers = createResolvers(false);
+        assertSameResolution(resolvers, new PathResolverIndex(resolvers, 4));
+        assertSameResolution(resolvers, new PathResolverIndex(resolvers, 1000));
+    }
+
+    @Test public void testResolutionsAreNotShared()
+    {
+        final List<PathResolver> resolvers = createResolvers(false);
+        final PathResolverIndex index = new PathResolverIndex(resolvers, 10);
+        final PathResolution pr1 = index.resolve("/foo/bar/baz");
+        pr1.requestURI = "/changed";
+        final PathResolution pr2 = index.resolve("/foo/bar/baz");
+        assertEquals("/foo/bar/baz", pr2.requestURI);
+        assertEquals("/foo/bar/*", pr2.matchedPattern);
+    }
+
+    @Test public void testConcurrentResolutionWithCache() throws Exception
+    {
+        final List<PathResolver> resolvers = createResolvers(false);
+        final PathResolverIndex index = new PathResolverIndex(resolvers, 4);
+        final List<Thread> threads = new ArrayList<>();
+        final List<Throwable> failures = Collections.synchronizedList(new ArrayList<>());
+        for(int t = 0; t < 4; t++)
+        {
+            final Thread thread = new Thread(() -> {
+                try
+                {
+                    for(int i = 0; i < 200; i++)
+                    {
+                        assertSameResolution(resolvers, index);
+                    }
+                }
+                catch ( final Throwable e )
+                {
+                    failures.add(e);
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        for(final Thread thread : threads)
+        {
+            thread.join();
+        }
+        assertTrue(failures.toString(), failures.isEmpty());
+    }
+
+    @Test public void testEmpty()
+    {
+        assertNull(PathResolverIndex.EMPTY.resolve("/foo"));
+        assertNull(PathResolverIndex.EMPTY.resolve(""));
+    }
+}
@@ -0,0 +1,119 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.felix.http.base.internal.whiteboard;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.zip.GZIPInputStream;
+
+import org.apache.felix.http.base.internal.HttpConfig;
+import org.junit.Test;
+
+public class ResourceCacheTest {
+
+    private static byte[] createContent(final int size)
+    {
+        final byte[] content = new byte[size];
+        Arrays.fill(content, (byte)'a');
+        return content;
+    }
+
+    private static HttpConfig createConfig(final int size, final int entrySize)
+    {
+        final HttpConfig config = new HttpConfig();
+        config.setResourceCacheSize(size);
+        config.setResourceCacheEntrySize(entrySize);
+        return config;
+    }
+
+    @Test public void testDisabled()
+    {
+        final ResourceCache cache = new ResourceCache(createConfig(0, 1000));
+        assertFalse(cache.isCacheable(10));
+    }
+
+    @Test public void testCacheable()
+    {
+        final ResourceCache cache = new ResourceCache(createConfig(1000, 100));
+        assertTrue(cache.isCacheable(0));
+        assertTrue(cache.isCacheable(100));
+        assertFalse(cache.isCacheable(101));
+        assertFalse(cache.isCacheable(-1));
+    }
+
+    @Test public void testGetAndValidate() throws IOException
+    {
+        final ResourceCache cache = new ResourceCache(createConfig(1000, 100));
+        final ResourceCache.Entry entry = ResourceCache.createEntry(createContent(10), 5L, "image/png");
+        cache.put("a", entry);
+        assertSame(entry, cache.get("a", 5L, 10));
+        assertNull(cache.get("b", 5L, 10));
+
+        // modified resource
+        assertNull(cache.get("a", 6L, 10));
+        assertNull(cache.get("a", 5L, 10));
+    }
+
+    @Test public void testEviction() throws IOException
+    {
+        final ResourceCache cache = new ResourceCache(createConfig(250, 100));
+        cache.put("a", ResourceCache.createEntry(createContent(100), 1L, null));
+        cache.put("b", ResourceCache.createEntry(createContent(100), 1L, null));
+        assertNotNull(cache.get("a", 1L, 100));
+        cache.put("c", ResourceCache.createEntry(createContent(100), 1L, null));
+
+        // b is the least recently used entry
+        assertNotNull(cache.get("a", 1L, 100));
+        assertNull(cache.get("b", 1L, 100));
+        assertNotNull(cache.get("c", 1L, 100));
+
+        cache.clear();
+        assertNull(cache.get("a", 1L, 100));
+    }
+
+    @Test public void testGzip() throws IOException
+    {
+        final byte[] content = createContent(1000);
+        assertNull(ResourceCache.createEntry(content, 1L, "image/png").getGzipContent());
+        assertNull(ResourceCache.createEntry(createContent(10), 1L, "text/css").getGzipContent());
+
+        final ResourceCache.Entry entry = ResourceCache.createEntry(content, 1L, "text/css");
+        assertNotNull(entry.getGzipContent());
+
+        final ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        try (final InputStream is = new GZIPInputStream(new ByteArrayInputStream(entry.getGzipContent())))
+        {
+            final byte[] buf = new byte[256];
+            int n;
+            while ( (n = is.read(buf)) > 0 )
+            {
+                bos.write(buf, 0, n);
+            }
+        }
+        assertArrayEquals(content, bos.toByteArray());
+    }
+}
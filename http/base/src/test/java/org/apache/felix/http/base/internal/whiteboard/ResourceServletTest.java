@@ -0,0 +1,223 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.felix.http.base.internal.whiteboard;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.net.URLConnection;
+import java.net.URLStreamHandler;
+import java.util.Arrays;
+
+import org.apache.felix.http.base.internal.HttpConfig;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+import jakarta.servlet.ServletConfig;
+import jakarta.servlet.ServletContext;
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.WriteListener;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+public class ResourceServletTest {
+
+    @Test public void testParseRange()
+    {
+        assertArrayEquals(new long[] {0, 99}, ResourceServlet.parseRange("bytes=0-99", 1000));
+        assertArrayEquals(new long[] {500, 999}, ResourceServlet.parseRange("bytes=500-", 1000));
+        assertArrayEquals(new long[] {900, 999}, ResourceServlet.parseRange("bytes=-100", 1000));
+        assertArrayEquals(new long[] {0, 999}, ResourceServlet.parseRange("bytes=-2000", 1000));
+        assertArrayEquals(new long[] {10, 999}, ResourceServlet.parseRange("bytes=10-5000", 1000));
+
+        // full content
+        assertNull(ResourceServlet.parseRange("items=0-10", 1000));
+        assertNull(ResourceServlet.parseRange("bytes=0-10,20-30", 1000));
+        assertNull(ResourceServlet.parseRange("bytes=20-10", 1000));
+        assertNull(ResourceServlet.parseRange("bytes=a-b", 1000));
+
+        // unsatisfiable
+        assertArrayEquals(new long[0], ResourceServlet.parseRange("bytes=1000-", 1000));
+        assertArrayEquals(new long[0], ResourceServlet.parseRange("bytes=-0", 1000));
+        assertArrayEquals(new long[0], ResourceServlet.parseRange("bytes=-10", 0));
+    }
+
+    @Test public void testETagMatches()
+    {
+        assertTrue(ResourceServlet.etagMatches("\"abc\"", "\"abc\""));
+        assertTrue(ResourceServlet.etagMatches("\"x\", W/\"abc\"", "\"abc\""));
+        assertTrue(ResourceServlet.etagMatches("\"abc\"", "W/\"abc\""));
+        assertTrue(ResourceServlet.etagMatches("*", "\"abc\""));
+        assertFalse(ResourceServlet.etagMatches("\"abd\"", "\"abc\""));
+    }
+
+    @Test public void testCreateETag()
+    {
+        final String etag = ResourceServlet.createETag(100, 5000L);
+        assertTrue(etag.startsWith("\"") && etag.endsWith("\""));
+        assertEquals(etag, ResourceServlet.createETag(100, 5000L));
+        assertNotEquals(etag, ResourceServlet.createETag(101, 5000L));
+        assertNotEquals(etag, ResourceServlet.createETag(100, 5001L));
+        assertNull(ResourceServlet.createETag(-1, 5000L));
+        assertNull(ResourceServlet.createETag(100, 0L));
+    }
+
+    @Test public void testSameETagWithAndWithoutCache() throws Exception
+    {
+        final byte[] content = createContent(100);
+        final URL url = createURL(content, content.length, 5000L);
+
+        final String uncached = getETag(serve(new ResourceServlet("/res"), url, new ByteArrayOutputStream()));
+        final ResourceServlet servlet = new ResourceServlet("/res", new ResourceCache(createConfig()));
+        final String cached = getETag(serve(servlet, url, new ByteArrayOutputStream()));
+        final String fromCache = getETag(serve(servlet, url, new ByteArrayOutputStream()));
+
+        assertNotNull(uncached);
+        assertEquals(uncached, cached);
+        assertEquals(uncached, fromCache);
+    }
+
+    @Test public void testContentLongerThanReportedLength() throws Exception
+    {
+        final byte[] content = createContent(100);
+        final URL url = createURL(content, 50, 5000L);
+        final ResourceCache cache = new ResourceCache(createConfig());
+
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final HttpServletResponse res = serve(new ResourceServlet("/res", cache), url, out);
+
+        verify(res).setContentLength(100);
+        assertArrayEquals(content, out.toByteArray());
+        assertEquals(ResourceServlet.createETag(100, 5000L), getETag(res));
+        assertNull(cache.get(url.toExternalForm(), 5000L, 50));
+        assertNull(cache.get(url.toExternalForm(), 5000L, 100));
+    }
+
+    private static byte[] createContent(final int size)
+    {
+        final byte[] content = new byte[size];
+        Arrays.fill(content, (byte)'a');
+        return content;
+    }
+
+    private static HttpConfig createConfig()
+    {
+        final HttpConfig config = new HttpConfig();
+        config.setResourceCacheSize(10000);
+        config.setResourceCacheEntrySize(1000);
+        return config;
+    }
+
+    private static URL createURL(final byte[] content, final long length, final long lastModified)
+    throws MalformedURLException
+    {
+        return new URL(null, "test:/res/resource.txt", new URLStreamHandler()
+        {
+            @Override
+            protected URLConnection openConnection(final URL u)
+            {
+                return new URLConnection(u)
+                {
+                    @Override
+                    public void connect()
+                    {
+                        // nothing to do
+                    }
+
+                    @Override
+                    public long getContentLengthLong()
+                    {
+                        return length;
+                    }
+
+                    @Override
+                    public long getLastModified()
+                    {
+                        return lastModified;
+                    }
+
+                    @Override
+                    public InputStream getInputStream()
+                    {
+                        return new ByteArrayInputStream(content);
+                    }
+                };
+            }
+        });
+    }
+
+    private static HttpServletResponse serve(final ResourceServlet servlet, final URL url,
+            final ByteArrayOutputStream out) throws Exception
+    {
+        final ServletContext context = mock(ServletContext.class);
+        when(context.getResource("/res/resource.txt")).thenReturn(url);
+        final ServletConfig config = mock(ServletConfig.class);
+        when(config.getServletContext()).thenReturn(context);
+        servlet.init(config);
+
+        final HttpServletRequest req = mock(HttpServletRequest.class);
+        when(req.getPathInfo()).thenReturn("/resource.txt");
+        when(req.getDateHeader(anyString())).thenReturn(-1L);
+
+        final HttpServletResponse res = mock(HttpServletResponse.class);
+        when(res.getOutputStream()).thenReturn(new ServletOutputStream()
+        {
+            @Override
+            public void write(final int b) throws IOException
+            {
+                out.write(b);
+            }
+
+            @Override
+            public boolean isReady()
+            {
+                return true;
+            }
+
+            @Override
+            public void setWriteListener(final WriteListener writeListener)
+            {
+                // not used
+            }
+        });
+        servlet.doGet(req, res);
+        return res;
+    }
+
+    private static String getETag(final HttpServletResponse res)
+    {
+        final ArgumentCaptor<String> captor = ArgumentCaptor.forClass(String.class);
+        verify(res).setHeader(eq("ETag"), captor.capture());
+        return captor.getValue();
+    }
+}
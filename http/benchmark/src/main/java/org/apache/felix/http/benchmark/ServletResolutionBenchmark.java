@@ -0,0 +1,149 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.felix.http.benchmark;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.felix.http.base.internal.registry.PathResolution;
+import org.apache.felix.http.base.internal.registry.PathResolver;
+import org.apache.felix.http.base.internal.registry.PathResolverFactory;
+import org.apache.felix.http.base.internal.registry.PathResolverIndex;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Resolution of request uris against the servlet patterns of a servlet
+ * context. The table mixes exact, path and extension patterns as registered
+ * by typical whiteboard applications. The {@code linearScan} benchmark is
+ * the former resolution which tries every pattern one after the other.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ServletResolutionBenchmark
+{
+    private static final long SEED = 0x5EEDL;
+
+    private static final String[] EXTENSIONS = { "jsp", "json", "html", "xml" };
+
+    private static final int URIS = 256;
+
+    @Param({ "50", "800" })
+    public int servlets;
+
+    @Param({ "0", "1024" })
+    public int cacheSize;
+
+    private List<PathResolver> m_resolvers;
+    private PathResolverIndex m_index;
+    private final List<String> m_uris = new ArrayList<>();
+    private int m_next;
+
+    @Setup
+    public void setUp()
+    {
+        m_resolvers = new ArrayList<>();
+        for (int i = 0; i < servlets; i++)
+        {
+            String pattern;
+            switch (i % 4)
+            {
+                case 0:
+                    pattern = "/app/module" + i + "/*";
+                    break;
+                case 1:
+                    pattern = "/api/v" + (i % 3) + "/resource" + i;
+                    break;
+                case 2:
+                    pattern = "/api/v" + (i % 3) + "/resource" + i + "/*";
+                    break;
+                default:
+                    pattern = i < EXTENSIONS.length * 4 ? "*." + EXTENSIONS[i / 4] : "/static/bundle" + i + "/*";
+                    break;
+            }
+            m_resolvers.add(PathResolverFactory.createPatternMatcher(null, pattern));
+        }
+        m_resolvers.add(PathResolverFactory.createPatternMatcher(null, "/"));
+        Collections.sort(m_resolvers);
+        m_index = new PathResolverIndex(m_resolvers, cacheSize);
+
+        Random random = new Random(SEED);
+        for (int i = 0; i < URIS; i++)
+        {
+            int s = random.nextInt(servlets);
+            switch (random.nextInt(5))
+            {
+                case 0:
+                    m_uris.add("/app/module" + s + "/page/" + random.nextInt(100));
+                    break;
+                case 1:
+                    m_uris.add("/api/v" + (s % 3) + "/resource" + s);
+                    break;
+                case 2:
+                    m_uris.add("/api/v" + (s % 3) + "/resource" + s + "/item" + random.nextInt(100));
+                    break;
+                case 3:
+                    m_uris.add("/pages/p" + random.nextInt(100) + "." + EXTENSIONS[random.nextInt(EXTENSIONS.length)]);
+                    break;
+                default:
+                    m_uris.add("/static/bundle" + s + "/js/main.js");
+                    break;
+            }
+        }
+    }
+
+    @Benchmark
+    public PathResolution indexLookup()
+    {
+        return m_index.resolve(m_uris.get(m_next++ & (URIS - 1)));
+    }
+
+    @Benchmark
+    public PathResolution linearScan()
+    {
+        String uri = m_uris.get(m_next++ & (URIS - 1));
+        for (PathResolver entry : m_resolvers)
+        {
+            PathResolution pr = entry.resolve(uri);
+            if (pr != null)
+            {
+                pr.patterns = new String[] { entry.getPattern() };
+                pr.matchedPattern = entry.getPattern();
+                return pr;
+            }
+        }
+        return null;
+    }
+}
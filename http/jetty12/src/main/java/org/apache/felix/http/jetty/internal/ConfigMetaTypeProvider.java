@@ -202,6 +202,36 @@ class ConfigMetaTypeProvider implements MetaTypeProvider
                 24576,
                 bundle.getBundleContext().getProperty(JettyConfig.FELIX_JETTY_RESPONSE_BUFFER_SIZE)));
 
+        adList.add(new AttributeDefinitionImpl(JettyConfig.FELIX_JETTY_OUTPUT_AGGREGATION_SIZE,
+                "Output Aggregation Size",
+                "Max size of response content aggregated before it is written. Using the default -1 uses Jetty's default (a quarter of the response buffer size).",
+                -1,
+                bundle.getBundleContext().getProperty(JettyConfig.FELIX_JETTY_OUTPUT_AGGREGATION_SIZE)));
+
+        adList.add(new AttributeDefinitionImpl(JettyConfig.FELIX_JETTY_USE_DIRECT_BUFFERS,
+                "Use Direct Buffers",
+                "Whether direct byte buffers are used for reading requests and writing responses. Default is true.",
+                true,
+                bundle.getBundleContext().getProperty(JettyConfig.FELIX_JETTY_USE_DIRECT_BUFFERS)));
+
+        adList.add(new AttributeDefinitionImpl(JettyConfig.FELIX_JETTY_BUFFER_POOL_MAX_CAPACITY,
+                "Buffer Pool Max Capacity",
+                "Max capacity of a pooled byte buffer in bytes, larger buffers are not pooled. Using the default -1 uses Jetty's default.",
+                -1,
+                bundle.getBundleContext().getProperty(JettyConfig.FELIX_JETTY_BUFFER_POOL_MAX_CAPACITY)));
+
+        adList.add(new AttributeDefinitionImpl(JettyConfig.FELIX_JETTY_BUFFER_POOL_MAX_HEAP_MEMORY,
+                "Buffer Pool Max Heap Memory",
+                "Max heap memory in bytes retained by the byte buffer pool, -1 for unlimited. Using the default 0 uses Jetty's heuristic.",
+                0L,
+                bundle.getBundleContext().getProperty(JettyConfig.FELIX_JETTY_BUFFER_POOL_MAX_HEAP_MEMORY)));
+
+        adList.add(new AttributeDefinitionImpl(JettyConfig.FELIX_JETTY_BUFFER_POOL_MAX_DIRECT_MEMORY,
+                "Buffer Pool Max Direct Memory",
+                "Max direct memory in bytes retained by the byte buffer pool, -1 for unlimited. Using the default 0 uses Jetty's heuristic.",
+                0L,
+                bundle.getBundleContext().getProperty(JettyConfig.FELIX_JETTY_BUFFER_POOL_MAX_DIRECT_MEMORY)));
+
         adList.add(new AttributeDefinitionImpl(JettyConfig.FELIX_JETTY_MAX_FORM_SIZE,
                 "Maximum Form Size in bytes",
                 "Size of Body for submitted form content. Default is 200KB.",
@@ -454,6 +484,27 @@ class ConfigMetaTypeProvider implements MetaTypeProvider
                 "If this property is set, each http context gets a unique session id (derived from the container session).",
                 HttpConfig.DEFAULT_UNIQUE_SESSION_ID,
                 bundle.getBundleContext().getProperty(HttpConfig.PROP_UNIQUE_SESSION_ID)));
+        adList.add(new AttributeDefinitionImpl(JettyConfig.FELIX_HTTP_RESOLUTION_CACHE_SIZE,
+                "Servlet Resolution Cache Size",
+                "The number of request uris per servlet context for which the resolved servlet is cached. Default is 0 (no caching).",
+                0,
+                bundle.getBundleContext().getProperty(JettyConfig.FELIX_HTTP_RESOLUTION_CACHE_SIZE)));
+        adList.add(new AttributeDefinitionImpl(JettyConfig.FELIX_HTTP_RESOURCE_CACHE_SIZE,
+                "Resource Cache Size",
+                "The number of bytes of static resources kept in memory. Default is 0 (no caching).",
+                0,
+                bundle.getBundleContext().getProperty(JettyConfig.FELIX_HTTP_RESOURCE_CACHE_SIZE)));
+        adList.add(new AttributeDefinitionImpl(JettyConfig.FELIX_HTTP_RESOURCE_CACHE_ENTRY_SIZE,
+                "Resource Cache Entry Size",
+                "The max size in bytes of a single static resource kept in memory. Default is 524288.",
+                512 * 1024,
+                bundle.getBundleContext().getProperty(JettyConfig.FELIX_HTTP_RESOURCE_CACHE_ENTRY_SIZE)));
+        adList.add(new AttributeDefinitionImpl(JettyConfig.FELIX_HTTP_METRICS_ENABLE,
+                "Enable Request Metrics",
+                "Whether to record request counts, errors and latency histograms per servlet and filter. "
+                + "The metrics are added to the runtime DTO and exposed via JMX. Default is false.",
+                false,
+                bundle.getBundleContext().getProperty(JettyConfig.FELIX_HTTP_METRICS_ENABLE)));
         adList.add(new AttributeDefinitionImpl(JettyConfig.FELIX_JETTY_STOP_TIMEOUT, "Server stop timeout",
                 "If not -1, stop timeout for the server in milliseconds.", -1L,
                 bundle.getBundleContext().getProperty(JettyConfig.FELIX_JETTY_STOP_TIMEOUT)));
@@ -479,6 +530,18 @@ class ConfigMetaTypeProvider implements MetaTypeProvider
                 1048576,
                 bundle.getBundleContext().getProperty(JettyConfig.FELIX_JETTY_HTTP2_INITIAL_SESSION_RECV_WINDOW)));
 
+        adList.add(new AttributeDefinitionImpl(JettyConfig.FELIX_JETTY_HTTP2_MAX_FRAME_SIZE,
+                "Http/2 Max Frame Size",
+                "The max frame size in bytes. Using the default -1 uses Jetty's default.",
+                -1,
+                bundle.getBundleContext().getProperty(JettyConfig.FELIX_JETTY_HTTP2_MAX_FRAME_SIZE)));
+
+        adList.add(new AttributeDefinitionImpl(JettyConfig.FELIX_JETTY_HTTP2_STREAM_IDLE_TIMEOUT,
+                "Http/2 Stream Idle Timeout",
+                "The idle timeout of a stream in milliseconds. Using the default -1 uses Jetty's default.",
+                -1L,
+                bundle.getBundleContext().getProperty(JettyConfig.FELIX_JETTY_HTTP2_STREAM_IDLE_TIMEOUT)));
+
         adList.add(new AttributeDefinitionImpl(JettyConfig.FELIX_JETTY_ALPN_PROTOCOLS,
                 "ALPN Protocols",
                 "The ALPN protocols to consider. Default is h2, http/1.1.",
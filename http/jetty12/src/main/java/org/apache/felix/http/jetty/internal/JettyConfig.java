@@ -106,6 +106,21 @@ public final class JettyConfig
     /** Felix specific property to configure the request buffer size. Default is 24KB */
     public static final String FELIX_JETTY_RESPONSE_BUFFER_SIZE = "org.apache.felix.http.jetty.responseBufferSize";
 
+    /** Felix specific property to configure the output aggregation size. Default is Jetty specific (a quarter of the response buffer size) */
+    public static final String FELIX_JETTY_OUTPUT_AGGREGATION_SIZE = "org.apache.felix.http.jetty.outputAggregationSize";
+
+    /** Felix specific property to control whether direct byte buffers are used for reading and writing. Default is true */
+    public static final String FELIX_JETTY_USE_DIRECT_BUFFERS = "org.apache.felix.http.jetty.directBuffers.enable";
+
+    /** Felix specific property to configure the max capacity of a pooled byte buffer. Default is Jetty specific */
+    public static final String FELIX_JETTY_BUFFER_POOL_MAX_CAPACITY = "org.apache.felix.http.jetty.bufferPool.maxCapacity";
+
+    /** Felix specific property to configure the max heap memory retained by the byte buffer pool, -1 for unlimited. Default is 0 (Jetty heuristic) */
+    public static final String FELIX_JETTY_BUFFER_POOL_MAX_HEAP_MEMORY = "org.apache.felix.http.jetty.bufferPool.maxHeapMemory";
+
+    /** Felix specific property to configure the max direct memory retained by the byte buffer pool, -1 for unlimited. Default is 0 (Jetty heuristic) */
+    public static final String FELIX_JETTY_BUFFER_POOL_MAX_DIRECT_MEMORY = "org.apache.felix.http.jetty.bufferPool.maxDirectMemory";
+
     /** Felix specific property to configure the max form size. Default is 200KB. */
     public static final String FELIX_JETTY_MAX_FORM_SIZE = "org.apache.felix.http.jetty.maxFormSize";
 
@@ -268,6 +283,18 @@ public final class JettyConfig
     /** Felix specific property to specify the stop timeout of the jetty server */
     public static final String FELIX_JETTY_STOP_TIMEOUT = "org.apache.felix.jetty.stopTimeout";
 
+    /** Felix specific property to specify the number of request uris per context for which the resolved servlet is cached */
+    public static final String FELIX_HTTP_RESOLUTION_CACHE_SIZE = "org.apache.felix.http.resolution.cache.size";
+
+    /** Felix specific property to specify the number of bytes of static resources kept in memory */
+    public static final String FELIX_HTTP_RESOURCE_CACHE_SIZE = "org.apache.felix.http.resource.cache.size";
+
+    /** Felix specific property to specify the max size in bytes of a static resource kept in memory */
+    public static final String FELIX_HTTP_RESOURCE_CACHE_ENTRY_SIZE = "org.apache.felix.http.resource.cache.entry.size";
+
+    /** Felix specific property to enable request metrics for servlets and filters */
+    public static final String FELIX_HTTP_METRICS_ENABLE = "org.apache.felix.http.metrics.enable";
+
     /** Felix specific property to control whether to enable HTTP/2. */
     public static final String FELIX_HTTP2_ENABLE = "org.apache.felix.http2.enable";
 
@@ -280,6 +307,12 @@ public final class JettyConfig
     /** Felix specific property to specify the initial session receive window (client to server)  */
     public static final String FELIX_JETTY_HTTP2_INITIAL_SESSION_RECV_WINDOW = "org.apache.felix.jetty.http2.initialSessionRecvWindow";
 
+    /** Felix specific property to specify the max frame size in bytes  */
+    public static final String FELIX_JETTY_HTTP2_MAX_FRAME_SIZE = "org.apache.felix.jetty.http2.maxFrameSize";
+
+    /** Felix specific property to specify the idle timeout of a stream in milliseconds  */
+    public static final String FELIX_JETTY_HTTP2_STREAM_IDLE_TIMEOUT = "org.apache.felix.jetty.http2.streamIdleTimeout";
+
     /** Felix specific property to specify the ALPN protocols to consider  */
     public static final String FELIX_JETTY_ALPN_PROTOCOLS = "org.apache.felix.jetty.alpn.protocols";
 
@@ -503,6 +536,31 @@ public final class JettyConfig
         return getIntProperty(FELIX_JETTY_RESPONSE_BUFFER_SIZE, 24 * 1024);
     }
 
+    public int getOutputAggregationSize()
+    {
+        return getIntProperty(FELIX_JETTY_OUTPUT_AGGREGATION_SIZE, -1);
+    }
+
+    public boolean isUseDirectBuffers()
+    {
+        return getBooleanProperty(FELIX_JETTY_USE_DIRECT_BUFFERS, true);
+    }
+
+    public int getBufferPoolMaxCapacity()
+    {
+        return getIntProperty(FELIX_JETTY_BUFFER_POOL_MAX_CAPACITY, -1);
+    }
+
+    public long getBufferPoolMaxHeapMemory()
+    {
+        return getLongProperty(FELIX_JETTY_BUFFER_POOL_MAX_HEAP_MEMORY, 0L);
+    }
+
+    public long getBufferPoolMaxDirectMemory()
+    {
+        return getLongProperty(FELIX_JETTY_BUFFER_POOL_MAX_DIRECT_MEMORY, 0L);
+    }
+
     public int getMaxFormSize()
     {
         return getIntProperty(FELIX_JETTY_MAX_FORM_SIZE, 200 * 1024);
@@ -605,6 +663,14 @@ public final class JettyConfig
         return getIntProperty(FELIX_JETTY_HTTP2_INITIAL_SESSION_RECV_WINDOW, 1048576);
     }
 
+    public int getHttp2MaxFrameSize() {
+        return getIntProperty(FELIX_JETTY_HTTP2_MAX_FRAME_SIZE, -1);
+    }
+
+    public long getHttp2StreamIdleTimeout() {
+        return getLongProperty(FELIX_JETTY_HTTP2_STREAM_IDLE_TIMEOUT, -1L);
+    }
+
     public String[] getAlpnProtocols() {
         return getStringArrayProperty(FELIX_JETTY_ALPN_PROTOCOLS, new String[] {"h2", "http/1.1"} );
     }
@@ -727,6 +793,22 @@ public final class JettyConfig
         return getLongProperty(FELIX_JETTY_STOP_TIMEOUT, -1l);
     }
 
+    public int getResolutionCacheSize() {
+        return getIntProperty(FELIX_HTTP_RESOLUTION_CACHE_SIZE, 0);
+    }
+
+    public int getResourceCacheSize() {
+        return getIntProperty(FELIX_HTTP_RESOURCE_CACHE_SIZE, 0);
+    }
+
+    public int getResourceCacheEntrySize() {
+        return getIntProperty(FELIX_HTTP_RESOURCE_CACHE_ENTRY_SIZE, 512 * 1024);
+    }
+
+    public boolean isMetricsEnabled() {
+        return getBooleanProperty(FELIX_HTTP_METRICS_ENABLE, false);
+    }
+
     /**
      * Returns <code>true</code> if jakarta websocket is configured to be used (
      * {@link #FELIX_JAKARTA_WEBSOCKET_ENABLE})
@@ -765,6 +847,10 @@ public final class JettyConfig
                 HttpConfig.DEFAULT_UNIQUE_SESSION_ID));
         props.put(HttpConfig.PROP_CONTAINER_ADDED_ATTRIBUTE, getStringArrayProperty(HttpConfig.PROP_CONTAINER_ADDED_ATTRIBUTE,
                 new String[] {"org.eclipse.jetty.security.sessionCreatedSecure"}));
+        props.put(FELIX_HTTP_RESOLUTION_CACHE_SIZE, getResolutionCacheSize());
+        props.put(FELIX_HTTP_RESOURCE_CACHE_SIZE, getResourceCacheSize());
+        props.put(FELIX_HTTP_RESOURCE_CACHE_ENTRY_SIZE, getResourceCacheEntrySize());
+        props.put(FELIX_HTTP_METRICS_ENABLE, isMetricsEnabled());
 
         addCustomServiceProperties(props);
     }
@@ -50,6 +50,8 @@ import org.eclipse.jetty.ee10.servlet.SessionHandler;
 import org.eclipse.jetty.http.HttpVersion;
 import org.eclipse.jetty.http.UriCompliance;
 import org.eclipse.jetty.http2.server.HTTP2ServerConnectionFactory;
+import org.eclipse.jetty.io.ArrayByteBufferPool;
+import org.eclipse.jetty.io.ByteBufferPool;
 import org.eclipse.jetty.io.ConnectionStatistics;
 import org.eclipse.jetty.security.HashLoginService;
 import org.eclipse.jetty.security.UserStore;
@@ -281,37 +283,57 @@ public final class JettyService
         }
     }
 
+    private ThreadPool createThreadPool() throws Exception
+    {
+        final int threadPoolMax = this.config.getThreadPoolMax();
+        if (!this.config.isUseVirtualThreads() && threadPoolMax >= 0) {
+            return new QueuedThreadPool(threadPoolMax);
+        } else if (this.config.isUseVirtualThreads()){
+            // See https://jetty.org/docs/jetty/12/programming-guide/arch/threads.html#thread-pool-virtual-threads
+            Method newVirtualThreadPerTaskExecutorMethod = null;
+            try {
+                newVirtualThreadPerTaskExecutorMethod = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            } catch (NoSuchMethodException e){
+                throw new IllegalArgumentException("Virtual threads are only available in Java 21 or later, or via preview flags in Java 19-20");
+            }
+            if (threadPoolMax >= 0) {
+                // Configurable, bounded, virtual thread executor
+                VirtualThreadPool threadPool = new VirtualThreadPool();
+                threadPool.setMaxThreads(threadPoolMax);
+                return threadPool;
+            } else {
+                // Simple, unlimited, virtual thread Executor
+                QueuedThreadPool threadPool = new QueuedThreadPool();
+                final Executor virtualExecutor = (Executor) newVirtualThreadPerTaskExecutorMethod.invoke(null);
+                threadPool.setVirtualThreadsExecutor(virtualExecutor);
+                return threadPool;
+            }
+        }
+        // Jetty's default thread pool
+        return null;
+    }
+
+    /**
+     * Create the byte buffer pool if it is configured, otherwise Jetty's default pool is used.
+     * If MBeans are registered, the pool is exposed with its statistics as part of the server.
+     */
+    private ByteBufferPool createByteBufferPool()
+    {
+        final int maxCapacity = this.config.getBufferPoolMaxCapacity();
+        final long maxHeapMemory = this.config.getBufferPoolMaxHeapMemory();
+        final long maxDirectMemory = this.config.getBufferPoolMaxDirectMemory();
+        if (maxCapacity > 0 || maxHeapMemory != 0 || maxDirectMemory != 0) {
+            return new ArrayByteBufferPool(-1, -1, maxCapacity > 0 ? maxCapacity : -1, -1, maxHeapMemory, maxDirectMemory);
+        }
+        return null;
+    }
+
     private void initializeJetty() throws Exception
     {
         if (this.config.isUseHttp() || this.config.isUseHttps())
         {
 
-            final int threadPoolMax = this.config.getThreadPoolMax();
-            if (!this.config.isUseVirtualThreads() && threadPoolMax >= 0) {
-                this.server = new Server(new QueuedThreadPool(threadPoolMax));
-            } else if (this.config.isUseVirtualThreads()){
-                // See https://jetty.org/docs/jetty/12/programming-guide/arch/threads.html#thread-pool-virtual-threads
-                Method newVirtualThreadPerTaskExecutorMethod = null;
-                try {
-                    newVirtualThreadPerTaskExecutorMethod = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
-                } catch (NoSuchMethodException e){
-                    throw new IllegalArgumentException("Virtual threads are only available in Java 21 or later, or via preview flags in Java 19-20");
-                }
-                if (threadPoolMax >= 0) {
-                    // Configurable, bounded, virtual thread executor
-                    VirtualThreadPool threadPool = new VirtualThreadPool();
-                    threadPool.setMaxThreads(threadPoolMax);
-                    this.server = new Server(threadPool);
-                } else {
-                    // Simple, unlimited, virtual thread Executor
-                    QueuedThreadPool threadPool = new QueuedThreadPool();
-                    final Executor virtualExecutor = (Executor) newVirtualThreadPerTaskExecutorMethod.invoke(null);
-                    threadPool.setVirtualThreadsExecutor(virtualExecutor);
-                    this.server = new Server(threadPool);
-                }
-            } else {
-                this.server = new Server();
-            }
+            this.server = new Server(createThreadPool(), null, createByteBufferPool());
 
             // FELIX-5931 : PropertyUserStore used as default by HashLoginService has changed in 9.4.12.v20180830
             //              and fails without a config, therefore using plain UserStore
@@ -450,6 +472,7 @@ public final class JettyService
                     message.append("selectors=").append(serverConnector.getSelectorManager().getSelectorCount());
                 }
                 message.append(",").append("virtualThreadsEnabled=").append(this.config.isUseVirtualThreads());
+                message.append(",").append("bufferPool=").append(this.server.getByteBufferPool().getClass().getSimpleName());
                 message.append("]");
 
                 SystemLogger.LOGGER.info(message.toString());
@@ -577,6 +600,12 @@ public final class JettyService
             http2factory.setMaxConcurrentStreams(this.config.getHttp2MaxConcurrentStreams());
             http2factory.setInitialStreamRecvWindow(this.config.getHttp2InitialStreamRecvWindow());
             http2factory.setInitialSessionRecvWindow(this.config.getHttp2InitialSessionRecvWindow());
+            if (this.config.getHttp2MaxFrameSize() > 0) {
+                http2factory.setMaxFrameSize(this.config.getHttp2MaxFrameSize());
+            }
+            if (this.config.getHttp2StreamIdleTimeout() > -1) {
+                http2factory.setStreamIdleTimeout(this.config.getHttp2StreamIdleTimeout());
+            }
             connector.addConnectionFactory(http2factory);
 
             //use http/2 cipher comparator
@@ -755,6 +784,11 @@ public final class JettyService
         config.setRequestHeaderSize(this.config.getHeaderSize());
         config.setResponseHeaderSize(this.config.getHeaderSize());
         config.setOutputBufferSize(this.config.getResponseBufferSize());
+        if (this.config.getOutputAggregationSize() > -1) {
+            config.setOutputAggregationSize(this.config.getOutputAggregationSize());
+        }
+        config.setUseInputDirectByteBuffers(this.config.isUseDirectBuffers());
+        config.setUseOutputDirectByteBuffers(this.config.isUseDirectBuffers());
         config.setRelativeRedirectAllowed(this.config.getBooleanProperty(JettyConfig.FELIX_JETTY_ALLOW_RELATIVE_REDIRECTS, true));
 
         String uriComplianceMode = this.config.getProperty(JettyConfig.FELIX_JETTY_URI_COMPLIANCE_MODE, null);
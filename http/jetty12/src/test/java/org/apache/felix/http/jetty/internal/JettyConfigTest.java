@@ -18,6 +18,7 @@ package org.apache.felix.http.jetty.internal;
 
 import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
 import java.util.ArrayList;
@@ -68,6 +69,35 @@ public class JettyConfigTest
         assertTrue(this.config.getHttpsPort() >= 9000 && this.config.getHttpsPort() < 65535);
     }
 
+    @Test public void testBufferAndHttp2Tuning()
+    {
+        assertEquals(-1, this.config.getOutputAggregationSize());
+        assertTrue(this.config.isUseDirectBuffers());
+        assertEquals(-1, this.config.getBufferPoolMaxCapacity());
+        assertEquals(0L, this.config.getBufferPoolMaxHeapMemory());
+        assertEquals(0L, this.config.getBufferPoolMaxDirectMemory());
+        assertEquals(-1, this.config.getHttp2MaxFrameSize());
+        assertEquals(-1L, this.config.getHttp2StreamIdleTimeout());
+
+        Hashtable<String, Object> props = new Hashtable<>();
+        props.put(JettyConfig.FELIX_JETTY_OUTPUT_AGGREGATION_SIZE, "4096");
+        props.put(JettyConfig.FELIX_JETTY_USE_DIRECT_BUFFERS, "false");
+        props.put(JettyConfig.FELIX_JETTY_BUFFER_POOL_MAX_CAPACITY, "65536");
+        props.put(JettyConfig.FELIX_JETTY_BUFFER_POOL_MAX_HEAP_MEMORY, "-1");
+        props.put(JettyConfig.FELIX_JETTY_BUFFER_POOL_MAX_DIRECT_MEMORY, "67108864");
+        props.put(JettyConfig.FELIX_JETTY_HTTP2_MAX_FRAME_SIZE, "32768");
+        props.put(JettyConfig.FELIX_JETTY_HTTP2_STREAM_IDLE_TIMEOUT, "30000");
+        this.config.update(props);
+
+        assertEquals(4096, this.config.getOutputAggregationSize());
+        assertFalse(this.config.isUseDirectBuffers());
+        assertEquals(65536, this.config.getBufferPoolMaxCapacity());
+        assertEquals(-1L, this.config.getBufferPoolMaxHeapMemory());
+        assertEquals(67108864L, this.config.getBufferPoolMaxDirectMemory());
+        assertEquals(32768, this.config.getHttp2MaxFrameSize());
+        assertEquals(30000L, this.config.getHttp2StreamIdleTimeout());
+    }
+
     @Test public void testGetPortInvalidRange()
     {
         Hashtable<String, Object> props = new Hashtable<>();
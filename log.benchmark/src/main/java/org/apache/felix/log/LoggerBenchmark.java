@@ -0,0 +1,137 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.felix.log;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.osgi.framework.Bundle;
+import org.osgi.framework.Version;
+import org.osgi.service.log.LogEntry;
+import org.osgi.service.log.LogLevel;
+import org.osgi.service.log.LogListener;
+import org.osgi.service.log.Logger;
+
+/**
+ * Throughput of {@link LoggerImpl} with several threads logging at the
+ * same time into the log history and to the log listeners. The benchmark
+ * lives in the package of the log service as the {@link Log} is not public.
+ * Use {@code -t} to change the number of logging threads.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(4)
+public class LoggerBenchmark
+{
+    @Param({ "0", "2" })
+    public int listeners;
+
+    private Log m_log;
+    private Logger m_logger;
+
+    @Setup
+    public void setUp()
+    {
+        m_log = new Log(1000, false, 4096);
+        LoggerAdminImpl loggerAdmin = new LoggerAdminImpl(LogLevel.INFO.name(), m_log);
+        m_logger = loggerAdmin.getLogger(createBundle(), "org.apache.felix.bench", Logger.class);
+        for (int i = 0; i < listeners; i++)
+        {
+            m_log.addListener(new LogListener()
+            {
+                @Override
+                public void logged(LogEntry entry)
+                {
+                }
+            });
+        }
+    }
+
+    @TearDown
+    public void tearDown()
+    {
+        m_log.close();
+    }
+
+    @Benchmark
+    public void info()
+    {
+        m_logger.info("Benchmark message");
+    }
+
+    @Benchmark
+    public void infoWithArgument()
+    {
+        m_logger.info("Benchmark message {}", "argument");
+    }
+
+    @Benchmark
+    public void debugDisabled()
+    {
+        m_logger.debug("Benchmark message {}", "argument");
+    }
+
+    private static Bundle createBundle()
+    {
+        return (Bundle) Proxy.newProxyInstance(Bundle.class.getClassLoader(),
+            new Class<?>[] { Bundle.class }, new InvocationHandler()
+            {
+                @Override
+                public Object invoke(Object proxy, Method method, Object[] args)
+                {
+                    switch (method.getName())
+                    {
+                        case "getSymbolicName":
+                            return "org.apache.felix.bench";
+                        case "getVersion":
+                            return Version.emptyVersion;
+                        case "getLocation":
+                            return "bench";
+                        case "getBundleId":
+                            return 1L;
+                        case "hashCode":
+                            return System.identityHashCode(proxy);
+                        case "equals":
+                            return proxy == args[0];
+                        default:
+                            return null;
+                    }
+                }
+            });
+    }
+}
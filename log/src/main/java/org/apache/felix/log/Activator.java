@@ -18,8 +18,10 @@
  */
 package org.apache.felix.log;
 
+import java.io.File;
 import java.util.Dictionary;
 import java.util.Hashtable;
+import java.util.List;
 
 import org.osgi.annotation.bundle.Header;
 import org.osgi.annotation.bundle.Requirement;
@@ -29,6 +31,7 @@ import org.osgi.framework.Constants;
 import org.osgi.framework.ServiceRegistration;
 import org.osgi.namespace.service.ServiceNamespace;
 import org.osgi.resource.Namespace;
+import org.osgi.service.log.LogEntry;
 import org.osgi.service.log.LogLevel;
 import org.osgi.service.log.LogReaderService;
 import org.osgi.service.log.LogService;
@@ -56,6 +59,29 @@ import org.osgi.service.log.admin.LoggerContext;
  *   <dt>org.apache.felix.log.storeDebug</dt>
  *   <dd>Determines whether or not debug messages will be stored as part of
  *       the historic log information. The default value is false.</dd>
+ *
+ *   <dt>org.apache.felix.log.listenerBufferSize</dt>
+ *   <dd>Determines the maximum number of log entries waiting to be delivered
+ *       to a log listener.  If a listener falls further behind, the oldest
+ *       entries are dropped for this listener.  A value of -1 means the
+ *       number is not limited and no entries are dropped.  The default value
+ *       is -1.</dd>
+ *
+ *   <dt>org.apache.felix.log.journal</dt>
+ *   <dd>Determines whether or not the log entries are written to a journal
+ *       on disk.  On startup the historic log is filled from the journal of
+ *       the previous run.  The default value is false.</dd>
+ *
+ *   <dt>org.apache.felix.log.journal.dir</dt>
+ *   <dd>The directory of the journal files.  The default is the
+ *       <code>journal</code> directory in the data area of the bundle.</dd>
+ *
+ *   <dt>org.apache.felix.log.journal.segmentSize</dt>
+ *   <dd>The size in bytes of a journal file.  The default value is 4194304.</dd>
+ *
+ *   <dt>org.apache.felix.log.journal.segments</dt>
+ *   <dd>The number of journal files kept, the oldest files are deleted.
+ *       The default value is 8.</dd>
  * </dl>
  */
 @Header(name = Constants.BUNDLE_ACTIVATOR, value = "${@class}")
@@ -72,12 +98,30 @@ public final class Activator implements BundleActivator
     private static final String STORE_DEBUG_PROPERTY = "org.apache.felix.log.storeDebug";
     /** The default value for the store debug property. */
     private static final boolean DEFAULT_STORE_DEBUG = false;
+    /** The name of the property that defines the size of the log listener buffer. */
+    private static final String LISTENER_BUFFER_SIZE_PROPERTY = "org.apache.felix.log.listenerBufferSize";
+    /** The default value for the log listener buffer size property. */
+    private static final int DEFAULT_LISTENER_BUFFER_SIZE = -1;
+    /** The name of the property that defines whether the log journal is enabled. */
+    private static final String JOURNAL_PROPERTY = "org.apache.felix.log.journal";
+    /** The name of the property that defines the directory of the log journal. */
+    private static final String JOURNAL_DIR_PROPERTY = "org.apache.felix.log.journal.dir";
+    /** The name of the property that defines the size of a log journal file. */
+    private static final String JOURNAL_SEGMENT_SIZE_PROPERTY = "org.apache.felix.log.journal.segmentSize";
+    /** The default value for the log journal file size property. */
+    private static final int DEFAULT_JOURNAL_SEGMENT_SIZE = 4 * 1024 * 1024;
+    /** The name of the property that defines the number of log journal files kept. */
+    private static final String JOURNAL_SEGMENTS_PROPERTY = "org.apache.felix.log.journal.segments";
+    /** The default value for the number of log journal files property. */
+    private static final int DEFAULT_JOURNAL_SEGMENTS = 8;
     /** The log. */
     private Log m_log;
     /** The LoggerAdmin. */
     private LoggerAdminImpl m_loggerAdmin;
     /** The Configuration listener. */
     private ConfigurationListenerImpl m_configurationListener;
+    /** The log journal, if enabled. */
+    private LogJournal m_journal;
 
     /**
      * Returns the maximum size for the log.
@@ -122,6 +166,80 @@ public final class Activator implements BundleActivator
         return storeDebug;
     }
 
+    /**
+     * Returns the maximum number of entries waiting for a log listener.
+     * @param context the bundle context (used to look up a property)
+     * @return the size of the log listener buffer, not positive if unbounded
+     */
+    private static int getListenerBufferSize(final BundleContext context)
+    {
+        int bufferSize = DEFAULT_LISTENER_BUFFER_SIZE;
+
+        String bufferSizePropValue = context.getProperty(LISTENER_BUFFER_SIZE_PROPERTY);
+        if (bufferSizePropValue != null)
+        {
+            try
+            {
+                bufferSize = Integer.parseInt(bufferSizePropValue);
+            }
+            catch (NumberFormatException e)
+            {
+                // the property value is invalid - ignore
+            }
+        }
+
+        return bufferSize;
+    }
+
+    /**
+     * Returns the directory of the log journal.
+     * @param context the bundle context (used to look up a property)
+     * @return the directory or <code>null</code> if the journal is disabled
+     *         or the framework has no file system support
+     */
+    private static File getJournalDir(final BundleContext context)
+    {
+        if (!Boolean.parseBoolean(context.getProperty(JOURNAL_PROPERTY)))
+        {
+            return null;
+        }
+
+        String dirPropValue = context.getProperty(JOURNAL_DIR_PROPERTY);
+        if (dirPropValue != null)
+        {
+            return new File(dirPropValue);
+        }
+
+        return context.getDataFile("journal");
+    }
+
+    /**
+     * Returns a positive integer property.
+     * @param context the bundle context (used to look up a property)
+     * @param name the name of the property
+     * @param defaultValue the value if the property is missing or invalid
+     * @return the value of the property
+     */
+    private static int getPositiveInt(final BundleContext context, final String name, final int defaultValue)
+    {
+        int value = defaultValue;
+
+        String propValue = context.getProperty(name);
+        if (propValue != null)
+        {
+            try
+            {
+                value = Integer.parseInt(propValue);
+            }
+            catch (NumberFormatException e)
+            {
+                // the property value is invalid - ignore
+            }
+        }
+
+        return value > 0 ? value : defaultValue;
+    }
+
     /**
      * Return the default log level.
      * @param context
@@ -141,14 +259,44 @@ public final class Activator implements BundleActivator
     public void start(final BundleContext context) throws Exception
     {
         // create the log instance
-        m_log = new Log(getMaxSize(context), getStoreDebug(context));
+        m_log = new Log(getMaxSize(context), getStoreDebug(context), getListenerBufferSize(context));
         // create the LoggerAdmin instance
         m_loggerAdmin = new LoggerAdminImpl(getDefaultLogLevel(context), m_log);
 
+        // restore the historic log and write new entries to the journal
+        File journalDir = getJournalDir(context);
+        if (journalDir != null)
+        {
+            int maxSize = getMaxSize(context);
+            List<LogEntry> entries = LogJournal.replay(journalDir,
+                maxSize == -1 ? Integer.MAX_VALUE : maxSize, context);
+            m_log.restoreEntries(entries);
+            if (!entries.isEmpty())
+            {
+                LogEntryImpl.advanceSequence(entries.get(entries.size() - 1).getSequence() + 1);
+            }
+
+            LogJournal journal = new LogJournal(journalDir,
+                getPositiveInt(context, JOURNAL_SEGMENT_SIZE_PROPERTY, DEFAULT_JOURNAL_SEGMENT_SIZE),
+                getPositiveInt(context, JOURNAL_SEGMENTS_PROPERTY, DEFAULT_JOURNAL_SEGMENTS),
+                getStoreDebug(context));
+            try
+            {
+                journal.open();
+                m_log.setJournal(journal);
+                m_journal = journal;
+            }
+            catch (Exception e)
+            {
+                m_log.log(getClass().getName(), context.getBundle(), null, LogLevel.ERROR, "An error occurred while opening the log journal.", e);
+            }
+        }
+
         // register the listeners
         context.addBundleListener(m_log);
         context.addFrameworkListener(m_log);
         context.addServiceListener(m_log);
+        context.addBundleListener(m_loggerAdmin);
 
         // register the services with the framework
         ServiceRegistration<?> serviceRegistration = context.registerService(
@@ -185,6 +333,12 @@ public final class Activator implements BundleActivator
         }
         // close the log
         m_log.close();
+        // the log does not accept entries anymore and its journal thread
+        // has written all queued entries, so the journal can be closed
+        if (m_journal != null)
+        {
+            m_journal.close();
+        }
     }
 
 }
\ No newline at end of file
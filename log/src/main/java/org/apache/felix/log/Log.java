@@ -18,7 +18,14 @@
  */
 package org.apache.felix.log;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
 import java.util.Enumeration;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
 
 import org.osgi.framework.Bundle;
 import org.osgi.framework.BundleEvent;
@@ -41,18 +48,22 @@ import org.osgi.service.log.LogListener;
  */
 final class Log implements BundleListener, FrameworkListener, ServiceListener
 {
-    /** The first log entry. */
-    private volatile LogNode m_head;
-    /** The last log entry. */
-    private volatile LogNode m_tail;
-    /** The log size. */
-    private volatile int m_size;
-    /** The log listener thread. */
-    private volatile LogListenerThread listenerThread;
-    /** The maximum size for the log. */
-    private final int m_maxSize;
+    /** The historic log if it has a maximum size. */
+    private final LogRingBuffer m_history;
+    /** The historic log if it has no maximum size, most recent first. */
+    private final Deque<LogEntry> m_unboundedHistory;
+    /** The maximum time to wait for the log listeners on close. */
+    private static final long CLOSE_TIMEOUT = TimeUnit.SECONDS.toMillis(5);
+    /** The buffer of entries to deliver to the log listeners if bounded. */
+    private final LogRingBuffer m_listenerBuffer;
+    /** The log listener threads, one per listener. */
+    private final List<LogListenerThread> m_listenerThreads = new CopyOnWriteArrayList<>();
+    /** The id of the next log listener thread. */
+    private int m_nextListenerId;
     /** Whether or not to store debug messages. */
     private final boolean m_storeDebug;
+    /** The thread writing the entries to the journal, if enabled. */
+    private volatile LogListenerThread m_journalThread;
     /** Active flag */
     private volatile boolean active = true;
 
@@ -60,28 +71,79 @@ final class Log implements BundleListener, FrameworkListener, ServiceListener
      * Create a new instance.
      * @param maxSize the maximum size for the log
      * @param storeDebug whether or not to store debug messages
+     * @param listenerBufferSize the maximum number of entries waiting for a log listener,
+     *        if not positive entries are never dropped
      */
-    Log(final int maxSize, final boolean storeDebug)
+    Log(final int maxSize, final boolean storeDebug, final int listenerBufferSize)
     {
-        this.m_maxSize = maxSize;
+        this.m_history = maxSize > 0 ? new LogRingBuffer(maxSize) : null;
+        this.m_unboundedHistory = maxSize == -1 ? new ConcurrentLinkedDeque<LogEntry>() : null;
+        this.m_listenerBuffer = listenerBufferSize > 0 ? new LogRingBuffer(listenerBufferSize) : null;
         this.m_storeDebug = storeDebug;
     }
 
     /**
-     * Close the log.
+     * Close the log.  The log listeners get the pending entries delivered
+     * unless this takes longer than {@link #CLOSE_TIMEOUT}.  The pending
+     * entries of the journal are always written before this method returns.
      */
     synchronized void close()
     {
         active = false;
-        if (listenerThread != null)
+        final LogListenerThread journalThread = m_journalThread;
+        if (journalThread != null)
+        {
+            journalThread.shutdown();
+        }
+        for (LogListenerThread listenerThread : m_listenerThreads)
         {
             listenerThread.shutdown();
-            listenerThread = null;
         }
+        final long deadline = System.currentTimeMillis() + CLOSE_TIMEOUT;
+        for (LogListenerThread listenerThread : m_listenerThreads)
+        {
+            try
+            {
+                listenerThread.join(Math.max(1, deadline - System.currentTimeMillis()));
+            }
+            catch (InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+            }
+            listenerThread.interrupt();
+        }
+        m_listenerThreads.clear();
 
-        m_head = null;
-        m_tail = null;
-        m_size = 0;
+        if (journalThread != null)
+        {
+            // the journal queue is lossless, wait until it is drained
+            boolean interrupted = false;
+            while (journalThread.isAlive())
+            {
+                try
+                {
+                    journalThread.join();
+                }
+                catch (InterruptedException e)
+                {
+                    interrupted = true;
+                }
+            }
+            if (interrupted)
+            {
+                Thread.currentThread().interrupt();
+            }
+            m_journalThread = null;
+        }
+
+        if (m_history != null)
+        {
+            m_history.clear();
+        }
+        if (m_unboundedHistory != null)
+        {
+            m_unboundedHistory.clear();
+        }
     }
 
     void log(
@@ -96,60 +158,99 @@ final class Log implements BundleListener, FrameworkListener, ServiceListener
     }
 
     /**
-     * Adds the entry to the log.
+     * Adds the entry to the log.  This method does not block, concurrent
+     * callers are not serialized.
      * @param entry the entry to add to the log
      */
-    synchronized void addEntry(final LogEntry entry)
+    void addEntry(final LogEntry entry)
     {
         if ( !active )
         {
             return;
         }
-        if (m_maxSize != 0)
+
+        // add the entry to the historic log
+        if (m_storeDebug || entry.getLogLevel() != LogLevel.DEBUG)
         {
-            // add the entry to the historic log
-            if (m_storeDebug || entry.getLogLevel() != LogLevel.DEBUG)
+            if (m_history != null)
             {
-                // create a new node for the entry
-                LogNode node = new LogNode(entry);
-
-                // add to the front of the linked list
-                node.setNextNode(m_head);
-                if (m_head != null)
-                {
-                    m_head.setPreviousNode(node);
-                }
-
-                // and store the node
-                m_head = node;
+                m_history.add(entry);
+            }
+            else if (m_unboundedHistory != null)
+            {
+                m_unboundedHistory.addFirst(entry);
+            }
+        }
 
-                // bump the size of the list
-                ++m_size;
+        // the journal is written by its own thread from an unbounded
+        // queue, so no entry is lost and logging never waits for the disk
+        final LogListenerThread journalThread = m_journalThread;
+        if (journalThread != null)
+        {
+            journalThread.add(entry);
+        }
 
-                // if no tail node - add the node to the tail
-                if (m_tail == null)
+        // notify any listeners
+        if (!m_listenerThreads.isEmpty())
+        {
+            if (m_listenerBuffer != null)
+            {
+                m_listenerBuffer.add(entry);
+                for (LogListenerThread listenerThread : m_listenerThreads)
                 {
-                    m_tail = node;
+                    listenerThread.signal();
                 }
             }
-
-            // ensure the historic log doesn't grow beyond a certain size
-            if (m_maxSize != -1)
+            else
             {
-                if (m_size > m_maxSize)
+                for (LogListenerThread listenerThread : m_listenerThreads)
                 {
-                    LogNode last = m_tail.getPreviousNode();
-                    last.setNextNode(null);
-                    m_tail = last;
-                    --m_size;
+                    listenerThread.add(entry);
                 }
             }
         }
+    }
 
-        // notify any listeners
-        if (listenerThread != null)
+    /**
+     * Adds entries from a previous run to the historic log.  The entries
+     * are not delivered to the log listeners.
+     * @param entries the entries, oldest first
+     */
+    void restoreEntries(final List<LogEntry> entries)
+    {
+        for (LogEntry entry : entries)
+        {
+            if (m_history != null)
+            {
+                m_history.add(entry);
+            }
+            else if (m_unboundedHistory != null)
+            {
+                m_unboundedHistory.addFirst(entry);
+            }
+        }
+    }
+
+    /**
+     * Set the journal every new entry is written to.  The entries are
+     * written by a dedicated thread, which is stopped once all pending
+     * entries are written when the log is closed.
+     * @param journal the journal
+     */
+    synchronized void setJournal(final LogJournal journal)
+    {
+        if ( active && m_journalThread == null )
         {
-            listenerThread.addEntry(entry);
+            LogListenerThread journalThread = new LogListenerThread(this, null, new LogListener()
+            {
+                @Override
+                public void logged(final LogEntry entry)
+                {
+                    journal.write(entry);
+                }
+            }, "FelixLogJournal");
+            journalThread.start();
+            m_journalThread = journalThread;
         }
     }
 
@@ -161,14 +262,10 @@ final class Log implements BundleListener, FrameworkListener, ServiceListener
     {
         if ( active )
         {
-            if (listenerThread == null)
-            {
-                // create a new listener thread if necessary:
-                // the listener thread only runs if there are any registered listeners
-                listenerThread = new LogListenerThread();
-                listenerThread.start();
-            }
-            listenerThread.addListener(listener);
+            // the listener thread only runs as long as the listener is registered
+            LogListenerThread listenerThread = new LogListenerThread(this, m_listenerBuffer, listener, m_nextListenerId++);
+            listenerThread.start();
+            m_listenerThreads.add(listenerThread);
         }
     }
 
@@ -178,26 +275,42 @@ final class Log implements BundleListener, FrameworkListener, ServiceListener
      */
     synchronized void removeListener(final LogListener listener)
     {
-        if (listenerThread != null)
+        for (LogListenerThread listenerThread : m_listenerThreads)
         {
-            listenerThread.removeListener(listener);
-
-            // shutdown the thread if there are no listeners
-            if (listenerThread.getListenerCount() == 0)
+            if (listenerThread.getListener().equals(listener))
             {
+                m_listenerThreads.remove(listenerThread);
                 listenerThread.shutdown();
-                listenerThread = null;
+                break;
             }
         }
     }
 
+    /**
+     * Returns the threads delivering to the log listeners.  Each thread
+     * provides the delivery statistics of its listener.
+     * @return the log listener threads
+     */
+    List<LogListenerThread> getListenerThreads()
+    {
+        return Collections.unmodifiableList(m_listenerThreads);
+    }
+
     /**
      * Returns an enumeration of all the entries in the log most recent first.
      * @return an enumeration of all the entries in the log most recent first
      */
-    synchronized Enumeration<LogEntry> getEntries()
+    Enumeration<LogEntry> getEntries()
     {
-        return new LogNodeEnumeration(m_head, m_tail);
+        if (m_history != null)
+        {
+            return Collections.enumeration(m_history.getEntries());
+        }
+        if (m_unboundedHistory != null)
+        {
+            return Collections.enumeration(new ArrayList<>(m_unboundedHistory));
+        }
+        return Collections.emptyEnumeration();
     }
 
     /** The messages returned for the framework events. */
@@ -138,6 +138,44 @@ final class LogEntryImpl implements LogEntry
         this.m_stackTraceElement = stackTraceElement;
     }
 
+    /**
+     * Create an instance restored from the log journal.
+     */
+    LogEntryImpl(
+        final String name,
+        final Bundle bundle,
+        final LogLevel level,
+        final int legacyLevel,
+        final String message,
+        final Throwable exception,
+        final long time,
+        final long sequence,
+        final String threadInfo,
+        final StackTraceElement stackTraceElement)
+    {
+        this.m_name = name;
+        this.m_bundle = bundle;
+        this.m_exception = exception;
+        this.m_level = level;
+        this.m_legacyLevel = legacyLevel;
+        this.m_message = message;
+        this.m_serviceReference = null;
+        this.m_time = time;
+        this.m_sequence = sequence;
+        this.m_threadInfo = threadInfo;
+        this.m_stackTraceElement = stackTraceElement;
+    }
+
+    /**
+     * Ensure new entries get a sequence greater than the ones restored from
+     * the log journal.
+     * @param sequence the next sequence to use at least
+     */
+    static void advanceSequence(final long sequence)
+    {
+        m_sequenceGenerator.accumulateAndGet(sequence, Math::max);
+    }
+
     /**
      * Returns the bundle that created this LogEntry object.
      * @return the bundle that created this LogEntry object;<code>null</code> if no
@@ -253,9 +291,9 @@ final class LogEntryImpl implements LogEntry
     public String toString() {
         if (_toString == null) {
             _toString = m_time + "#" + m_sequence + " [" + m_threadInfo + "] " + m_level +
-                " (" + m_legacyLevel + ") [" + m_bundle.getBundleId() + ":" + m_name + "] " +
-                    m_stackTraceElement.getClassName() + ":" +
-                    m_stackTraceElement.getLineNumber() + " > " + m_message +
+                " (" + m_legacyLevel + ") [" + (m_bundle != null ? m_bundle.getBundleId() : -1) + ":" + m_name + "] " +
+                    (m_stackTraceElement != null ? m_stackTraceElement.getClassName() + ":" +
+                    m_stackTraceElement.getLineNumber() : "?") + " > " + m_message +
                         (m_exception != null ? "\n" + exceptionString(m_exception) : "");
         }
         return _toString;
@@ -57,6 +57,44 @@ final class LogException extends Exception
         }
     }
 
+    /**
+     * Create a new instance restored from the log journal.
+     * @param className the class name of the original exception
+     * @param message the message of the original exception
+     * @param stackTrace the stack trace of the original exception
+     * @param cause the restored cause or <code>null</code>
+     */
+    LogException(final String className, final String message,
+        final StackTraceElement[] stackTrace, final Throwable cause)
+    {
+        m_className = className;
+        m_message = message;
+        m_localizedMessage = message;
+        setStackTrace(stackTrace);
+        if (cause != null)
+        {
+            initCause(cause);
+        }
+    }
+
+    /**
+     * Returns the class name of the original exception.
+     * @return the class name
+     */
+    String getClassName()
+    {
+        return m_className;
+    }
+
+    /**
+     * Returns the message of the original exception.
+     * @return the message, might be <code>null</code>
+     */
+    String getOriginalMessage()
+    {
+        return m_message;
+    }
+
     /**
      * Returns the message associated with the exception.  The message
      * will be the class name of the original exception followed by the
@@ -0,0 +1,547 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.felix.log;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.osgi.framework.Bundle;
+import org.osgi.framework.BundleContext;
+import org.osgi.service.log.LogEntry;
+import org.osgi.service.log.LogLevel;
+
+/**
+ * Writes the log entries to memory-mapped segment files, so the log history
+ * survives a restart or crash of the framework.
+ * <p>
+ * The {@link Log} queues every entry for a dedicated journal thread, so
+ * neither encoding nor rolling segments delays the logging threads, and
+ * drains the queue when it is closed. A segment starts
+ * with a magic number followed by length prefixed records; a length of zero
+ * marks the end of the segment. Logger names, thread names and the strings
+ * of locations and stack traces are written once per segment and referenced
+ * by their id afterwards. When a segment is full, the next one is started
+ * and the oldest segments beyond the configured number are deleted.
+ */
+final class LogJournal
+{
+    /** The prefix of the segment file names. */
+    private static final String SEGMENT_PREFIX = "felix-log-";
+    /** The suffix of the segment file names. */
+    private static final String SEGMENT_SUFFIX = ".journal";
+    /** The magic number at the start of a segment: "FLJ2". */
+    private static final int MAGIC = 0x464C4A32;
+    /** The record type of a string definition. */
+    private static final byte RECORD_STRING = 1;
+    /** The record type of a log entry. */
+    private static final byte RECORD_ENTRY = 2;
+    /** The maximum number of causes written for an exception. */
+    private static final int MAX_CAUSES = 8;
+
+    /** The directory of the segment files. */
+    private final File m_dir;
+    /** The size of a segment file. */
+    private final int m_segmentSize;
+    /** The number of segment files kept. */
+    private final int m_maxSegments;
+    /** Whether or not to write debug messages. */
+    private final boolean m_storeDebug;
+
+    /** The ids of the strings written to the current segment. */
+    private final Map<String, Integer> m_strings = new HashMap<>();
+    /** The records of the log entry being written. */
+    private ByteBuffer m_records = ByteBuffer.allocate(4096);
+    /** The body of the log entry being written. */
+    private ByteBuffer m_body = ByteBuffer.allocate(4096);
+    /** The current segment. */
+    private MappedByteBuffer m_segment;
+    /** The index of the current segment. */
+    private long m_segmentIndex;
+    /** Whether the journal has been closed. */
+    private boolean m_closed;
+
+    /**
+     * Create a new instance.
+     * @param dir the directory of the segment files
+     * @param segmentSize the size of a segment file
+     * @param maxSegments the number of segment files kept
+     * @param storeDebug whether or not to write debug messages
+     */
+    LogJournal(final File dir, final int segmentSize, final int maxSegments, final boolean storeDebug)
+    {
+        m_dir = dir;
+        m_segmentSize = segmentSize;
+        m_maxSegments = Math.max(1, maxSegments);
+        m_storeDebug = storeDebug;
+    }
+
+    /**
+     * Open the journal.  Writing always starts with a new segment.
+     * @throws IOException if the segment file cannot be created
+     */
+    synchronized void open() throws IOException
+    {
+        if (!m_dir.isDirectory() && !m_dir.mkdirs())
+        {
+            throw new IOException("Cannot create log journal directory " + m_dir);
+        }
+        long[] indexes = getSegmentIndexes(m_dir);
+        m_segmentIndex = indexes.length == 0 ? 0 : indexes[indexes.length - 1];
+        roll();
+    }
+
+    /**
+     * Close the journal.  The current segment is forced to the storage.
+     */
+    synchronized void close()
+    {
+        m_closed = true;
+        if (m_segment != null)
+        {
+            m_segment.force();
+            m_segment = null;
+        }
+    }
+
+    /**
+     * Write a log entry.  Called by the journal thread of the log.
+     * @param entry the log entry
+     */
+    synchronized void write(final LogEntry entry)
+    {
+        if (m_closed || (!m_storeDebug && entry.getLogLevel() == LogLevel.DEBUG))
+        {
+            return;
+        }
+        try
+        {
+            encode(entry);
+            if (m_records.position() > m_segment.remaining() - 4)
+            {
+                // the string ids are per segment, encode again after rolling
+                roll();
+                encode(entry);
+                if (m_records.position() > m_segment.remaining() - 4)
+                {
+                    // nothing has been written to the new segment
+                    m_strings.clear();
+                    System.err.println("Log entry " + entry.getSequence() + " is too large for the log journal");
+                    return;
+                }
+            }
+            // write the length of the first record last, so a reader never
+            // sees a partially written entry after a crash
+            m_records.flip();
+            final int start = m_segment.position();
+            final int length = m_records.getInt();
+            m_segment.position(start + 4);
+            m_segment.put(m_records);
+            m_segment.putInt(start, length);
+        }
+        catch (IOException e)
+        {
+            System.err.println("Failed to write to the log journal, closing it: " + e.getMessage());
+            close();
+        }
+    }
+
+    /**
+     * Start a new segment and delete the oldest segments beyond the limit.
+     */
+    private void roll() throws IOException
+    {
+        if (m_segment != null)
+        {
+            m_segment.force();
+        }
+        m_segmentIndex++;
+        File file = getSegmentFile(m_dir, m_segmentIndex);
+        try (FileChannel channel = FileChannel.open(file.toPath(),
+            StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE))
+        {
+            // the mapping stays valid after closing the channel
+            m_segment = channel.map(FileChannel.MapMode.READ_WRITE, 0, m_segmentSize);
+        }
+        m_segment.putInt(MAGIC);
+        m_strings.clear();
+
+        long[] indexes = getSegmentIndexes(m_dir);
+        for (int i = 0; i < indexes.length - m_maxSegments; i++)
+        {
+            // deleting might fail while an old segment is still mapped,
+            // it is deleted with the next segment then
+            getSegmentFile(m_dir, indexes[i]).delete();
+        }
+    }
+
+    /**
+     * Encode the records for an entry: the definitions of strings not
+     * written to the current segment yet followed by the entry itself.
+     */
+    private void encode(final LogEntry entry)
+    {
+        m_records.clear();
+        m_body.clear();
+
+        putLong(entry.getSequence());
+        putLong(entry.getTime());
+        // bundle ids are not stable if the framework cache is cleaned,
+        // the location identifies the bundle across restarts
+        Bundle bundle = entry.getBundle();
+        putInt(intern(bundle != null ? bundle.getLocation() : null));
+        putByte((byte) entry.getLogLevel().ordinal());
+        putInt(entry.getLevel());
+        putInt(intern(entry.getLoggerName()));
+        putInt(intern(entry.getThreadInfo()));
+        putString(entry.getMessage());
+        putLocation(entry.getLocation());
+
+        Throwable exception = entry.getException();
+        int causes = 0;
+        for (Throwable t = exception; t != null && causes < MAX_CAUSES; t = t.getCause())
+        {
+            causes++;
+        }
+        putByte((byte) causes);
+        for (Throwable t = exception; causes-- > 0; t = t.getCause())
+        {
+            if (t instanceof LogException)
+            {
+                putInt(intern(((LogException) t).getClassName()));
+                putString(((LogException) t).getOriginalMessage());
+            }
+            else
+            {
+                putInt(intern(t.getClass().getName()));
+                putString(t.getMessage());
+            }
+            StackTraceElement[] stackTrace = t.getStackTrace();
+            putInt(stackTrace.length);
+            for (StackTraceElement element : stackTrace)
+            {
+                putLocation(element);
+            }
+        }
+
+        m_body.flip();
+        ensureRecords(5 + m_body.remaining());
+        m_records.putInt(1 + m_body.remaining());
+        m_records.put(RECORD_ENTRY);
+        m_records.put(m_body);
+    }
+
+    /**
+     * Returns the id of a string in the current segment, adding the record
+     * defining the string if necessary.
+     */
+    private int intern(final String value)
+    {
+        if (value == null)
+        {
+            return -1;
+        }
+        Integer id = m_strings.get(value);
+        if (id == null)
+        {
+            id = m_strings.size();
+            m_strings.put(value, id);
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            ensureRecords(13 + bytes.length);
+            m_records.putInt(9 + bytes.length);
+            m_records.put(RECORD_STRING);
+            m_records.putInt(id);
+            m_records.putInt(bytes.length);
+            m_records.put(bytes);
+        }
+        return id;
+    }
+
+    private void putLocation(final StackTraceElement element)
+    {
+        if (element == null)
+        {
+            putByte((byte) 0);
+            return;
+        }
+        putByte((byte) 1);
+        putInt(intern(element.getClassName()));
+        putInt(intern(element.getMethodName()));
+        putInt(intern(element.getFileName()));
+        putInt(element.getLineNumber());
+    }
+
+    private void putString(final String value)
+    {
+        if (value == null)
+        {
+            putInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        putInt(bytes.length);
+        ensureBody(bytes.length);
+        m_body.put(bytes);
+    }
+
+    private void putByte(final byte value)
+    {
+        ensureBody(1);
+        m_body.put(value);
+    }
+
+    private void putInt(final int value)
+    {
+        ensureBody(4);
+        m_body.putInt(value);
+    }
+
+    private void putLong(final long value)
+    {
+        ensureBody(8);
+        m_body.putLong(value);
+    }
+
+    private void ensureBody(final int size)
+    {
+        m_body = ensure(m_body, size);
+    }
+
+    private void ensureRecords(final int size)
+    {
+        m_records = ensure(m_records, size);
+    }
+
+    private static ByteBuffer ensure(final ByteBuffer buffer, final int size)
+    {
+        if (buffer.remaining() >= size)
+        {
+            return buffer;
+        }
+        ByteBuffer larger = ByteBuffer.allocate(Math.max(buffer.capacity() * 2, buffer.position() + size));
+        buffer.flip();
+        larger.put(buffer);
+        return larger;
+    }
+
+    /**
+     * Read the most recent entries from the journal.
+     * @param dir the directory of the segment files
+     * @param max the maximum number of entries to return
+     * @param context the bundle context used to look up the bundles of the
+     *        entries, might be <code>null</code>
+     * @return the entries, oldest first
+     */
+    static List<LogEntry> replay(final File dir, final int max, final BundleContext context)
+    {
+        Deque<LogEntry> entries = new ArrayDeque<>();
+        if (max <= 0)
+        {
+            return new ArrayList<>(entries);
+        }
+        for (long index : getSegmentIndexes(dir))
+        {
+            ByteBuffer segment;
+            try
+            {
+                segment = ByteBuffer.wrap(Files.readAllBytes(getSegmentFile(dir, index).toPath()));
+            }
+            catch (IOException e)
+            {
+                System.err.println("Failed to read log journal segment " + index + ": " + e.getMessage());
+                continue;
+            }
+            try
+            {
+                readSegment(segment, entries, max, context);
+            }
+            catch (BufferUnderflowException | IllegalArgumentException | IndexOutOfBoundsException e)
+            {
+                // a corrupt record, keep what has been read so far
+                System.err.println("Log journal segment " + index + " is corrupt");
+            }
+        }
+        return new ArrayList<>(entries);
+    }
+
+    private static void readSegment(final ByteBuffer segment, final Deque<LogEntry> entries,
+        final int max, final BundleContext context)
+    {
+        if (segment.remaining() < 4 || segment.getInt() != MAGIC)
+        {
+            return;
+        }
+        List<String> strings = new ArrayList<>();
+        while (segment.remaining() >= 4)
+        {
+            int length = segment.getInt();
+            if (length <= 0 || length > segment.remaining())
+            {
+                // the end of the segment
+                return;
+            }
+            int end = segment.position() + length;
+            byte type = segment.get();
+            if (type == RECORD_STRING)
+            {
+                int id = segment.getInt();
+                String value = getString(segment);
+                if (id != strings.size())
+                {
+                    throw new IllegalArgumentException("Unexpected string id " + id);
+                }
+                strings.add(value);
+            }
+            else if (type == RECORD_ENTRY)
+            {
+                entries.addLast(readEntry(segment, strings, context));
+                if (entries.size() > max)
+                {
+                    entries.removeFirst();
+                }
+            }
+            segment.position(end);
+        }
+    }
+
+    private static LogEntry readEntry(final ByteBuffer segment, final List<String> strings,
+        final BundleContext context)
+    {
+        long sequence = segment.getLong();
+        long time = segment.getLong();
+        String bundleLocation = getString(strings, segment.getInt());
+        LogLevel level = LogLevel.values()[segment.get()];
+        int legacyLevel = segment.getInt();
+        String name = getString(strings, segment.getInt());
+        String threadInfo = getString(strings, segment.getInt());
+        String message = getString(segment);
+        StackTraceElement location = getLocation(segment, strings);
+
+        int causes = segment.get();
+        String[] classNames = new String[causes];
+        String[] messages = new String[causes];
+        StackTraceElement[][] stackTraces = new StackTraceElement[causes][];
+        for (int i = 0; i < causes; i++)
+        {
+            classNames[i] = getString(strings, segment.getInt());
+            messages[i] = getString(segment);
+            stackTraces[i] = new StackTraceElement[segment.getInt()];
+            for (int j = 0; j < stackTraces[i].length; j++)
+            {
+                stackTraces[i][j] = getLocation(segment, strings);
+            }
+        }
+        Throwable exception = null;
+        for (int i = causes - 1; i >= 0; i--)
+        {
+            exception = new LogException(classNames[i], messages[i], stackTraces[i], exception);
+        }
+
+        Bundle bundle = (context != null && bundleLocation != null) ? context.getBundle(bundleLocation) : null;
+        return new LogEntryImpl(name, bundle, level, legacyLevel, message, exception,
+            time, sequence, threadInfo, location);
+    }
+
+    private static StackTraceElement getLocation(final ByteBuffer segment, final List<String> strings)
+    {
+        if (segment.get() == 0)
+        {
+            return null;
+        }
+        String className = getString(strings, segment.getInt());
+        String methodName = getString(strings, segment.getInt());
+        String fileName = getString(strings, segment.getInt());
+        if (className == null || methodName == null)
+        {
+            throw new IllegalArgumentException("Incomplete stack trace element");
+        }
+        return new StackTraceElement(className, methodName, fileName, segment.getInt());
+    }
+
+    private static String getString(final List<String> strings, final int id)
+    {
+        return id < 0 ? null : strings.get(id);
+    }
+
+    private static String getString(final ByteBuffer segment)
+    {
+        int length = segment.getInt();
+        if (length < 0)
+        {
+            return null;
+        }
+        if (length > segment.remaining())
+        {
+            throw new IllegalArgumentException("Invalid string length " + length);
+        }
+        String value = new String(segment.array(), segment.position(), length, StandardCharsets.UTF_8);
+        segment.position(segment.position() + length);
+        return value;
+    }
+
+    private static File getSegmentFile(final File dir, final long index)
+    {
+        return new File(dir, String.format("%s%016d%s", SEGMENT_PREFIX, index, SEGMENT_SUFFIX));
+    }
+
+    /**
+     * Returns the indexes of the segment files in ascending order.
+     */
+    private static long[] getSegmentIndexes(final File dir)
+    {
+        String[] names = dir.list();
+        if (names == null)
+        {
+            return new long[0];
+        }
+        long[] indexes = new long[names.length];
+        int count = 0;
+        for (String name : names)
+        {
+            if (name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX))
+            {
+                try
+                {
+                    indexes[count++] = Long.parseLong(
+                        name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+                }
+                catch (NumberFormatException e)
+                {
+                    count--;
+                }
+            }
+        }
+        indexes = Arrays.copyOf(indexes, count);
+        Arrays.sort(indexes);
+        return indexes;
+    }
+}
@@ -18,155 +18,307 @@
  */
 package org.apache.felix.log;
 
-import java.util.ArrayList;
-import java.util.Iterator;
-import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
 
 import org.osgi.service.log.LogEntry;
+import org.osgi.service.log.LogLevel;
 import org.osgi.service.log.LogListener;
 
 /**
  * This class is responsible for asynchronously delivering log messages to
- * any {@link LogListener} subscribers.  A subscriber can be added using the
+ * a {@link LogListener} subscriber.  A subscriber can be added using the
  * {@link org.osgi.service.log.LogReaderService#addLogListener(LogListener)}
  * method.
+ * <p>
+ * Each listener has its own thread, so a slow listener does not delay the
+ * others and logging never waits for a listener.  By default the entries
+ * are queued for each listener and none is lost.  If the log is configured
+ * with a listener buffer size, the thread reads the entries from the
+ * dispatch buffer shared by all listeners instead.  If a listener falls
+ * behind by more than the capacity of the buffer, the overwritten entries
+ * are dropped for this listener and reported to the log.
  */
 final class LogListenerThread extends Thread
 {
-    // The list of entries waiting to be delivered to the log listeners.
-    private final List<LogEntry> m_entriesToDeliver = new ArrayList<>();
-    // The list of listeners.
-    private final List<LogListener> m_listeners = new ArrayList<>();
+    // The minimum time between two reports of dropped entries.
+    private static final long REPORT_INTERVAL = TimeUnit.SECONDS.toMillis(10);
+    // The log the dropped entries are reported to.
+    private final Log m_log;
+    // The buffer holding the entries to deliver, if bounded.
+    private final LogRingBuffer m_buffer;
+    // The entries to deliver, if unbounded.
+    private final Queue<LogEntry> m_queue;
+    // The number of queued entries.
+    private final AtomicLong m_queued;
+    // The listener.
+    private final LogListener m_listener;
+    // The sequence of the next entry to deliver.
+    private long m_cursor;
+    // Whether the thread waits for new entries.
+    private volatile boolean m_waiting;
+    // Whether the thread delivers the pending entries and stops.
+    private volatile boolean m_stopping;
+    // The sequence of the first entry not delivered anymore once stopping.
+    private volatile long m_stopSequence = Long.MAX_VALUE;
+    // The number of delivered entries.
+    private volatile long m_delivered;
+    // The number of dropped entries.
+    private volatile long m_dropped;
+    // The maximum number of entries waiting for the listener.
+    private volatile long m_maxLag;
+    // The number of dropped entries not reported yet.
+    private long m_unreportedDrops;
+    // The time of the last report of dropped entries.
+    private long m_lastReport;
 
-    LogListenerThread() {
-        super("FelixLogListener");
+    /**
+     * Create a new instance delivering the entries added from now on.
+     * @param log the log the dropped entries are reported to
+     * @param buffer the buffer holding the entries to deliver or
+     *        <code>null</code> to queue the entries with {@link #add(LogEntry)}
+     * @param listener the listener to deliver to
+     * @param id the id used in the thread name
+     */
+    LogListenerThread(final Log log, final LogRingBuffer buffer, final LogListener listener, final int id)
+    {
+        this(log, buffer, listener, "FelixLogListener-" + id);
     }
 
     /**
-     * Add an entry to the list of messages to deliver.
-     * @param entry the log entry to deliver
+     * Create a new instance delivering the entries added from now on.
+     * @param log the log the dropped entries are reported to
+     * @param buffer the buffer holding the entries to deliver or
+     *        <code>null</code> to queue the entries with {@link #add(LogEntry)}
+     * @param listener the listener to deliver to
+     * @param name the thread name
      */
-    void addEntry(final LogEntry entry)
+    LogListenerThread(final Log log, final LogRingBuffer buffer, final LogListener listener, final String name)
     {
-        synchronized (m_entriesToDeliver)
-        {
-            m_entriesToDeliver.add(entry);
-            m_entriesToDeliver.notifyAll();
-        }
+        super(name);
+        setDaemon(true);
+        m_log = log;
+        m_buffer = buffer;
+        m_queue = buffer == null ? new ConcurrentLinkedQueue<LogEntry>() : null;
+        m_queued = buffer == null ? new AtomicLong() : null;
+        m_listener = listener;
+        m_cursor = buffer == null ? 0 : buffer.getNextSequence();
     }
 
     /**
-     * Add a listener to the list of listeners that are subscribed.
-     * @param listener the listener to add to the list of subscribed listeners
+     * Returns the listener.
+     * @return the listener
      */
-    void addListener(final LogListener listener)
+    LogListener getListener()
     {
-        synchronized (m_listeners)
-        {
-            m_listeners.add(listener);
-        }
+        return m_listener;
     }
 
     /**
-     * Remove a listener from the list of listeners that are subscribed.
-     * @param listener the listener to remove from the list of subscribed listeners
+     * Returns the number of entries delivered to the listener.
+     * @return the number of delivered entries
      */
-    void removeListener(final LogListener listener)
+    long getDeliveredCount()
     {
-        synchronized (m_listeners)
-        {
-            m_listeners.remove(listener);
-        }
+        return m_delivered;
+    }
+
+    /**
+     * Returns the number of entries dropped because the listener fell
+     * behind by more than the capacity of the buffer.
+     * @return the number of dropped entries
+     */
+    long getDroppedCount()
+    {
+        return m_dropped;
+    }
+
+    /**
+     * Returns the maximum number of entries which were waiting to be
+     * delivered to the listener.
+     * @return the maximum lag
+     */
+    long getMaxLag()
+    {
+        return m_maxLag;
     }
 
     /**
-     * Returns the number of listeners that are currently registered.
-     * @return the number of listeners that are currently registered
+     * Queue an entry for delivery.  Only used if the thread has no buffer.
+     * @param entry the entry to deliver
      */
-    int getListenerCount()
+    void add(final LogEntry entry)
     {
-        synchronized (m_listeners)
+        m_queue.offer(entry);
+        m_queued.incrementAndGet();
+        signal();
+    }
+
+    /**
+     * Wake the thread up if it waits for new entries.  Called after an
+     * entry has been added.
+     */
+    void signal()
+    {
+        if (m_waiting)
         {
-            return m_listeners.size();
+            LockSupport.unpark(this);
         }
     }
 
     /**
-     * Stop the thread.  This will happen asynchronously.
+     * Stop the thread after the entries added so far have been delivered.
+     * This will happen asynchronously.
      */
     void shutdown()
     {
-        synchronized (m_entriesToDeliver)
+        if (m_buffer != null)
         {
-            interrupt();
+            m_stopSequence = m_buffer.getNextSequence();
         }
+        m_stopping = true;
+        LockSupport.unpark(this);
     }
 
     /**
      * The main method of the thread: waits for new messages to be receieved
-     * and then delivers them to any registered log listeners.
+     * and then delivers them to the log listener.
      */
     @Override
     public void run()
     {
         while (!isInterrupted())
         {
-            List<LogEntry> entriesToDeliver = new ArrayList<>();
-            synchronized (m_entriesToDeliver)
+            final boolean stopping = m_stopping;
+            if (m_buffer != null ? deliverFromBuffer() : deliverFromQueue())
             {
-                if (m_entriesToDeliver.isEmpty())
-                {
-                    try
-                    {
-                        m_entriesToDeliver.wait();
-                    }
-                    catch (InterruptedException e)
-                    {
-                        // the interrupt-flag is cleared; so, let's play nice and
-                        // interrupt this thread again to stop it...
-                        interrupt();
-                    }
-                }
-                else
-                {
-                    // Copy all current entries and deliver them in a single go...
-                    entriesToDeliver.addAll(m_entriesToDeliver);
-                    m_entriesToDeliver.clear();
-                }
+                continue;
+            }
+            if (stopping)
+            {
+                break;
             }
 
-            if (!entriesToDeliver.isEmpty())
+            m_waiting = true;
+            if (!hasPending() && !m_stopping)
             {
-                // Take a snapshot of all current listeners and deliver all
-                // pending messages to them...
-                List<LogListener> listeners;
-                synchronized (m_listeners)
-                {
-                    listeners = new ArrayList<>(m_listeners);
-                }
-
-                Iterator<LogEntry> entriesIt = entriesToDeliver.iterator();
-                while (entriesIt.hasNext())
-                {
-                    LogEntry entry = entriesIt.next();
-
-                    Iterator<LogListener> listenerIt = listeners.iterator();
-                    while (listenerIt.hasNext())
-                    {
-                        LogListener listener = listenerIt.next();
-
-                        try
-                        {
-                            listener.logged(entry);
-                        }
-                        catch (Throwable t)
-                        {
-                            System.err.println("Logger failed to log with " + t.getMessage());
-                            t.printStackTrace(System.err);
-                        }
-                    }
-                }
+                LockSupport.park(this);
             }
+            m_waiting = false;
+        }
+        reportDrops();
+    }
+
+    private boolean hasPending()
+    {
+        if (m_buffer != null)
+        {
+            return m_cursor < Math.min(m_buffer.getNextSequence(), m_stopSequence);
+        }
+        return !m_queue.isEmpty();
+    }
+
+    /**
+     * Deliver the next entry of the buffer.
+     * @return <code>false</code> if there is no entry to deliver
+     */
+    private boolean deliverFromBuffer()
+    {
+        final long head = m_buffer.getNextSequence();
+        final long next = Math.min(head, m_stopSequence);
+        if (m_cursor >= next)
+        {
+            return false;
+        }
+
+        final long lag = head - m_cursor;
+        if (lag > m_maxLag)
+        {
+            m_maxLag = lag;
+        }
+        if (lag > m_buffer.getCapacity())
+        {
+            // the oldest entries have been overwritten already
+            final long cursor = Math.min(head - m_buffer.getCapacity(), next);
+            m_dropped += cursor - m_cursor;
+            m_unreportedDrops += cursor - m_cursor;
+            m_cursor = cursor;
+            if (System.currentTimeMillis() - m_lastReport >= REPORT_INTERVAL)
+            {
+                reportDrops();
+            }
+            return true;
+        }
+
+        final LogRingBuffer.Slot slot = m_buffer.getSlot(m_cursor);
+        if (slot == null || slot.m_sequence < m_cursor)
+        {
+            // claimed but not published yet
+            Thread.yield();
+            return true;
+        }
+        if (slot.m_sequence > m_cursor)
+        {
+            // overwritten, skipped with the next lag check
+            return true;
+        }
+
+        ++m_cursor;
+        deliver(slot.m_entry);
+        return true;
+    }
+
+    /**
+     * Deliver the next queued entry.
+     * @return <code>false</code> if there is no entry to deliver
+     */
+    private boolean deliverFromQueue()
+    {
+        final LogEntry entry = m_queue.poll();
+        if (entry == null)
+        {
+            return false;
+        }
+
+        final long lag = m_queued.getAndDecrement();
+        if (lag > m_maxLag)
+        {
+            m_maxLag = lag;
+        }
+        deliver(entry);
+        return true;
+    }
+
+    /**
+     * Report the entries dropped since the last report to the log.
+     */
+    private void reportDrops()
+    {
+        if (m_unreportedDrops > 0)
+        {
+            m_log.log("org.apache.felix.log", null, null, LogLevel.WARN,
+                "Log listener " + m_listener + " is too slow, dropped " + m_unreportedDrops
+                + " log entries (delivered=" + m_delivered + ", dropped=" + m_dropped
+                + ", maxLag=" + m_maxLag + ")", null);
+            m_unreportedDrops = 0;
+            m_lastReport = System.currentTimeMillis();
+        }
+    }
+
+    private void deliver(final LogEntry entry)
+    {
+        try
+        {
+            m_listener.logged(entry);
+        }
+        catch (Throwable t)
+        {
+            System.err.println("Logger failed to log with " + t.getMessage());
+            t.printStackTrace(System.err);
         }
+        ++m_delivered;
     }
-}
\ No newline at end of file
+}
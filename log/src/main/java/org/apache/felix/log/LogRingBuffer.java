@@ -0,0 +1,143 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.felix.log;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import org.osgi.service.log.LogEntry;
+
+/**
+ * A lock-free ring buffer of log entries with a fixed capacity.
+ * <p>
+ * Writers claim a sequence number and publish the entry in the slot for
+ * that sequence, overwriting the entry of the sequence one capacity
+ * earlier. Readers compare the sequence of a slot with the expected one,
+ * so they never return an entry which has not been published yet or which
+ * has already been overwritten.
+ */
+final class LogRingBuffer
+{
+    /** The slots, indexed by sequence modulo capacity. */
+    private final AtomicReferenceArray<Slot> m_slots;
+    /** The capacity. */
+    private final int m_capacity;
+    /** The next sequence to claim. */
+    private final AtomicLong m_next = new AtomicLong();
+
+    /**
+     * Create a new instance.
+     * @param capacity the number of entries kept
+     */
+    LogRingBuffer(final int capacity)
+    {
+        m_capacity = capacity;
+        m_slots = new AtomicReferenceArray<>(capacity);
+    }
+
+    /**
+     * Returns the number of entries kept.
+     * @return the capacity
+     */
+    int getCapacity()
+    {
+        return m_capacity;
+    }
+
+    /**
+     * Adds an entry, overwriting the oldest entry if the buffer is full.
+     * @param entry the entry to add
+     */
+    void add(final LogEntry entry)
+    {
+        final long sequence = m_next.getAndIncrement();
+        m_slots.set((int) (sequence % m_capacity), new Slot(sequence, entry));
+    }
+
+    /**
+     * Returns the sequence the next entry gets. All lower sequences have
+     * been claimed, but might not have been published yet.
+     * @return the next sequence
+     */
+    long getNextSequence()
+    {
+        return m_next.get();
+    }
+
+    /**
+     * Returns the slot for a sequence.
+     * @param sequence the sequence
+     * @return the slot, which holds a different sequence if the entry has
+     *         not been published yet or has been overwritten; or <code>null</code>
+     */
+    Slot getSlot(final long sequence)
+    {
+        return m_slots.get((int) (sequence % m_capacity));
+    }
+
+    /**
+     * Returns the published entries most recent first.
+     * @return the entries
+     */
+    List<LogEntry> getEntries()
+    {
+        final long last = m_next.get() - 1;
+        final long first = Math.max(0, last - m_capacity + 1);
+        final List<LogEntry> entries = new ArrayList<>((int) (last - first + 1));
+        for (long sequence = last; sequence >= first; --sequence)
+        {
+            final Slot slot = getSlot(sequence);
+            if (slot != null && slot.m_sequence == sequence)
+            {
+                entries.add(slot.m_entry);
+            }
+        }
+        return entries;
+    }
+
+    /**
+     * Removes all entries.
+     */
+    void clear()
+    {
+        for (int i = 0; i < m_capacity; ++i)
+        {
+            m_slots.set(i, null);
+        }
+    }
+
+    /**
+     * An entry together with its sequence.
+     */
+    static final class Slot
+    {
+        /** The sequence. */
+        final long m_sequence;
+        /** The log entry. */
+        final LogEntry m_entry;
+
+        Slot(final long sequence, final LogEntry entry)
+        {
+            m_sequence = sequence;
+            m_entry = entry;
+        }
+    }
+}
@@ -23,11 +23,15 @@ import java.util.Dictionary;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.osgi.annotation.bundle.Capability;
 import org.osgi.framework.Bundle;
+import org.osgi.framework.BundleEvent;
+import org.osgi.framework.BundleListener;
 import org.osgi.namespace.service.ServiceNamespace;
 import org.osgi.service.log.FormatterLogger;
+import org.osgi.service.log.LogLevel;
 import org.osgi.service.log.Logger;
 import org.osgi.service.log.admin.LoggerAdmin;
 import org.osgi.service.log.admin.LoggerContext;
@@ -37,12 +41,14 @@ import org.osgi.service.log.admin.LoggerContext;
         attribute = { "objectClass:List<String>=\"org.osgi.service.log.admin.LoggerAdmin\"" },
         uses = { LoggerAdminImpl.class, LoggerAdmin.class }
 )
-public class LoggerAdminImpl implements LoggerAdmin {
+public class LoggerAdminImpl implements LoggerAdmin, BundleListener {
 
     private final Log m_log;
     private final LoggerContext m_rootContext;
     private final ConcurrentMap<String, LoggerContext> m_contexts = new ConcurrentHashMap<>();
     private final ConcurrentMap<LoggerKey, Logger> _loggers = new ConcurrentHashMap<>();
+    private final Object _levelLock = new Object();
+    private final AtomicLong _levelResolutions = new AtomicLong();
 
     public LoggerAdminImpl(final String defaultLogLevelString, final Log log) {
         m_rootContext = new RootLoggerContextImpl(defaultLogLevelString, this);
@@ -80,9 +86,14 @@ public class LoggerAdminImpl implements LoggerAdmin {
         return loggerContext;
     }
 
-    public void keepLoggerContext(String name, LoggerContextImpl loggerContext) {
-        if (loggerContext instanceof RootLoggerContextImpl) return;
-        m_contexts.put(name, loggerContext);
+    /**
+     * Keeps a logger context whose log levels have been set.
+     * @return whether a different logger context was kept for the name
+     *         before
+     */
+    public boolean keepLoggerContext(String name, LoggerContextImpl loggerContext) {
+        if (loggerContext instanceof RootLoggerContextImpl) return false;
+        return m_contexts.put(name, loggerContext) != loggerContext;
     }
 
     @SuppressWarnings("unchecked")
@@ -106,11 +117,67 @@ public class LoggerAdminImpl implements LoggerAdmin {
             if (previous != null) {
                 logger = previous;
             }
+            else {
+                synchronized (_levelLock) {
+                    ((LoggerImpl)logger).updateEffectiveLevel();
+                }
+            }
         }
 
         return logger;
     }
 
+    /**
+     * Re-resolves the effective log level of all loggers.  Called whenever
+     * the log levels of a logger context have changed.
+     */
+    void logLevelsChanged() {
+        synchronized (_levelLock) {
+            for (Logger logger : _loggers.values()) {
+                ((LoggerImpl)logger).updateEffectiveLevel();
+            }
+        }
+    }
+
+    /**
+     * Re-resolves the effective log level of the loggers of an updated
+     * bundle, as the logger context of a bundle depends on its symbolic
+     * name and version.
+     */
+    @Override
+    public void bundleChanged(BundleEvent event) {
+        if (event.getType() != BundleEvent.UPDATED) {
+            return;
+        }
+        long bundleId = event.getBundle().getBundleId();
+        synchronized (_levelLock) {
+            for (Logger logger : _loggers.values()) {
+                LoggerImpl loggerImpl = (LoggerImpl)logger;
+                if (loggerImpl.m_bundle.getBundleId() == bundleId) {
+                    loggerImpl.updateEffectiveLevel();
+                }
+            }
+        }
+    }
+
+    /**
+     * Resolves the effective log level of a logger by walking the logger
+     * name hierarchy of the logger contexts.
+     */
+    LogLevel resolveLogLevel(Bundle bundle, String name) {
+        _levelResolutions.incrementAndGet();
+        return getLoggerContext(bundle, name).getEffectiveLogLevel(name);
+    }
+
+    /**
+     * Returns how often the effective log level of a logger has been
+     * resolved from the logger contexts instead of the cached level.
+     * @return the number of resolutions
+     */
+    public long getLevelResolutionCount() {
+        return _levelResolutions.get();
+    }
+
     LoggerContext getLoggerContext(Bundle bundle, String name) {
         String loggerContextName = String.format(
             "%s|%s|%s", bundle.getSymbolicName(), bundle.getVersion(), bundle.getLocation());
@@ -92,25 +92,23 @@ public class LoggerContextImpl implements LoggerContext {
 
     @Override
     public void setLogLevels(Map<String, LogLevel> logLevels) {
-        _lock.lock();
-        try {
-            _levels = new HashMap<>(logLevels);
-            _loggerAdminImpl.keepLoggerContext(_name, this);
-        }
-        finally {
-            _lock.unlock();
-        }
+        setLevels(new HashMap<>(logLevels));
     }
 
     @Override
     public void clear() {
+        boolean changed;
         _lock.lock();
         try {
+            changed = !isSameLevels(null);
             _levels = null;
         }
         finally {
             _lock.unlock();
         }
+        if (changed) {
+            _loggerAdminImpl.logLevelsChanged();
+        }
     }
 
     @Override
@@ -125,29 +123,51 @@ public class LoggerContextImpl implements LoggerContext {
     }
 
     void updateLoggerContext(Dictionary<String, Object> properties) {
-        _lock.lock();
-        try {
-            _levels = new HashMap<>();
-            if (properties != null) {
-                for (Enumeration<String> enu = properties.keys(); enu.hasMoreElements();) {
-                    String key = enu.nextElement();
-                    Object object = properties.get(key);
-                    if (object instanceof String) {
-                        String value = (String)object;
-                        for (LogLevel level : LogLevel.values()) {
-                            if (level.name().equalsIgnoreCase(value)) {
-                                _levels.put(key, level);
-                                break;
-                            }
+        Map<String, LogLevel> levels = new HashMap<>();
+        if (properties != null) {
+            for (Enumeration<String> enu = properties.keys(); enu.hasMoreElements();) {
+                String key = enu.nextElement();
+                Object object = properties.get(key);
+                if (object instanceof String) {
+                    String value = (String)object;
+                    for (LogLevel level : LogLevel.values()) {
+                        if (level.name().equalsIgnoreCase(value)) {
+                            levels.put(key, level);
+                            break;
                         }
                     }
                 }
             }
-            _loggerAdminImpl.keepLoggerContext(_name, this);
+        }
+        setLevels(levels);
+    }
+
+    /**
+     * Sets the log levels and re-resolves the effective log levels of the
+     * loggers, unless the log levels are the same as before.
+     */
+    private void setLevels(Map<String, LogLevel> levels) {
+        boolean changed;
+        _lock.lock();
+        try {
+            changed = !isSameLevels(levels);
+            _levels = levels;
+            changed |= _loggerAdminImpl.keepLoggerContext(_name, this);
         }
         finally {
             _lock.unlock();
         }
+        if (changed) {
+            _loggerAdminImpl.logLevelsChanged();
+        }
+    }
+
+    // Must be called with the lock held.
+    private boolean isSameLevels(Map<String, LogLevel> levels) {
+        if (_levels == null || _levels.isEmpty()) {
+            return levels == null || levels.isEmpty();
+        }
+        return _levels.equals(levels);
     }
 
     @Override
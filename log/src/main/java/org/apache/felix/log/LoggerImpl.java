@@ -39,6 +39,9 @@ public class LoggerImpl implements Logger {
     protected final Log m_log;
     protected final LoggerAdminImpl m_loggerAdmin;
 
+    /** The effective log level, <code>null</code> until it has been resolved. */
+    private volatile LogLevel m_effectiveLevel;
+
     public LoggerImpl(final String name, final Bundle bundle, final Log log, final LoggerAdminImpl loggerAdmin) {
         m_name = name;
         m_bundle = bundle;
@@ -51,9 +54,30 @@ public class LoggerImpl implements Logger {
         return m_name;
     }
 
+    /**
+     * Returns the effective log level resolved when the logger was created
+     * or the logger contexts have changed last.
+     */
+    LogLevel getEffectiveLevel() {
+        LogLevel level = m_effectiveLevel;
+        if (level == null) {
+            // not resolved yet, the logger is being created
+            level = m_loggerAdmin.resolveLogLevel(m_bundle, m_name);
+        }
+        return level;
+    }
+
+    /**
+     * Resolves the effective log level from the logger contexts.  Called by
+     * the {@link LoggerAdminImpl} while holding its level lock.
+     */
+    void updateEffectiveLevel() {
+        m_effectiveLevel = m_loggerAdmin.resolveLogLevel(m_bundle, m_name);
+    }
+
     @Override
     public boolean isTraceEnabled() {
-        return m_loggerAdmin.getLoggerContext(m_bundle, m_name).getEffectiveLogLevel(m_name).implies(LogLevel.TRACE);
+        return getEffectiveLevel().implies(LogLevel.TRACE);
     }
 
     void trace(String message, ServiceReference<?> serviceReference, Throwable t) {
@@ -93,7 +117,7 @@ public class LoggerImpl implements Logger {
 
     @Override
     public boolean isDebugEnabled() {
-        return m_loggerAdmin.getLoggerContext(m_bundle, m_name).getEffectiveLogLevel(m_name).implies(LogLevel.DEBUG);
+        return getEffectiveLevel().implies(LogLevel.DEBUG);
     }
 
     void debug(String message, ServiceReference<?> serviceReference, Throwable t) {
@@ -133,7 +157,7 @@ public class LoggerImpl implements Logger {
 
     @Override
     public boolean isInfoEnabled() {
-        return m_loggerAdmin.getLoggerContext(m_bundle, m_name).getEffectiveLogLevel(m_name).implies(LogLevel.INFO);
+        return getEffectiveLevel().implies(LogLevel.INFO);
     }
 
     void info(String message, ServiceReference<?> serviceReference, Throwable t) {
@@ -173,7 +197,7 @@ public class LoggerImpl implements Logger {
 
     @Override
     public boolean isWarnEnabled() {
-        return m_loggerAdmin.getLoggerContext(m_bundle, m_name).getEffectiveLogLevel(m_name).implies(LogLevel.WARN);
+        return getEffectiveLevel().implies(LogLevel.WARN);
     }
 
     void warn(String message, ServiceReference<?> serviceReference, Throwable t) {
@@ -213,7 +237,7 @@ public class LoggerImpl implements Logger {
 
     @Override
     public boolean isErrorEnabled() {
-        return m_loggerAdmin.getLoggerContext(m_bundle, m_name).getEffectiveLogLevel(m_name).implies(LogLevel.ERROR);
+        return getEffectiveLevel().implies(LogLevel.ERROR);
     }
 
     void error(String message, ServiceReference<?> serviceReference, Throwable t) {
@@ -0,0 +1,384 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.felix.log;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.osgi.framework.Bundle;
+import org.osgi.framework.BundleContext;
+import org.osgi.service.log.LogEntry;
+import org.osgi.service.log.LogLevel;
+
+public class LogJournalTest
+{
+    private static final String LOCATION = "file:/bundles/test.jar";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private File dir;
+
+    @Before
+    public void setUp() throws IOException
+    {
+        dir = folder.newFolder("journal");
+    }
+
+    @Test
+    public void testRoundTrip() throws IOException
+    {
+        Bundle bundle = mockBundle(5, LOCATION);
+        StackTraceElement location = new StackTraceElement("org.example.Foo", "bar", "Foo.java", 42);
+        Exception exception = new IllegalStateException("outer", new IOException("inner"));
+        LogEntry written = new LogEntryImpl("org.example.Foo", bundle, null, LogLevel.ERROR,
+            "something failed", exception, location);
+
+        LogJournal journal = open(4096, 2, false);
+        journal.write(written);
+        journal.close();
+
+        List<LogEntry> entries = LogJournal.replay(dir, 10, mockContext(bundle));
+        assertEquals(1, entries.size());
+        LogEntry read = entries.get(0);
+        assertEquals(written.getSequence(), read.getSequence());
+        assertEquals(written.getTime(), read.getTime());
+        assertSame(bundle, read.getBundle());
+        assertEquals(LogLevel.ERROR, read.getLogLevel());
+        assertEquals(written.getLevel(), read.getLevel());
+        assertEquals("org.example.Foo", read.getLoggerName());
+        assertEquals(written.getThreadInfo(), read.getThreadInfo());
+        assertEquals("something failed", read.getMessage());
+        assertEquals(location, read.getLocation());
+
+        LogException outer = (LogException) read.getException();
+        assertEquals(IllegalStateException.class.getName(), outer.getClassName());
+        assertEquals("outer", outer.getOriginalMessage());
+        assertEquals(exception.getStackTrace().length, outer.getStackTrace().length);
+        for (int i = 0; i < outer.getStackTrace().length; i++)
+        {
+            StackTraceElement expected = exception.getStackTrace()[i];
+            StackTraceElement actual = outer.getStackTrace()[i];
+            assertEquals(expected.getClassName(), actual.getClassName());
+            assertEquals(expected.getMethodName(), actual.getMethodName());
+            assertEquals(expected.getFileName(), actual.getFileName());
+            assertEquals(expected.getLineNumber(), actual.getLineNumber());
+        }
+        LogException inner = (LogException) outer.getCause();
+        assertEquals(IOException.class.getName(), inner.getClassName());
+        assertEquals("inner", inner.getOriginalMessage());
+        assertNull(inner.getCause());
+    }
+
+    @Test
+    public void testReplayMatchesBundlesByLocation() throws IOException
+    {
+        LogJournal journal = open(4096, 2, false);
+        journal.write(new LogEntryImpl("test", mockBundle(5, LOCATION), null, LogLevel.INFO, "message", null, null));
+        journal.close();
+
+        // after a clean start the bundle got a different id
+        Bundle reinstalled = mockBundle(7, LOCATION);
+        Bundle other = mockBundle(5, "file:/bundles/other.jar");
+        BundleContext context = mockContext(reinstalled, other);
+        when(context.getBundle(5L)).thenReturn(other);
+
+        List<LogEntry> entries = LogJournal.replay(dir, 10, context);
+        assertEquals(1, entries.size());
+        assertSame(reinstalled, entries.get(0).getBundle());
+    }
+
+    @Test
+    public void testReplayKeepsMostRecentEntries() throws IOException
+    {
+        LogJournal journal = open(4096, 2, false);
+        long[] sequences = write(journal, 10);
+        journal.close();
+
+        List<LogEntry> entries = LogJournal.replay(dir, 3, null);
+        assertEquals(3, entries.size());
+        for (int i = 0; i < 3; i++)
+        {
+            assertEquals(sequences[7 + i], entries.get(i).getSequence());
+        }
+    }
+
+    @Test
+    public void testDebugEntriesAreSkipped() throws IOException
+    {
+        LogJournal journal = open(4096, 2, false);
+        journal.write(new LogEntryImpl("test", null, null, LogLevel.DEBUG, "debug", null, null));
+        journal.write(new LogEntryImpl("test", null, null, LogLevel.INFO, "info", null, null));
+        journal.close();
+
+        List<LogEntry> entries = LogJournal.replay(dir, 10, null);
+        assertEquals(1, entries.size());
+        assertEquals("info", entries.get(0).getMessage());
+    }
+
+    @Test
+    public void testSegmentsRoll() throws IOException
+    {
+        LogJournal journal = open(512, 2, false);
+        long[] sequences = write(journal, 100);
+        journal.close();
+
+        assertEquals(2, getSegments().length);
+        List<LogEntry> entries = LogJournal.replay(dir, 1000, null);
+        assertTrue(entries.size() > 0 && entries.size() < 100);
+        for (int i = 0; i < entries.size(); i++)
+        {
+            assertEquals(sequences[100 - entries.size() + i], entries.get(i).getSequence());
+        }
+    }
+
+    @Test
+    public void testReopenStartsNewSegment() throws IOException
+    {
+        LogJournal journal = open(4096, 4, false);
+        long[] first = write(journal, 2);
+        journal.close();
+        journal = open(4096, 4, false);
+        long[] second = write(journal, 2);
+        journal.close();
+
+        assertEquals(2, getSegments().length);
+        List<LogEntry> entries = LogJournal.replay(dir, 10, null);
+        assertEquals(4, entries.size());
+        assertEquals(first[0], entries.get(0).getSequence());
+        assertEquals(second[1], entries.get(3).getSequence());
+    }
+
+    @Test
+    public void testTruncatedSegment() throws IOException
+    {
+        LogJournal journal = open(4096, 2, false);
+        long[] sequences = write(journal, 3);
+        journal.close();
+
+        // a crash while the file was extended cuts off the last record
+        File segment = getSegments()[0];
+        int[] ends = getRecordEnds(segment);
+        try (RandomAccessFile file = new RandomAccessFile(segment, "rw"))
+        {
+            file.setLength(ends[ends.length - 1] - 3);
+        }
+
+        List<LogEntry> entries = LogJournal.replay(dir, 10, null);
+        assertEquals(2, entries.size());
+        assertEquals(sequences[0], entries.get(0).getSequence());
+        assertEquals(sequences[1], entries.get(1).getSequence());
+    }
+
+    @Test
+    public void testUnpublishedRecordIsIgnored() throws IOException
+    {
+        LogJournal journal = open(4096, 2, false);
+        long[] sequences = write(journal, 3);
+        journal.close();
+
+        // the length of a record is written last, a crash before leaves zero
+        File segment = getSegments()[0];
+        int[] ends = getRecordEnds(segment);
+        try (RandomAccessFile file = new RandomAccessFile(segment, "rw"))
+        {
+            file.seek(ends[ends.length - 2]);
+            file.writeInt(0);
+        }
+
+        List<LogEntry> entries = LogJournal.replay(dir, 10, null);
+        assertEquals(2, entries.size());
+        assertEquals(sequences[1], entries.get(1).getSequence());
+    }
+
+    @Test
+    public void testCorruptRecordKeepsPreviousEntries() throws IOException
+    {
+        LogJournal journal = open(4096, 2, false);
+        long[] sequences = write(journal, 2);
+        journal.close();
+
+        // a string definition with an id that does not follow the previous ones
+        File segment = getSegments()[0];
+        int[] ends = getRecordEnds(segment);
+        try (RandomAccessFile file = new RandomAccessFile(segment, "rw"))
+        {
+            file.seek(ends[ends.length - 1]);
+            file.writeInt(9);
+            file.writeByte(1);
+            file.writeInt(99);
+            file.writeInt(0);
+        }
+
+        List<LogEntry> entries = LogJournal.replay(dir, 10, null);
+        assertEquals(2, entries.size());
+        assertEquals(sequences[1], entries.get(1).getSequence());
+    }
+
+    @Test
+    public void testForeignFileIsIgnored() throws IOException
+    {
+        Files.write(new File(dir, "felix-log-0000000000000001.journal").toPath(), new byte[] {1, 2, 3, 4, 5, 6});
+
+        assertTrue(LogJournal.replay(dir, 10, null).isEmpty());
+    }
+
+    @Test
+    public void testLogWritesToJournal() throws IOException
+    {
+        Log log = new Log(10, false, 16);
+        LogJournal journal = open(4096, 2, false);
+        log.setJournal(journal);
+        log.log("test", null, null, LogLevel.WARN, "before close", null);
+        log.close();
+        log.log("test", null, null, LogLevel.WARN, "after close", null);
+        journal.close();
+
+        List<LogEntry> entries = LogJournal.replay(dir, 10, null);
+        assertEquals(1, entries.size());
+        assertEquals("before close", entries.get(0).getMessage());
+    }
+
+    @Test
+    public void testLogDrainsJournalOnClose() throws Exception
+    {
+        Log log = new Log(10, false, 16);
+        LogJournal journal = open(1 << 20, 2, false);
+        log.setJournal(journal);
+        assertTrue(isJournalThreadAlive());
+
+        Thread[] threads = new Thread[4];
+        for (int i = 0; i < threads.length; i++)
+        {
+            threads[i] = new Thread(new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    for (int j = 0; j < 500; j++)
+                    {
+                        log.log("test", null, null, LogLevel.INFO, "message " + j, null);
+                    }
+                }
+            });
+            threads[i].start();
+        }
+        for (Thread thread : threads)
+        {
+            thread.join();
+        }
+        log.close();
+        assertFalse(isJournalThreadAlive());
+        journal.close();
+
+        assertEquals(2000, LogJournal.replay(dir, 10000, null).size());
+    }
+
+    private LogJournal open(final int segmentSize, final int maxSegments, final boolean storeDebug) throws IOException
+    {
+        LogJournal journal = new LogJournal(dir, segmentSize, maxSegments, storeDebug);
+        journal.open();
+        return journal;
+    }
+
+    private static long[] write(final LogJournal journal, final int count)
+    {
+        long[] sequences = new long[count];
+        for (int i = 0; i < count; i++)
+        {
+            LogEntry entry = new LogEntryImpl("test", null, null, LogLevel.INFO, "message " + i, null, null);
+            journal.write(entry);
+            sequences[i] = entry.getSequence();
+        }
+        return sequences;
+    }
+
+    private File[] getSegments()
+    {
+        File[] segments = dir.listFiles();
+        Arrays.sort(segments);
+        return segments;
+    }
+
+    /**
+     * Returns the offsets after each record of a segment.
+     */
+    private static int[] getRecordEnds(final File segment) throws IOException
+    {
+        ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(segment.toPath()));
+        int[] ends = new int[0];
+        int position = 4;
+        int length;
+        while ((length = buffer.getInt(position)) > 0)
+        {
+            position += 4 + length;
+            ends = Arrays.copyOf(ends, ends.length + 1);
+            ends[ends.length - 1] = position;
+        }
+        return ends;
+    }
+
+    private static boolean isJournalThreadAlive()
+    {
+        for (Thread thread : Thread.getAllStackTraces().keySet())
+        {
+            if ("FelixLogJournal".equals(thread.getName()) && thread.isAlive())
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static Bundle mockBundle(final long id, final String location)
+    {
+        Bundle bundle = mock(Bundle.class);
+        when(bundle.getBundleId()).thenReturn(id);
+        when(bundle.getLocation()).thenReturn(location);
+        return bundle;
+    }
+
+    private static BundleContext mockContext(final Bundle... bundles)
+    {
+        BundleContext context = mock(BundleContext.class);
+        for (Bundle bundle : bundles)
+        {
+            String location = bundle.getLocation();
+            when(context.getBundle(location)).thenReturn(bundle);
+        }
+        return context;
+    }
+}
@@ -0,0 +1,285 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.felix.log;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Test;
+import org.osgi.service.log.LogEntry;
+import org.osgi.service.log.LogLevel;
+import org.osgi.service.log.LogListener;
+
+public class LogListenerThreadTest
+{
+    private Log log;
+
+    @After
+    public void tearDown()
+    {
+        if (log != null)
+        {
+            log.close();
+        }
+    }
+
+    @Test
+    public void testConcurrentWritersAreDeliveredInOrder() throws Exception
+    {
+        log = new Log(0, false, -1);
+        RecordingListener first = new RecordingListener(0);
+        RecordingListener second = new RecordingListener(0);
+        log.addListener(first);
+        log.addListener(second);
+
+        final int threads = 8;
+        final int perThread = 5000;
+        writeConcurrently(threads, perThread);
+        log.close();
+
+        assertOrdered(first.messages(), threads, perThread);
+        assertOrdered(second.messages(), threads, perThread);
+        for (LogListenerThread listenerThread : new ArrayList<>(log.getListenerThreads()))
+        {
+            assertEquals(0, listenerThread.getDroppedCount());
+        }
+    }
+
+    @Test
+    public void testSlowListenerDoesNotLoseEntriesByDefault() throws Exception
+    {
+        log = new Log(0, false, -1);
+        RecordingListener listener = new RecordingListener(1);
+        log.addListener(listener);
+        LogListenerThread listenerThread = log.getListenerThreads().get(0);
+
+        for (int i = 0; i < 200; i++)
+        {
+            log.log("test", null, null, LogLevel.INFO, "message " + i, null);
+        }
+        log.close();
+
+        assertEquals(200, listener.messages().size());
+        assertEquals(200, listenerThread.getDeliveredCount());
+        assertEquals(0, listenerThread.getDroppedCount());
+        assertTrue(listenerThread.getMaxLag() > 1);
+    }
+
+    @Test
+    public void testBoundedBufferDropsAndReports() throws Exception
+    {
+        log = new Log(100, false, 16);
+        final CountDownLatch blocked = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        RecordingListener listener = new RecordingListener(0)
+        {
+            @Override
+            public void logged(LogEntry entry)
+            {
+                if (blocked.getCount() > 0)
+                {
+                    blocked.countDown();
+                    await(release);
+                }
+                super.logged(entry);
+            }
+        };
+        log.addListener(listener);
+        LogListenerThread listenerThread = log.getListenerThreads().get(0);
+
+        log.log("test", null, null, LogLevel.INFO, "first", null);
+        assertTrue(blocked.await(10, TimeUnit.SECONDS));
+        for (int i = 0; i < 100; i++)
+        {
+            log.log("test", null, null, LogLevel.INFO, "message " + i, null);
+        }
+        release.countDown();
+        // the entries, the first one and the report of the drops
+        waitFor(listenerThread, 102);
+
+        // the listener got the first entry, the most recent entries and the report,
+        // which overwrites one more entry
+        List<String> messages = listener.messages();
+        assertEquals("first", messages.get(0));
+        assertEquals(85, listenerThread.getDroppedCount());
+        assertEquals(17, messages.size());
+        assertEquals("message 85", messages.get(1));
+        assertEquals("message 99", messages.get(15));
+        assertTrue(messages.get(16).contains("dropped 84"));
+        assertTrue(listenerThread.getMaxLag() > 16);
+
+        boolean reported = false;
+        for (Enumeration<LogEntry> e = log.getEntries(); e.hasMoreElements();)
+        {
+            LogEntry entry = e.nextElement();
+            reported |= entry.getLogLevel() == LogLevel.WARN && entry.getMessage().contains("dropped 84");
+        }
+        assertTrue(reported);
+    }
+
+    @Test
+    public void testShutdownDeliversPendingEntries() throws Exception
+    {
+        for (int bufferSize : new int[] {-1, 1024})
+        {
+            log = new Log(0, false, bufferSize);
+            RecordingListener listener = new RecordingListener(1);
+            log.addListener(listener);
+            for (int i = 0; i < 100; i++)
+            {
+                log.log("test", null, null, LogLevel.INFO, "message " + i, null);
+            }
+            log.close();
+            log.log("test", null, null, LogLevel.INFO, "after close", null);
+
+            List<String> messages = listener.messages();
+            assertEquals(100, messages.size());
+            assertEquals("message 99", messages.get(99));
+        }
+    }
+
+    @Test
+    public void testRemovedListenerGetsEntriesLoggedBefore() throws Exception
+    {
+        log = new Log(0, false, 1024);
+        RecordingListener listener = new RecordingListener(1);
+        log.addListener(listener);
+        LogListenerThread listenerThread = log.getListenerThreads().get(0);
+        for (int i = 0; i < 50; i++)
+        {
+            log.log("test", null, null, LogLevel.INFO, "message " + i, null);
+        }
+        log.removeListener(listener);
+        log.log("test", null, null, LogLevel.INFO, "after remove", null);
+        listenerThread.join(TimeUnit.SECONDS.toMillis(10));
+
+        assertFalse(listenerThread.isAlive());
+        List<String> messages = listener.messages();
+        assertEquals(50, messages.size());
+        assertEquals("message 49", messages.get(49));
+    }
+
+    private void writeConcurrently(final int threads, final int perThread) throws InterruptedException
+    {
+        final CountDownLatch start = new CountDownLatch(1);
+        Thread[] writers = new Thread[threads];
+        for (int t = 0; t < threads; t++)
+        {
+            final int id = t;
+            writers[t] = new Thread()
+            {
+                @Override
+                public void run()
+                {
+                    await(start);
+                    for (int i = 0; i < perThread; i++)
+                    {
+                        log.log("test", null, null, LogLevel.INFO, id + ":" + i, null);
+                    }
+                }
+            };
+            writers[t].start();
+        }
+        start.countDown();
+        for (Thread writer : writers)
+        {
+            writer.join();
+        }
+    }
+
+    private static void assertOrdered(final List<String> messages, final int threads, final int perThread)
+    {
+        assertEquals(threads * perThread, messages.size());
+        int[] next = new int[threads];
+        for (String message : messages)
+        {
+            String[] parts = message.split(":");
+            int writer = Integer.parseInt(parts[0]);
+            assertEquals(next[writer]++, Integer.parseInt(parts[1]));
+        }
+    }
+
+    private static void waitFor(final LogListenerThread listenerThread, final long processed)
+        throws InterruptedException
+    {
+        long timeout = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(10);
+        while (listenerThread.getDeliveredCount() + listenerThread.getDroppedCount() < processed
+            && System.currentTimeMillis() < timeout)
+        {
+            Thread.sleep(10);
+        }
+    }
+
+    private static void await(final CountDownLatch latch)
+    {
+        try
+        {
+            latch.await(10, TimeUnit.SECONDS);
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static class RecordingListener implements LogListener
+    {
+        private final List<String> m_messages = Collections.synchronizedList(new ArrayList<String>());
+        private final long m_delay;
+
+        RecordingListener(final long delay)
+        {
+            m_delay = delay;
+        }
+
+        @Override
+        public void logged(LogEntry entry)
+        {
+            if (m_delay > 0)
+            {
+                try
+                {
+                    Thread.sleep(m_delay);
+                }
+                catch (InterruptedException e)
+                {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            m_messages.add(entry.getMessage());
+        }
+
+        List<String> messages()
+        {
+            synchronized (m_messages)
+            {
+                return new ArrayList<>(m_messages);
+            }
+        }
+    }
+}
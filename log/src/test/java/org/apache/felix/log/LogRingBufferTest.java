@@ -0,0 +1,148 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.felix.log;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import org.junit.Test;
+import org.osgi.service.log.LogEntry;
+import org.osgi.service.log.LogLevel;
+
+public class LogRingBufferTest
+{
+    @Test
+    public void testEntriesMostRecentFirst()
+    {
+        LogRingBuffer buffer = new LogRingBuffer(4);
+        LogEntry[] entries = new LogEntry[6];
+        for (int i = 0; i < entries.length; i++)
+        {
+            entries[i] = entry("message " + i);
+            buffer.add(entries[i]);
+        }
+
+        List<LogEntry> read = buffer.getEntries();
+        assertEquals(4, read.size());
+        for (int i = 0; i < 4; i++)
+        {
+            assertSame(entries[5 - i], read.get(i));
+        }
+        assertEquals(6, buffer.getNextSequence());
+        assertEquals(4, buffer.getSlot(4).m_sequence);
+        assertSame(entries[4], buffer.getSlot(4).m_entry);
+    }
+
+    @Test
+    public void testClear()
+    {
+        LogRingBuffer buffer = new LogRingBuffer(4);
+        buffer.add(entry("message"));
+        buffer.clear();
+
+        assertTrue(buffer.getEntries().isEmpty());
+        assertNull(buffer.getSlot(0));
+    }
+
+    @Test
+    public void testConcurrentWriters() throws Exception
+    {
+        final int threads = 8;
+        final int perThread = 10000;
+        final LogRingBuffer buffer = new LogRingBuffer(1024);
+        final CountDownLatch start = new CountDownLatch(1);
+
+        Thread[] writers = new Thread[threads];
+        for (int t = 0; t < threads; t++)
+        {
+            final int id = t;
+            writers[t] = new Thread()
+            {
+                @Override
+                public void run()
+                {
+                    try
+                    {
+                        start.await();
+                    }
+                    catch (InterruptedException e)
+                    {
+                        return;
+                    }
+                    for (int i = 0; i < perThread; i++)
+                    {
+                        buffer.add(entry(id + ":" + i));
+                    }
+                }
+            };
+            writers[t].start();
+        }
+
+        // read while writing, a slot never holds an entry of another sequence
+        start.countDown();
+        boolean writing = true;
+        while (writing)
+        {
+            List<LogEntry> entries = buffer.getEntries();
+            assertTrue(entries.size() <= buffer.getCapacity());
+            writing = false;
+            for (Thread writer : writers)
+            {
+                writing |= writer.isAlive();
+            }
+        }
+        for (Thread writer : writers)
+        {
+            writer.join();
+        }
+
+        assertEquals(threads * perThread, buffer.getNextSequence());
+        List<LogEntry> entries = buffer.getEntries();
+        assertEquals(buffer.getCapacity(), entries.size());
+        long sequence = buffer.getNextSequence() - 1;
+        for (LogEntry entry : entries)
+        {
+            LogRingBuffer.Slot slot = buffer.getSlot(sequence);
+            assertEquals(sequence, slot.m_sequence);
+            assertSame(slot.m_entry, entry);
+            sequence--;
+        }
+
+        // the most recent entries of each writer are in order
+        int[] last = new int[threads];
+        for (int i = entries.size() - 1; i >= 0; i--)
+        {
+            String[] parts = entries.get(i).getMessage().split(":");
+            int writer = Integer.parseInt(parts[0]);
+            int index = Integer.parseInt(parts[1]);
+            assertTrue(index >= last[writer]);
+            last[writer] = index;
+        }
+    }
+
+    private static LogEntry entry(String message)
+    {
+        return new LogEntryImpl("test", null, null, LogLevel.INFO, message, null, null);
+    }
+}
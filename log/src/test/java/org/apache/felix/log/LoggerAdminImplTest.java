@@ -0,0 +1,136 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.felix.log;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.Collections;
+import java.util.Dictionary;
+import java.util.Hashtable;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.osgi.framework.Bundle;
+import org.osgi.framework.BundleEvent;
+import org.osgi.framework.Version;
+import org.osgi.service.log.LogLevel;
+import org.osgi.service.log.Logger;
+
+public class LoggerAdminImplTest
+{
+    private static final String NAME = "org.example.Foo";
+
+    private Bundle bundle;
+    private LoggerAdminImpl loggerAdmin;
+    private Logger logger;
+
+    @Before
+    public void setUp()
+    {
+        bundle = mock(Bundle.class);
+        when(bundle.getBundleId()).thenReturn(5L);
+        when(bundle.getSymbolicName()).thenReturn("test.bundle");
+        when(bundle.getVersion()).thenReturn(new Version(1, 0, 0));
+        when(bundle.getLocation()).thenReturn("file:/bundles/test.jar");
+
+        loggerAdmin = new LoggerAdminImpl("WARN", new Log(10, false, 0));
+        logger = loggerAdmin.getLogger(bundle, NAME, Logger.class);
+    }
+
+    @Test
+    public void testCachedLevelIsNotResolvedAgain()
+    {
+        long resolutions = loggerAdmin.getLevelResolutionCount();
+
+        assertFalse(logger.isDebugEnabled());
+        assertTrue(logger.isWarnEnabled());
+        assertEquals(resolutions, loggerAdmin.getLevelResolutionCount());
+    }
+
+    @Test
+    public void testLoggerContextUpdateInvalidatesCachedLevel()
+    {
+        loggerAdmin.getLoggerContext("test.bundle").setLogLevels(
+            Collections.singletonMap("org.example", LogLevel.DEBUG));
+        assertTrue(logger.isDebugEnabled());
+
+        loggerAdmin.updateConfiguration("test.bundle", levels("org.example", "ERROR"));
+        assertFalse(logger.isWarnEnabled());
+
+        loggerAdmin.getLoggerContext("test.bundle").clear();
+        assertTrue(logger.isWarnEnabled());
+        assertFalse(logger.isDebugEnabled());
+    }
+
+    @Test
+    public void testRootContextChangeInvalidatesCachedLevel()
+    {
+        loggerAdmin.getLoggerContext(null).setLogLevels(
+            Collections.singletonMap(Logger.ROOT_LOGGER_NAME, LogLevel.TRACE));
+        assertTrue(logger.isTraceEnabled());
+
+        loggerAdmin.updateConfiguration(null, levels(Logger.ROOT_LOGGER_NAME, "ERROR"));
+        assertFalse(logger.isWarnEnabled());
+    }
+
+    @Test
+    public void testBundleUpdateInvalidatesCachedLevel()
+    {
+        loggerAdmin.getLoggerContext("test.bundle|2.0.0").setLogLevels(
+            Collections.singletonMap(NAME, LogLevel.DEBUG));
+        assertFalse(logger.isDebugEnabled());
+
+        when(bundle.getVersion()).thenReturn(new Version(2, 0, 0));
+        long resolutions = loggerAdmin.getLevelResolutionCount();
+        loggerAdmin.bundleChanged(new BundleEvent(BundleEvent.STARTED, bundle));
+        assertFalse(logger.isDebugEnabled());
+        assertEquals(resolutions, loggerAdmin.getLevelResolutionCount());
+
+        loggerAdmin.bundleChanged(new BundleEvent(BundleEvent.UPDATED, bundle));
+        assertTrue(logger.isDebugEnabled());
+    }
+
+    @Test
+    public void testUnchangedConfigurationDoesNotResolveLevelAgain()
+    {
+        loggerAdmin.updateConfiguration("test.bundle", levels("org.example", "DEBUG"));
+        assertTrue(logger.isDebugEnabled());
+        long resolutions = loggerAdmin.getLevelResolutionCount();
+
+        loggerAdmin.updateConfiguration("test.bundle", levels("org.example", "debug"));
+        loggerAdmin.getLoggerContext("test.bundle").setLogLevels(
+            Collections.singletonMap("org.example", LogLevel.DEBUG));
+        loggerAdmin.getLoggerContext("other.bundle").clear();
+        loggerAdmin.updateConfiguration(null, null);
+
+        assertTrue(logger.isDebugEnabled());
+        assertEquals(resolutions, loggerAdmin.getLevelResolutionCount());
+    }
+
+    private static Dictionary<String, Object> levels(String name, String level)
+    {
+        Dictionary<String, Object> properties = new Hashtable<>();
+        properties.put(name, level);
+        return properties;
+    }
+}
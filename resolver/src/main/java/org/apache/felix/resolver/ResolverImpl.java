@@ -22,6 +22,7 @@ import java.security.*;
 import java.util.*;
 import java.util.Map.Entry;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicReference;
 
 import org.apache.felix.resolver.reason.ReasonException;
@@ -612,6 +613,16 @@ public class ResolverImpl implements Resolver
         // Calculate package spaces
         Map<Resource, Packages> resourcePkgMap =
             calculatePackageSpaces(session, allCandidates, allhosts.values());
+        // If the session can run tasks concurrently, first check all
+        // package spaces in parallel without side effects. If they are all
+        // consistent, the sequential check below would succeed without
+        // recording any permutation, so the result is the same.
+        if (!session.isDynamic() && (allhosts.size() > 1)
+            && !(session.getExecutor() instanceof DumbExecutor)
+            && isConsistent(session, allCandidates, allhosts.values(), resourcePkgMap))
+        {
+            return null;
+        }
         ResolutionError error = null;
         // Check package consistency
         Map<Resource, Object> resultCache =
@@ -620,7 +631,7 @@ public class ResolverImpl implements Resolver
         {
             rethrow = checkPackageSpaceConsistency(
                     session, entry.getValue(),
-                    allCandidates, session.isDynamic(), resourcePkgMap, resultCache);
+                    allCandidates, session.isDynamic(), resourcePkgMap, resultCache, true);
             if (session.isCancelled()) {
                 return null;
             }
@@ -1314,13 +1325,20 @@ public class ResolverImpl implements Resolver
         }
     }
 
+    /**
+     * Checks the package spaces of the resource and its dependencies. If
+     * {@code permute} is {@code false}, the check has no side effects on the
+     * session and stops at the first conflict, so it may run concurrently
+     * for different resources sharing a concurrent result cache.
+     */
     private ResolutionError checkPackageSpaceConsistency(
         ResolveSession session,
         Resource resource,
         Candidates allCandidates,
         boolean dynamic,
         Map<Resource, Packages> resourcePkgMap,
-        Map<Resource, Object> resultCache)
+        Map<Resource, Object> resultCache,
+        boolean permute)
     {
         if (!dynamic && session.getContext().getWirings().containsKey(resource))
         {
@@ -1355,15 +1373,19 @@ public class ResolverImpl implements Resolver
                     }
                     else if (!sourceBlame.m_cap.getResource().equals(blame.m_cap.getResource()))
                     {
-                        // Try to permutate the conflicting requirement.
-                        session.addPermutation(PermutationType.IMPORT, allCandidates.permutate(blame.m_reqs.get(0)));
-                        // Try to permutate the source requirement.
-                        session.addPermutation(PermutationType.IMPORT, allCandidates.permutate(sourceBlame.m_reqs.get(0)));
                         // Report conflict.
                         rethrow = new UseConstraintError(
                                 session.getContext(), allCandidates,
                                 resource, pkgName,
                                 sourceBlame, blame);
+                        if (!permute)
+                        {
+                            return rethrow;
+                        }
+                        // Try to permutate the conflicting requirement.
+                        session.addPermutation(PermutationType.IMPORT, allCandidates.permutate(blame.m_reqs.get(0)));
+                        // Try to permutate the source requirement.
+                        session.addPermutation(PermutationType.IMPORT, allCandidates.permutate(sourceBlame.m_reqs.get(0)));
                         if (m_logger.isDebugEnabled())
                         {
                             m_logger.debug(
@@ -1401,6 +1423,11 @@ public class ResolverImpl implements Resolver
             {
                 if (!isCompatible(exportBlame, usedBlames.m_caps, resourcePkgMap))
                 {
+                    if (!permute)
+                    {
+                        return new UseConstraintError(session.getContext(), allCandidates,
+                                resource, pkgName, usedBlames.m_blames.get(0));
+                    }
                     mutated = (mutated != null)
                             ? mutated
                             : new HashSet<Requirement>();
@@ -1456,6 +1483,11 @@ public class ResolverImpl implements Resolver
             {
                 if (!isCompatible(requirementBlames, usedBlames.m_caps, resourcePkgMap))
                 {
+                    if (!permute)
+                    {
+                        return new UseConstraintError(session.getContext(), allCandidates,
+                                resource, pkgName, requirementBlames.get(0), usedBlames.m_blames.get(0));
+                    }
                     mutated = (mutated != null)
                             ? mutated
                             : new HashSet<Requirement>();// Split packages, need to think how to get a good message for split packages (sigh)
@@ -1523,7 +1555,7 @@ public class ResolverImpl implements Resolver
                 {
                     rethrow = checkPackageSpaceConsistency(
                             session, cap.getResource(),
-                            allCandidates, false, resourcePkgMap, resultCache);
+                            allCandidates, false, resourcePkgMap, resultCache, permute);
                     if (session.isCancelled()) {
                         return null;
                     }
@@ -1533,7 +1565,7 @@ public class ResolverImpl implements Resolver
                         // then we should create an import permutation for the
                         // requirement with the dependency on the failing resource
                         // to backtrack on our current candidate selection.
-                        if (permCount == session.getPermutationCount())
+                        if (permute && (permCount == session.getPermutationCount()))
                         {
                             session.addPermutation(PermutationType.IMPORT, allCandidates.permutate(req));
                         }
@@ -1545,6 +1577,33 @@ public class ResolverImpl implements Resolver
         return null;
     }
     
+    private boolean isConsistent(
+        final ResolveSession session,
+        final Candidates allCandidates,
+        Collection<Resource> hosts,
+        final Map<Resource, Packages> resourcePkgMap)
+    {
+        final EnhancedExecutor executor = new EnhancedExecutor(session.getExecutor());
+        final Map<Resource, Object> resultCache = new ConcurrentHashMap<Resource, Object>(resourcePkgMap.size());
+        final AtomicBoolean consistent = new AtomicBoolean(true);
+        for (final Resource host : hosts)
+        {
+            executor.execute(new Runnable()
+            {
+                public void run()
+                {
+                    if (consistent.get() && (checkPackageSpaceConsistency(
+                            session, host, allCandidates, false, resourcePkgMap, resultCache, false) != null))
+                    {
+                        consistent.set(false);
+                    }
+                }
+            });
+        }
+        executor.await();
+        return consistent.get() && !session.isCancelled();
+    }
+
     private ResolutionError permuteUsedBlames(ResolveSession session,
           ResolutionError rethrow, Candidates allCandidates, Resource resource,
           String pkgName, Blame requirementBlame, UsedBlames usedBlames,
@@ -98,6 +98,49 @@ public class BigResolutionTest {
 
     }
 
+    @Test
+    public void testParallelResolutionIsDeterministic() throws Exception {
+        ResolveContext rc = buildResolutionContext();
+
+        Map<Resource, List<Wire>> sequential =
+                new ResolverImpl(new Logger(Logger.LOG_INFO), 1).resolve(rc);
+        Map<Resource, List<Wire>> parallel =
+                new ResolverImpl(new Logger(Logger.LOG_INFO), 4).resolve(rc);
+
+        assertEquals(sequential, parallel);
+    }
+
+    @Test
+    @Ignore
+    public void testParallelResolutionSpeed() throws Exception {
+        ResolveContext rc = buildResolutionContext();
+        int parallelism = Runtime.getRuntime().availableProcessors();
+
+        ResolverImpl sequential = new ResolverImpl(new Logger(Logger.LOG_INFO), 1);
+        ResolverImpl parallel = new ResolverImpl(new Logger(Logger.LOG_INFO), parallelism);
+
+        System.out.println("Warming up...");
+        Map<Resource, List<Wire>> wires = sequential.resolve(rc);
+        parallel.resolve(rc);
+
+        System.out.println("Running with parallelism " + parallelism + "...");
+        RunningStat seqStats = new RunningStat();
+        RunningStat parStats = new RunningStat();
+        for (int i = 1; i <= 20; i++) {
+            long t0 = System.nanoTime();
+            Map<Resource, List<Wire>> seqWires = sequential.resolve(rc);
+            long t1 = System.nanoTime();
+            Map<Resource, List<Wire>> parWires = parallel.resolve(rc);
+            long t2 = System.nanoTime();
+            seqStats.put((t1 - t0) * 1E-6);
+            parStats.put((t2 - t1) * 1E-6);
+            assertEquals(wires, seqWires);
+            assertEquals(wires, parWires);
+        }
+        System.out.println("Sequential avg: " + String.format("%7.2f", seqStats.getAverage()) + " ms");
+        System.out.println("Parallel avg:   " + String.format("%7.2f", parStats.getAverage()) + " ms");
+    }
+
     @Test
     @Ignore
     public void testIterativeResolution() throws Exception {